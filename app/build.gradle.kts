@@ -105,6 +105,19 @@ android {
     kotlinOptions {
         jvmTarget = "17"
     }
+    testOptions {
+        unitTests.all { test ->
+            // LibraryLoadHarnessTest runs only with -Dharness.enabled=true; library sizes and
+            // faults come the same way, e.g. -Dharness.savedTracks=50000
+            System.getProperties().stringPropertyNames()
+                .filter { it.startsWith("harness.") }
+                .forEach { test.systemProperty(it, System.getProperty(it)) }
+            test.systemProperty(
+                "harness.reportDir",
+                layout.buildDirectory.dir("reports/library-load").get().asFile.path
+            )
+        }
+    }
     dependenciesInfo {
         includeInBundle = false
         includeInApk = false
@@ -157,6 +170,7 @@ dependencies {
     implementation(libs.google.android.play.featureDelivery)
     implementation(libs.google.android.play.review)
     implementation(libs.google.code.gson)
+    ksp(project(":json-codegen"))
 
     implementation(libs.afollestad.material.dialogs.color)
     implementation(libs.afollestad.material.dialogs.core)
@@ -168,6 +182,7 @@ dependencies {
     implementation(libs.h6ah4i.advrecyclerview)
     implementation(libs.insert.koin.android)
     implementation(libs.insert.koin.core)
+    implementation(libs.squareup.okhttp3)
     implementation(libs.squareup.retrofit)
 
     testImplementation(libs.junit)
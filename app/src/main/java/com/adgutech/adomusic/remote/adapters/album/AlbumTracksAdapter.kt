@@ -29,12 +29,15 @@ import androidx.fragment.app.FragmentActivity
 import androidx.recyclerview.widget.RecyclerView
 import com.adgutech.adomusic.remote.R
 import com.adgutech.adomusic.remote.adapters.bases.MediaEntryViewHolder
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MembershipKind
 import com.adgutech.adomusic.remote.helpers.AppRemoteHelper
 import com.adgutech.adomusic.remote.helpers.menu.TrackMenuHelper
 import com.adgutech.adomusic.remote.models.AlbumTrackParcelable
 import com.adgutech.adomusic.remote.models.TrackParcelable
 import com.adgutech.adomusic.remote.utils.Utils
 import me.zhanghai.android.fastscroll.PopupTextProvider
+import org.koin.android.ext.android.inject
 
 /**
  * Created by Adolfo Gutiérrez on 06/04/2025.
@@ -45,6 +48,8 @@ class AlbumTracksAdapter(
     var dataSet: List<AlbumTrackParcelable>
 ) : RecyclerView.Adapter<AlbumTracksAdapter.ViewHolder>(), PopupTextProvider {
 
+    private val libraryMembership: LibraryMembership by activity.inject()
+
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
         return ViewHolder(
             LayoutInflater.from(activity).inflate(R.layout.item_track_simple, parent, false)
@@ -58,6 +63,9 @@ class AlbumTracksAdapter(
     @SuppressLint("SetTextI18n")
     override fun onBindViewHolder(holder: ViewHolder, position: Int) {
         val track = dataSet[position]
+        libraryMembership.prefetchRows(MembershipKind.SAVED_TRACK, position, dataSet.size) {
+            dataSet[it].id
+        }
         holder.title?.text = track.name
         holder.text?.text = Utils.getArtists(track.artists)
         holder.imageText?.text = track.trackNumber.toString()
@@ -29,6 +29,8 @@ import androidx.fragment.app.FragmentActivity
 import androidx.recyclerview.widget.RecyclerView
 import com.adgutech.adomusic.remote.R
 import com.adgutech.adomusic.remote.adapters.bases.MediaEntryViewHolder
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MembershipKind
 import com.adgutech.adomusic.remote.glide.GlideExtension
 import com.adgutech.adomusic.remote.glide.GlideExtension.trackImageOptions
 import com.adgutech.adomusic.remote.helpers.AppRemoteHelper
@@ -38,6 +40,7 @@ import com.adgutech.adomusic.remote.models.TrackParcelable
 import com.adgutech.commons.utils.Utils
 import com.bumptech.glide.Glide
 import me.zhanghai.android.fastscroll.PopupTextProvider
+import org.koin.android.ext.android.inject
 
 /**
  * Created by Adolfo Gutierrez on 03/13/25.
@@ -48,6 +51,8 @@ class ArtistTopTracksAdapter(
     var dataSet: List<ArtistTrackParcelable>
 ) : RecyclerView.Adapter<ArtistTopTracksAdapter.ViewHolder>(), PopupTextProvider {
 
+    private val libraryMembership: LibraryMembership by activity.inject()
+
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
         return ViewHolder(
             LayoutInflater.from(activity).inflate(R.layout.item_track_list, parent, false)
@@ -61,6 +66,9 @@ class ArtistTopTracksAdapter(
     @SuppressLint("SetTextI18n")
     override fun onBindViewHolder(holder: ViewHolder, position: Int) {
         val track = dataSet[position]
+        libraryMembership.prefetchRows(MembershipKind.SAVED_TRACK, position, dataSet.size) {
+            dataSet[it].id
+        }
         holder.title?.text = track.name
         holder.text?.text = track.album
         holder.icon?.isVisible = track.isExplicit
@@ -29,6 +29,8 @@ import androidx.fragment.app.FragmentActivity
 import androidx.recyclerview.widget.RecyclerView
 import com.adgutech.adomusic.remote.R
 import com.adgutech.adomusic.remote.adapters.bases.MediaEntryViewHolder
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MembershipKind
 import com.adgutech.adomusic.remote.glide.GlideExtension
 import com.adgutech.adomusic.remote.glide.GlideExtension.trackImageOptions
 import com.adgutech.adomusic.remote.helpers.AppRemoteHelper
@@ -37,12 +39,15 @@ import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
 import com.adgutech.adomusic.remote.models.TrackParcelable
 import com.adgutech.adomusic.remote.utils.Utils
 import com.bumptech.glide.Glide
+import org.koin.android.ext.android.inject
 
 class PlaylistTracksAdapter(
     val activity: FragmentActivity,
     var dataSet: List<PlaylistTrackParcelable>
 ) : RecyclerView.Adapter<PlaylistTracksAdapter.ViewHolder>() {
 
+    private val libraryMembership: LibraryMembership by activity.inject()
+
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
         return ViewHolder(
             LayoutInflater.from(activity).inflate(R.layout.item_track_list, parent, false)
@@ -55,6 +60,9 @@ class PlaylistTracksAdapter(
 
     override fun onBindViewHolder(holder: ViewHolder, position: Int) {
         val track = dataSet[position]
+        libraryMembership.prefetchRows(MembershipKind.SAVED_TRACK, position, dataSet.size) {
+            dataSet[it].id
+        }
         holder.title?.text = track.name
         holder.text?.text = Utils.getArtists(track.artists)
         holder.icon?.isVisible = track.isExplicit
@@ -66,6 +66,9 @@ abstract class AbsOffsetTrackAdapter(
         return if (position == 0) OFFSET_ITEM else TRACK
     }
 
+    override val headerCount: Int
+        get() = 1
+
     open inner class ViewHolder(itemView: View) : TrackAdapter.ViewHolder(itemView) {
 
         /**
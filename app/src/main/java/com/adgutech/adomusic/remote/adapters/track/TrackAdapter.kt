@@ -33,14 +33,18 @@ import androidx.fragment.app.FragmentActivity
 import com.adgutech.adomusic.remote.R
 import com.adgutech.adomusic.remote.adapters.bases.AbsMultiSelectAdapter
 import com.adgutech.adomusic.remote.adapters.bases.MediaEntryViewHolder
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MembershipKind
 import com.adgutech.adomusic.remote.glide.GlideExtension
 import com.adgutech.adomusic.remote.glide.GlideExtension.trackImageOptions
 import com.adgutech.adomusic.remote.helpers.AppRemoteHelper
 import com.adgutech.adomusic.remote.helpers.menu.TrackMenuHelper
 import com.adgutech.adomusic.remote.helpers.menu.TracksMenuHelper
 import com.adgutech.adomusic.remote.models.TrackParcelable
+import com.adgutech.adomusic.remote.repositories.PagedList
 import com.adgutech.adomusic.remote.utils.Utils
 import com.bumptech.glide.Glide
+import org.koin.android.ext.android.inject
 
 open class TrackAdapter(
     override val activity: FragmentActivity,
@@ -51,6 +55,8 @@ open class TrackAdapter(
     R.menu.menu_media_selection
 ) {
 
+    private val libraryMembership: LibraryMembership by activity.inject()
+
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
         val view = try {
             LayoutInflater.from(activity).inflate(contentLayoutId, parent, false)
@@ -65,7 +71,11 @@ open class TrackAdapter(
     }
 
     override fun onBindViewHolder(holder: ViewHolder, position: Int) {
+        (dataSet as? PagedList)?.loadAround(position)
         val track = dataSet[position]
+        libraryMembership.prefetchRows(MembershipKind.SAVED_TRACK, position, dataSet.size) {
+            dataSet[it].id
+        }
         val isChecked = isChecked(track)
         holder.itemView.isActivated = isChecked
         holder.menu?.isGone = isChecked
@@ -93,6 +103,35 @@ open class TrackAdapter(
         notifyDataSetChanged()
     }
 
+    /**
+     * Shows [tracks] without copying them; rows bind as [TrackParcelable.empty] until their
+     * page is loaded.
+     */
+    @SuppressLint("NotifyDataSetChanged")
+    fun submitPagedList(tracks: PagedList<TrackParcelable>) {
+        dataSet = tracks
+        tracks.listener = object : PagedList.Listener {
+            override fun onItemRangeLoaded(positionStart: Int, itemCount: Int) {
+                if (dataSet === tracks) {
+                    notifyItemRangeChanged(positionStart + headerCount, itemCount)
+                }
+            }
+
+            override fun onSizeChanged() {
+                if (dataSet === tracks) {
+                    notifyDataSetChanged()
+                }
+            }
+        }
+        notifyDataSetChanged()
+    }
+
+    /**
+     * Rows shown before the first track.
+     */
+    protected open val headerCount: Int
+        get() = 0
+
     private fun loadTrackImage(track: TrackParcelable, holder: ViewHolder) {
         if (holder.image == null) {
             return
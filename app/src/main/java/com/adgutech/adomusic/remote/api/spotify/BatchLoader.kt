@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * DataLoader-style batcher for endpoints that take a list of ids.
+ *
+ * Single-id [load]s made within [windowMillis] of the first one are collected and resolved
+ * by one [fetch] of up to [maxBatchSize] ids; a batch that fills up goes out immediately.
+ * Repeated ids within a batch share one slot. [fetch] must return the values in the order
+ * of the ids it was given, with null for ids that do not exist.
+ *
+ * A batch is fetched with the most urgent [RequestPriority] of the loads in it.
+ */
+class BatchLoader<V : Any>(
+    private val scope: CoroutineScope,
+    private val maxBatchSize: Int,
+    private val windowMillis: Long = DEFAULT_WINDOW_MILLIS,
+    private val fetch: suspend (ids: List<String>) -> List<V?>
+) {
+
+    private val lock = Any()
+    private var pending = LinkedHashMap<String, CompletableDeferred<V>>()
+    private var pendingPriority = RequestPriority.BACKGROUND
+    private var generation = 0L
+
+    private val loads = AtomicLong()
+    private val batches = AtomicLong()
+
+    /**
+     * Number of single-id lookups requested.
+     */
+    val loadCount: Long get() = loads.get()
+
+    /**
+     * Number of multi-id requests issued for them.
+     */
+    val batchCount: Long get() = batches.get()
+
+    suspend fun load(id: String): V {
+        loads.incrementAndGet()
+        val priority = RequestPriority.current()
+        val deferred = synchronized(lock) {
+            if (priority < pendingPriority) pendingPriority = priority
+            pending[id] ?: CompletableDeferred<V>().also { deferred ->
+                pending[id] = deferred
+                when {
+                    pending.size >= maxBatchSize -> {
+                        val batchPriority = pendingPriority
+                        val batch = takePending()
+                        scope.launch(batchPriority) { fetchBatch(batch) }
+                    }
+                    pending.size == 1 -> scheduleBatch(generation)
+                }
+            }
+        }
+        return deferred.await()
+    }
+
+    private fun scheduleBatch(batchGeneration: Long) {
+        scope.launch {
+            delay(windowMillis)
+            val (batch, priority) = synchronized(lock) {
+                // Already sent because it filled up before the window closed.
+                if (generation != batchGeneration) return@launch
+                val priority = pendingPriority
+                takePending() to priority
+            }
+            withContext(priority) { fetchBatch(batch) }
+        }
+    }
+
+    /**
+     * Must be called holding [lock].
+     */
+    private fun takePending(): Map<String, CompletableDeferred<V>> {
+        val batch = pending
+        pending = LinkedHashMap()
+        pendingPriority = RequestPriority.BACKGROUND
+        generation++
+        return batch
+    }
+
+    private suspend fun fetchBatch(batch: Map<String, CompletableDeferred<V>>) {
+        batches.incrementAndGet()
+        val ids = batch.keys.toList()
+        try {
+            val values = fetch(ids)
+            ids.forEachIndexed { index, id ->
+                val value = values.getOrNull(index)
+                if (value != null) {
+                    batch.getValue(id).complete(value)
+                } else {
+                    batch.getValue(id).completeExceptionally(NoSuchElementException("Nothing found for id $id"))
+                }
+            }
+        } catch (e: Throwable) {
+            batch.values.forEach { it.completeExceptionally(e) }
+            if (e is CancellationException) throw e
+        }
+    }
+
+    companion object {
+        const val DEFAULT_WINDOW_MILLIS = 10L
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import okhttp3.Call
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * The OkHttp [Call] a blocking Retrofit request is running, so a cancelled coroutine can
+ * abort it.
+ *
+ * Interrupting the thread is not enough: a socket read does not notice an interrupt, so the
+ * request would keep downloading until its timeout. [OkHttp3Client] attaches each call it
+ * starts to the handle of the current thread, and [cancel] closes that call's socket; a read
+ * blocked on it fails at once.
+ */
+class CallHandle {
+
+    private var call: Call? = null
+    private var cancelled = false
+    private var finished = false
+
+    val isCancelled: Boolean get() = synchronized(this) { cancelled }
+
+    fun attach(call: Call) {
+        synchronized(this) {
+            if (cancelled) call.cancel()
+            this.call = call
+        }
+    }
+
+    /**
+     * Aborts the attached call, or the next one attached. Returns false when the request
+     * already finished or was cancelled before.
+     */
+    fun cancel(): Boolean {
+        synchronized(this) {
+            if (finished || cancelled) return false
+            cancelled = true
+            call?.cancel()
+            return true
+        }
+    }
+
+    /**
+     * The request is done, body included; [cancel] no longer aborts anything.
+     */
+    fun finish() {
+        synchronized(this) {
+            finished = true
+            call = null
+        }
+    }
+
+    companion object {
+
+        private val current = ThreadLocal<CallHandle?>()
+
+        /**
+         * The handle of the request running on this thread, if any.
+         */
+        fun current(): CallHandle? = current.get()
+
+        inline fun <T> with(handle: CallHandle, block: () -> T): T {
+            set(handle)
+            try {
+                return block()
+            } finally {
+                set(null)
+            }
+        }
+
+        @PublishedApi
+        internal fun set(handle: CallHandle?) {
+            current.set(handle)
+        }
+    }
+}
+
+/**
+ * Requests aborted because their caller was cancelled, e.g. a search the user typed past or
+ * a screen the user left.
+ */
+class CancellationStats {
+
+    private val aborted = AtomicLong()
+    private val abortedBytes = AtomicLong()
+
+    /**
+     * Number of requests aborted while on the network.
+     */
+    val abortedCount: Long get() = aborted.get()
+
+    /**
+     * Body bytes those requests had received when they were aborted.
+     */
+    val abortedByteCount: Long get() = abortedBytes.get()
+
+    fun record(bytes: Long) {
+        aborted.incrementAndGet()
+        abortedBytes.addAndGet(bytes.coerceAtLeast(0))
+    }
+}
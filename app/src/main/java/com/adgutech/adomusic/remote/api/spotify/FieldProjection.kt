@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Response fields a caller consumes, sent as the Web API [SpotifyService.FIELDS] parameter so
+ * the response carries nothing else.
+ *
+ * Fields are declared as dotted paths, e.g. `"items.track.album.name"`, and merged into the
+ * nested expression the API expects: `items(track(album(name)))`.
+ *
+ * @param name Label the savings are reported under in [FieldProjectionStats].
+ */
+class FieldProjection(val name: String, vararg paths: String) {
+
+    val expression: String = Node().apply { paths.forEach { add(it.split('.')) } }.toString()
+
+    /**
+     * [options] plus the `fields` expression.
+     */
+    fun applyTo(options: Map<String, Any>): Map<String, Any> =
+        options + (SpotifyService.FIELDS to expression)
+
+    override fun toString(): String = "FieldProjection($name: $expression)"
+
+    private class Node {
+        private val children = LinkedHashMap<String, Node>()
+
+        fun add(path: List<String>) {
+            if (path.isEmpty()) return
+            children.getOrPut(path[0]) { Node() }.add(path.subList(1, path.size))
+        }
+
+        override fun toString(): String {
+            return children.entries.joinToString(",") { (name, child) ->
+                if (child.children.isEmpty()) name else "$name($child)"
+            }
+        }
+    }
+}
+
+/**
+ * Bytes transferred by projected reads and an estimate of what the projection saves.
+ *
+ * With a [baselineInterval] set, once every that many requests a projection is skipped and
+ * the full response is requested instead, to keep a live baseline; sampling is off by
+ * default, since every sample costs the full response. Sizes are compared per item, so
+ * pages of different length stay comparable. Reads answered from the disk cache transfer
+ * nothing and are not counted.
+ */
+class FieldProjectionStats @JvmOverloads constructor(
+    private val baselineInterval: Int = 0
+) {
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+
+    /**
+     * Query options to send for a request of [projection] made with [query], the options
+     * [FieldProjection.applyTo] returned: [query] itself, or [query] without the `fields`
+     * expression when this request is sampled as a baseline. Called once per request sent,
+     * after identical reads were coalesced, so joining callers neither count as requests
+     * nor split off from the one they joined.
+     */
+    fun sample(projection: FieldProjection, query: Map<String, Any>): Map<String, Any> {
+        if (baselineInterval <= 0) return query
+        val entry = entry(projection)
+        if (entry.requests.incrementAndGet() % baselineInterval == 0L) {
+            return query - SpotifyService.FIELDS
+        }
+        return query
+    }
+
+    /**
+     * Records a read made with the options [sample] returned.
+     */
+    fun record(projection: FieldProjection, options: Map<String, Any>, bytes: Long, items: Int) {
+        if (bytes <= 0) return
+        val entry = entry(projection)
+        val itemCount = items.coerceAtLeast(1).toLong()
+        if (options.containsKey(SpotifyService.FIELDS)) {
+            entry.projectedBytes.addAndGet(bytes)
+            entry.projectedItems.addAndGet(itemCount)
+        } else {
+            entry.baselineBytes.addAndGet(bytes)
+            entry.baselineItems.addAndGet(itemCount)
+        }
+    }
+
+    /**
+     * Bytes transferred with the projection applied, per projection name.
+     */
+    fun projectedBytes(): Map<String, Long> = entries.mapValues { it.value.projectedBytes.get() }
+
+    /**
+     * Estimated bytes not transferred thanks to the projection, per projection name.
+     */
+    fun bytesSaved(): Map<String, Long> = entries.mapValues { it.value.bytesSaved() }
+
+    val totalBytesSaved: Long get() = entries.values.sumOf { it.bytesSaved() }
+
+    fun reset() {
+        entries.clear()
+    }
+
+    override fun toString(): String {
+        return entries.entries.joinToString(prefix = "FieldProjectionStats(", postfix = ")") { (name, entry) ->
+            "$name: projected=${entry.projectedBytes.get()}B, saved=${entry.bytesSaved()}B"
+        }
+    }
+
+    private fun entry(projection: FieldProjection): Entry {
+        return entries.getOrPut(projection.name) { Entry() }
+    }
+
+    private class Entry {
+        val requests = AtomicLong()
+        val projectedBytes = AtomicLong()
+        val projectedItems = AtomicLong()
+        val baselineBytes = AtomicLong()
+        val baselineItems = AtomicLong()
+
+        fun bytesSaved(): Long {
+            val baselineCount = baselineItems.get()
+            val projectedCount = projectedItems.get()
+            if (baselineCount == 0L || projectedCount == 0L) return 0L
+            val baselinePerItem = baselineBytes.get().toDouble() / baselineCount
+            val projectedPerItem = projectedBytes.get().toDouble() / projectedCount
+            return ((baselinePerItem - projectedPerItem) * projectedCount).toLong().coerceAtLeast(0L)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_BASELINE_INTERVAL = 50
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import okhttp3.Interceptor
+import okhttp3.Response
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counters for the disk cache that sits below the Web API [retrofit.RestAdapter].
+ *
+ * - **hit**: served from disk without touching the network.
+ * - **miss**: nothing usable was stored, the full body was downloaded.
+ * - **revalidation**: a conditional request (If-None-Match / If-Modified-Since) was sent;
+ *   [notModifiedCount] of them came back 304 and were served from disk.
+ */
+class HttpCacheStats {
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val revalidations = AtomicLong()
+    private val notModified = AtomicLong()
+
+    val hitCount: Long get() = hits.get()
+
+    val missCount: Long get() = misses.get()
+
+    val revalidationCount: Long get() = revalidations.get()
+
+    val notModifiedCount: Long get() = notModified.get()
+
+    val requestCount: Long get() = hitCount + missCount + revalidationCount
+
+    /**
+     * Fraction of GET requests whose body came from disk, either directly or after a 304.
+     */
+    val hitRate: Float
+        get() {
+            val total = requestCount
+            return if (total == 0L) 0f else (hitCount + notModifiedCount).toFloat() / total
+        }
+
+    fun record(response: Response) {
+        val cacheResponse = response.cacheResponse
+        val networkResponse = response.networkResponse
+        when {
+            cacheResponse != null && networkResponse == null -> hits.incrementAndGet()
+            cacheResponse != null && networkResponse != null -> {
+                revalidations.incrementAndGet()
+                if (networkResponse.code == 304) {
+                    notModified.incrementAndGet()
+                }
+            }
+            else -> misses.incrementAndGet()
+        }
+    }
+
+    fun reset() {
+        hits.set(0)
+        misses.set(0)
+        revalidations.set(0)
+        notModified.set(0)
+    }
+
+    override fun toString(): String {
+        return "HttpCacheStats(hits=$hitCount, misses=$missCount, " +
+                "revalidations=$revalidationCount, notModified=$notModifiedCount, " +
+                "hitRate=$hitRate)"
+    }
+}
+
+/**
+ * Application interceptor feeding every GET that went through the cache into [HttpCacheStats].
+ */
+class HttpCacheStatsInterceptor(private val stats: HttpCacheStats) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val response = chain.proceed(chain.request())
+        if (chain.request().method == "GET") {
+            stats.record(response)
+        }
+        return response
+    }
+}
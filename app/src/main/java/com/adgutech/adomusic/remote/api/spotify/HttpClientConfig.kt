@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import okhttp3.ConnectionPool
+import okhttp3.HttpUrl
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Response
+import java.util.concurrent.TimeUnit
+
+/**
+ * Groups of Web API endpoints that share timeouts and, for [PLAYER], a request lane.
+ */
+enum class EndpointFamily {
+    /** Playback commands and state under `/me/player`: small, and useless when late. */
+    PLAYER,
+
+    /** Paged library and playlist-track reads, whose bodies can be large. */
+    LIBRARY,
+
+    /** Everything else. */
+    DEFAULT;
+
+    companion object {
+        private const val API_PREFIX = "/v1"
+
+        fun of(url: HttpUrl): EndpointFamily {
+            val path = url.encodedPath.removePrefix(API_PREFIX)
+            return when {
+                path.startsWith("/me/player") -> PLAYER
+                path == "/me/tracks" || path == "/me/albums" || path == "/me/playlists" -> LIBRARY
+                path.startsWith("/playlists/") && path.endsWith("/tracks") -> LIBRARY
+                path.startsWith("/users/") && path.endsWith("/tracks") -> LIBRARY
+                else -> DEFAULT
+            }
+        }
+    }
+}
+
+/**
+ * Read and write timeouts, in milliseconds, of one [EndpointFamily].
+ */
+data class EndpointTimeouts(val readMillis: Long, val writeMillis: Long)
+
+/**
+ * Tuning of the http stack under [SpotifyApi].
+ *
+ * @param httpThreads Threads running Web API requests, and the most that run at once.
+ * @param playerThreads Threads reserved for [EndpointFamily.PLAYER] requests, so a play or
+ * skip never queues behind a slow library page.
+ * @param maxIdleConnections Idle connections kept alive for reuse.
+ * @param keepAliveMillis How long an idle connection is kept.
+ * @param connectTimeoutMillis Timeout to establish a connection, shared by every endpoint.
+ * @param timeouts Read and write timeouts per endpoint family.
+ */
+data class HttpClientConfig(
+    val httpThreads: Int = 4,
+    val playerThreads: Int = 2,
+    val maxIdleConnections: Int = 5,
+    val keepAliveMillis: Long = TimeUnit.MINUTES.toMillis(5),
+    val connectTimeoutMillis: Long = TimeUnit.SECONDS.toMillis(10),
+    val timeouts: Map<EndpointFamily, EndpointTimeouts> = DEFAULT_TIMEOUTS
+) {
+
+    fun timeoutsOf(family: EndpointFamily): EndpointTimeouts =
+        timeouts[family] ?: DEFAULT_TIMEOUTS.getValue(family)
+
+    /**
+     * The client every http user of the app derives from with [OkHttpClient.newBuilder], so
+     * they all share its connection pool and threads.
+     *
+     * OkHttp negotiates HTTP/2 through ALPN, multiplexing concurrent requests to
+     * api.spotify.com over one connection, and asks for gzip bodies and inflates them itself
+     * as long as no caller sets Accept-Encoding.
+     */
+    fun createSharedClient(): OkHttpClient {
+        return OkHttpClient.Builder()
+            .connectionPool(ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+            .protocols(listOf(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+            .build()
+    }
+
+    companion object {
+        val DEFAULT_TIMEOUTS = mapOf(
+            EndpointFamily.PLAYER to EndpointTimeouts(5_000, 5_000),
+            EndpointFamily.LIBRARY to EndpointTimeouts(30_000, 10_000),
+            EndpointFamily.DEFAULT to EndpointTimeouts(15_000, 10_000)
+        )
+    }
+}
+
+/**
+ * Application interceptor applying the [HttpClientConfig] timeouts of the request's family.
+ */
+class EndpointTimeoutInterceptor(private val config: HttpClientConfig) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val timeouts = config.timeoutsOf(EndpointFamily.of(chain.request().url))
+        return chain
+            .withReadTimeout(timeouts.readMillis.toInt(), TimeUnit.MILLISECONDS)
+            .withWriteTimeout(timeouts.writeMillis.toInt(), TimeUnit.MILLISECONDS)
+            .proceed(chain.request())
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.emptyFlow
+import kotlinx.coroutines.launch
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Library collections an item can belong to, with the most ids their `contains` endpoint
+ * takes in one request.
+ */
+enum class MembershipKind(val maxBatchSize: Int) {
+    SAVED_TRACK(50),
+    SAVED_ALBUM(20),
+    FOLLOWED_ARTIST(50)
+}
+
+/**
+ * Whether tracks are saved, albums saved and artists followed, resolved in batches.
+ *
+ * Lists ask for the rows they bind and the rows about to be bound through [prefetch]; the
+ * asks made within a few milliseconds of each other go out as one request to
+ * `/me/tracks/contains`, `/me/albums/contains` or `/me/following/contains`. Answers are
+ * cached, and [set] records what the user toggles so the cache never waits for the server
+ * to catch up with a queued write.
+ *
+ * A toggle is held apart from what the server said: until its write is [applied], and for
+ * [SETTLE_MILLIS] after that so reads already under way when it landed can't undo it, no
+ * answer or [seed] overwrites it.
+ */
+class LibraryMembership(
+    private val spotifyService: SpotifyCoroutineService,
+    private val scope: CoroutineScope,
+    applied: Flow<List<Mutation>> = emptyFlow(),
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private class Toggle(val member: Boolean, @Volatile var heldUntil: Long)
+
+    private val caches = MembershipKind.entries.associateWith { ConcurrentHashMap<String, Boolean>() }
+    private val toggles = MembershipKind.entries.associateWith { ConcurrentHashMap<String, Toggle>() }
+    private val prefetching = MembershipKind.entries.associateWith { ConcurrentHashMap.newKeySet<String>() }
+
+    private val loaders = MembershipKind.entries.associateWith { kind ->
+        BatchLoader<Boolean>(scope, kind.maxBatchSize) { ids ->
+            val joined = ids.joinToString(",")
+            val answers = when (kind) {
+                MembershipKind.SAVED_TRACK -> spotifyService.containsMySavedTracks(joined)
+                MembershipKind.SAVED_ALBUM -> spotifyService.containsMySavedAlbums(joined)
+                MembershipKind.FOLLOWED_ARTIST -> spotifyService.isFollowingArtists(joined)
+            }
+            val cache = cacheOf(kind)
+            ids.mapIndexed { index, id ->
+                answers.getOrNull(index)?.let { cache.putIfAbsent(id, it) ?: it }
+            }
+        }
+    }
+
+    init {
+        scope.launch { applied.collect(::settle) }
+    }
+
+    private fun cacheOf(kind: MembershipKind): ConcurrentHashMap<String, Boolean> = caches.getValue(kind)
+
+    private fun isHeld(kind: MembershipKind, id: String, now: Long): Boolean {
+        val held = toggles.getValue(kind)
+        val toggle = held[id] ?: return false
+        if (now < toggle.heldUntil) return true
+        held.remove(id, toggle)
+        return false
+    }
+
+    /**
+     * The cached answer, or null if [id] was not resolved yet.
+     */
+    fun cached(kind: MembershipKind, id: String): Boolean? = cacheOf(kind)[id]
+
+    suspend fun contains(kind: MembershipKind, id: String): Boolean {
+        return cacheOf(kind)[id] ?: loaders.getValue(kind).load(id)
+    }
+
+    /**
+     * Resolves the ids not cached yet in the background.
+     */
+    fun prefetch(kind: MembershipKind, ids: Collection<String>) {
+        val cache = cacheOf(kind)
+        val inFlight = prefetching.getValue(kind)
+        for (id in ids) {
+            if (cache.containsKey(id) || !inFlight.add(id)) continue
+            scope.launch {
+                try {
+                    loaders.getValue(kind).load(id)
+                } catch (e: Exception) {
+                    // Asked again the next time the row is bound.
+                } finally {
+                    inFlight.remove(id)
+                }
+            }
+        }
+    }
+
+    /**
+     * Prefetch for a list binding row [position]: that row and the [PREFETCH_AHEAD] rows after
+     * it, so the answers are usually cached before the rows show up.
+     */
+    fun prefetchRows(kind: MembershipKind, position: Int, itemCount: Int, idAt: (Int) -> String?) {
+        val end = minOf(itemCount, position + PREFETCH_AHEAD + 1)
+        prefetch(kind, (position until end).mapNotNull(idAt).filter { it.isNotBlank() })
+    }
+
+    /**
+     * Records a state the user chose, ahead of the server. It is held until the queued write
+     * that makes it so is applied.
+     */
+    fun set(kind: MembershipKind, id: String, member: Boolean) {
+        hold(kind, id, member, Long.MAX_VALUE)
+    }
+
+    private fun hold(kind: MembershipKind, id: String, member: Boolean, heldUntil: Long) {
+        toggles.getValue(kind)[id] = Toggle(member, heldUntil)
+        cacheOf(kind)[id] = member
+    }
+
+    /**
+     * Like [set], for a `spotify:track:`, `spotify:album:` or `spotify:artist:` uri changed
+     * through the Spotify app, which writes it itself; it is held for [SETTLE_MILLIS]. Other
+     * uris are ignored.
+     */
+    fun setUri(uri: String, member: Boolean) {
+        val parts = uri.split(':')
+        if (parts.size != 3 || parts[0] != "spotify") return
+        val kind = when (parts[1]) {
+            "track" -> MembershipKind.SAVED_TRACK
+            "album" -> MembershipKind.SAVED_ALBUM
+            "artist" -> MembershipKind.FOLLOWED_ARTIST
+            else -> return
+        }
+        hold(kind, parts[2], member, clock() + SETTLE_MILLIS)
+    }
+
+    /**
+     * Marks the ids just read from the server as members, except the held toggles. When
+     * [complete] is set, [ids] is the whole collection and every other id cached as a member
+     * is marked as not one.
+     */
+    fun seed(kind: MembershipKind, ids: Collection<String>, complete: Boolean = false) {
+        val cache = cacheOf(kind)
+        val now = clock()
+        for (id in ids) {
+            if (!isHeld(kind, id, now)) cache[id] = true
+        }
+        if (complete) {
+            val members = ids.toHashSet()
+            for ((id, member) in cache) {
+                if (member && id !in members && !isHeld(kind, id, now)) cache[id] = false
+            }
+        }
+    }
+
+    /**
+     * Lets the server answer again for the toggles [batch] wrote, once reads under way had
+     * time to land.
+     */
+    private fun settle(batch: List<Mutation>) {
+        val heldUntil = clock() + SETTLE_MILLIS
+        for (mutation in batch) {
+            val (kind, member) = when (mutation.kind) {
+                MutationKind.SAVE_TRACK -> MembershipKind.SAVED_TRACK to true
+                MutationKind.REMOVE_TRACK -> MembershipKind.SAVED_TRACK to false
+                MutationKind.SAVE_ALBUM -> MembershipKind.SAVED_ALBUM to true
+                MutationKind.REMOVE_ALBUM -> MembershipKind.SAVED_ALBUM to false
+                MutationKind.FOLLOW_ARTIST -> MembershipKind.FOLLOWED_ARTIST to true
+                MutationKind.UNFOLLOW_ARTIST -> MembershipKind.FOLLOWED_ARTIST to false
+                else -> continue
+            }
+            val toggle = toggles.getValue(kind)[mutation.id] ?: continue
+            // A toggle the other way is a newer write, still pending.
+            if (toggle.member == member) {
+                toggle.heldUntil = minOf(toggle.heldUntil, heldUntil)
+            }
+        }
+    }
+
+    /**
+     * Forgets every answer and toggle, e.g. once the user signed out.
+     */
+    fun invalidate() {
+        caches.values.forEach { it.clear() }
+        toggles.values.forEach { it.clear() }
+    }
+
+    companion object {
+        const val PREFETCH_AHEAD = 10
+        const val SETTLE_MILLIS = 30 * 1000L
+    }
+}
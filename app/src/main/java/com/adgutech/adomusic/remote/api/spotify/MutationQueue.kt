@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import com.adgutech.adomusic.remote.extensions.logD
+import com.adgutech.adomusic.remote.extensions.logE
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import com.google.gson.annotations.SerializedName
+import com.google.gson.reflect.TypeToken
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.io.File
+import java.io.IOException
+import kotlin.math.min
+import kotlin.random.Random
+
+/**
+ * Kinds of write the [MutationQueue] sends, with the most ids the API takes in one request.
+ * Playback commands are only worth sending for a short while, see [expiresAfterMillis].
+ */
+enum class MutationKind(val maxBatchSize: Int, val isPlayback: Boolean = false) {
+    SAVE_ALBUM(20),
+    REMOVE_ALBUM(20),
+    SAVE_TRACK(50),
+    REMOVE_TRACK(50),
+    FOLLOW_ARTIST(50),
+    UNFOLLOW_ARTIST(50),
+    FOLLOW_PLAYLIST(1),
+    UNFOLLOW_PLAYLIST(1),
+    ADD_TO_QUEUE(1, isPlayback = true),
+    PAUSE(1, isPlayback = true),
+    RESUME(1, isPlayback = true);
+
+    val expiresAfterMillis: Long get() = if (isPlayback) PLAYBACK_TTL_MILLIS else Long.MAX_VALUE
+
+    companion object {
+        const val PLAYBACK_TTL_MILLIS = 30 * 1000L
+    }
+}
+
+/**
+ * One pending write.
+ *
+ * @param id The album, track, artist or playlist id, or the uri for [MutationKind.ADD_TO_QUEUE].
+ * Unused by [MutationKind.PAUSE] and [MutationKind.RESUME].
+ */
+data class Mutation(
+    @SerializedName("kind") val kind: MutationKind,
+    @SerializedName("id") val id: String = "",
+    @SerializedName("device_id") val deviceId: String? = null,
+    @SerializedName("created_at") val createdAtMillis: Long = System.currentTimeMillis()
+) {
+    /**
+     * Mutations with the same key undo or repeat each other, so only the latest is kept.
+     * Queue additions keep their order and never collapse.
+     */
+    val collapseKey: String?
+        get() = when (kind) {
+            MutationKind.SAVE_ALBUM, MutationKind.REMOVE_ALBUM -> "album:$id"
+            MutationKind.SAVE_TRACK, MutationKind.REMOVE_TRACK -> "track:$id"
+            MutationKind.FOLLOW_ARTIST, MutationKind.UNFOLLOW_ARTIST -> "artist:$id"
+            MutationKind.FOLLOW_PLAYLIST, MutationKind.UNFOLLOW_PLAYLIST -> "playlist:$id"
+            MutationKind.PAUSE, MutationKind.RESUME -> "playback:$deviceId"
+            MutationKind.ADD_TO_QUEUE -> null
+        }
+}
+
+/**
+ * Where the [MutationQueue] journals its pending mutations.
+ */
+interface MutationStore {
+    fun load(): List<Mutation>
+    fun save(mutations: List<Mutation>)
+}
+
+/**
+ * [MutationStore] keeping the queue as a JSON array in [file]. Each save goes to a temporary
+ * file first and is renamed over the previous one, so a crash never leaves half a journal.
+ */
+class FileMutationStore(private val file: File, private val gson: Gson = Gson()) : MutationStore {
+
+    override fun load(): List<Mutation> {
+        if (!file.exists()) return emptyList()
+        return try {
+            val type = object : TypeToken<List<Mutation>>() {}.type
+            file.reader().use { gson.fromJson<List<Mutation>>(it, type) }.orEmpty()
+                // An enum constant removed since the journal was written reads back as null.
+                .filter { mutation -> @Suppress("SENSELESS_COMPARISON") (mutation.kind != null) }
+        } catch (e: IOException) {
+            logE("Cannot read pending mutations: $e")
+            emptyList()
+        } catch (e: JsonParseException) {
+            logE("Dropping unreadable pending mutations: $e")
+            emptyList()
+        }
+    }
+
+    override fun save(mutations: List<Mutation>) {
+        try {
+            val temp = File(file.path + ".tmp")
+            temp.writer().use { gson.toJson(mutations, it) }
+            if (!temp.renameTo(file)) {
+                throw IOException("Cannot rename $temp to $file")
+            }
+        } catch (e: IOException) {
+            logE("Cannot write pending mutations: $e")
+        }
+    }
+}
+
+/**
+ * Durable queue of library and playback writes.
+ *
+ * A mutation is journaled to the [store] before anything is sent, and removed once the API
+ * accepted it or rejected it for good, so writes survive process death and flaky networks.
+ * Failures that may pass ([SpotifyError.isRetryable]) are retried with exponential backoff.
+ *
+ * Pending mutations of the same kind go out together in the API's multi-id form, e.g.
+ * `PUT /me/albums?ids=` with up to 20 albums, and a mutation replaces any pending one that
+ * it undoes or repeats (see [Mutation.collapseKey]). Playback commands drain on their own
+ * lane, so they never wait behind a library batch, and expire after
+ * [MutationKind.PLAYBACK_TTL_MILLIS].
+ */
+class MutationQueue(
+    private val spotifyService: SpotifyCoroutineService,
+    private val store: MutationStore,
+    private val scope: CoroutineScope,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val initialBackoffMillis: Long = INITIAL_BACKOFF_MILLIS
+) {
+
+    private val mutex = Mutex()
+    private val pending = ArrayList<Mutation>()
+    private val libraryLane = Lane(playback = false)
+    private val playbackLane = Lane(playback = true)
+    private val restored = CompletableDeferred<Unit>()
+    private val _applied = MutableSharedFlow<List<Mutation>>(
+        extraBufferCapacity = APPLIED_BUFFER,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+
+    /**
+     * Every library batch the API is done with, accepted or rejected for good. From then on
+     * a read of the library shows the outcome of the write.
+     */
+    val applied: SharedFlow<List<Mutation>> = _applied.asSharedFlow()
+
+    init {
+        scope.launch {
+            val journaled = withContext(Dispatchers.IO) { store.load() }
+            mutex.withLock { pending.addAll(journaled) }
+            restored.complete(Unit)
+            logD("Restored ${journaled.size} pending mutations")
+            libraryLane.start()
+            playbackLane.start()
+        }
+    }
+
+    /**
+     * Number of mutations not yet accepted by the API.
+     */
+    suspend fun size(): Int {
+        restored.await()
+        return mutex.withLock { pending.size }
+    }
+
+    /**
+     * Journals [mutation] and wakes up its lane. Returns once the mutation is durable, not
+     * once it has been sent.
+     */
+    suspend fun enqueue(mutation: Mutation) {
+        // Saving before the journal was read back would overwrite it.
+        restored.await()
+        mutex.withLock {
+            val key = mutation.collapseKey
+            if (key != null) {
+                pending.removeAll { it.collapseKey == key }
+            }
+            pending.add(mutation)
+            persist()
+        }
+        laneOf(mutation.kind).wakeUp()
+    }
+
+    /**
+     * Forgets every pending mutation, e.g. when the user signs out, so none of them is sent
+     * with the next account's token. A batch already being sent still completes.
+     */
+    fun clear(): Job = scope.launch {
+        restored.await()
+        mutex.withLock {
+            pending.clear()
+            persist()
+        }
+        logD("Cleared pending mutations")
+    }
+
+    private fun laneOf(kind: MutationKind): Lane = if (kind.isPlayback) playbackLane else libraryLane
+
+    /**
+     * Must be called holding [mutex].
+     */
+    private suspend fun persist() {
+        val snapshot = ArrayList(pending)
+        withContext(Dispatchers.IO) { store.save(snapshot) }
+    }
+
+    /**
+     * The oldest pending mutation of the lane, with every other pending one it can share a
+     * request with. Expired mutations are dropped from the journal too. Must be called
+     * holding [mutex].
+     */
+    private suspend fun nextBatch(playback: Boolean): List<Mutation> {
+        val now = clock()
+        if (pending.removeAll { now - it.createdAtMillis > it.kind.expiresAfterMillis }) {
+            persist()
+        }
+        val first = pending.firstOrNull { it.kind.isPlayback == playback } ?: return emptyList()
+        return pending.asSequence()
+            .filter { it.kind == first.kind && it.deviceId == first.deviceId }
+            .take(first.kind.maxBatchSize)
+            .toList()
+    }
+
+    private suspend fun send(batch: List<Mutation>) {
+        val first = batch.first()
+        val ids = batch.joinToString(",") { it.id }
+        when (first.kind) {
+            MutationKind.SAVE_ALBUM -> spotifyService.addToMySavedAlbums(ids)
+            MutationKind.REMOVE_ALBUM -> spotifyService.removeFromMySavedAlbums(ids)
+            MutationKind.SAVE_TRACK -> spotifyService.addToMySavedTracks(ids)
+            MutationKind.REMOVE_TRACK -> spotifyService.removeFromMySavedTracks(ids)
+            MutationKind.FOLLOW_ARTIST -> spotifyService.followArtists(ids)
+            MutationKind.UNFOLLOW_ARTIST -> spotifyService.unfollowArtists(ids)
+            MutationKind.FOLLOW_PLAYLIST -> spotifyService.followPlaylist(first.id)
+            MutationKind.UNFOLLOW_PLAYLIST -> spotifyService.unfollowPlaylist(first.id)
+            MutationKind.ADD_TO_QUEUE -> spotifyService.addToQueue(first.id, first.deviceId)
+            MutationKind.PAUSE -> spotifyService.pause(first.deviceId)
+            MutationKind.RESUME -> spotifyService.resume(first.deviceId)
+        }
+    }
+
+    private inner class Lane(private val playback: Boolean) {
+
+        private val signal = Channel<Unit>(Channel.CONFLATED)
+        private var failures = 0
+
+        fun start() {
+            // Library writes are already shown as done, nobody waits for them.
+            val priority =
+                if (playback) RequestPriority.INTERACTIVE else RequestPriority.BACKGROUND
+            scope.launch(priority) {
+                signal.trySend(Unit)
+                for (ignored in signal) {
+                    try {
+                        drain()
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        // Reading or writing the journal failed; the lane must outlive it.
+                        logE("Mutation lane failed, will retry: $e")
+                        failures++
+                        delay(backoffMillis(failures))
+                        signal.trySend(Unit)
+                    }
+                }
+            }
+        }
+
+        fun wakeUp() {
+            signal.trySend(Unit)
+        }
+
+        private suspend fun drain() {
+            while (true) {
+                val batch = mutex.withLock { nextBatch(playback) }
+                if (batch.isEmpty()) return
+
+                val done = try {
+                    send(batch)
+                    logD("Sent ${batch.size} ${batch.first().kind} mutations")
+                    true
+                } catch (e: SpotifyError) {
+                    if (e.isRetryable) {
+                        logE("Mutation ${batch.first().kind} failed, will retry: $e")
+                        false
+                    } else {
+                        logE("Mutation ${batch.first().kind} rejected, dropping it: $e")
+                        true
+                    }
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    logE("Mutation ${batch.first().kind} failed, will retry: $e")
+                    false
+                }
+
+                if (done) {
+                    failures = 0
+                    mutex.withLock {
+                        // Identity, not equality: an identical mutation enqueued meanwhile stays.
+                        pending.removeAll { mutation -> batch.any { it === mutation } }
+                        persist()
+                    }
+                    if (!playback) {
+                        _applied.tryEmit(batch)
+                    }
+                } else {
+                    failures++
+                    delay(backoffMillis(failures))
+                }
+            }
+        }
+    }
+
+    private fun backoffMillis(failures: Int): Long {
+        val exponential = initialBackoffMillis shl min(failures - 1, MAX_BACKOFF_SHIFT)
+        val capped = min(exponential, MAX_BACKOFF_MILLIS)
+        return (capped * Random.nextDouble(1 - BACKOFF_JITTER, 1 + BACKOFF_JITTER)).toLong()
+    }
+
+    companion object {
+        const val INITIAL_BACKOFF_MILLIS = 2 * 1000L
+        const val MAX_BACKOFF_MILLIS = 5 * 60 * 1000L
+        private const val MAX_BACKOFF_SHIFT = 16
+        private const val BACKOFF_JITTER = 0.2
+        private const val APPLIED_BUFFER = 16
+    }
+}
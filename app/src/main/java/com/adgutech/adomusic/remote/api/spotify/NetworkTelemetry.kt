@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import okhttp3.HttpUrl
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.BufferedSource
+import okio.ForwardingSource
+import okio.buffer
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Per-endpoint counters for the Web API client: latency histogram, request and response bytes,
+ * status codes, failures and retries.
+ *
+ * Endpoints are keyed by their path template, e.g. `/playlists/{playlist_id}/tracks`, so every
+ * playlist shares one entry. Latency runs from the request leaving the app until its body has
+ * been read, response bytes are those read from the network (see [ResponseBytes]), and a
+ * retry is a request the [RequestScheduler] sent again after a 429.
+ */
+class NetworkTelemetry {
+
+    private val endpoints = ConcurrentHashMap<String, EndpointStats>()
+
+    fun record(
+        method: String,
+        url: HttpUrl,
+        latencyMillis: Long,
+        statusCode: Int,
+        requestBytes: Long,
+        responseBytes: Long,
+        retry: Boolean
+    ) {
+        endpoints.getOrPut(endpointKey(method, url)) { EndpointStats() }
+            .record(latencyMillis, statusCode, requestBytes, responseBytes, retry)
+    }
+
+    /**
+     * Stats of every endpoint seen so far, slowest 90th percentile first.
+     */
+    fun snapshot(): List<EndpointSnapshot> {
+        return endpoints.map { (endpoint, stats) -> stats.snapshot(endpoint) }
+            .sortedByDescending { it.p90Millis }
+    }
+
+    fun snapshot(method: String, template: String): EndpointSnapshot? {
+        val endpoint = "$method $template"
+        return endpoints[endpoint]?.snapshot(endpoint)
+    }
+
+    fun reset() {
+        endpoints.clear()
+    }
+
+    /**
+     * Writes [snapshot] to [file] as a plain text table, replacing its content.
+     */
+    @Throws(IOException::class)
+    fun dump(file: File) {
+        file.parentFile?.mkdirs()
+        file.bufferedWriter().use { writer ->
+            writer.appendLine(
+                String.format(
+                    Locale.US, "%-48s %7s %7s %7s %7s %10s %10s %7s %7s  %s",
+                    "endpoint", "count", "p50", "p90", "p99", "req", "resp", "fail", "retry", "status"
+                )
+            )
+            for (stats in snapshot()) {
+                writer.appendLine(
+                    String.format(
+                        Locale.US, "%-48s %7d %7d %7d %7d %10d %10d %7d %7d  %s",
+                        stats.endpoint, stats.count, stats.p50Millis, stats.p90Millis,
+                        stats.p99Millis, stats.requestBytes, stats.responseBytes,
+                        stats.failureCount, stats.retryCount,
+                        stats.statusCounts.entries.joinToString(" ") { "${it.key}:${it.value}" }
+                    )
+                )
+            }
+        }
+    }
+
+    private class EndpointStats {
+
+        private val latencyBuckets = LongArray(BUCKET_BOUNDS_MILLIS.size + 1)
+        private val statusCounts = HashMap<Int, Long>()
+        private var count = 0L
+        private var requestBytes = 0L
+        private var responseBytes = 0L
+        private var retries = 0L
+        private var maxLatencyMillis = 0L
+
+        @Synchronized
+        fun record(
+            latencyMillis: Long,
+            statusCode: Int,
+            requestBytes: Long,
+            responseBytes: Long,
+            retry: Boolean
+        ) {
+            val bucket = BUCKET_BOUNDS_MILLIS.indexOfFirst { latencyMillis <= it }
+            latencyBuckets[if (bucket < 0) BUCKET_BOUNDS_MILLIS.size else bucket]++
+            statusCounts[statusCode] = (statusCounts[statusCode] ?: 0L) + 1
+            count++
+            this.requestBytes += requestBytes
+            this.responseBytes += responseBytes
+            if (retry) retries++
+            maxLatencyMillis = maxOf(maxLatencyMillis, latencyMillis)
+        }
+
+        @Synchronized
+        fun snapshot(endpoint: String): EndpointSnapshot {
+            return EndpointSnapshot(
+                endpoint,
+                count,
+                percentile(0.5),
+                percentile(0.9),
+                percentile(0.99),
+                requestBytes,
+                responseBytes,
+                statusCounts.toSortedMap(),
+                retries
+            )
+        }
+
+        /**
+         * Upper bound of the bucket holding the [quantile], capped at the slowest request seen.
+         */
+        private fun percentile(quantile: Double): Long {
+            if (count == 0L) return 0
+            val rank = Math.ceil(quantile * count).toLong()
+            var seen = 0L
+            for (i in latencyBuckets.indices) {
+                seen += latencyBuckets[i]
+                if (seen >= rank) {
+                    val bound = if (i < BUCKET_BOUNDS_MILLIS.size) BUCKET_BOUNDS_MILLIS[i] else Long.MAX_VALUE
+                    return minOf(bound, maxLatencyMillis)
+                }
+            }
+            return maxLatencyMillis
+        }
+    }
+
+    companion object {
+        /**
+         * Status code recorded for requests that failed without a response.
+         */
+        const val STATUS_IO_ERROR = -1
+
+        private val BUCKET_BOUNDS_MILLIS =
+            longArrayOf(25, 50, 100, 200, 400, 800, 1_600, 3_200, 6_400, 12_800, 25_600)
+
+        private const val API_PREFIX = "/v1"
+
+        /**
+         * Path segments followed by an id, and the placeholder that id is replaced with.
+         */
+        private val ID_PLACEHOLDERS = mapOf(
+            "albums" to "{album_id}",
+            "artists" to "{artist_id}",
+            "audiobooks" to "{audiobook_id}",
+            "categories" to "{category_id}",
+            "chapters" to "{chapter_id}",
+            "episodes" to "{episode_id}",
+            "playlists" to "{playlist_id}",
+            "shows" to "{show_id}",
+            "tracks" to "{track_id}",
+            "users" to "{user_id}"
+        )
+
+        /**
+         * Segments that follow a collection name without being an id.
+         */
+        private val KEYWORDS = setOf("contains")
+
+        fun endpointKey(method: String, url: HttpUrl): String = "$method ${template(url)}"
+
+        /**
+         * Path of [url] with ids replaced by placeholders, e.g.
+         * `/v1/users/jmperezperez/playlists` becomes `/users/{user_id}/playlists`.
+         */
+        fun template(url: HttpUrl): String {
+            val segments = url.pathSegments
+            val template = StringBuilder()
+            for (i in segments.indices) {
+                val segment = segments[i]
+                if (i == 0 && "/$segment" == API_PREFIX) continue
+                val placeholder = if (i > 0 && segment !in KEYWORDS) ID_PLACEHOLDERS[segments[i - 1]] else null
+                // "/me/tracks" and "/playlists/{playlist_id}/tracks" keep their collection name.
+                val isId = placeholder != null && !(i > 1 && ID_PLACEHOLDERS[segments[i - 2]] != null)
+                template.append('/').append(if (isId) placeholder else segment)
+            }
+            return if (template.isEmpty()) "/" else template.toString()
+        }
+    }
+}
+
+/**
+ * Stats of one endpoint at the time of [NetworkTelemetry.snapshot].
+ *
+ * @param endpoint Method and path template, e.g. `GET /me/tracks`.
+ * @param statusCounts Responses per HTTP status; failures without a response are counted
+ * under [NetworkTelemetry.STATUS_IO_ERROR].
+ */
+data class EndpointSnapshot(
+    val endpoint: String,
+    val count: Long,
+    val p50Millis: Long,
+    val p90Millis: Long,
+    val p99Millis: Long,
+    val requestBytes: Long,
+    val responseBytes: Long,
+    val statusCounts: Map<Int, Long>,
+    val retryCount: Long
+) {
+    /**
+     * Requests that failed without a response or with a 4xx/5xx status.
+     */
+    val failureCount: Long
+        get() = statusCounts.filterKeys { it == NetworkTelemetry.STATUS_IO_ERROR || it >= 400 }
+            .values.sum()
+}
+
+/**
+ * The attempt number of the request running on the current thread, set by
+ * [SpotifyCoroutineService] so [NetworkTelemetryInterceptor] can tell retries apart.
+ */
+object RequestAttempt {
+
+    private val attempt = ThreadLocal.withInitial { 0 }
+
+    fun current(): Int = attempt.get()!!
+
+    inline fun <T> with(attempt: Int, block: () -> T): T {
+        set(attempt)
+        try {
+            return block()
+        } finally {
+            set(0)
+        }
+    }
+
+    @PublishedApi
+    internal fun set(value: Int) {
+        attempt.set(value)
+    }
+}
+
+/**
+ * Application interceptor feeding [NetworkTelemetry]. A request is recorded once its body has
+ * been read to the end or closed, or as soon as it fails.
+ */
+class NetworkTelemetryInterceptor(private val telemetry: NetworkTelemetry) : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val request = chain.request()
+        val retry = RequestAttempt.current() > 0
+        val requestBytes = request.body?.contentLength()?.coerceAtLeast(0) ?: 0L
+        val startBytes = ResponseBytes.current()
+        val start = System.nanoTime()
+
+        val response = try {
+            chain.proceed(request)
+        } catch (e: IOException) {
+            telemetry.record(
+                request.method, request.url, elapsedMillis(start),
+                NetworkTelemetry.STATUS_IO_ERROR, requestBytes, 0, retry
+            )
+            throw e
+        }
+
+        val recorded = AtomicBoolean()
+        val record = {
+            if (recorded.compareAndSet(false, true)) {
+                telemetry.record(
+                    request.method, request.url, elapsedMillis(start), response.code,
+                    requestBytes, ResponseBytes.current() - startBytes, retry
+                )
+            }
+        }
+        val body = response.body
+        if (body == null) {
+            record()
+            return response
+        }
+        return response.newBuilder().body(RecordingResponseBody(body, record)).build()
+    }
+
+    private fun elapsedMillis(startNanos: Long): Long = (System.nanoTime() - startNanos) / 1_000_000L
+
+    private class RecordingResponseBody(
+        private val delegate: ResponseBody,
+        private val onDone: () -> Unit
+    ) : ResponseBody() {
+
+        private val source = object : ForwardingSource(delegate.source()) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                val read = super.read(sink, byteCount)
+                if (read == -1L) {
+                    onDone()
+                }
+                return read
+            }
+
+            override fun close() {
+                onDone()
+                super.close()
+            }
+        }.buffer()
+
+        override fun contentType(): MediaType? = delegate.contentType()
+
+        override fun contentLength(): Long = delegate.contentLength()
+
+        override fun source(): BufferedSource = source
+
+        override fun close() {
+            source.close()
+        }
+    }
+}
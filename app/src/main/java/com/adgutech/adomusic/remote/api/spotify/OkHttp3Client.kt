@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import okhttp3.Headers
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaTypeOrNull
+import okhttp3.OkHttpClient
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.ResponseBody
+import okio.BufferedSink
+import retrofit.client.Client
+import retrofit.client.Header
+import retrofit.client.Request
+import retrofit.client.Response
+import retrofit.mime.TypedInput
+import retrofit.mime.TypedOutput
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Retrofit 1.9 [Client] backed by an OkHttp 3+ [OkHttpClient], so the
+ * [retrofit.RestAdapter] built by [SpotifyApi] gets OkHttp's cache and
+ * interceptors underneath it.
+ *
+ * Each call is attached to the [CallHandle] of the calling thread, so a cancelled caller
+ * aborts it.
+ */
+class OkHttp3Client(private val client: OkHttpClient) : Client {
+
+    @Throws(IOException::class)
+    override fun execute(request: Request): Response {
+        val call = client.newCall(createRequest(request))
+        CallHandle.current()?.attach(call)
+        return parseResponse(call.execute())
+    }
+
+    private fun createRequest(request: Request): okhttp3.Request {
+        val builder = okhttp3.Request.Builder()
+            .url(request.url)
+            .method(request.method, createRequestBody(request.method, request.body))
+        for (header in request.headers) {
+            builder.addHeader(header.name, header.value ?: "")
+        }
+        return builder.build()
+    }
+
+    private fun createRequestBody(method: String, body: TypedOutput?): RequestBody? {
+        if (body == null) {
+            return if (requiresRequestBody(method)) ByteArray(0).toRequestBody() else null
+        }
+        val mediaType = body.mimeType()?.toMediaTypeOrNull()
+        return object : RequestBody() {
+            override fun contentType(): MediaType? = mediaType
+
+            override fun contentLength(): Long = body.length()
+
+            override fun writeTo(sink: BufferedSink) {
+                body.writeTo(sink.outputStream())
+            }
+        }
+    }
+
+    private fun requiresRequestBody(method: String): Boolean {
+        return method == "POST" || method == "PUT" || method == "PATCH"
+    }
+
+    private fun parseResponse(response: okhttp3.Response): Response {
+        return Response(
+            response.request.url.toString(),
+            response.code,
+            response.message,
+            createHeaders(response.headers),
+            createResponseBody(response.body)
+        )
+    }
+
+    private fun createResponseBody(body: ResponseBody?): TypedInput? {
+        if (body == null || body.contentLength() == 0L) {
+            body?.close()
+            return null
+        }
+        return object : TypedInput {
+            override fun mimeType(): String? = body.contentType()?.toString()
+
+            override fun length(): Long = body.contentLength()
+
+            override fun `in`(): InputStream = body.byteStream()
+        }
+    }
+
+    private fun createHeaders(headers: Headers): List<Header> {
+        val headerList = ArrayList<Header>(headers.size)
+        for (i in 0 until headers.size) {
+            headerList.add(Header(headers.name(i), headers.value(i)))
+        }
+        return headerList
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import com.adgutech.adomusic.remote.api.spotify.models.ArtistSimple
+import com.adgutech.adomusic.remote.api.spotify.models.Pager
+import com.adgutech.adomusic.remote.models.AlbumParcelable
+import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
+import com.adgutech.adomusic.remote.models.TrackParcelable
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import retrofit.client.Response
+import java.io.InputStreamReader
+
+/**
+ * Decodes Web API paging objects straight into the app models while the body streams in.
+ *
+ * The repositories used to parse a full [Pager] of [com.adgutech.adomusic.remote.api.spotify.models.SavedTrack],
+ * [com.adgutech.adomusic.remote.api.spotify.models.PlaylistTrack] or
+ * [com.adgutech.adomusic.remote.api.spotify.models.SavedAlbum] and then copy it into the
+ * parcelables, keeping two copies of every page alive. Here only the values the parcelables
+ * hold are read; everything else (available_markets, external_ids, album track listings...)
+ * is skipped on the token stream without being materialized.
+ *
+ * Items whose track or album is null (removed or unavailable content) are dropped.
+ */
+object PagerStreamDecoder {
+
+    fun decodeSavedTracks(response: Response): Pager<TrackParcelable> {
+        return decodePager(response) { reader -> decodeSavedTrack(reader) }
+    }
+
+    fun decodePlaylistTracks(response: Response): Pager<PlaylistTrackParcelable> {
+        return decodePager(response) { reader -> decodePlaylistTrack(reader) }
+    }
+
+    fun decodeSavedAlbums(response: Response): Pager<AlbumParcelable> {
+        return decodePager(response) { reader -> decodeSavedAlbum(reader) }
+    }
+
+    private fun <T> decodePager(response: Response, decodeItem: (JsonReader) -> T?): Pager<T> {
+        val pager = Pager<T>()
+        val items = ArrayList<T>()
+        pager.items = items
+        val body = response.body ?: return pager
+        JsonReader(InputStreamReader(body.`in`(), Charsets.UTF_8)).use { reader ->
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    "href" -> pager.href = reader.nextStringOrNull()
+                    "items" -> reader.readArray { decodeItem(reader)?.let { items.add(it) } }
+                    "limit" -> pager.limit = reader.nextIntOrZero()
+                    "next" -> pager.next = reader.nextStringOrNull()
+                    "offset" -> pager.offset = reader.nextIntOrZero()
+                    "previous" -> pager.previous = reader.nextStringOrNull()
+                    "total" -> pager.total = reader.nextIntOrZero()
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+        }
+        return pager
+    }
+
+    private fun decodeSavedTrack(reader: JsonReader): TrackParcelable? {
+        var track: TrackFields? = null
+        reader.readObject { name ->
+            when (name) {
+                "track" -> track = decodeTrack(reader)
+                else -> reader.skipValue()
+            }
+        } ?: return null
+        return track?.toTrackParcelable()
+    }
+
+    private fun decodePlaylistTrack(reader: JsonReader): PlaylistTrackParcelable? {
+        var addedAt = ""
+        var track: TrackFields? = null
+        reader.readObject { name ->
+            when (name) {
+                "added_at" -> addedAt = reader.nextStringOrNull() ?: ""
+                "track" -> track = decodeTrack(reader)
+                else -> reader.skipValue()
+            }
+        } ?: return null
+        return track?.toPlaylistTrackParcelable(addedAt)
+    }
+
+    private fun decodeTrack(reader: JsonReader): TrackFields? {
+        val track = TrackFields()
+        reader.readObject { name ->
+            when (name) {
+                "album" -> reader.readObject { albumName ->
+                    when (albumName) {
+                        "id" -> track.albumId = reader.nextStringOrNull() ?: ""
+                        "images" -> track.imageUrl = decodeFirstImageUrl(reader)
+                        "name" -> track.album = reader.nextStringOrNull() ?: ""
+                        else -> reader.skipValue()
+                    }
+                }
+                "artists" -> track.artists = decodeArtists(reader)
+                "disc_number" -> track.discNumber = reader.nextIntOrZero()
+                "duration_ms" -> track.duration = reader.nextLongOrZero()
+                "explicit" -> track.isExplicit = reader.nextBooleanOrFalse()
+                "external_urls" -> track.spotifyUrl = decodeSpotifyUrl(reader)
+                "id" -> track.id = reader.nextStringOrNull() ?: ""
+                "name" -> track.name = reader.nextStringOrNull() ?: ""
+                "track_number" -> track.trackNumber = reader.nextIntOrZero()
+                "type" -> track.type = reader.nextStringOrNull() ?: ""
+                "uri" -> track.uri = reader.nextStringOrNull() ?: ""
+                else -> reader.skipValue()
+            }
+        } ?: return null
+        return track
+    }
+
+    private fun decodeSavedAlbum(reader: JsonReader): AlbumParcelable? {
+        var addedAt = ""
+        var album: AlbumParcelable? = null
+        reader.readObject { name ->
+            when (name) {
+                "added_at" -> addedAt = reader.nextStringOrNull() ?: ""
+                "album" -> album = decodeAlbum(reader)
+                else -> reader.skipValue()
+            }
+        } ?: return null
+        return album?.apply { this.addedAt = addedAt }
+    }
+
+    private fun decodeAlbum(reader: JsonReader): AlbumParcelable? {
+        val album = AlbumParcelable()
+        album.artists = emptyList()
+        reader.readObject { name ->
+            when (name) {
+                "album_type" -> album.albumType = reader.nextStringOrNull()
+                "artists" -> album.artists = decodeArtists(reader)
+                "copyrights" -> album.copyrights = decodeFirstCopyright(reader)
+                "id" -> album.id = reader.nextStringOrNull()
+                "images" -> album.imageUrl = decodeFirstImageUrl(reader)
+                "name" -> album.name = reader.nextStringOrNull()
+                "release_date" -> album.releaseDate = reader.nextStringOrNull()
+                "release_date_precision" -> album.releaseDatePrecision = reader.nextStringOrNull()
+                "tracks" -> reader.readObject { tracksName ->
+                    when (tracksName) {
+                        "total" -> album.trackTotal = reader.nextIntOrZero()
+                        else -> reader.skipValue()
+                    }
+                }
+                "type" -> album.type = reader.nextStringOrNull()
+                "uri" -> album.uri = reader.nextStringOrNull()
+                else -> reader.skipValue()
+            }
+        } ?: return null
+        album.artist = album.artists?.firstOrNull()?.name ?: ""
+        album.artistId = album.artists?.firstOrNull()?.id ?: ""
+        return album
+    }
+
+    private fun decodeArtists(reader: JsonReader): List<ArtistSimple> {
+        val artists = ArrayList<ArtistSimple>()
+        reader.readArray {
+            val artist = ArtistSimple()
+            reader.readObject { name ->
+                when (name) {
+                    "external_urls" -> artist.external_urls = decodeStringMap(reader)
+                    "href" -> artist.href = reader.nextStringOrNull()
+                    "id" -> artist.id = reader.nextStringOrNull()
+                    "name" -> artist.name = reader.nextStringOrNull()
+                    "type" -> artist.type = reader.nextStringOrNull()
+                    "uri" -> artist.uri = reader.nextStringOrNull()
+                    else -> reader.skipValue()
+                }
+            }?.let { artists.add(artist) }
+        }
+        return artists
+    }
+
+    private fun decodeFirstImageUrl(reader: JsonReader): String {
+        var url = ""
+        var first = true
+        reader.readArray {
+            if (first) {
+                first = false
+                reader.readObject { name ->
+                    when (name) {
+                        "url" -> url = reader.nextStringOrNull() ?: ""
+                        else -> reader.skipValue()
+                    }
+                }
+            } else {
+                reader.skipValue()
+            }
+        }
+        return url
+    }
+
+    private fun decodeFirstCopyright(reader: JsonReader): String {
+        var text = ""
+        var first = true
+        reader.readArray {
+            if (first) {
+                first = false
+                reader.readObject { name ->
+                    when (name) {
+                        "text" -> text = reader.nextStringOrNull() ?: ""
+                        else -> reader.skipValue()
+                    }
+                }
+            } else {
+                reader.skipValue()
+            }
+        }
+        return text
+    }
+
+    private fun decodeSpotifyUrl(reader: JsonReader): String? {
+        var url: String? = null
+        reader.readObject { name ->
+            when (name) {
+                SpotifyService.SPOTIFY_URL -> url = reader.nextStringOrNull()
+                else -> reader.skipValue()
+            }
+        }
+        return url
+    }
+
+    private fun decodeStringMap(reader: JsonReader): Map<String, String> {
+        val map = LinkedHashMap<String, String>()
+        reader.readObject { name ->
+            reader.nextStringOrNull()?.let { map[name] = it }
+        }
+        return map
+    }
+
+    /**
+     * Reads an object name by name with [readField], which must consume each value.
+     * Returns null, after consuming it, when the object is a JSON null.
+     */
+    private inline fun JsonReader.readObject(readField: (String) -> Unit): Unit? {
+        if (peek() == JsonToken.NULL) {
+            nextNull()
+            return null
+        }
+        beginObject()
+        while (hasNext()) {
+            readField(nextName())
+        }
+        endObject()
+        return Unit
+    }
+
+    private inline fun JsonReader.readArray(readElement: () -> Unit) {
+        if (peek() == JsonToken.NULL) {
+            nextNull()
+            return
+        }
+        beginArray()
+        while (hasNext()) {
+            readElement()
+        }
+        endArray()
+    }
+
+    private fun JsonReader.nextStringOrNull(): String? {
+        if (peek() == JsonToken.NULL) {
+            nextNull()
+            return null
+        }
+        return nextString()
+    }
+
+    private fun JsonReader.nextIntOrZero(): Int {
+        if (peek() == JsonToken.NULL) {
+            nextNull()
+            return 0
+        }
+        return nextInt()
+    }
+
+    private fun JsonReader.nextLongOrZero(): Long {
+        if (peek() == JsonToken.NULL) {
+            nextNull()
+            return 0L
+        }
+        return nextLong()
+    }
+
+    private fun JsonReader.nextBooleanOrFalse(): Boolean {
+        if (peek() == JsonToken.NULL) {
+            nextNull()
+            return false
+        }
+        return nextBoolean()
+    }
+
+    /**
+     * Mutable holder for the track values shared by [TrackParcelable] and
+     * [PlaylistTrackParcelable], filled in whatever order the fields arrive.
+     */
+    private class TrackFields {
+        var album = ""
+        var albumId = ""
+        var artists: List<ArtistSimple> = emptyList()
+        var discNumber = 0
+        var duration = 0L
+        var id = ""
+        var imageUrl = ""
+        var isExplicit = false
+        var spotifyUrl: String? = null
+        var name = ""
+        var trackNumber = 0
+        var type = ""
+        var uri = ""
+
+        private val artist: String get() = artists.firstOrNull()?.name ?: ""
+        private val artistId: String get() = artists.firstOrNull()?.id ?: ""
+
+        fun toTrackParcelable() = TrackParcelable(
+            album,
+            albumId,
+            artist,
+            artistId,
+            artists,
+            discNumber,
+            duration,
+            id,
+            imageUrl,
+            isExplicit,
+            spotifyUrl,
+            name,
+            trackNumber,
+            type,
+            uri
+        )
+
+        fun toPlaylistTrackParcelable(addedAt: String) = PlaylistTrackParcelable(
+            addedAt,
+            album,
+            albumId,
+            artist,
+            artistId,
+            artists,
+            discNumber,
+            duration,
+            id,
+            imageUrl,
+            isExplicit,
+            spotifyUrl,
+            name,
+            trackNumber,
+            type,
+            uri
+        )
+    }
+}
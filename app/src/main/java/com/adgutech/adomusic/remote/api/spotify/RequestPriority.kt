@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.currentCoroutineContext
+import kotlin.coroutines.CoroutineContext
+
+/**
+ * How soon the user needs a Web API request, most urgent first.
+ *
+ * The priority travels in the coroutine context, so a caller sets it once around its work:
+ * `viewModelScope.launch(IO + RequestPriority.BACKGROUND) { ... }`. Requests made without
+ * one are [VISIBLE].
+ */
+enum class RequestPriority : CoroutineContext.Element {
+
+    /**
+     * A command the user just gave, e.g. play or pause.
+     */
+    INTERACTIVE,
+
+    /**
+     * Content of the screen the user is looking at.
+     */
+    VISIBLE,
+
+    /**
+     * Content the user may look at next.
+     */
+    PREFETCH,
+
+    /**
+     * Refreshes and syncs nobody is waiting for.
+     */
+    BACKGROUND;
+
+    /**
+     * Whether requests of this priority may use the slots kept for the ones above them.
+     */
+    val isForeground: Boolean get() = this <= VISIBLE
+
+    override val key: CoroutineContext.Key<*> get() = Key
+
+    companion object Key : CoroutineContext.Key<RequestPriority> {
+
+        suspend fun current(): RequestPriority = currentCoroutineContext()[Key] ?: VISIBLE
+    }
+}
+
+/**
+ * The priority of one scheduled request. Callers that come to share the request, e.g. through
+ * [SingleFlight], [raise] it to their own priority while it waits for a slot.
+ */
+class SharedPriority(initial: RequestPriority) {
+
+    @Volatile
+    var value: RequestPriority = initial
+        private set
+
+    @Volatile
+    internal var scheduler: RequestScheduler? = null
+
+    fun raise(priority: RequestPriority) {
+        synchronized(this) {
+            if (priority >= value) return
+            value = priority
+        }
+        scheduler?.onPriorityRaised()
+    }
+}
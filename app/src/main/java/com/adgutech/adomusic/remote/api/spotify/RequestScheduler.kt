@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.delay
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Admission control for Web API requests.
+ *
+ * - When a request comes back with HTTP 429 every request, queued or new, is parked
+ *   until the Retry-After deadline, then the rejected request is sent again.
+ * - The number of concurrent requests follows AIMD: each success below
+ *   [latencyTargetMillis] grows the window by `1 / window` (about one slot per round trip),
+ *   a 429 halves it and a slow response shrinks it slightly.
+ * - Waiting requests are admitted by [RequestPriority], in arrival order within one priority,
+ *   so queued prefetches and syncs give way to anything the user is waiting for. Those two
+ *   lower priorities also never take the last [reservedSlots] slots of the window, so a
+ *   foreground request finds a free slot even while a large sync runs.
+ */
+class RequestScheduler @JvmOverloads constructor(
+    private val maxConcurrency: Int,
+    private val minConcurrency: Int = 1,
+    private val latencyTargetMillis: Long = DEFAULT_LATENCY_TARGET_MILLIS,
+    private val maxRetries: Int = DEFAULT_MAX_RETRIES,
+    private val reservedSlots: Int = DEFAULT_RESERVED_SLOTS
+) {
+
+    private class Waiter(val priority: SharedPriority) {
+        val turn = CompletableDeferred<Unit>()
+
+        /**
+         * Set with the slot it is handed, under [lock].
+         */
+        var foreground = true
+    }
+
+    private val lock = Any()
+    private val waiters = ArrayList<Waiter>()
+    private var window = maxConcurrency.toDouble()
+    private var active = 0
+    private var activeBackground = 0
+
+    @Volatile
+    private var retryAfterDeadline = 0L
+
+    private val rateLimited = AtomicLong()
+
+    /**
+     * Current number of requests allowed to run at the same time.
+     */
+    val concurrencyLimit: Int get() = synchronized(lock) { window.toInt() }
+
+    /**
+     * Number of 429 responses received so far.
+     */
+    val rateLimitedCount: Long get() = rateLimited.get()
+
+    /**
+     * Runs [block] once admitted, and again after each 429 up to [maxRetries] times. [block]
+     * receives the attempt number, 0 for the first one.
+     */
+    suspend fun <T> schedule(
+        priority: RequestPriority = RequestPriority.VISIBLE,
+        block: suspend (attempt: Int) -> T
+    ): T = schedule(SharedPriority(priority), block)
+
+    /**
+     * Like the other [schedule], with a priority that may be raised while [block] waits.
+     */
+    suspend fun <T> schedule(priority: SharedPriority, block: suspend (attempt: Int) -> T): T {
+        var attempt = 0
+        while (true) {
+            val foreground = acquire(priority)
+            val start = now()
+            try {
+                val result = block(attempt)
+                onSuccess(now() - start)
+                return result
+            } catch (e: SpotifyError) {
+                if (!e.isRateLimited || attempt >= maxRetries) {
+                    throw e
+                }
+                onRateLimited(e.retryAfterMillis)
+                attempt++
+            } finally {
+                release(foreground)
+            }
+        }
+    }
+
+    private suspend fun awaitRetryAfter() {
+        while (true) {
+            val wait = retryAfterDeadline - now()
+            if (wait <= 0) return
+            delay(wait)
+        }
+    }
+
+    /**
+     * Returns whether the slot was taken as a foreground one, which [release] needs back.
+     */
+    private suspend fun acquire(priority: SharedPriority): Boolean {
+        awaitRetryAfter()
+        val waiter = Waiter(priority)
+        synchronized(lock) {
+            val value = priority.value
+            // Don't overtake requests of the same or a higher priority already waiting.
+            if (hasSlotFor(value) && waiters.none { it.priority.value <= value }) {
+                return take(value.isForeground)
+            }
+            priority.scheduler = this
+            waiters.add(waiter)
+        }
+        try {
+            waiter.turn.await()
+        } catch (e: CancellationException) {
+            synchronized(lock) {
+                // Only wakeUpWaiters removes a waiter, after handing it a slot: pass it on.
+                if (!waiters.remove(waiter)) releaseLocked(waiter.foreground)
+            }
+            throw e
+        }
+        try {
+            // A 429 may have parked every request while this one waited.
+            awaitRetryAfter()
+        } catch (e: CancellationException) {
+            release(waiter.foreground)
+            throw e
+        }
+        return waiter.foreground
+    }
+
+    /**
+     * Must be called while holding [lock].
+     */
+    private fun take(foreground: Boolean): Boolean {
+        active++
+        if (!foreground) activeBackground++
+        return foreground
+    }
+
+    private fun release(foreground: Boolean) {
+        synchronized(lock) {
+            releaseLocked(foreground)
+        }
+    }
+
+    /**
+     * Must be called while holding [lock].
+     */
+    private fun releaseLocked(foreground: Boolean) {
+        active--
+        if (!foreground) activeBackground--
+        wakeUpWaiters()
+    }
+
+    /**
+     * A waiting request was raised to a higher priority, which may have a free slot.
+     */
+    internal fun onPriorityRaised() {
+        synchronized(lock) {
+            wakeUpWaiters()
+        }
+    }
+
+    /**
+     * Must be called while holding [lock].
+     */
+    private fun hasSlotFor(priority: RequestPriority): Boolean {
+        if (active >= window.toInt()) return false
+        return priority.isForeground || activeBackground < backgroundLimit()
+    }
+
+    /**
+     * Slots prefetches and syncs may hold together, never less than one.
+     */
+    private fun backgroundLimit(): Int = max(1, window.toInt() - reservedSlots)
+
+    private fun onSuccess(latencyMillis: Long) {
+        synchronized(lock) {
+            window = if (latencyMillis > latencyTargetMillis) {
+                max(minConcurrency.toDouble(), window * LATENCY_DECREASE_FACTOR)
+            } else {
+                min(maxConcurrency.toDouble(), window + 1.0 / window)
+            }
+            wakeUpWaiters()
+        }
+    }
+
+    private fun onRateLimited(retryAfterMillis: Long) {
+        rateLimited.incrementAndGet()
+        synchronized(lock) {
+            window = max(minConcurrency.toDouble(), window * RATE_LIMIT_DECREASE_FACTOR)
+            retryAfterDeadline = max(retryAfterDeadline, now() + retryAfterMillis)
+        }
+    }
+
+    /**
+     * Must be called while holding [lock].
+     */
+    private fun wakeUpWaiters() {
+        while (waiters.isNotEmpty()) {
+            // The first of the most urgent waiters that has a slot.
+            val next = waiters
+                .filter { hasSlotFor(it.priority.value) }
+                .minByOrNull { it.priority.value }
+                ?: return
+            waiters.remove(next)
+            next.foreground = take(next.priority.value.isForeground)
+            next.turn.complete(Unit)
+        }
+    }
+
+    private fun now(): Long = System.nanoTime() / 1_000_000L
+
+    companion object {
+        const val DEFAULT_LATENCY_TARGET_MILLIS = 2_000L
+        const val DEFAULT_MAX_RETRIES = 3
+        const val DEFAULT_RESERVED_SLOTS = 1
+        private const val RATE_LIMIT_DECREASE_FACTOR = 0.5
+        private const val LATENCY_DECREASE_FACTOR = 0.9
+    }
+}
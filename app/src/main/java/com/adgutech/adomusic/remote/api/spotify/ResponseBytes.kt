@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import okhttp3.Interceptor
+import okhttp3.MediaType
+import okhttp3.Response
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.BufferedSource
+import okio.ForwardingSource
+import okio.buffer
+
+/**
+ * Body bytes read from the network by the current thread.
+ *
+ * Retrofit runs a blocking call, body included, on the thread that invoked it, so the bytes
+ * a call transferred are the difference of [current] before and after it. Responses served
+ * from the disk cache add nothing, and gzip bodies count at their compressed size.
+ */
+object ResponseBytes {
+
+    private val counter = ThreadLocal.withInitial { LongArray(1) }
+
+    fun current(): Long = counter.get()!![0]
+
+    internal fun add(byteCount: Long) {
+        counter.get()!![0] += byteCount
+    }
+}
+
+/**
+ * Network interceptor feeding [ResponseBytes] as response bodies are read.
+ */
+class ResponseBytesInterceptor : Interceptor {
+
+    override fun intercept(chain: Interceptor.Chain): Response {
+        val response = chain.proceed(chain.request())
+        val body = response.body ?: return response
+        return response.newBuilder().body(CountingResponseBody(body)).build()
+    }
+
+    private class CountingResponseBody(private val delegate: ResponseBody) : ResponseBody() {
+
+        private val source = object : ForwardingSource(delegate.source()) {
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                val read = super.read(sink, byteCount)
+                if (read > 0) {
+                    ResponseBytes.add(read)
+                }
+                return read
+            }
+        }.buffer()
+
+        override fun contentType(): MediaType? = delegate.contentType()
+
+        override fun contentLength(): Long = delegate.contentLength()
+
+        override fun source(): BufferedSource = source
+    }
+}
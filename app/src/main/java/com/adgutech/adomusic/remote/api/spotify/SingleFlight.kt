@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.ensureActive
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Coalesces identical in-flight requests: while a call for a given key is running,
+ * every other caller with the same key suspends on it and receives the same result
+ * (or the same error) instead of issuing its own request.
+ *
+ * If the caller that started the request is cancelled, the waiters still active
+ * retry and one of them becomes the new leader.
+ */
+class SingleFlight {
+
+    private val inFlight = ConcurrentHashMap<String, CompletableDeferred<Any?>>()
+    private val coalesced = AtomicLong()
+
+    /**
+     * Number of calls that were served by a request started by another caller.
+     */
+    val coalescedCount: Long get() = coalesced.get()
+
+    @Suppress("UNCHECKED_CAST")
+    suspend fun <T> execute(key: String, block: suspend () -> T): T {
+        while (true) {
+            val deferred = CompletableDeferred<Any?>()
+            val existing = inFlight.putIfAbsent(key, deferred)
+            if (existing != null) {
+                coalesced.incrementAndGet()
+                try {
+                    return existing.await() as T
+                } catch (e: CancellationException) {
+                    // Either we were cancelled, or the leader was and we try again.
+                    currentCoroutineContext().ensureActive()
+                    inFlight.remove(key, existing)
+                    continue
+                }
+            }
+            try {
+                val result = block()
+                deferred.complete(result)
+                return result
+            } catch (e: Throwable) {
+                deferred.completeExceptionally(e)
+                throw e
+            } finally {
+                inFlight.remove(key, deferred)
+            }
+        }
+    }
+
+    companion object {
+
+        /**
+         * Builds the coalescing key of a request from its method, path and query parameters.
+         * Query parameters are sorted so that equal maps always give the same key.
+         */
+        fun requestKey(method: String, path: String, query: Map<String, Any?> = emptyMap()): String {
+            if (query.isEmpty()) {
+                return "$method $path"
+            }
+            val queryString = query.toSortedMap().entries.joinToString("&") { (name, value) ->
+                "$name=$value"
+            }
+            return "$method $path?$queryString"
+        }
+    }
+}
@@ -22,14 +22,28 @@ package com.adgutech.adomusic.remote.api.spotify;
 
 import android.content.Context;
 
+import com.adgutech.adomusic.remote.api.spotify.models.GeneratedTypeAdapterFactory;
 import com.adgutech.adomusic.remote.extensions.ContextExtensionKt;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import kotlinx.coroutines.CoroutineDispatcher;
+import kotlinx.coroutines.ExecutorsKt;
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
 import retrofit.RequestInterceptor;
 import retrofit.RestAdapter;
 import retrofit.android.MainThreadExecutor;
+import retrofit.converter.GsonConverter;
 
 /**
  * Creates and configures a REST adapter for Spotify Web API.
@@ -52,42 +66,133 @@ public class SpotifyApi {
      * Main Spotify Web API endpoint
      */
     public static final String SPOTIFY_WEB_API_ENDPOINT = "https://api.spotify.com/v1";
+
+    /**
+     * Directory, relative to the app cache dir, holding cached Web API responses.
+     */
+    public static final String HTTP_CACHE_DIR = "spotify-web-api";
+
+    /**
+     * Maximum size in bytes of the Web API response cache.
+     */
+    public static final long HTTP_CACHE_SIZE = 20L * 1024L * 1024L;
+
+    private static final long EXECUTOR_KEEP_ALIVE_SECONDS = 30L;
+
+    /**
+     * Name of the file, in the app external files dir, {@link #dumpTelemetry()} writes to.
+     */
+    public static final String TELEMETRY_FILE = "spotify-web-api-telemetry.txt";
+
+    private final HttpCacheStats mCacheStats = new HttpCacheStats();
+    private final NetworkTelemetry mTelemetry = new NetworkTelemetry();
+
     private final SpotifyService mSpotifyService;
+    private SpotifyCoroutineService mSpotifyCoroutineService;
+    private final TokenManager mTokenManager;
     private final Context context;
 
     /**
-     * Create instance of SpotifyApi with given executors.
+     * Create instance of SpotifyApi with the given callback executor.
      *
-     * @param httpExecutor     executor for http request. Cannot be null.
+     * @param tokenManager     holder of the access token sent with every request.
+     * @param sharedClient     client whose connection pool and threads requests reuse.
+     * @param config           thread counts and per-endpoint timeouts.
      * @param callbackExecutor executor for callbacks. If null is passed than the same
      *                         thread that created the instance is used.
      */
-    public SpotifyApi(Context context, Executor httpExecutor, Executor callbackExecutor) {
-        this.context = context;
-        mSpotifyService = init(httpExecutor, callbackExecutor);
+    public SpotifyApi(Context context, TokenManager tokenManager, OkHttpClient sharedClient,
+                      HttpClientConfig config, Executor callbackExecutor) {
+        this(context, tokenManager, sharedClient, config, callbackExecutor,
+                SPOTIFY_WEB_API_ENDPOINT, new File(context.getCacheDir(), HTTP_CACHE_DIR));
     }
 
     /**
-     * New instance of SpotifyApi,
-     * with single thread executor both for http and callbacks.
+     * Create instance of SpotifyApi talking to {@code endpoint}, e.g. a stand-in server in tests.
+     *
+     * @param endpoint Base url of the Web API, ending in {@code /v1}.
+     * @param cacheDir Directory of the response cache, or null to run without one.
      */
-    public SpotifyApi(Context context) {
+    public SpotifyApi(Context context, TokenManager tokenManager, OkHttpClient sharedClient,
+                      HttpClientConfig config, Executor callbackExecutor, String endpoint,
+                      File cacheDir) {
         this.context = context;
-        Executor httpExecutor = Executors.newSingleThreadExecutor();
-        MainThreadExecutor callbackExecutor = new MainThreadExecutor();
-        mSpotifyService = init(httpExecutor, callbackExecutor);
+        mTokenManager = tokenManager;
+        mSpotifyService = init(sharedClient, config, callbackExecutor, endpoint, cacheDir);
     }
 
-    private SpotifyService init(Executor httpExecutor, Executor callbackExecutor) {
+    /**
+     * New instance of SpotifyApi, with the main thread for callbacks.
+     */
+    public SpotifyApi(Context context, TokenManager tokenManager, OkHttpClient sharedClient,
+                      HttpClientConfig config) {
+        this(context, tokenManager, sharedClient, config, new MainThreadExecutor());
+    }
+
+    private SpotifyService init(OkHttpClient sharedClient, HttpClientConfig config,
+                                Executor callbackExecutor, String endpoint, File cacheDir) {
+        Executor httpExecutor = createExecutor("spotify-http", config.getHttpThreads());
+        Executor playerExecutor = createExecutor("spotify-player", config.getPlayerThreads());
 
         final RestAdapter restAdapter = new RestAdapter.Builder()
+                .setClient(new OkHttp3Client(createHttpClient(sharedClient, config, cacheDir)))
+                .setConverter(new GsonConverter(createGson()))
                 .setLogLevel(RestAdapter.LogLevel.BASIC)
                 .setExecutors(httpExecutor, callbackExecutor)
-                .setEndpoint(SPOTIFY_WEB_API_ENDPOINT)
+                .setEndpoint(endpoint)
                 .setRequestInterceptor(new WebApiAuthenticator())
                 .build();
 
-        return restAdapter.create(SpotifyService.class);
+        SpotifyService spotifyService = restAdapter.create(SpotifyService.class);
+        CoroutineDispatcher dispatcher = ExecutorsKt.from(httpExecutor);
+        RequestScheduler scheduler = new RequestScheduler(config.getHttpThreads());
+        CoroutineDispatcher playerDispatcher = ExecutorsKt.from(playerExecutor);
+        RequestScheduler playerScheduler = new RequestScheduler(config.getPlayerThreads());
+        mSpotifyCoroutineService = new SpotifyCoroutineService(spotifyService, dispatcher,
+                scheduler, playerDispatcher, playerScheduler);
+        return spotifyService;
+    }
+
+    /**
+     * A pool of at most {@code threads} threads; idle ones are let go after a while.
+     */
+    private static ExecutorService createExecutor(String name, int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                EXECUTOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, name + "-" + count.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Responses are stored on disk together with their validators (ETag, Last-Modified).
+     * Spotify answers most GETs with {@code Cache-Control: private, max-age=0}, so repeated
+     * requests go out as conditional requests and a 304 is served from the stored body.
+     * <p>
+     * The client is derived from {@code sharedClient}, so it reuses its pooled, keep-alive
+     * connections; timeouts follow the {@link EndpointFamily} of each request.
+     */
+    private OkHttpClient createHttpClient(OkHttpClient sharedClient, HttpClientConfig config,
+                                          File cacheDir) {
+        Cache cache = cacheDir != null ? new Cache(cacheDir, HTTP_CACHE_SIZE) : null;
+        return sharedClient.newBuilder()
+                .cache(cache)
+                .addInterceptor(new NetworkTelemetryInterceptor(mTelemetry))
+                .addInterceptor(new EndpointTimeoutInterceptor(config))
+                .addInterceptor(new HttpCacheStatsInterceptor(mCacheStats))
+                .addNetworkInterceptor(new ResponseBytesInterceptor())
+                .build();
+    }
+
+    /**
+     * Models are read and written by the adapters json-codegen generates for every
+     * {@code @GenerateTypeAdapter} class, so parsing does not go through reflection.
+     */
+    private Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new GeneratedTypeAdapterFactory())
+                .create();
     }
 
     /**
@@ -99,12 +204,25 @@ public class SpotifyApi {
      * @return The instance of the wrapper.
      */
     public SpotifyApi setAccessToken(String accessToken) {
-        ContextExtensionKt.getPreference(context).setAccessToken(accessToken);
+        if (accessToken == null) {
+            mTokenManager.clear();
+            return this;
+        }
+        long expiresAt = ContextExtensionKt.getPreference(context).getAccessTokenExpirationTime();
+        mTokenManager.setToken(new AccessToken(accessToken, expiresAt));
         return this;
     }
 
     public String getAccessToken() {
-        return ContextExtensionKt.getPreference(context).getAccessToken();
+        AccessToken accessToken = mTokenManager.getAccessToken();
+        return accessToken != null ? accessToken.getValue() : null;
+    }
+
+    /**
+     * @return The in-memory holder of the access token, which also renews it.
+     */
+    public TokenManager getTokenManager() {
+        return mTokenManager;
     }
 
     /**
@@ -114,15 +232,50 @@ public class SpotifyApi {
         return mSpotifyService;
     }
 
+    /**
+     * @return The suspending facade over {@link #getService()}, running on the
+     * same bounded executor used for http requests.
+     */
+    public SpotifyCoroutineService getCoroutineService() {
+        return mSpotifyCoroutineService;
+    }
+
+    /**
+     * @return Hit, miss and revalidation counters of the Web API response cache.
+     */
+    public HttpCacheStats getCacheStats() {
+        return mCacheStats;
+    }
+
+    /**
+     * @return Latency, bytes, status and retry counters per Web API endpoint.
+     */
+    public NetworkTelemetry getTelemetry() {
+        return mTelemetry;
+    }
+
+    /**
+     * Writes {@link #getTelemetry()} to {@link #TELEMETRY_FILE} in the app external files dir,
+     * where it can be pulled without root.
+     *
+     * @return The file written.
+     */
+    public File dumpTelemetry() throws IOException {
+        File file = new File(context.getExternalFilesDir(null), TELEMETRY_FILE);
+        mTelemetry.dump(file);
+        return file;
+    }
+
     /**
      * The request interceptor that will add the header with OAuth
-     * token to every request made with the wrapper.
+     * token to every request made with the wrapper. The token is read
+     * from memory, see {@link TokenManager#awaitAccessToken()}.
      */
     private class WebApiAuthenticator implements RequestInterceptor {
         @Override
         public void intercept(RequestFacade request) {
-            String accessToken = ContextExtensionKt.getPreference(context).getAccessToken();
-            if (!accessToken.isEmpty()) {
+            String accessToken = mTokenManager.awaitAccessToken();
+            if (accessToken != null && !accessToken.isEmpty()) {
                 request.addHeader("Authorization", "Bearer " + accessToken);
             }
         }
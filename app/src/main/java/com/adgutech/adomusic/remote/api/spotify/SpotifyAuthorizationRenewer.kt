@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import android.app.Activity
+import com.adgutech.adomusic.remote.CLIENT_ID
+import com.adgutech.adomusic.remote.REDIRECT_URI
+import com.adgutech.adomusic.remote.REQUEST_CODE
+import com.adgutech.adomusic.remote.scopesList
+import com.spotify.sdk.android.auth.AuthorizationClient
+import com.spotify.sdk.android.auth.AuthorizationRequest
+import com.spotify.sdk.android.auth.AuthorizationResponse
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeout
+import java.lang.ref.WeakReference
+import java.util.concurrent.TimeUnit
+
+/**
+ * [TokenRenewer] for the implicit grant the app signs in with: there is no refresh token, so
+ * renewing means running the authorization again from the foreground activity. Without the
+ * dialog, the Spotify app answers right away for a user who already granted access.
+ *
+ * The activity registers itself with [attach]/[detach] and hands its activity result to
+ * [onAuthorizationResponse].
+ */
+class SpotifyAuthorizationRenewer(
+    private val clock: () -> Long = System::currentTimeMillis
+) : TokenRenewer {
+
+    // Only touched on the main thread.
+    private var host: WeakReference<Activity>? = null
+    private var pending: CompletableDeferred<AccessToken>? = null
+
+    fun attach(activity: Activity) {
+        host = WeakReference(activity)
+    }
+
+    fun detach(activity: Activity) {
+        if (host?.get() === activity) {
+            host = null
+        }
+    }
+
+    override suspend fun renew(): AccessToken {
+        val deferred = withContext(Dispatchers.Main) {
+            val activity = host?.get() ?: throw IllegalStateException("No activity to authorize from")
+            pending ?: CompletableDeferred<AccessToken>().also {
+                pending = it
+                AuthorizationClient.openLoginActivity(activity, REQUEST_CODE, createRequest(false))
+            }
+        }
+        return try {
+            withTimeout(AUTHORIZATION_TIMEOUT_MILLIS) { deferred.await() }
+        } finally {
+            withContext(Dispatchers.Main) {
+                if (pending === deferred) {
+                    pending = null
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns an authorization result into a token, completing the renewal waiting for it.
+     *
+     * @return The token, or null if the authorization did not produce one.
+     */
+    fun onAuthorizationResponse(response: AuthorizationResponse): AccessToken? {
+        val waiting = pending
+        pending = null
+        if (response.type != AuthorizationResponse.Type.TOKEN) {
+            waiting?.completeExceptionally(
+                IllegalStateException("Authorization returned ${response.type}: ${response.error}")
+            )
+            return null
+        }
+        val token = AccessToken(
+            response.accessToken,
+            clock() + TimeUnit.SECONDS.toMillis(response.expiresIn.toLong())
+        )
+        waiting?.complete(token)
+        return token
+    }
+
+    companion object {
+        const val AUTHORIZATION_TIMEOUT_MILLIS = 20 * 1000L
+
+        fun createRequest(showDialog: Boolean): AuthorizationRequest {
+            return AuthorizationRequest
+                .Builder(CLIENT_ID, AuthorizationResponse.Type.TOKEN, REDIRECT_URI)
+                .setShowDialog(showDialog)
+                .setScopes(scopesList)
+                .build()
+        }
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import com.adgutech.adomusic.remote.BuildConfig
+import com.adgutech.adomusic.remote.api.spotify.models.Album
+import com.adgutech.adomusic.remote.api.spotify.models.AlbumsPager
+import com.adgutech.adomusic.remote.api.spotify.models.Artist
+import com.adgutech.adomusic.remote.api.spotify.models.ArtistsCursorPager
+import com.adgutech.adomusic.remote.api.spotify.models.ArtistsPager
+import com.adgutech.adomusic.remote.api.spotify.models.Devices
+import com.adgutech.adomusic.remote.api.spotify.models.Pager
+import com.adgutech.adomusic.remote.api.spotify.models.Playlist
+import com.adgutech.adomusic.remote.api.spotify.models.PlaylistSimple
+import com.adgutech.adomusic.remote.api.spotify.models.PlaylistTrack
+import com.adgutech.adomusic.remote.api.spotify.models.PlaylistsPager
+import com.adgutech.adomusic.remote.api.spotify.models.QueueTrack
+import com.adgutech.adomusic.remote.api.spotify.models.Result
+import com.adgutech.adomusic.remote.api.spotify.models.SavedAlbum
+import com.adgutech.adomusic.remote.api.spotify.models.SavedTrack
+import com.adgutech.adomusic.remote.api.spotify.models.SnapshotId
+import com.adgutech.adomusic.remote.api.spotify.models.Track
+import com.adgutech.adomusic.remote.api.spotify.models.TrackToPlayPosition
+import com.adgutech.adomusic.remote.api.spotify.models.Tracks
+import com.adgutech.adomusic.remote.api.spotify.models.TracksPager
+import com.adgutech.adomusic.remote.api.spotify.models.UserPrivate
+import com.adgutech.adomusic.remote.api.spotify.models.UserPublic
+import com.adgutech.adomusic.remote.models.AlbumParcelable
+import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
+import com.adgutech.adomusic.remote.models.TrackParcelable
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.awaitCancellation
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runInterruptible
+import okhttp3.RequestBody
+import retrofit.RetrofitError
+import retrofit.client.Response
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Suspending facade over [SpotifyService].
+ *
+ * Every call runs on the shared, bounded dispatcher that [SpotifyApi] creates
+ * for its http executor, so callers never block their own thread and the
+ * number of threads busy with Web API requests never grows past that pool.
+ * Cancelling the calling coroutine aborts the HTTP call through its [CallHandle],
+ * and failures are thrown as [SpotifyError] instead of the raw [RetrofitError].
+ *
+ * Concurrent identical reads (same method, path and query) are coalesced by
+ * [SingleFlight], so the callers share a single network call and parsed result.
+ * Shared results must therefore be treated as read-only.
+ *
+ * Requests are admitted by a [RequestScheduler], which honours 429 Retry-After
+ * deadlines and adapts the number of concurrent requests.
+ *
+ * Player commands run on their own [playerDispatcher] and [playerScheduler], so they
+ * never wait for a slot held by a slow library read.
+ *
+ * Other requests are admitted by the [RequestPriority] of the calling coroutine. A caller
+ * that joins a read another caller started raises that read to its own priority, so a
+ * screen never waits behind a prefetch of the same data.
+ */
+class SpotifyCoroutineService(
+    private val spotifyService: SpotifyService,
+    private val dispatcher: CoroutineDispatcher,
+    private val scheduler: RequestScheduler,
+    private val playerDispatcher: CoroutineDispatcher,
+    private val playerScheduler: RequestScheduler
+) {
+
+    private val singleFlight = SingleFlight()
+
+    /**
+     * Priorities of the coalesced reads in flight, by request key.
+     */
+    private val sharedPriorities = ConcurrentHashMap<String, SharedPriority>()
+
+    /**
+     * Bytes transferred by reads that take a [FieldProjection], and what the projection saves.
+     * Debug builds sample a baseline to estimate the savings; release builds always project.
+     */
+    val projectionStats = FieldProjectionStats(
+        if (BuildConfig.DEBUG) FieldProjectionStats.DEFAULT_BASELINE_INTERVAL else 0
+    )
+
+    /**
+     * Requests aborted on the network because their caller was cancelled.
+     */
+    val cancellationStats = CancellationStats()
+
+    private val loaderScope = CoroutineScope(SupervisorJob() + dispatcher)
+
+    /**
+     * Single-id lookups of [loadAlbum] resolved through the multi-id albums endpoint.
+     */
+    val albumLoader = BatchLoader<Album>(loaderScope, MAX_ALBUM_IDS) { ids ->
+        val joined = ids.joinToString(",")
+        get("/albums", mapOf("ids" to joined)) { getAlbums(joined).albums }
+    }
+
+    /**
+     * Single-id lookups of [loadArtist] resolved through the multi-id artists endpoint.
+     */
+    val artistLoader = BatchLoader<Artist>(loaderScope, MAX_ARTIST_IDS) { ids ->
+        val joined = ids.joinToString(",")
+        get("/artists", mapOf("ids" to joined)) { getArtists(joined).artists }
+    }
+
+    /**
+     * Number of reads that were answered by an identical request already in flight.
+     */
+    val coalescedCount: Long get() = singleFlight.coalescedCount
+
+    /*********
+     * Users *
+     *********/
+
+    suspend fun getMe(): UserPrivate = get("/me") { me }
+
+    suspend fun getUser(userId: String): UserPublic = get("/users/$userId") { getUser(userId) }
+
+    /*************
+     * Playlists *
+     *************/
+
+    suspend fun getMyPlaylists(options: Map<String, Any>): Pager<PlaylistSimple> =
+        get("/me/playlists", options) { getMyPlaylists(options) }
+
+    suspend fun getPlaylists(userId: String): Pager<PlaylistSimple> =
+        get("/users/$userId/playlists") { getPlaylists(userId) }
+
+    suspend fun getPlaylist(playlistId: String): Playlist =
+        get("/playlists/$playlistId") { getPlaylist(playlistId) }
+
+    suspend fun getPlaylist(playlistId: String, projection: FieldProjection): Playlist {
+        val query = projection.applyTo(emptyMap())
+        val path = "/playlists/$playlistId"
+        return coalesce(SingleFlight.requestKey("GET", path, query)) { priority ->
+            val sent = projectionStats.sample(projection, query)
+            execute(scheduler, dispatcher, priority) {
+                measure(projection, sent, { 1 }) { getPlaylist(playlistId, sent) }
+            }
+        }
+    }
+
+    /**
+     * The playlist's current `snapshot_id`, a read of a few dozen bytes.
+     */
+    suspend fun getPlaylistSnapshotId(playlistId: String): String {
+        val query = mapOf(SpotifyService.FIELDS to "snapshot_id")
+        return get("/playlists/$playlistId", query) { getPlaylist(playlistId, query) }.snapshot_id
+    }
+
+    suspend fun getPlaylistTracks(
+        userId: String,
+        playlistId: String,
+        options: Map<String, Any>
+    ): Pager<PlaylistTrack> = get("/users/$userId/playlists/$playlistId/tracks", options) {
+        getPlaylistTracks(userId, playlistId, options)
+    }
+
+    suspend fun getPlaylistTrackParcelables(
+        userId: String,
+        playlistId: String,
+        options: Map<String, Any>,
+        projection: FieldProjection
+    ): Pager<PlaylistTrackParcelable> {
+        val query = projection.applyTo(options)
+        val path = "/users/$userId/playlists/$playlistId/tracks"
+        return coalesce(SingleFlight.requestKey("GET", "$path#stream", query)) { priority ->
+            val sent = projectionStats.sample(projection, query)
+            executeStreaming(priority, { response ->
+                measure(projection, sent, { it.items.size }) {
+                    PagerStreamDecoder.decodePlaylistTracks(response)
+                }
+            }) {
+                getPlaylistTracksResponse(userId, playlistId, sent)
+            }
+        }
+    }
+
+    suspend fun createPlaylist(userId: String, body: Map<String, Any>): Playlist =
+        execute { createPlaylist(userId, body) }
+
+    suspend fun addTracksToPlaylist(
+        playlistId: String,
+        queryParameters: Map<String, Any>,
+        body: Map<String, Any>
+    ): SnapshotId? = execute { addTracksToPlaylist(playlistId, queryParameters, body) }
+
+    suspend fun changePlaylistDetails(playlistId: String, body: Map<String, Any>): Result? =
+        execute { changePlaylistDetails(playlistId, body) }
+
+    suspend fun followPlaylist(playlistId: String): Result? = execute { followPlaylist(playlistId) }
+
+    suspend fun unfollowPlaylist(playlistId: String): Result? =
+        execute { unfollowPlaylist(playlistId) }
+
+    suspend fun uploadImageToPlaylist(
+        playlistId: String,
+        contentType: String,
+        image: RequestBody
+    ): Any? = execute { uploadImageToPlaylist(playlistId, contentType, image) }
+
+    /**********
+     * Albums *
+     **********/
+
+    suspend fun getAlbum(albumId: String): Album = get("/albums/$albumId") { getAlbum(albumId) }
+
+    /**
+     * Same album as [getAlbum], batched with other lookups made at the same time.
+     */
+    suspend fun loadAlbum(albumId: String): Album = albumLoader.load(albumId)
+
+    suspend fun getAlbumTracks(albumId: String, options: Map<String, Any>): Pager<Track> =
+        get("/albums/$albumId/tracks", options) { getAlbumTracks(albumId, options) }
+
+    /***********
+     * Artists *
+     ***********/
+
+    suspend fun getArtist(artistId: String): Artist =
+        get("/artists/$artistId") { getArtist(artistId) }
+
+    /**
+     * Same artist as [getArtist], batched with other lookups made at the same time.
+     */
+    suspend fun loadArtist(artistId: String): Artist = artistLoader.load(artistId)
+
+    suspend fun getArtistAlbums(artistId: String, options: Map<String, Any>): Pager<Album> =
+        get("/artists/$artistId/albums", options) { getArtistAlbums(artistId, options) }
+
+    suspend fun getArtistTopTrack(artistId: String): Tracks =
+        get("/artists/$artistId/top-tracks") { getArtistTopTrack(artistId) }
+
+    /***********
+     * Library *
+     ***********/
+
+    suspend fun getMySavedTracks(options: Map<String, Any>): Pager<SavedTrack> =
+        get("/me/tracks", options) { getMySavedTracks(options) }
+
+    suspend fun getMySavedTrackParcelables(options: Map<String, Any>): Pager<TrackParcelable> =
+        getStreaming("/me/tracks", options, PagerStreamDecoder::decodeSavedTracks) {
+            getMySavedTracksResponse(options)
+        }
+
+    suspend fun containsMySavedTracks(ids: String): Array<Boolean> =
+        get("/me/tracks/contains", mapOf("ids" to ids)) { containsMySavedTracks(ids) }
+
+    suspend fun addToMySavedTracks(ids: String): Result? = execute { addToMySavedTracks(ids) }
+
+    suspend fun removeFromMySavedTracks(ids: String): Result? =
+        execute { removeFromMySavedTracks(ids) }
+
+    suspend fun getMySavedAlbums(options: Map<String, Any>): Pager<SavedAlbum> =
+        get("/me/albums", options) { getMySavedAlbums(options) }
+
+    suspend fun getMySavedAlbumParcelables(options: Map<String, Any>): Pager<AlbumParcelable> =
+        getStreaming("/me/albums", options, PagerStreamDecoder::decodeSavedAlbums) {
+            getMySavedAlbumsResponse(options)
+        }
+
+    suspend fun containsMySavedAlbums(ids: String): Array<Boolean> =
+        get("/me/albums/contains", mapOf("ids" to ids)) { containsMySavedAlbums(ids) }
+
+    suspend fun addToMySavedAlbums(ids: String): Result? = execute { addToMySavedAlbums(ids) }
+
+    suspend fun removeFromMySavedAlbums(ids: String): Result? =
+        execute { removeFromMySavedAlbums(ids) }
+
+    /**********
+     * Follow *
+     **********/
+
+    suspend fun getFollowedArtists(options: Map<String, Any>): ArtistsCursorPager =
+        get("/me/following?type=artist", options) { getFollowedArtists(options) }
+
+    suspend fun followArtists(ids: String): Result? = execute { followArtists(ids) }
+
+    suspend fun unfollowArtists(ids: String): Result? = execute { unfollowArtists(ids) }
+
+    suspend fun isFollowingArtists(ids: String): Array<Boolean> =
+        get("/me/following/contains?type=artist", mapOf("ids" to ids)) {
+            isFollowingArtists(ids)
+        }
+
+    /**********
+     * Search *
+     **********/
+
+    suspend fun searchTracks(q: String, options: Map<String, Any>): TracksPager =
+        get("/search?type=track", options + ("q" to q)) { searchTracks(q, options) }
+
+    suspend fun searchArtists(q: String, options: Map<String, Any>): ArtistsPager =
+        get("/search?type=artist", options + ("q" to q)) { searchArtists(q, options) }
+
+    suspend fun searchAlbums(q: String, options: Map<String, Any>): AlbumsPager =
+        get("/search?type=album", options + ("q" to q)) { searchAlbums(q, options) }
+
+    suspend fun searchPlaylists(q: String, options: Map<String, Any>): PlaylistsPager =
+        get("/search?type=playlist", options + ("q" to q)) { searchPlaylists(q, options) }
+
+    /*******************
+     * Personalization *
+     *******************/
+
+    suspend fun getTopArtists(options: Map<String, Any>): Pager<Artist> =
+        get("/me/top/artists", options) { getTopArtists(options) }
+
+    suspend fun getTopTracks(options: Map<String, Any>): Pager<Track> =
+        get("/me/top/tracks", options) { getTopTracks(options) }
+
+    /**********
+     * Player *
+     **********/
+
+    suspend fun getAvailableDevice(): Devices =
+        get("/me/player/devices", player = true) { availableDevice }
+
+    suspend fun getUserQueue(): QueueTrack = get("/me/player/queue", player = true) { userQueue }
+
+    suspend fun playUri(deviceId: String?, body: TrackToPlayPosition): Result? =
+        executePlayer { playUri(deviceId, body) }
+
+    suspend fun resume(deviceId: String?): Result? = executePlayer { resume(deviceId) }
+
+    suspend fun pause(deviceId: String?): Result? = executePlayer { pause(deviceId) }
+
+    suspend fun skipNext(deviceId: String?): Result? = executePlayer { skipNext(deviceId) }
+
+    suspend fun skipPrevious(deviceId: String?): Result? = executePlayer { skipPrevious(deviceId) }
+
+    suspend fun addToQueue(uri: String, deviceId: String?): Result? =
+        executePlayer { addToQueue(uri, deviceId) }
+
+    /**
+     * Reads share one request and one parsed result with any identical read already in flight.
+     */
+    private suspend fun <T> get(
+        path: String,
+        query: Map<String, Any> = emptyMap(),
+        player: Boolean = false,
+        block: SpotifyService.() -> T
+    ): T = coalesce(SingleFlight.requestKey("GET", path, query)) { priority ->
+        if (player) executePlayer(block) else execute(scheduler, dispatcher, priority, block)
+    }
+
+    /**
+     * Like [get], for responses that [decode] reads while the body streams in. Streamed reads
+     * are keyed apart from the plain model reads of the same path, since their results differ.
+     */
+    private suspend fun <T> getStreaming(
+        path: String,
+        query: Map<String, Any>,
+        decode: (Response) -> T,
+        block: SpotifyService.() -> Response
+    ): T = coalesce(SingleFlight.requestKey("GET", "$path#stream", query)) { priority ->
+        executeStreaming(priority, decode, block)
+    }
+
+    private suspend fun <T> executeStreaming(
+        priority: SharedPriority,
+        decode: (Response) -> T,
+        block: SpotifyService.() -> Response
+    ): T = execute(scheduler, dispatcher, priority) {
+        val response = block()
+        try {
+            decode(response)
+        } catch (e: IOException) {
+            throw RetrofitError.networkError(response.url, e)
+        }
+    }
+
+    /**
+     * Runs [call] and records the bytes it read from the network against [projection].
+     * A streamed body is read by its decoder, so that is what [call] has to cover.
+     */
+    private inline fun <T> measure(
+        projection: FieldProjection,
+        query: Map<String, Any>,
+        items: (T) -> Int,
+        call: () -> T
+    ): T {
+        val before = ResponseBytes.current()
+        val result = call()
+        projectionStats.record(projection, query, ResponseBytes.current() - before, items(result))
+        return result
+    }
+
+    /**
+     * Runs [call] through [singleFlight] under [key]. Callers that join it raise the priority
+     * it is scheduled with to their own.
+     */
+    private suspend fun <T> coalesce(key: String, call: suspend (SharedPriority) -> T): T {
+        val priority = RequestPriority.current()
+        sharedPriorities[key]?.raise(priority)
+        return singleFlight.execute(key) {
+            val shared = SharedPriority(priority)
+            sharedPriorities[key] = shared
+            try {
+                call(shared)
+            } finally {
+                sharedPriorities.remove(key, shared)
+            }
+        }
+    }
+
+    private suspend fun <T> execute(block: SpotifyService.() -> T): T =
+        execute(scheduler, dispatcher, SharedPriority(RequestPriority.current()), block)
+
+    /**
+     * Player commands are what the user is waiting for, whoever sends them.
+     */
+    private suspend fun <T> executePlayer(block: SpotifyService.() -> T): T {
+        val priority = SharedPriority(RequestPriority.INTERACTIVE)
+        return execute(playerScheduler, playerDispatcher, priority, block)
+    }
+
+    private suspend fun <T> execute(
+        scheduler: RequestScheduler,
+        dispatcher: CoroutineDispatcher,
+        priority: SharedPriority,
+        block: SpotifyService.() -> T
+    ): T {
+        return scheduler.schedule(priority) { attempt ->
+            val handle = CallHandle()
+            coroutineScope {
+                // The thread interrupt does not reach a blocked socket read; aborting the call does.
+                val watcher = launch(start = CoroutineStart.UNDISPATCHED) {
+                    try {
+                        awaitCancellation()
+                    } finally {
+                        handle.cancel()
+                    }
+                }
+                try {
+                    runInterruptible(dispatcher) {
+                        CallHandle.with(handle) {
+                            RequestAttempt.with(attempt) {
+                                val before = ResponseBytes.current()
+                                try {
+                                    spotifyService.block()
+                                } catch (e: RetrofitError) {
+                                    if (handle.isCancelled) {
+                                        cancellationStats.record(ResponseBytes.current() - before)
+                                    }
+                                    throw SpotifyError.fromRetrofitError(e)
+                                } finally {
+                                    handle.finish()
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    watcher.cancel()
+                }
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * Most ids the multi-id endpoints accept in one request.
+         */
+        const val MAX_ALBUM_IDS = 20
+        const val MAX_ARTIST_IDS = 50
+    }
+}
@@ -24,6 +24,8 @@ import com.adgutech.adomusic.remote.api.spotify.models.ErrorDetails;
 import com.adgutech.adomusic.remote.api.spotify.models.ErrorResponse;
 
 import retrofit.RetrofitError;
+import retrofit.client.Header;
+import retrofit.client.Response;
 
 /**
  * This object wraps error responses from the Web API
@@ -55,6 +57,18 @@ import retrofit.RetrofitError;
  */
 public class SpotifyError extends Exception {
 
+    /**
+     * HTTP status returned by the Web API when the app exceeded its rate limit.
+     */
+    public static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Wait applied when a 429 response comes without a usable Retry-After header.
+     */
+    public static final long DEFAULT_RETRY_AFTER_MILLIS = 1000L;
+
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
     private final RetrofitError mRetrofitError;
     private final ErrorDetails mErrorDetails;
 
@@ -94,6 +108,52 @@ public class SpotifyError extends Exception {
         return mRetrofitError;
     }
 
+    /**
+     * @return HTTP status of the failed request, or -1 if no response was received.
+     */
+    public int getStatus() {
+        Response response = mRetrofitError != null ? mRetrofitError.getResponse() : null;
+        return response != null ? response.getStatus() : -1;
+    }
+
+    /**
+     * @return true if the Web API rejected the request because of rate limiting (HTTP 429).
+     */
+    public boolean isRateLimited() {
+        return getStatus() == STATUS_TOO_MANY_REQUESTS;
+    }
+
+    /**
+     * Whether sending the same request again later may succeed: network failures, expired
+     * tokens, rate limiting and server errors. Other client errors will fail the same way.
+     */
+    public boolean isRetryable() {
+        int status = getStatus();
+        return status == -1 || status == 401 || status == 408
+                || status == STATUS_TOO_MANY_REQUESTS || status >= 500;
+    }
+
+    /**
+     * @return How long to wait before sending requests again, taken from the
+     * Retry-After header (in seconds) of a 429 response.
+     */
+    public long getRetryAfterMillis() {
+        Response response = mRetrofitError != null ? mRetrofitError.getResponse() : null;
+        if (response == null || response.getHeaders() == null) {
+            return DEFAULT_RETRY_AFTER_MILLIS;
+        }
+        for (Header header : response.getHeaders()) {
+            if (HEADER_RETRY_AFTER.equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+                try {
+                    return Math.max(0L, Long.parseLong(header.getValue().trim()) * 1000L);
+                } catch (NumberFormatException e) {
+                    return DEFAULT_RETRY_AFTER_MILLIS;
+                }
+            }
+        }
+        return DEFAULT_RETRY_AFTER_MILLIS;
+    }
+
     /**
      * @return true if there are {@link ErrorDetails}
      * associated with this error. False otherwise.
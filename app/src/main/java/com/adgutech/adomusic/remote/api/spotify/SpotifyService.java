@@ -61,6 +61,7 @@ import java.util.Map;
 
 import okhttp3.RequestBody;
 import retrofit.Callback;
+import retrofit.client.Response;
 import retrofit.http.Body;
 import retrofit.http.DELETE;
 import retrofit.http.GET;
@@ -70,6 +71,7 @@ import retrofit.http.PUT;
 import retrofit.http.Path;
 import retrofit.http.Query;
 import retrofit.http.QueryMap;
+import retrofit.http.Streaming;
 
 public interface SpotifyService {
 
@@ -84,6 +86,12 @@ public interface SpotifyService {
      */
     String OFFSET = "offset";
 
+    /**
+     * The last object id of the previous page, for cursor-based paging such as
+     * {@code /me/following}. Returned as {@code cursors.after}.
+     */
+    String AFTER = "after";
+
     /**
      * A comma-separated list of keywords that will be used to filter the response.
      * Valid values are: {@code album}, {@code single}, {@code appears_on}, {@code compilation}
@@ -326,6 +334,18 @@ public interface SpotifyService {
     @GET("/playlists/{playlist_id}")
     Playlist getPlaylist(@Path("playlist_id") String playlistId);
 
+    /**
+     * Get a playlist owned by a Spotify user.
+     *
+     * @param playlistId The Spotify ID for the playlist.
+     * @param options    Optional parameters. For list of supported parameters see
+     *                   <a href="https://developer.spotify.com/web-api/get-playlist/">endpoint documentation</a>
+     * @return Requested Playlist.
+     * @see <a href="https://developer.spotify.com/web-api/get-playlist/">Get a Playlist</a>
+     */
+    @GET("/playlists/{playlist_id}")
+    Playlist getPlaylist(@Path("playlist_id") String playlistId, @QueryMap Map<String, Object> options);
+
     /**
      * Get full details of the tracks of a playlist owned by a Spotify user.
      *
@@ -352,6 +372,19 @@ public interface SpotifyService {
     @GET("/users/{user_id}/playlists/{playlist_id}/tracks")
     Pager<PlaylistTrack> getPlaylistTracks(@Path("user_id") String userId, @Path("playlist_id") String playlistId, @QueryMap Map<String, Object> options);
 
+    /**
+     * Same request as {@link #getPlaylistTracks(String, String, Map)}, with the body left
+     * unread so it can be decoded while it streams in.
+     *
+     * @param userId     The user's Spotify user ID.
+     * @param playlistId The Spotify ID for the playlist.
+     * @param options    Optional parameters.
+     * @return The raw response, to be closed by the caller
+     */
+    @Streaming
+    @GET("/users/{user_id}/playlists/{playlist_id}/tracks")
+    Response getPlaylistTracksResponse(@Path("user_id") String userId, @Path("playlist_id") String playlistId, @QueryMap Map<String, Object> options);
+
     /**
      * Get full details of the tracks of a playlist owned by a Spotify user.
      *
@@ -420,6 +453,18 @@ public interface SpotifyService {
     @POST("/playlists/{playlist_id}/tracks")
     void addTracksToPlaylist(@Path("playlist_id") String playlistId, @QueryMap Map<String, Object> queryParameters, @Body Map<String, Object> body, Callback<Pager<PlaylistTrack>> callback);
 
+    /**
+     * Add tracks to a playlist
+     *
+     * @param playlistId      The playlist's Id
+     * @param queryParameters Query parameters
+     * @param body            The body parameters
+     * @return A snapshot ID (the version of the playlist)
+     * @see <a href="https://developer.spotify.com/web-api/add-tracks-to-playlist/">Add Tracks to a Playlist</a>
+     */
+    @POST("/playlists/{playlist_id}/tracks")
+    SnapshotId addTracksToPlaylist(@Path("playlist_id") String playlistId, @QueryMap Map<String, Object> queryParameters, @Body Map<String, Object> body);
+
     /**
      * Remove one or more tracks from a user’s playlist.
      *
@@ -589,6 +634,22 @@ public interface SpotifyService {
             Callback<Object> callback
     );
 
+    /**
+     * Add Custom Playlist Cover Image
+     *
+     * @param playlistId  The Spotify ID of the playlist.
+     * @param contentType The Content Type header. example: <code>"application/json"</code>
+     * @param image       Base64 encoded JPEG image data, maximum payload size is 256 KB.
+     * @return An empty result
+     * @see <a href="https://developer.spotify.com/documentation/web-api/reference/upload-custom-playlist-cover">Add Custom Playlist Cover Image</a>
+     */
+    @PUT("/playlists/{playlist_id}/images")
+    Object uploadImageToPlaylist(
+            @Path("playlist_id") String playlistId,
+            @Header("Content-Type") String contentType,
+            @Body RequestBody image
+    );
+
     /**********
      * Albums *
      **********/
@@ -1155,6 +1216,17 @@ public interface SpotifyService {
     @GET("/me/tracks")
     Pager<SavedTrack> getMySavedTracks(@QueryMap Map<String, Object> options);
 
+    /**
+     * Same request as {@link #getMySavedTracks(Map)}, with the body left unread so it can
+     * be decoded while it streams in.
+     *
+     * @param options Optional parameters.
+     * @return The raw response, to be closed by the caller
+     */
+    @Streaming
+    @GET("/me/tracks")
+    Response getMySavedTracksResponse(@QueryMap Map<String, Object> options);
+
     /**
      * Check if one or more tracks is already saved in the current Spotify user’s “Your Music” library.
      *
@@ -1255,6 +1327,17 @@ public interface SpotifyService {
     @GET("/me/albums")
     Pager<SavedAlbum> getMySavedAlbums(@QueryMap Map<String, Object> options);
 
+    /**
+     * Same request as {@link #getMySavedAlbums(Map)}, with the body left unread so it can
+     * be decoded while it streams in.
+     *
+     * @param options Optional parameters.
+     * @return The raw response, to be closed by the caller
+     */
+    @Streaming
+    @GET("/me/albums")
+    Response getMySavedAlbumsResponse(@QueryMap Map<String, Object> options);
+
     /**
      * Check if one or more albums is already saved in the current Spotify user’s “Your Music” library.
      *
@@ -1878,6 +1961,21 @@ public interface SpotifyService {
     @POST("/me/player/previous")
     void skipPrevious(@Query("device_id") String deviceId, Callback<Result> callback);
 
+    @POST("/me/player/play")
+    Result playUri(@Query("device_id") String deviceId, @Body TrackToPlayPosition body);
+
+    @POST("/me/player/play")
+    Result resume(@Query("device_id") String deviceId);
+
+    @POST("/me/player/pause")
+    Result pause(@Query("device_id") String deviceId);
+
+    @POST("/me/player/next")
+    Result skipNext(@Query("device_id") String deviceId);
+
+    @POST("/me/player/previous")
+    Result skipPrevious(@Query("device_id") String deviceId);
+
     /**
      * Get the list of objects that make up the user's queue.
      *
@@ -1900,4 +1998,17 @@ public interface SpotifyService {
      */
     @POST("/me/player/queue")
     void addToQueue(@Query("uri") String uri, @Query("device_id") String deviceId, Callback<Object> callback);
+
+    /**
+     * Add an item to be played next in the user's current playback queue.
+     * This API only works for users who have Spotify Premium.
+     *
+     * @param uri      The uri of the item to add to the queue. Must be a track or an episode uri.
+     * @param deviceId The id of the device this command is targeting.
+     *                 If not supplied, the user's currently active device is the target.
+     * @return An empty result
+     * @see <a href="https://developer.spotify.com/documentation/web-api/reference/add-to-queue">Add Item to Playback Queue</a>
+     */
+    @POST("/me/player/queue")
+    Result addToQueue(@Query("uri") String uri, @Query("device_id") String deviceId);
 }
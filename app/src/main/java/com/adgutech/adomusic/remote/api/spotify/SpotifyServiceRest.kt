@@ -20,13 +20,10 @@
 
 package com.adgutech.adomusic.remote.api.spotify
 
-import com.adgutech.adomusic.remote.preferences.Preferences
-
 /**
  * Created by Adolfo Gutierrez on 05/30/2025.
  */
 
-fun provideSpotifyRest(preference: Preferences, spotifyApi: SpotifyApi): SpotifyService {
-    spotifyApi.setAccessToken(preference.accessToken)
+fun provideSpotifyRest(spotifyApi: SpotifyApi): SpotifyService {
     return spotifyApi.service
 }
\ No newline at end of file
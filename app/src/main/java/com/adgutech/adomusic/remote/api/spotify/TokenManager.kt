@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.future.await
+import kotlinx.coroutines.launch
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * An OAuth access token and the wall-clock time, in milliseconds, it stops being accepted.
+ */
+data class AccessToken(val value: String, val expiresAtMillis: Long) {
+
+    fun isExpired(nowMillis: Long): Boolean = nowMillis >= expiresAtMillis
+}
+
+/**
+ * Obtains a fresh [AccessToken], e.g. by running the authorization flow again or by
+ * calling a token endpoint. Throws when no token can be obtained.
+ */
+fun interface TokenRenewer {
+    suspend fun renew(): AccessToken
+}
+
+/**
+ * Keeps the Web API access token in memory and renews it before it expires.
+ *
+ * [awaitAccessToken] is what the request interceptor calls: while the token is valid it is
+ * a single volatile read. Requests are held only when the token has expired and a renewal
+ * is in flight, and only until that renewal finishes or [awaitTimeoutMillis] passes.
+ *
+ * A renewal is scheduled [renewBeforeMillis] ahead of every token's expiry, and concurrent
+ * triggers share it. After a failed renewal, expired-token requests do not start another one
+ * for [retryDelayMillis].
+ */
+class TokenManager(
+    private val renewer: TokenRenewer,
+    private val scope: CoroutineScope,
+    private val renewBeforeMillis: Long = DEFAULT_RENEW_BEFORE_MILLIS,
+    private val retryDelayMillis: Long = DEFAULT_RETRY_DELAY_MILLIS,
+    private val awaitTimeoutMillis: Long = DEFAULT_AWAIT_TIMEOUT_MILLIS,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private val lock = Any()
+    private val listeners = CopyOnWriteArrayList<(AccessToken) -> Unit>()
+
+    @Volatile
+    private var token: AccessToken? = null
+
+    @Volatile
+    private var renewal: CompletableFuture<AccessToken?>? = null
+
+    private var scheduledRenewal: Job? = null
+    private var lastFailureMillis = Long.MIN_VALUE
+
+    /**
+     * Bumped by [clear]; a renewal started before that finishes without installing its token.
+     */
+    private var generation = 0
+
+    val accessToken: AccessToken? get() = token
+
+    val isRenewing: Boolean get() = renewal != null
+
+    fun hasValidToken(): Boolean = token?.isExpired(clock()) == false
+
+    /**
+     * Called with every new token, e.g. to persist it.
+     */
+    fun addListener(listener: (AccessToken) -> Unit) {
+        listeners.add(listener)
+    }
+
+    /**
+     * Installs [newToken], notifies listeners and schedules its renewal.
+     */
+    fun setToken(newToken: AccessToken) {
+        synchronized(lock) {
+            if (!install(newToken)) return
+        }
+        listeners.forEach { it(newToken) }
+    }
+
+    /**
+     * Like [setToken], without notifying listeners; for a token read back from storage.
+     */
+    fun restore(storedToken: AccessToken) {
+        synchronized(lock) {
+            token = storedToken
+            scheduleRenewal(storedToken)
+        }
+    }
+
+    /**
+     * Forgets the token. A renewal in flight is abandoned: its callers get null, and whatever
+     * it obtains is neither installed nor passed to listeners.
+     */
+    fun clear() {
+        val abandoned = synchronized(lock) {
+            token = null
+            scheduledRenewal?.cancel()
+            scheduledRenewal = null
+            generation++
+            lastFailureMillis = Long.MIN_VALUE
+            renewal.also { renewal = null }
+        }
+        abandoned?.complete(null)
+    }
+
+    /**
+     * The token to send with a request. Blocks only while the token has expired and a renewal
+     * is in flight. Returns null when no token was ever set.
+     */
+    fun awaitAccessToken(): String? {
+        val current = token ?: return null
+        if (!current.isExpired(clock())) return current.value
+
+        val pending = renewal ?: renewAfterFailureDelay() ?: return current.value
+        try {
+            pending.get(awaitTimeoutMillis, TimeUnit.MILLISECONDS)
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        } catch (e: TimeoutException) {
+            // Send what we have; the request fails with 401 at worst.
+        } catch (e: ExecutionException) {
+            // Renewal failures are reported as a null result, never thrown.
+        }
+        return token?.value
+    }
+
+    /**
+     * Renews the token now, joining a renewal already in flight.
+     *
+     * @return The new token, or null if the renewal failed.
+     */
+    suspend fun renew(): AccessToken? = renewAsync().await()
+
+    /**
+     * Starts a renewal unless one is in flight, and returns the future of the one that runs.
+     */
+    fun renewAsync(): CompletableFuture<AccessToken?> {
+        synchronized(lock) {
+            renewal?.let { return it }
+            val future = CompletableFuture<AccessToken?>()
+            val startedIn = generation
+            renewal = future
+            scope.launch {
+                val renewed = try {
+                    renewer.renew()
+                } catch (e: CancellationException) {
+                    finishRenewal(future, startedIn, null)
+                    throw e
+                } catch (e: Exception) {
+                    null
+                }
+                finishRenewal(future, startedIn, renewed)
+            }
+            return future
+        }
+    }
+
+    private fun finishRenewal(
+        future: CompletableFuture<AccessToken?>,
+        startedIn: Int,
+        renewed: AccessToken?
+    ) {
+        val installed = synchronized(lock) {
+            // Cleared since it started: the future was already completed with null.
+            if (startedIn != generation) return
+            if (renewed == null) {
+                lastFailureMillis = clock()
+            }
+            renewal = null
+            renewed != null && install(renewed)
+        }
+        if (renewed != null && installed) {
+            listeners.forEach { it(renewed) }
+        }
+        future.complete(renewed)
+    }
+
+    private fun renewAfterFailureDelay(): CompletableFuture<AccessToken?>? {
+        val canRetry = synchronized(lock) {
+            lastFailureMillis == Long.MIN_VALUE || clock() - lastFailureMillis >= retryDelayMillis
+        }
+        return if (canRetry) renewAsync() else null
+    }
+
+    /**
+     * Must be called holding [lock].
+     *
+     * @return Whether [newToken] replaced a different token.
+     */
+    private fun install(newToken: AccessToken): Boolean {
+        if (newToken == token) return false
+        token = newToken
+        scheduleRenewal(newToken)
+        return true
+    }
+
+    /**
+     * Must be called holding [lock].
+     */
+    private fun scheduleRenewal(forToken: AccessToken) {
+        scheduledRenewal?.cancel()
+        scheduledRenewal = scope.launch {
+            delay(forToken.expiresAtMillis - renewBeforeMillis - clock())
+            renewAsync()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_RENEW_BEFORE_MILLIS = 5 * 60 * 1000L
+        const val DEFAULT_RETRY_DELAY_MILLIS = 30 * 1000L
+        const val DEFAULT_AWAIT_TIMEOUT_MILLIS = 30 * 1000L
+    }
+}
@@ -23,12 +23,15 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 import java.util.Map;
 
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#album-object-full">Album object model</a>
  */
+@GenerateTypeAdapter
 public class Album extends AlbumSimple implements Parcelable {
     public static final Creator<Album> CREATOR = new Creator<Album>() {
         public Album createFromParcel(Parcel source) {
@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 import java.util.Map;
 
+@GenerateTypeAdapter
 public class AlbumSimple implements Parcelable {
     public static final Creator<AlbumSimple> CREATOR = new Creator<AlbumSimple>() {
         public AlbumSimple createFromParcel(Parcel source) {
@@ -23,8 +23,11 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 
+@GenerateTypeAdapter
 public class Albums implements Parcelable {
     public static final Creator<Albums> CREATOR = new Creator<Albums>() {
         public Albums createFromParcel(Parcel source) {
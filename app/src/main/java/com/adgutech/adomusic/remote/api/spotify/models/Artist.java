@@ -22,11 +22,14 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 
 import android.os.Parcel;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#artist-object-full">Artist object model</a>
  */
+@GenerateTypeAdapter
 public class Artist extends ArtistSimple {
     public static final Creator<Artist> CREATOR = new Creator<Artist>() {
         public Artist createFromParcel(Parcel source) {
@@ -23,8 +23,11 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.Map;
 
+@GenerateTypeAdapter
 public class ArtistSimple implements Parcelable {
     public static final Creator<ArtistSimple> CREATOR = new Creator<ArtistSimple>() {
         public ArtistSimple createFromParcel(Parcel source) {
@@ -23,8 +23,11 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 
+@GenerateTypeAdapter
 public class Artists implements Parcelable {
     public static final Creator<Artists> CREATOR = new Creator<Artists>() {
         public Artists createFromParcel(Parcel source) {
@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class ArtistsCursorPager implements Parcelable {
     public static final Creator<ArtistsCursorPager> CREATOR = new Creator<ArtistsCursorPager>() {
         public ArtistsCursorPager createFromParcel(Parcel source) {
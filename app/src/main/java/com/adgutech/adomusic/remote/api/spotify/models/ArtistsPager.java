@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class ArtistsPager implements Parcelable {
     public static final Creator<ArtistsPager> CREATOR = new Creator<ArtistsPager>() {
         public ArtistsPager createFromParcel(Parcel source) {
@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#audio-features-object">Audio Features Object</a>
  */
+@GenerateTypeAdapter
 public class AudioFeaturesTrack implements Parcelable {
 
     public static final Creator<AudioFeaturesTrack> CREATOR = new Creator<AudioFeaturesTrack>() {
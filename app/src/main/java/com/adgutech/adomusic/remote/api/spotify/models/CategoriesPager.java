@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class CategoriesPager implements Parcelable {
     public static final Creator<CategoriesPager> CREATOR = new Creator<CategoriesPager>() {
         public CategoriesPager createFromParcel(Parcel source) {
@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class Copyright implements Parcelable {
     public static final Creator<Copyright> CREATOR = new Creator<Copyright>() {
         public Copyright createFromParcel(Parcel source) {
@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#cursor-object">Cursor</a>
  */
+@GenerateTypeAdapter
 public class Cursor implements Parcelable {
     public static final Creator<Cursor> CREATOR = new Creator<Cursor>() {
         public Cursor createFromParcel(Parcel source) {
@@ -23,6 +23,8 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +33,7 @@ import java.util.List;
  *
  * @param <T> expected object that is paged
  */
+@GenerateTypeAdapter
 public class CursorPager<T> implements Parcelable {
     public static final Creator<CursorPager> CREATOR = new Creator<CursorPager>() {
         public CursorPager createFromParcel(Parcel source) {
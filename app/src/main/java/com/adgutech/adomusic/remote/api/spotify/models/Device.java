@@ -26,6 +26,9 @@ import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class Device implements Parcelable {
     public static final Creator<Device> CREATOR = new Creator<Device>() {
         @Override
@@ -25,8 +25,11 @@ import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 
+@GenerateTypeAdapter
 public class Devices implements Parcelable {
     public static final Creator<Devices> CREATOR = new Creator<Devices>() {
         @Override
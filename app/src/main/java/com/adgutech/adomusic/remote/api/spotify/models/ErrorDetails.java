@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#error-object">Error object model</a>
  */
+@GenerateTypeAdapter
 public class ErrorDetails implements Parcelable {
     public static final Creator<ErrorDetails> CREATOR = new Creator<ErrorDetails>() {
         public ErrorDetails createFromParcel(Parcel source) {
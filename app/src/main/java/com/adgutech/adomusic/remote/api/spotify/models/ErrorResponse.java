@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class ErrorResponse implements Parcelable {
     public static final Creator<ErrorResponse> CREATOR = new Creator<ErrorResponse>() {
         public ErrorResponse createFromParcel(Parcel source) {
@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class FeaturedPlaylists implements Parcelable {
     public static final Creator<FeaturedPlaylists> CREATOR = new Creator<FeaturedPlaylists>() {
         public FeaturedPlaylists createFromParcel(Parcel source) {
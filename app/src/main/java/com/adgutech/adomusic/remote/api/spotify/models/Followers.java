@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#followers-object">Followers</a>
  */
+@GenerateTypeAdapter
 public class Followers implements Parcelable {
     public static final Creator<Followers> CREATOR = new Creator<Followers>() {
         public Followers createFromParcel(Parcel source) {
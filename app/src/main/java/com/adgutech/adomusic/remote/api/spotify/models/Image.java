@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#image-object">Image object model</a>
  */
+@GenerateTypeAdapter
 public class Image implements Parcelable {
     public static final Creator<Image> CREATOR = new Creator<Image>() {
         public Image createFromParcel(Parcel source) {
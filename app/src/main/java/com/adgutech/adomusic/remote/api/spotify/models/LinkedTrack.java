@@ -23,8 +23,11 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.Map;
 
+@GenerateTypeAdapter
 public class LinkedTrack implements Parcelable {
     public static final Creator<LinkedTrack> CREATOR = new Creator<LinkedTrack>() {
         public LinkedTrack createFromParcel(Parcel source) {
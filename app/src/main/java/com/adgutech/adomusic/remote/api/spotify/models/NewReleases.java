@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class NewReleases implements Parcelable {
     public static final Creator<NewReleases> CREATOR = new Creator<NewReleases>() {
         public NewReleases createFromParcel(Parcel source) {
@@ -22,9 +22,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 
 import android.os.Parcel;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#playlist-object-full">Playlist object model</a>
  */
+@GenerateTypeAdapter
 public class Playlist extends PlaylistBase {
     public static final Creator<Playlist> CREATOR = new Creator<Playlist>() {
         public Playlist createFromParcel(Parcel source) {
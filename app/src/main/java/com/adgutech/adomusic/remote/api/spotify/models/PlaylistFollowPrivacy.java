@@ -23,8 +23,10 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
 import com.google.gson.annotations.SerializedName;
 
+@GenerateTypeAdapter
 public class PlaylistFollowPrivacy implements Parcelable {
     public static final Creator<PlaylistFollowPrivacy> CREATOR = new Creator<PlaylistFollowPrivacy>() {
         public PlaylistFollowPrivacy createFromParcel(Parcel source) {
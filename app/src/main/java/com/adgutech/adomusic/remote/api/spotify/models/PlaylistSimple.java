@@ -22,9 +22,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 
 import android.os.Parcel;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#playlist-object-simplified">Playlist object model (simplified)</a>
  */
+@GenerateTypeAdapter
 public class PlaylistSimple extends PlaylistBase {
     public static final Creator<PlaylistSimple> CREATOR = new Creator<PlaylistSimple>() {
         public PlaylistSimple createFromParcel(Parcel source) {
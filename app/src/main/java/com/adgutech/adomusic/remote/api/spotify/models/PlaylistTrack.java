@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#playlist-track-object">Playlist track object model</a>
  */
+@GenerateTypeAdapter
 public class PlaylistTrack implements Parcelable {
     public static final Creator<PlaylistTrack> CREATOR = new Creator<PlaylistTrack>() {
         public PlaylistTrack createFromParcel(Parcel source) {
@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class PlaylistTracksInformation implements Parcelable {
     public static final Creator<PlaylistTracksInformation> CREATOR = new Creator<PlaylistTracksInformation>() {
         public PlaylistTracksInformation createFromParcel(Parcel source) {
@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class PlaylistsPager implements Parcelable {
     public static final Creator<PlaylistsPager> CREATOR = new Creator<PlaylistsPager>() {
         public PlaylistsPager createFromParcel(Parcel source) {
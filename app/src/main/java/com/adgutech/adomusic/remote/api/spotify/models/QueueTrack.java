@@ -25,11 +25,14 @@ import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 
 /**
  * <a href="https://developer.spotify.com/documentation/web-api/reference/get-queue">Playlist track object model</a>
  */
+@GenerateTypeAdapter
 public class QueueTrack implements Parcelable {
     public static final Creator<QueueTrack> CREATOR = new Creator<QueueTrack>() {
         @Override
@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#saved-album-object">Saved album object model</a>
  */
+@GenerateTypeAdapter
 public class SavedAlbum implements Parcelable {
     public static final Creator<SavedAlbum> CREATOR = new Creator<SavedAlbum>() {
         public SavedAlbum createFromParcel(Parcel source) {
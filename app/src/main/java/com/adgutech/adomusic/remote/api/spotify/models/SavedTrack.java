@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#saved-track-object">Saved track object model</a>
  */
+@GenerateTypeAdapter
 public class SavedTrack implements Parcelable {
     public static final Creator<SavedTrack> CREATOR = new Creator<SavedTrack>() {
         public SavedTrack createFromParcel(Parcel source) {
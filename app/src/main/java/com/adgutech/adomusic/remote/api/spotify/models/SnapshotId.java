@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class SnapshotId implements Parcelable {
     public static final Creator<SnapshotId> CREATOR = new Creator<SnapshotId>() {
         public SnapshotId createFromParcel(Parcel source) {
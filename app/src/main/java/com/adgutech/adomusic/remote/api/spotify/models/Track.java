@@ -22,11 +22,14 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 
 import android.os.Parcel;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.Map;
 
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#track-object-full">Track object model</a>
  */
+@GenerateTypeAdapter
 public class Track extends TrackSimple {
     public static final Creator<Track> CREATOR = new Creator<Track>() {
         public Track createFromParcel(Parcel source) {
@@ -5,8 +5,10 @@ import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
 import com.google.gson.annotations.SerializedName;
 
+@GenerateTypeAdapter
 public class TrackPosition implements Parcelable {
 
     @SerializedName("position")
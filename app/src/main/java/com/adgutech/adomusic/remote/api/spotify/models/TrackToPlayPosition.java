@@ -5,10 +5,12 @@ import android.os.Parcelable;
 
 import androidx.annotation.NonNull;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
 import com.google.gson.annotations.SerializedName;
 
 import java.util.List;
 
+@GenerateTypeAdapter
 public class TrackToPlayPosition implements Parcelable {
 
     @SerializedName("context_uri")
@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.ArrayList;
 import java.util.List;
 
+@GenerateTypeAdapter
 public class TrackToRemoveWithPosition implements Parcelable {
     public static final Creator<TrackToRemoveWithPosition> CREATOR = new Creator<TrackToRemoveWithPosition>() {
         public TrackToRemoveWithPosition createFromParcel(Parcel source) {
@@ -24,8 +24,11 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 
+@GenerateTypeAdapter
 public class Tracks implements Parcelable {
     public static final Creator<Tracks> CREATOR = new Creator<Tracks>() {
         public Tracks createFromParcel(Parcel source) {
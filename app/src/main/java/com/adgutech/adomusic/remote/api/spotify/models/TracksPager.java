@@ -23,6 +23,9 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
+@GenerateTypeAdapter
 public class TracksPager implements Parcelable {
     public static final Creator<TracksPager> CREATOR = new Creator<TracksPager>() {
         public TracksPager createFromParcel(Parcel source) {
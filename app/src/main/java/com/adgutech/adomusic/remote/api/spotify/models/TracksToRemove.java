@@ -23,9 +23,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.ArrayList;
 import java.util.List;
 
+@GenerateTypeAdapter
 public class TracksToRemove implements Parcelable {
     public static final Creator<TracksToRemove> CREATOR = new Creator<TracksToRemove>() {
         public TracksToRemove createFromParcel(Parcel source) {
@@ -22,9 +22,12 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 
 import android.os.Parcel;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#user-object-private">User object (private) model</a>
  */
+@GenerateTypeAdapter
 public class UserPrivate extends UserPublic {
     public static final Creator<UserPrivate> CREATOR = new Creator<UserPrivate>() {
         public UserPrivate createFromParcel(Parcel source) {
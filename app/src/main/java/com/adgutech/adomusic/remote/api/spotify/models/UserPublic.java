@@ -23,12 +23,15 @@ package com.adgutech.adomusic.remote.api.spotify.models;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter;
+
 import java.util.List;
 import java.util.Map;
 
 /**
  * <a href="https://developer.spotify.com/web-api/object-model/#user-object-public">User object (public) model</a>
  */
+@GenerateTypeAdapter
 public class UserPublic implements Parcelable {
     public static final Creator<UserPublic> CREATOR = new Creator<UserPublic>() {
         public UserPublic createFromParcel(Parcel source) {
@@ -27,12 +27,20 @@ import code.name.monkey.appthemehelper.ThemeStore
 import com.adgutech.adomusic.remote.BuildConfig
 import com.adgutech.adomusic.remote.R
 import com.adgutech.adomusic.remote.billing.BillingManager
+import com.adgutech.adomusic.remote.api.spotify.SpotifyApi
+import com.adgutech.adomusic.remote.extensions.logD
+import com.adgutech.adomusic.remote.extensions.logE
 import com.adgutech.adomusic.remote.helpers.AppRemoteHelper
+import com.adgutech.adomusic.remote.repositories.EntityCache
+import com.adgutech.adomusic.remote.repositories.ResourceCache
 import com.adgutech.adomusic.remote.ui.activities.ErrorActivity
 import com.adgutech.adomusic.remote.ui.activities.MainActivity
 import com.adgutech.commons.ui.theme.WallpaperAccentManager
+import org.koin.android.ext.android.get
 import org.koin.android.ext.koin.androidContext
 import org.koin.core.context.startKoin
+import java.io.IOException
+import kotlin.concurrent.thread
 
 class App : Application() {
 
@@ -69,6 +77,25 @@ class App : Application() {
         PreferenceManager.setDefaultValues(this, R.xml.preference_playback, false)
     }
 
+    override fun onTrimMemory(level: Int) {
+        super.onTrimMemory(level)
+        val entityCache = get<EntityCache>()
+        entityCache.onTrimMemory(level)
+        get<ResourceCache>().onTrimMemory(level)
+        // Leave the Web API telemetry of each foreground session where it can be pulled.
+        if (BuildConfig.DEBUG && level == TRIM_MEMORY_UI_HIDDEN) {
+            val spotifyApi = get<SpotifyApi>()
+            thread(name = "telemetry-dump") {
+                try {
+                    logD("Telemetry written to ${spotifyApi.dumpTelemetry()}")
+                    logD("Entity cache: ${entityCache.stats()}")
+                } catch (e: IOException) {
+                    logE("Cannot write telemetry: $e")
+                }
+            }
+        }
+    }
+
     override fun onTerminate() {
         super.onTerminate()
         billingManager.release()
@@ -21,17 +21,29 @@
 package com.adgutech.adomusic.remote.application
 
 import com.adgutech.adomusic.remote.extensions.preference
+import com.adgutech.adomusic.remote.api.spotify.AccessToken
+import com.adgutech.adomusic.remote.api.spotify.FileMutationStore
+import com.adgutech.adomusic.remote.api.spotify.HttpClientConfig
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MutationQueue
 import com.adgutech.adomusic.remote.api.spotify.SpotifyApi
+import com.adgutech.adomusic.remote.api.spotify.SpotifyAuthorizationRenewer
+import com.adgutech.adomusic.remote.api.spotify.TokenManager
 import com.adgutech.adomusic.remote.api.spotify.provideSpotifyRest
+import com.adgutech.adomusic.remote.preferences.Preferences
 import com.adgutech.adomusic.remote.repositories.*
 import com.adgutech.adomusic.remote.ui.fragments.LibraryViewModel
 import com.adgutech.adomusic.remote.ui.fragments.albums.AlbumDetailsViewModel
 import com.adgutech.adomusic.remote.ui.fragments.artists.ArtistDetailsViewModel
 import com.adgutech.adomusic.remote.ui.fragments.playlists.PlaylistDetailsViewModel
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
 import org.koin.android.ext.koin.androidContext
 import org.koin.androidx.viewmodel.dsl.viewModel
 import org.koin.dsl.bind
 import org.koin.dsl.module
+import java.io.File
 
 /**
  * Created by Adolfo Gutiérrez on 03/03/2025.
@@ -39,13 +51,62 @@ import org.koin.dsl.module
 
 private val networkModule = module {
     single {
-        SpotifyApi(get())
+        HttpClientConfig()
+    }
+    single {
+        get<HttpClientConfig>().createSharedClient()
+    }
+    single {
+        SpotifyAuthorizationRenewer()
+    }
+    single {
+        provideTokenManager(get(), get())
+    }
+    single {
+        SpotifyApi(androidContext(), get(), get(), get())
     }
     factory {
-        provideSpotifyRest(get(), get())
+        provideSpotifyRest(get())
+    }
+    single {
+        get<SpotifyApi>().coroutineService
+    }
+    single {
+        MutationQueue(
+            get(),
+            FileMutationStore(File(androidContext().filesDir, MUTATION_JOURNAL_FILE)),
+            CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        )
+    }
+    single {
+        LibraryMembership(
+            get(),
+            CoroutineScope(SupervisorJob() + Dispatchers.IO),
+            get<MutationQueue>().applied
+        )
     }
 }
 
+private const val MUTATION_JOURNAL_FILE = "pending-mutations.json"
+
+/**
+ * The token lives in memory; preferences only keep it across process restarts.
+ */
+private fun provideTokenManager(
+    preference: Preferences,
+    renewer: SpotifyAuthorizationRenewer
+): TokenManager {
+    val tokenManager = TokenManager(renewer, CoroutineScope(SupervisorJob() + Dispatchers.IO))
+    if (preference.accessToken != "access_token") {
+        tokenManager.restore(AccessToken(preference.accessToken, preference.accessTokenExpirationTime))
+    }
+    tokenManager.addListener { token ->
+        preference.accessToken = token.value
+        preference.accessTokenExpirationTime = token.expiresAtMillis
+    }
+    return tokenManager
+}
+
 private val preferenceModule = module {
     single {
         androidContext().preference
@@ -65,24 +126,57 @@ private val dataModule = module {
             get(),
             get(),
             get(),
+            get(),
+            get(),
+            get(),
+            get(),
+            get(),
+            get(),
             get()
         )
     } bind Repository::class
 
     single {
-        RealAlbumRepository(get(), get())
+        ResourceCache()
+    }
+
+    single {
+        EntityCache(maxAgeMillis = EntityCache.maxAgesFor(get<ResourceCache>()::ttlOf))
+    }
+
+    single {
+        DetailPrefetcher(get(), get(), get(), CoroutineScope(SupervisorJob() + Dispatchers.IO))
+    }
+
+    single {
+        RealLibraryStore(androidContext())
+    } bind LibraryStore::class
+
+    single {
+        LibrarySync(
+            get(),
+            get(),
+            get(),
+            get(),
+            get(),
+            CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        )
+    }
+
+    single {
+        RealAlbumRepository(get(), get(), get())
     } bind AlbumRepository::class
 
     single {
-        RealArtistRepository(get(), get())
+        RealArtistRepository(get(), get(), get())
     } bind ArtistRepository::class
 
     single {
-        RealPlayerRepository(get())
+        RealPlayerRepository(get(), get())
     } bind PlayerRepository::class
 
     single {
-        RealPlaylistRepository(get(), get())
+        RealPlaylistRepository(get(), get(), PlaylistTracksCache(), get())
     } bind PlaylistRepository::class
 
     single {
@@ -29,11 +29,23 @@ import com.adgutech.adomusic.remote.glide.trackcoverimage.TrackCoverImage
 import com.bumptech.glide.Glide
 import com.bumptech.glide.Registry
 import com.bumptech.glide.annotation.GlideModule
+import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader
+import com.bumptech.glide.load.model.GlideUrl
 import com.bumptech.glide.module.AppGlideModule
+import okhttp3.OkHttpClient
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.get
+import java.io.InputStream
 
 @GlideModule
-class RetroMusicGlideModule : AppGlideModule() {
+class RetroMusicGlideModule : AppGlideModule(), KoinComponent {
     override fun registerComponents(context: Context, glide: Glide, registry: Registry) {
+        // Cover art downloads reuse the pooled connections and threads of the Web API client.
+        registry.replace(
+            GlideUrl::class.java,
+            InputStream::class.java,
+            OkHttpUrlLoader.Factory(get<OkHttpClient>())
+        )
         registry.prepend(TrackCoverImage::class.java, Bitmap::class.java, Factory())
         registry.register(
             Bitmap::class.java,
@@ -30,6 +30,7 @@ import android.graphics.Bitmap
 import android.os.IBinder
 import androidx.core.content.ContextCompat
 import com.adgutech.adomusic.remote.R
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
 import com.adgutech.adomusic.remote.application.App
 import com.adgutech.adomusic.remote.extensions.logD
 import com.adgutech.adomusic.remote.extensions.logE
@@ -256,6 +257,7 @@ object AppRemoteHelper : KoinComponent {
     }
 
     fun addToLibrary(uri: String) {
+        get<LibraryMembership>().setUri(uri, true)
         spotifyAppRemote?.let {
             if (it.isConnected) {
                 it.userApi
@@ -267,6 +269,7 @@ object AppRemoteHelper : KoinComponent {
     }
 
     fun removeFromLibrary(uri: String) {
+        get<LibraryMembership>().setUri(uri, false)
         spotifyAppRemote?.let {
             if (it.isConnected) {
                 it.userApi
@@ -282,7 +285,10 @@ object AppRemoteHelper : KoinComponent {
             if (it.isConnected) {
                 it.userApi
                     .getLibraryState(uri)
-                    .setResultCallback { result -> callback(result.isAdded) }
+                    .setResultCallback { result ->
+                        get<LibraryMembership>().setUri(uri, result.isAdded)
+                        callback(result.isAdded)
+                    }
             }
         }
     }
@@ -32,6 +32,8 @@ import androidx.navigation.findNavController
 import com.adgutech.adomusic.remote.EXTRA_ALBUM_ID
 import com.adgutech.adomusic.remote.EXTRA_ARTIST_ID
 import com.adgutech.adomusic.remote.R
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MembershipKind
 import com.adgutech.adomusic.remote.helpers.AppRemoteHelper
 import com.adgutech.adomusic.remote.models.TrackParcelable
 import com.adgutech.adomusic.remote.repositories.RealRepository
@@ -138,9 +140,17 @@ object TrackMenuHelper : KoinComponent {
             val popupMenu = PopupMenu(activity, v)
             popupMenu.inflate(menuRes)
             val menu = popupMenu.menu
-            AppRemoteHelper.getLibraryState(track.uri) {
-                menu.findItem(R.id.action_save_to_liked_songs).isVisible = !it
-                menu.findItem(R.id.action_remove_to_liked_songs).isVisible = it
+            val showLibraryState = { isAdded: Boolean ->
+                menu.findItem(R.id.action_save_to_liked_songs).isVisible = !isAdded
+                menu.findItem(R.id.action_remove_to_liked_songs).isVisible = isAdded
+            }
+            // Usually resolved while the row was bound; ask the Spotify app otherwise.
+            val cached = TrackMenuHelper.get<LibraryMembership>()
+                .cached(MembershipKind.SAVED_TRACK, track.id)
+            if (cached != null) {
+                showLibraryState(cached)
+            } else {
+                AppRemoteHelper.getLibraryState(track.uri, showLibraryState)
             }
             popupMenu.setOnMenuItemClickListener(this)
             popupMenu.show()
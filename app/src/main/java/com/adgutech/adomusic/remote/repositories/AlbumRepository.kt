@@ -25,33 +25,37 @@ import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.helpers.SortOrder
 import com.adgutech.adomusic.remote.models.AlbumParcelable
 import com.adgutech.adomusic.remote.models.AlbumTrackParcelable
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
 import com.adgutech.adomusic.remote.api.spotify.SpotifyService
 import com.adgutech.adomusic.remote.api.spotify.models.Album
-import com.adgutech.adomusic.remote.api.spotify.models.SavedAlbum
 import com.adgutech.adomusic.remote.api.spotify.models.Track
-import com.adgutech.adomusic.remote.utils.Utils
 
 /**
  * Created by Adolfo Gutiérrez on 03/14/2025.
  */
 
 interface AlbumRepository {
-    fun getAlbum(albumId: String): Album
-    fun getAlbumTracks(albumId: String): List<AlbumTrackParcelable>
-    fun getAlbumsWithSortOrder(): List<AlbumParcelable>
-    fun getMySavedAlbums(): List<AlbumParcelable>
+    suspend fun getAlbum(albumId: String): Album
+    suspend fun getAlbumTracks(albumId: String): List<AlbumTrackParcelable>
+    suspend fun getAlbumsWithSortOrder(): List<AlbumParcelable>
+    fun sortAlbums(albums: List<AlbumParcelable>): List<AlbumParcelable>
+    suspend fun getMySavedAlbums(): List<AlbumParcelable>
+    fun savedAlbums(): PageSource<AlbumParcelable>
 }
 
 class RealAlbumRepository(
     private val context: Context,
-    private val spotifyService: SpotifyService
+    private val spotifyService: SpotifyCoroutineService,
+    private val entityCache: EntityCache
 ) : AlbumRepository {
 
-    override fun getAlbum(albumId: String): Album {
-        return spotifyService.getAlbum(albumId)
+    override suspend fun getAlbum(albumId: String): Album {
+        return entityCache.getOrLoad(DetailKind.ALBUM, albumId) {
+            spotifyService.loadAlbum(albumId)
+        }
     }
 
-    override fun getAlbumTracks(albumId: String): List<AlbumTrackParcelable> {
+    override suspend fun getAlbumTracks(albumId: String): List<AlbumTrackParcelable> {
         val trackList = arrayListOf<AlbumTrackParcelable>()
         val albumTracks = spotifyService.getAlbumTracks(albumId, getBody())
         val tracks = albumTracks.items
@@ -61,8 +65,11 @@ class RealAlbumRepository(
         return trackList
     }
 
-    override fun getAlbumsWithSortOrder(): List<AlbumParcelable> {
-        val albums = getMySavedAlbums()
+    override suspend fun getAlbumsWithSortOrder(): List<AlbumParcelable> {
+        return sortAlbums(getMySavedAlbums())
+    }
+
+    override fun sortAlbums(albums: List<AlbumParcelable>): List<AlbumParcelable> {
         return when (context.preference.albumSortOrder) {
             SortOrder.AlbumSortOrder.ALBUM_DEFAULT -> {
                 albums.sortedBy { "" }
@@ -96,16 +103,13 @@ class RealAlbumRepository(
         }
     }
 
-    override fun getMySavedAlbums(): List<AlbumParcelable> {
-        val albumList = arrayListOf<AlbumParcelable>()
-        val mySavedAlbums = spotifyService.getMySavedAlbums(getBody())
-        val albums = mySavedAlbums.items
-        for (album in albums) {
-            albumList.add(getAlbumFromSavedAlbumImpl(album))
-        }
-        return albumList
+    override suspend fun getMySavedAlbums(): List<AlbumParcelable> {
+        return savedAlbums().loadAll()
     }
 
+    override fun savedAlbums(): PageSource<AlbumParcelable> =
+        OffsetPageSource({ spotifyService.getMySavedAlbumParcelables(it) }) { it }
+
     private fun getTrackFromAlbumImpl(track: Track): AlbumTrackParcelable {
         val artistId = track.artists[0].id
         val artists = track.artists
@@ -134,39 +138,6 @@ class RealAlbumRepository(
         )
     }
 
-    private fun getAlbumFromSavedAlbumImpl(album: SavedAlbum): AlbumParcelable {
-        val addedAt = album.added_at
-        val albumType = album.album.album_type
-        val artist = album.album.artists[0].name
-        val artistId = album.album.artists[0].id
-        val artists = album.album.artists
-        val copyrights = album.album.copyrights[0].text
-        val id = album.album.id
-        val imageUrl = Utils.getImageUrl(album.album.images)
-        val name = album.album.name
-        val releaseDate = album.album.release_date
-        val releaseDatePrecision = album.album.release_date_precision
-        val trackTotal = album.album.tracks.total
-        val type = album.album.type
-        val uri = album.album.uri
-        return AlbumParcelable(
-            addedAt,
-            albumType,
-            artist,
-            artistId,
-            artists,
-            copyrights,
-            id,
-            imageUrl,
-            name,
-            releaseDate,
-            releaseDatePrecision,
-            trackTotal,
-            type,
-            uri
-        )
-    }
-
     private fun getBody(): MutableMap<String, Any> {
         val options: MutableMap<String, Any> = HashMap()
         options[SpotifyService.LIMIT] = 50
@@ -31,6 +31,7 @@ import com.adgutech.adomusic.remote.helpers.SortOrder
 import com.adgutech.adomusic.remote.models.ArtistAlbumParcelable
 import com.adgutech.adomusic.remote.models.ArtistParcelable
 import com.adgutech.adomusic.remote.models.ArtistTrackParcelable
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
 import com.adgutech.adomusic.remote.api.spotify.SpotifyService
 import com.adgutech.adomusic.remote.api.spotify.models.Album
 import com.adgutech.adomusic.remote.api.spotify.models.Artist
@@ -43,24 +44,29 @@ import com.adgutech.adomusic.remote.utils.Utils
  */
 
 interface ArtistRepository {
-    fun getArtist(artistId: String): Artist
-    fun getArtistAlbums(artistId: String): List<ArtistAlbumParcelable>
-    fun getArtistTopTrack(artistId: String): List<ArtistTrackParcelable>
-    fun getArtistsWithSortOrder(): List<ArtistParcelable>
-    fun getFollowedArtists(): List<ArtistParcelable>
-    fun getAlbumTypes(artistId: String, albumType: String): List<ArtistAlbumParcelable>
+    suspend fun getArtist(artistId: String): Artist
+    suspend fun getArtistAlbums(artistId: String): List<ArtistAlbumParcelable>
+    suspend fun getArtistTopTrack(artistId: String): List<ArtistTrackParcelable>
+    suspend fun getArtistsWithSortOrder(): List<ArtistParcelable>
+    fun sortArtists(artists: List<ArtistParcelable>): List<ArtistParcelable>
+    suspend fun getFollowedArtists(): List<ArtistParcelable>
+    fun followedArtists(): PageSource<ArtistParcelable>
+    suspend fun getAlbumTypes(artistId: String, albumType: String): List<ArtistAlbumParcelable>
 }
 
 class RealArtistRepository(
     private val context: Context,
-    private val spotifyService: SpotifyService
+    private val spotifyService: SpotifyCoroutineService,
+    private val entityCache: EntityCache
 ) : ArtistRepository {
 
-    override fun getArtist(artistId: String): Artist {
-        return spotifyService.getArtist(artistId)
+    override suspend fun getArtist(artistId: String): Artist {
+        return entityCache.getOrLoad(DetailKind.ARTIST, artistId) {
+            spotifyService.loadArtist(artistId)
+        }
     }
 
-    override fun getArtistAlbums(artistId: String): List<ArtistAlbumParcelable> {
+    override suspend fun getArtistAlbums(artistId: String): List<ArtistAlbumParcelable> {
         val albumList = arrayListOf<ArtistAlbumParcelable>()
         val options: MutableMap<String, Any> = HashMap()
         options[SpotifyService.LIMIT] = 5
@@ -72,7 +78,7 @@ class RealArtistRepository(
         return albumList
     }
 
-    override fun getArtistTopTrack(artistId: String): List<ArtistTrackParcelable> {
+    override suspend fun getArtistTopTrack(artistId: String): List<ArtistTrackParcelable> {
         val trackList = arrayListOf<ArtistTrackParcelable>()
         val artistTopTrack = spotifyService.getArtistTopTrack(artistId)
         val tracks = artistTopTrack.tracks
@@ -82,8 +88,11 @@ class RealArtistRepository(
         return trackList
     }
 
-    override fun getArtistsWithSortOrder(): List<ArtistParcelable> {
-        val artists = getFollowedArtists()
+    override suspend fun getArtistsWithSortOrder(): List<ArtistParcelable> {
+        return sortArtists(getFollowedArtists())
+    }
+
+    override fun sortArtists(artists: List<ArtistParcelable>): List<ArtistParcelable> {
         return when (context.preference.artistSortOrder) {
             SortOrder.ArtistSortOrder.ARTIST_DEFAULT -> {
                 artists.sortedBy { "" }
@@ -104,24 +113,21 @@ class RealArtistRepository(
         }
     }
 
-    override fun getFollowedArtists(): List<ArtistParcelable> {
-        val artistList = arrayListOf<ArtistParcelable>()
-        val options: MutableMap<String, Any> = HashMap()
-        options[SpotifyService.LIMIT] = 50
-        val followedArtists = spotifyService.getFollowedArtists(options)
-        val artists = followedArtists.artists.items
-        for (artist in artists) {
+    override suspend fun getFollowedArtists(): List<ArtistParcelable> {
+        return followedArtists().loadAll()
+    }
+
+    override fun followedArtists(): PageSource<ArtistParcelable> =
+        CursorPageSource({ spotifyService.getFollowedArtists(it).artists }) { artist ->
             val id = artist.id
             val name = artist.name
             val imageUrl = Utils.getImageUrl(artist.images)
             val followers = artist.followers.total
             val popularity = artist.popularity
-            artistList.add(ArtistParcelable(id, name, imageUrl, followers, popularity))
+            ArtistParcelable(id, name, imageUrl, followers, popularity)
         }
-        return artistList
-    }
 
-    override fun getAlbumTypes(artistId: String, albumType: String): List<ArtistAlbumParcelable> {
+    override suspend fun getAlbumTypes(artistId: String, albumType: String): List<ArtistAlbumParcelable> {
         val albumList = arrayListOf<ArtistAlbumParcelable>()
         val options: MutableMap<String, Any> = HashMap()
         options[SpotifyService.INCLUDE_GROUPS] = albumType
@@ -134,7 +140,7 @@ class RealArtistRepository(
         return albumList
     }
 
-    fun getArtistAlbumsTypes(artistId: String, albumType: AlbumTypeFilter): MutableList<Any> {
+    suspend fun getArtistAlbumsTypes(artistId: String, albumType: AlbumTypeFilter): MutableList<Any> {
         val albumTypeList = mutableListOf<Any>()
 
         /** Album **/
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.api.spotify.RequestPriority
+import com.adgutech.adomusic.remote.api.spotify.models.Album
+import com.adgutech.adomusic.remote.api.spotify.models.Artist
+import com.adgutech.adomusic.remote.api.spotify.models.Playlist
+import com.adgutech.adomusic.remote.extensions.logD
+import com.adgutech.adomusic.remote.models.AlbumTrackParcelable
+import com.adgutech.adomusic.remote.models.ArtistTrackParcelable
+import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Detail screens a list row opens.
+ */
+enum class DetailKind {
+    ALBUM,
+    ARTIST,
+    PLAYLIST
+}
+
+/**
+ * Warms the details of the albums, artists and playlists a library list shows, so their
+ * detail screens open from memory instead of behind a spinner.
+ *
+ * Lists report the rows on screen through [prefetchRows] when scrolling settles. The header
+ * and the first page of tracks of those rows, and of a few rows past them, are fetched one
+ * part at a time, at most [MAX_IN_FLIGHT] rows at once and at [RequestPriority.PREFETCH], so
+ * the warm-up waits for anything the user is waiting for. Rows that leave the screen before
+ * their turn are dropped. A playlist screen opened from a warmed row loads the pages after
+ * the first itself.
+ *
+ * A warmed part is handed out once by the `take` functions and only while it is younger
+ * than [MAX_AGE_MILLIS]; refreshes of an open screen go to the network as before.
+ */
+class DetailPrefetcher(
+    private val albumRepository: AlbumRepository,
+    private val artistRepository: ArtistRepository,
+    private val playlistRepository: PlaylistRepository,
+    private val scope: CoroutineScope,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private enum class Part {
+        ALBUM,
+        ALBUM_TRACKS,
+        ARTIST,
+        ARTIST_TOP_TRACKS,
+        PLAYLIST,
+        PLAYLIST_TRACKS
+    }
+
+    private data class Key(val kind: DetailKind, val id: String)
+
+    private class Entry(val value: Any, val fetchedAtMillis: Long)
+
+    private val lock = Any()
+    private val permits = Semaphore(MAX_IN_FLIGHT)
+    private val jobs = HashMap<Key, Job>()
+
+    private val entries = object : LinkedHashMap<Pair<Part, String>, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Pair<Part, String>, Entry>?): Boolean {
+            return size > MAX_ENTRIES
+        }
+    }
+
+    private val warmed = AtomicLong()
+    private val hits = AtomicLong()
+
+    /**
+     * Number of rows whose details were fetched ahead of being opened.
+     */
+    val warmedCount: Long get() = warmed.get()
+
+    /**
+     * Number of detail parts a screen took from here instead of the network.
+     */
+    val hitCount: Long get() = hits.get()
+
+    /**
+     * Warms the rows from [first] to [last] on screen and the [PREFETCH_AHEAD] rows after
+     * them, up to [MAX_PER_VIEWPORT] rows. Rows of [kind] warmed for an earlier viewport and
+     * not started yet are dropped.
+     *
+     * @param userId Owner id the playlist screens ask with, ignored for other kinds.
+     */
+    fun prefetchRows(
+        kind: DetailKind,
+        first: Int,
+        last: Int,
+        itemCount: Int,
+        userId: String = "",
+        idAt: (Int) -> String?
+    ) {
+        if (first < 0 || last < first) return
+        val end = minOf(itemCount, last + PREFETCH_AHEAD + 1)
+        val ids = (first until end).mapNotNull(idAt)
+            .filter { it.isNotBlank() }
+            .distinct()
+            .take(MAX_PER_VIEWPORT)
+        prefetch(kind, ids, userId)
+    }
+
+    fun prefetch(kind: DetailKind, ids: List<String>, userId: String = "") {
+        val keys = ids.map { Key(kind, it) }.toSet()
+        synchronized(lock) {
+            val stale = jobs.filterKeys { it.kind == kind && it !in keys }
+            stale.forEach { (key, job) ->
+                job.cancel()
+                jobs.remove(key)
+            }
+            for (key in keys) {
+                if (key in jobs || isWarm(key)) continue
+                jobs[key] = scope.launch(RequestPriority.PREFETCH) {
+                    try {
+                        permits.withPermit { warm(key, userId) }
+                    } finally {
+                        synchronized(lock) {
+                            if (jobs[key] === coroutineContext[Job]) jobs.remove(key)
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    fun takeAlbum(albumId: String): Album? = take(Part.ALBUM, albumId)
+
+    fun takeAlbumTracks(albumId: String): List<AlbumTrackParcelable>? =
+        take(Part.ALBUM_TRACKS, albumId)
+
+    fun takeArtist(artistId: String): Artist? = take(Part.ARTIST, artistId)
+
+    fun takeArtistTopTracks(artistId: String): List<ArtistTrackParcelable>? =
+        take(Part.ARTIST_TOP_TRACKS, artistId)
+
+    fun takePlaylist(playlistId: String): Playlist? = take(Part.PLAYLIST, playlistId)
+
+    /**
+     * The first page of tracks of the playlist; more follow when its next key is set.
+     */
+    fun takePlaylistTracks(playlistId: String): Page<PlaylistTrackParcelable>? =
+        take(Part.PLAYLIST_TRACKS, playlistId)
+
+    /**
+     * Forgets what was warmed for [id], e.g. after the user edited the playlist, and cancels
+     * a warm-up of it still running so it can't store what it read before the edit.
+     */
+    fun invalidate(kind: DetailKind, id: String) {
+        synchronized(lock) {
+            jobs.remove(Key(kind, id))?.cancel()
+            partsOf(kind).forEach { entries.remove(it to id) }
+        }
+    }
+
+    fun clear() {
+        synchronized(lock) {
+            jobs.values.forEach { it.cancel() }
+            jobs.clear()
+            entries.clear()
+        }
+    }
+
+    private suspend fun warm(key: Key, userId: String) {
+        val id = key.id
+        try {
+            when (key.kind) {
+                DetailKind.ALBUM -> {
+                    put(Part.ALBUM, id, albumRepository.getAlbum(id))
+                    put(Part.ALBUM_TRACKS, id, albumRepository.getAlbumTracks(id))
+                }
+                DetailKind.ARTIST -> {
+                    put(Part.ARTIST, id, artistRepository.getArtist(id))
+                    put(Part.ARTIST_TOP_TRACKS, id, artistRepository.getArtistTopTrack(id))
+                }
+                DetailKind.PLAYLIST -> {
+                    put(Part.PLAYLIST, id, playlistRepository.getPlaylist(userId, id))
+                    val firstPage = playlistRepository.getPlaylistTracksPage(userId, id)
+                    put(Part.PLAYLIST_TRACKS, id, firstPage)
+                }
+            }
+            warmed.incrementAndGet()
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            // The screen fetches it again when opened.
+            logD("Prefetch of ${key.kind} $id failed: $e")
+        }
+    }
+
+    private fun put(part: Part, id: String, value: Any) {
+        synchronized(lock) {
+            entries[part to id] = Entry(value, clock())
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T> take(part: Part, id: String): T? {
+        val entry = synchronized(lock) { entries.remove(part to id) } ?: return null
+        if (clock() - entry.fetchedAtMillis > MAX_AGE_MILLIS) return null
+        hits.incrementAndGet()
+        return entry.value as T
+    }
+
+    private fun isWarm(key: Key): Boolean {
+        val now = clock()
+        return partsOf(key.kind).all { part ->
+            entries[part to key.id]?.let { now - it.fetchedAtMillis <= MAX_AGE_MILLIS } == true
+        }
+    }
+
+    private fun partsOf(kind: DetailKind): List<Part> = when (kind) {
+        DetailKind.ALBUM -> listOf(Part.ALBUM, Part.ALBUM_TRACKS)
+        DetailKind.ARTIST -> listOf(Part.ARTIST, Part.ARTIST_TOP_TRACKS)
+        DetailKind.PLAYLIST -> listOf(Part.PLAYLIST, Part.PLAYLIST_TRACKS)
+    }
+
+    companion object {
+        /**
+         * Rows warmed at the same time.
+         */
+        const val MAX_IN_FLIGHT = 2
+
+        const val MAX_PER_VIEWPORT = 12
+        const val PREFETCH_AHEAD = 4
+        const val MAX_AGE_MILLIS = 2 * 60 * 1000L
+
+        /**
+         * Parts kept; two per row.
+         */
+        private const val MAX_ENTRIES = 60
+    }
+}
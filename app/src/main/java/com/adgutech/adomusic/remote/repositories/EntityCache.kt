@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import android.content.ComponentCallbacks2
+
+/**
+ * Albums, artists and playlists read by id, kept in memory so moving back and forth between
+ * detail screens doesn't read them again.
+ *
+ * Entries are weighted by an estimate of their size in memory, and the least recently used
+ * are evicted once more than [maxBytes] are held. An entry is served for [maxAgeMillis] of
+ * its kind at most. Artists and playlists are also read through [ResourceCache], so their
+ * ages should come from [maxAgesFor] with that cache's time to live; otherwise a
+ * revalidation started there could be answered from here with the value it found stale.
+ * [onTrimMemory] gives memory back when the system asks for it.
+ */
+class EntityCache(
+    private val maxBytes: Long = DEFAULT_MAX_BYTES,
+    private val maxAgeMillis: Map<DetailKind, Long> = DEFAULT_MAX_AGE_MILLIS,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private class Entry(val value: Any, val bytes: Long, val storedAt: Long)
+
+    /**
+     * Counters since the cache was created; [hitRate] is 0 until something is read.
+     */
+    data class Stats(
+        val hitCount: Long,
+        val missCount: Long,
+        val evictionCount: Long,
+        val entryCount: Int,
+        val sizeBytes: Long,
+        val maxBytes: Long
+    ) {
+        val hitRate: Double
+            get() {
+                val reads = hitCount + missCount
+                return if (reads == 0L) 0.0 else hitCount.toDouble() / reads
+            }
+    }
+
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+    private var size = 0L
+    private var hitCount = 0L
+    private var missCount = 0L
+    private var evictionCount = 0L
+
+    @Synchronized
+    fun <T : Any> get(kind: DetailKind, id: String, type: Class<T>): T? {
+        val key = keyOf(kind, id)
+        val entry = entries[key]
+        if (entry == null || !type.isInstance(entry.value) || isExpired(kind, entry)) {
+            if (entry != null) remove(key)
+            missCount++
+            return null
+        }
+        hitCount++
+        return type.cast(entry.value)
+    }
+
+    @Synchronized
+    fun put(kind: DetailKind, id: String, value: Any) {
+        val bytes = estimateSize(value)
+        // Something over the whole budget would only push everything else out.
+        if (bytes > maxBytes) return
+        entries.put(keyOf(kind, id), Entry(value, bytes, clock()))?.let { size -= it.bytes }
+        size += bytes
+        trimToSize(maxBytes)
+    }
+
+    /**
+     * Returns the cached [kind] with [id], or reads it with [load] and caches it.
+     */
+    inline fun <reified T : Any> getOrLoad(
+        kind: DetailKind,
+        id: String,
+        load: () -> T
+    ): T {
+        get(kind, id, T::class.java)?.let { return it }
+        return load().also { put(kind, id, it) }
+    }
+
+    @Synchronized
+    fun remove(kind: DetailKind, id: String) {
+        remove(keyOf(kind, id))
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        size = 0
+    }
+
+    @Synchronized
+    fun stats(): Stats =
+        Stats(hitCount, missCount, evictionCount, entries.size, size, maxBytes)
+
+    /**
+     * Called from `Application.onTrimMemory`. Everything goes once the app is in the
+     * background list, or while the device is critically low with the app in the foreground;
+     * half of the budget when its UI is hidden and a quarter while the device is running low.
+     * RUNNING_CRITICAL is below UI_HIDDEN, so it is matched before the thresholds under it.
+     */
+    @Suppress("DEPRECATION")
+    fun onTrimMemory(level: Int) {
+        when {
+            level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND -> clear()
+            level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN -> trimToSize(maxBytes / 2)
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> clear()
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> trimToSize(maxBytes * 3 / 4)
+        }
+    }
+
+    @Synchronized
+    private fun trimToSize(targetBytes: Long) {
+        val iterator = entries.values.iterator()
+        while (size > targetBytes && iterator.hasNext()) {
+            size -= iterator.next().bytes
+            iterator.remove()
+            evictionCount++
+        }
+    }
+
+    private fun remove(key: String) {
+        entries.remove(key)?.let { size -= it.bytes }
+    }
+
+    private fun isExpired(kind: DetailKind, entry: Entry): Boolean {
+        val maxAge = maxAgeMillis[kind] ?: return false
+        return clock() - entry.storedAt >= maxAge
+    }
+
+    /**
+     * Two bytes per character of the value's JSON, counted without building it. The object
+     * graph behind a model is larger than that, but it grows with it, which is what the
+     * budget needs.
+     */
+    private fun estimateSize(value: Any): Long =
+        ENTRY_OVERHEAD_BYTES + ModelJson.fingerprint(value).length * 2L
+
+    private fun keyOf(kind: DetailKind, id: String) = "${kind.name}/$id"
+
+    companion object {
+        const val DEFAULT_MAX_BYTES = 4L * 1024 * 1024
+        private const val ENTRY_OVERHEAD_BYTES = 256L
+
+        private const val ALBUM_MAX_AGE_MILLIS = 60 * 60 * 1000L
+
+        val DEFAULT_MAX_AGE_MILLIS = maxAgesFor { it.defaultTtlMillis }
+
+        /**
+         * Ages that keep artists and playlists no longer than [ttlOf] keeps them in
+         * [ResourceCache].
+         */
+        fun maxAgesFor(ttlOf: (CacheResource) -> Long): Map<DetailKind, Long> = mapOf(
+            DetailKind.ALBUM to ALBUM_MAX_AGE_MILLIS,
+            DetailKind.ARTIST to ttlOf(CacheResource.ARTIST),
+            DetailKind.PLAYLIST to ttlOf(CacheResource.PLAYLIST)
+        )
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import com.adgutech.adomusic.remote.models.AlbumParcelable
+import com.adgutech.adomusic.remote.models.ArtistParcelable
+import com.adgutech.adomusic.remote.models.PlaylistParcelable
+import com.adgutech.adomusic.remote.models.TrackParcelable
+import com.google.gson.Gson
+
+/**
+ * A library list kept in [LibraryStore].
+ *
+ * @param isNewestFirst the server lists the most recently added items first, so items added
+ * since the last sync are all at the head of the list.
+ * @param isEditable items change without moving, as a renamed playlist does, so a list that
+ * starts the same may still differ further down.
+ */
+class LibraryCollection<T> private constructor(
+    val name: String,
+    val type: Class<T>,
+    val isNewestFirst: Boolean,
+    val isEditable: Boolean,
+    val idOf: (T) -> String?
+) {
+
+    companion object {
+        val SAVED_TRACKS = LibraryCollection(
+            "saved_tracks", TrackParcelable::class.java, true, false
+        ) { it.id }
+
+        val SAVED_ALBUMS = LibraryCollection(
+            "saved_albums", AlbumParcelable::class.java, true, false
+        ) { it.id }
+
+        val FOLLOWED_ARTISTS = LibraryCollection(
+            "followed_artists", ArtistParcelable::class.java, false, false
+        ) { it.id }
+
+        val PLAYLISTS = LibraryCollection(
+            "playlists", PlaylistParcelable::class.java, false, true
+        ) { it.id }
+
+        val ALL: List<LibraryCollection<*>> =
+            listOf(SAVED_TRACKS, SAVED_ALBUMS, FOLLOWED_ARTISTS, PLAYLISTS)
+    }
+}
+
+/**
+ * On-device copy of the user's saved tracks, saved albums, followed artists and playlists,
+ * so the library shows at once, offline too, and refreshes only write what changed. Calls
+ * block on disk; make them off the main thread.
+ */
+interface LibraryStore {
+
+    /**
+     * The items of [collection] in list order; empty when it was never synced.
+     */
+    fun <T> read(collection: LibraryCollection<T>): List<T>
+
+    /**
+     * Up to [limit] items of [collection] from [offset], in list order.
+     */
+    fun <T> readPage(collection: LibraryCollection<T>, offset: Int, limit: Int): List<T>
+
+    fun count(collection: LibraryCollection<*>): Int
+
+    /**
+     * The ids of [collection] in list order.
+     */
+    fun ids(collection: LibraryCollection<*>): List<String>
+
+    /**
+     * When [collection] was last synced, or null if it never was.
+     */
+    fun syncedAt(collection: LibraryCollection<*>): Long?
+
+    /**
+     * Length of [collection] as the server counted it at the last sync, or null if it never
+     * was synced. Unavailable items are counted there but never stored, so this can be more
+     * than [count].
+     */
+    fun serverTotal(collection: LibraryCollection<*>): Int?
+
+    /**
+     * Puts [items], newest first, in front of the items already stored, and records
+     * [serverTotal]. Returns the number of rows written.
+     */
+    fun <T> prepend(
+        collection: LibraryCollection<T>,
+        items: List<T>,
+        serverTotal: Int,
+        nowMillis: Long
+    ): Int
+
+    /**
+     * Makes [items] the content of [collection], writing only the rows that changed: items
+     * gone from the list are deleted, and new, moved or edited items are written. Records
+     * [serverTotal]. Returns the number of rows written or deleted.
+     */
+    fun <T> replace(
+        collection: LibraryCollection<T>,
+        items: List<T>,
+        serverTotal: Int,
+        nowMillis: Long
+    ): Int
+
+    /**
+     * Forgets every collection, e.g. when the user signs out.
+     */
+    fun clear()
+}
+
+/**
+ * [LibraryStore] kept in SQLite. Each item is stored as JSON under its collection and id,
+ * with its position in the list. The store is a copy of server state, so a schema change
+ * simply drops it.
+ */
+class RealLibraryStore(
+    context: Context,
+    private val gson: Gson = ModelJson.gson
+) : SQLiteOpenHelper(context, DATABASE_NAME, null, DATABASE_VERSION), LibraryStore {
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(
+            "CREATE TABLE $ITEMS (" +
+                    "$COLLECTION TEXT NOT NULL, " +
+                    "$ID TEXT NOT NULL, " +
+                    "$POSITION INTEGER NOT NULL, " +
+                    "$DATA TEXT NOT NULL, " +
+                    "PRIMARY KEY ($COLLECTION, $ID))"
+        )
+        db.execSQL("CREATE INDEX ${ITEMS}_order ON $ITEMS ($COLLECTION, $POSITION)")
+        db.execSQL(
+            "CREATE TABLE $COLLECTIONS (" +
+                    "$COLLECTION TEXT PRIMARY KEY, " +
+                    "$SYNCED_AT INTEGER NOT NULL, " +
+                    "$SERVER_TOTAL INTEGER NOT NULL)"
+        )
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        db.execSQL("DROP TABLE IF EXISTS $ITEMS")
+        db.execSQL("DROP TABLE IF EXISTS $COLLECTIONS")
+        onCreate(db)
+    }
+
+    override fun onDowngrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        onUpgrade(db, oldVersion, newVersion)
+    }
+
+    override fun <T> read(collection: LibraryCollection<T>): List<T> {
+        val items = ArrayList<T>()
+        readableDatabase.query(
+            ITEMS, arrayOf(DATA), "$COLLECTION = ?", arrayOf(collection.name),
+            null, null, POSITION
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                items.add(gson.fromJson(cursor.getString(0), collection.type))
+            }
+        }
+        return items
+    }
+
+    override fun <T> readPage(collection: LibraryCollection<T>, offset: Int, limit: Int): List<T> {
+        val items = ArrayList<T>(limit)
+        readableDatabase.query(
+            ITEMS, arrayOf(DATA), "$COLLECTION = ?", arrayOf(collection.name),
+            null, null, POSITION, "$offset, $limit"
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                items.add(gson.fromJson(cursor.getString(0), collection.type))
+            }
+        }
+        return items
+    }
+
+    override fun count(collection: LibraryCollection<*>): Int {
+        readableDatabase.rawQuery(
+            "SELECT COUNT(*) FROM $ITEMS WHERE $COLLECTION = ?",
+            arrayOf(collection.name)
+        ).use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getInt(0) else 0
+        }
+    }
+
+    override fun ids(collection: LibraryCollection<*>): List<String> {
+        val ids = ArrayList<String>()
+        readableDatabase.query(
+            ITEMS, arrayOf(ID), "$COLLECTION = ?", arrayOf(collection.name),
+            null, null, POSITION
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(0))
+            }
+        }
+        return ids
+    }
+
+    override fun syncedAt(collection: LibraryCollection<*>): Long? {
+        readableDatabase.query(
+            COLLECTIONS, arrayOf(SYNCED_AT), "$COLLECTION = ?", arrayOf(collection.name),
+            null, null, null
+        ).use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getLong(0) else null
+        }
+    }
+
+    override fun serverTotal(collection: LibraryCollection<*>): Int? {
+        readableDatabase.query(
+            COLLECTIONS, arrayOf(SERVER_TOTAL), "$COLLECTION = ?", arrayOf(collection.name),
+            null, null, null
+        ).use { cursor ->
+            return if (cursor.moveToFirst()) cursor.getInt(0) else null
+        }
+    }
+
+    override fun <T> prepend(
+        collection: LibraryCollection<T>,
+        items: List<T>,
+        serverTotal: Int,
+        nowMillis: Long
+    ): Int {
+        val db = writableDatabase
+        db.beginTransaction()
+        try {
+            val first = firstPosition(db, collection)
+            items.forEachIndexed { index, item ->
+                write(db, collection, item, first - items.size + index)
+            }
+            markSynced(db, collection, serverTotal, nowMillis)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        return items.size
+    }
+
+    override fun <T> replace(
+        collection: LibraryCollection<T>,
+        items: List<T>,
+        serverTotal: Int,
+        nowMillis: Long
+    ): Int {
+        val db = writableDatabase
+        var changed = 0
+        db.beginTransaction()
+        try {
+            val stored = HashMap<String, Pair<Int, String>>()
+            db.query(
+                ITEMS, arrayOf(ID, POSITION, DATA), "$COLLECTION = ?", arrayOf(collection.name),
+                null, null, null
+            ).use { cursor ->
+                while (cursor.moveToNext()) {
+                    stored[cursor.getString(0)] = cursor.getInt(1) to cursor.getString(2)
+                }
+            }
+            items.forEachIndexed { position, item ->
+                val id = collection.idOf(item) ?: return@forEachIndexed
+                val data = gson.toJson(item)
+                val row = stored.remove(id)
+                if (row == null || row.first != position || row.second != data) {
+                    write(db, collection.name, id, position, data)
+                    changed++
+                }
+            }
+            for (id in stored.keys) {
+                db.delete(ITEMS, "$COLLECTION = ? AND $ID = ?", arrayOf(collection.name, id))
+                changed++
+            }
+            markSynced(db, collection, serverTotal, nowMillis)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+        return changed
+    }
+
+    override fun clear() {
+        val db = writableDatabase
+        db.beginTransaction()
+        try {
+            db.delete(ITEMS, null, null)
+            db.delete(COLLECTIONS, null, null)
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    private fun firstPosition(db: SQLiteDatabase, collection: LibraryCollection<*>): Int {
+        db.rawQuery(
+            "SELECT MIN($POSITION) FROM $ITEMS WHERE $COLLECTION = ?",
+            arrayOf(collection.name)
+        ).use { cursor ->
+            return if (cursor.moveToFirst() && !cursor.isNull(0)) cursor.getInt(0) else 0
+        }
+    }
+
+    private fun <T> write(db: SQLiteDatabase, collection: LibraryCollection<T>, item: T, position: Int) {
+        val id = collection.idOf(item) ?: return
+        write(db, collection.name, id, position, gson.toJson(item))
+    }
+
+    private fun write(db: SQLiteDatabase, collection: String, id: String, position: Int, data: String) {
+        val values = ContentValues()
+        values.put(COLLECTION, collection)
+        values.put(ID, id)
+        values.put(POSITION, position)
+        values.put(DATA, data)
+        db.insertWithOnConflict(ITEMS, null, values, SQLiteDatabase.CONFLICT_REPLACE)
+    }
+
+    private fun markSynced(
+        db: SQLiteDatabase,
+        collection: LibraryCollection<*>,
+        serverTotal: Int,
+        nowMillis: Long
+    ) {
+        val values = ContentValues()
+        values.put(COLLECTION, collection.name)
+        values.put(SYNCED_AT, nowMillis)
+        values.put(SERVER_TOTAL, serverTotal)
+        db.insertWithOnConflict(COLLECTIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE)
+    }
+
+    companion object {
+        const val DATABASE_NAME = "library.db"
+        private const val DATABASE_VERSION = 2
+
+        private const val ITEMS = "items"
+        private const val COLLECTIONS = "collections"
+        private const val COLLECTION = "collection"
+        private const val ID = "id"
+        private const val POSITION = "position"
+        private const val DATA = "data"
+        private const val SYNCED_AT = "synced_at"
+        private const val SERVER_TOTAL = "server_total"
+    }
+}
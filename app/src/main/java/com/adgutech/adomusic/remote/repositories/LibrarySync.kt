@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.extensions.logD
+import com.adgutech.adomusic.remote.models.AlbumParcelable
+import com.adgutech.adomusic.remote.models.ArtistParcelable
+import com.adgutech.adomusic.remote.models.PlaylistParcelable
+import com.adgutech.adomusic.remote.models.TrackParcelable
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+
+/**
+ * Brings the [LibraryStore] up to date with the server, moving as little as it can.
+ *
+ * A sync reads the first page of the list. Saved tracks and albums are listed newest first,
+ * so when the total and the first page match what is stored, nothing changed and nothing is
+ * written; new saves are read page by page up to the newest stored item and put in front,
+ * and when the totals then add up, that was the only change. Anything else (removals,
+ * followed artists and playlists, whose changes can be anywhere in the list) reads the whole
+ * list and writes only the rows that differ.
+ */
+class LibrarySync(
+    private val store: LibraryStore,
+    private val trackRepository: TrackRepository,
+    private val albumRepository: AlbumRepository,
+    private val artistRepository: ArtistRepository,
+    private val playlistRepository: PlaylistRepository,
+    private val scope: CoroutineScope,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private val locks = LibraryCollection.ALL.associate { it.name to Mutex() }
+
+    suspend fun savedTracks(): List<TrackParcelable> =
+        sync(LibraryCollection.SAVED_TRACKS, trackRepository.savedTracks())
+
+    suspend fun savedAlbums(): List<AlbumParcelable> =
+        sync(LibraryCollection.SAVED_ALBUMS, albumRepository.savedAlbums())
+
+    suspend fun followedArtists(): List<ArtistParcelable> =
+        sync(LibraryCollection.FOLLOWED_ARTISTS, artistRepository.followedArtists())
+
+    suspend fun playlists(): List<PlaylistParcelable> =
+        sync(LibraryCollection.PLAYLISTS, playlistRepository.myPlaylists())
+
+    /**
+     * The stored items of [collection], or null when it was never synced.
+     */
+    suspend fun <T> stored(collection: LibraryCollection<T>): List<T>? =
+        withContext(Dispatchers.IO) {
+            if (store.syncedAt(collection) == null) null else store.read(collection)
+        }
+
+    /**
+     * The stored items of [collection] a page at a time, for lists too long to read at once.
+     */
+    fun <T> storedPages(collection: LibraryCollection<T>): PageSource<T> = object : PageSource<T> {
+
+        override suspend fun load(key: String?, limit: Int): Page<T> =
+            withContext(Dispatchers.IO) {
+                val offset = key?.toInt() ?: 0
+                val items = store.readPage(collection, offset, limit)
+                val total = store.count(collection)
+                val end = offset + items.size
+                Page(items, total, if (items.isNotEmpty() && end < total) end.toString() else null)
+            }
+
+        override fun keyAt(index: Int, pageSize: Int): String = (index * pageSize).toString()
+    }
+
+    suspend fun isSynced(collection: LibraryCollection<*>): Boolean =
+        withContext(Dispatchers.IO) { store.syncedAt(collection) != null }
+
+    /**
+     * Forgets the stored library, e.g. when the user signs out. Syncs still running finish
+     * writing first, so nothing of the signed-out account is left behind.
+     */
+    fun clear() {
+        scope.launch {
+            val held = ArrayList<Mutex>()
+            try {
+                for (collection in LibraryCollection.ALL) {
+                    val lock = locks.getValue(collection.name)
+                    lock.lock()
+                    held += lock
+                }
+                withContext(Dispatchers.IO) { store.clear() }
+            } finally {
+                held.forEach { it.unlock() }
+            }
+        }
+    }
+
+    private suspend fun <T> sync(collection: LibraryCollection<T>, source: PageSource<T>): List<T> {
+        return locks.getValue(collection.name).withLock {
+            val first = source.load(null, PAGE_SIZE)
+            val (storedIds, storedTotal) = withContext(Dispatchers.IO) {
+                store.ids(collection) to store.serverTotal(collection)
+            }
+            val firstIds = first.items.map(collection.idOf)
+            // Only a newest-first list has every change show in its first page or total. Totals
+            // are the server's, which count the unavailable items no page returns.
+            val unchanged = collection.isNewestFirst &&
+                    first.total == storedTotal &&
+                    storedIds.take(firstIds.size) == firstIds
+            if (unchanged) {
+                logD("${collection.name}: unchanged")
+                return@withLock withContext(Dispatchers.IO) { store.read(collection) }
+            }
+            if (collection.isNewestFirst && storedIds.isNotEmpty() && storedTotal != null) {
+                val added = newItems(collection, source, first, storedIds, storedTotal)
+                if (added != null) {
+                    return@withLock withContext(Dispatchers.IO) {
+                        store.prepend(collection, added, first.total, clock())
+                        logD("${collection.name}: ${added.size} added")
+                        store.read(collection)
+                    }
+                }
+            }
+            val items = source.loadAll()
+            withContext(Dispatchers.IO) {
+                val changed = store.replace(collection, items, first.total, clock())
+                logD("${collection.name}: $changed rows changed")
+            }
+            items
+        }
+    }
+
+    /**
+     * The items saved since the stored list was read, when they are the only change: read
+     * from the head of the list until the newest stored item, which must be followed by the
+     * items stored after it, and the server's total must have grown by as many. Null when the
+     * list changed some other way.
+     */
+    private suspend fun <T> newItems(
+        collection: LibraryCollection<T>,
+        source: PageSource<T>,
+        first: Page<T>,
+        storedIds: List<String>,
+        storedTotal: Int
+    ): List<T>? {
+        val added = ArrayList<T>()
+        var page = first
+        while (true) {
+            val ids = page.items.map(collection.idOf)
+            val head = ids.indexOf(storedIds[0])
+            if (head >= 0) {
+                added.addAll(page.items.subList(0, head))
+                val following = ids.subList(head, ids.size)
+                val matches = storedIds.take(following.size) == following
+                return if (matches && storedTotal + added.size == first.total) added else null
+            }
+            added.addAll(page.items)
+            val nextKey = page.nextKey
+            if (nextKey == null || added.size >= MAX_NEW_ITEMS) return null
+            page = source.load(nextKey, PAGE_SIZE)
+        }
+    }
+
+    companion object {
+
+        /**
+         * New items past which reading the whole list is as cheap as finding its old head.
+         */
+        const val MAX_NEW_ITEMS = 500
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.api.spotify.models.GeneratedTypeAdapterFactory
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import java.io.Writer
+
+/**
+ * JSON of the app's models, written by the adapters json-codegen generates where a model has
+ * one. Most models don't implement equals, so this is also what caches compare them by.
+ */
+object ModelJson {
+
+    val gson: Gson = GsonBuilder()
+        .registerTypeAdapterFactory(GeneratedTypeAdapterFactory())
+        .create()
+
+    /**
+     * Stands for the JSON of a value without keeping it: equal JSON gives equal fingerprints,
+     * and [length] is how many characters it has.
+     */
+    data class Fingerprint(val hash: Long, val length: Int)
+
+    /**
+     * Serializes [value] without building the string, hashing it as it is written.
+     */
+    fun fingerprint(value: Any?): Fingerprint {
+        val writer = HashingWriter()
+        gson.toJson(value, writer)
+        return Fingerprint(writer.hash, writer.length)
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters written.
+     */
+    private class HashingWriter : Writer() {
+        var hash = FNV_OFFSET_BASIS
+            private set
+        var length = 0
+            private set
+
+        override fun write(cbuf: CharArray, off: Int, len: Int) {
+            for (i in off until off + len) {
+                hash = (hash xor cbuf[i].code.toLong()) * FNV_PRIME
+            }
+            length += len
+        }
+
+        override fun write(str: String, off: Int, len: Int) {
+            for (i in off until off + len) {
+                hash = (hash xor str[i].code.toLong()) * FNV_PRIME
+            }
+            length += len
+        }
+
+        override fun flush() {
+        }
+
+        override fun close() {
+        }
+    }
+
+    private const val FNV_OFFSET_BASIS = -0x340d631b7bdddcdbL
+    private const val FNV_PRIME = 0x100000001b3L
+}
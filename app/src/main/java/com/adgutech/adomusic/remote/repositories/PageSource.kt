@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.api.spotify.SpotifyService
+import com.adgutech.adomusic.remote.api.spotify.models.CursorPager
+import com.adgutech.adomusic.remote.api.spotify.models.Pager
+import kotlinx.coroutines.async
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+
+/**
+ * One page of a library list.
+ *
+ * @param items the items of the page, which may be fewer than the page holds before the last
+ * page too when the server left out unavailable ones.
+ * @param total items in the whole list, as the server counted them for this page.
+ * @param nextKey key of the following page, null on the last one.
+ */
+class Page<T>(val items: List<T>, val total: Int, val nextKey: String?)
+
+/**
+ * Reads a library list a page at a time.
+ */
+interface PageSource<T> {
+
+    /**
+     * Loads up to [limit] items starting at [key], or the first page when [key] is null.
+     */
+    suspend fun load(key: String?, limit: Int): Page<T>
+
+    /**
+     * Key of page [index], when it can be worked out without loading the pages before it.
+     */
+    fun keyAt(index: Int, pageSize: Int): String? = null
+}
+
+/**
+ * A list read with `offset`/`limit`, where any page can be loaded directly.
+ */
+class OffsetPageSource<S, T>(
+    private val fetch: suspend (options: Map<String, Any>) -> Pager<S>,
+    private val transform: (S) -> T
+) : PageSource<T> {
+
+    override suspend fun load(key: String?, limit: Int): Page<T> {
+        val offset = key?.toInt() ?: 0
+        val pager = fetch(mapOf(SpotifyService.LIMIT to limit, SpotifyService.OFFSET to offset))
+        val items = pager.items.orEmpty().map(transform)
+        // Advance by the window the server read: items it left out of the page (or the decoder
+        // dropped) still took their place in it.
+        val nextKey = if (pager.next != null) {
+            val window = if (pager.limit > 0) pager.limit else limit
+            (offset + window).toString()
+        } else {
+            null
+        }
+        return Page(items, pager.total, nextKey)
+    }
+
+    override fun keyAt(index: Int, pageSize: Int): String = (index * pageSize).toString()
+}
+
+/**
+ * A list read with an `after` cursor, such as `/me/following`. A page can only be loaded
+ * with the cursor the page before it returned.
+ */
+class CursorPageSource<S, T>(
+    private val fetch: suspend (options: Map<String, Any>) -> CursorPager<S>,
+    private val transform: (S) -> T
+) : PageSource<T> {
+
+    override suspend fun load(key: String?, limit: Int): Page<T> {
+        val options = HashMap<String, Any>()
+        options[SpotifyService.LIMIT] = limit
+        key?.let { options[SpotifyService.AFTER] = it }
+        val pager = fetch(options)
+        val items = pager.items.orEmpty().map(transform)
+        val nextKey = if (pager.next != null && items.isNotEmpty()) pager.cursors?.after else null
+        return Page(items, pager.total, nextKey)
+    }
+}
+
+/**
+ * The pages of the list, in order.
+ *
+ * Once the first page gives the total, the remaining pages of an offset list are loaded
+ * concurrently, at most [maxParallel] at a time. Each page is emitted as soon as it and
+ * every page before it have arrived, so a collector always holds a contiguous prefix. A
+ * cursor list is loaded one page after another. Pages the list grew by while it was read
+ * are loaded after the ones the first page announced.
+ */
+fun <T> PageSource<T>.loadPages(
+    pageSize: Int = PAGE_SIZE,
+    maxParallel: Int = MAX_PARALLEL_PAGES
+): Flow<List<T>> = channelFlow {
+    val first = load(null, pageSize)
+    send(first.items)
+    var nextKey = first.nextKey
+    if (nextKey != null && keyAt(1, pageSize) != null) {
+        val pageCount = (first.total + pageSize - 1) / pageSize
+        val permits = Semaphore(maxParallel)
+        val pages = (1 until pageCount).map { index ->
+            async { permits.withPermit { load(keyAt(index, pageSize), pageSize) } }
+        }
+        for (page in pages) {
+            val loaded = page.await()
+            send(loaded.items)
+            nextKey = loaded.nextKey
+            if (nextKey == null) {
+                // The list shrank while it was read; the pages after this one are empty.
+                pages.forEach { it.cancel() }
+                break
+            }
+        }
+    }
+    while (nextKey != null) {
+        val page = load(nextKey, pageSize)
+        send(page.items)
+        nextKey = page.nextKey
+    }
+}
+
+/**
+ * Every item of the list, see [loadPages].
+ */
+suspend fun <T> PageSource<T>.loadAll(pageSize: Int = PAGE_SIZE): List<T> {
+    val items = ArrayList<T>()
+    loadPages(pageSize).collect { items.addAll(it) }
+    return items
+}
+
+/**
+ * The largest page the Web API returns for library lists.
+ */
+const val PAGE_SIZE = 50
+
+/**
+ * Pages of one list loaded at the same time by [loadPages].
+ */
+const val MAX_PARALLEL_PAGES = 4
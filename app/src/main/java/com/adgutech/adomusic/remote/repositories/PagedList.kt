@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.extensions.logE
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.util.AbstractList
+import java.util.TreeMap
+import kotlin.math.abs
+import kotlin.math.max
+
+/**
+ * A library list read page by page as its rows are bound.
+ *
+ * [loadAround] loads the page of a bound row and the neighbouring page the user is scrolling
+ * towards. Only the [maxPages] pages nearest the last bound row are held, so memory stays the
+ * same however long the list is; rows of pages not held read as [placeholder] until their
+ * page is loaded again. Pages of a [CursorPageSource] can only be reached through the pages
+ * before them, so their keys are kept after the pages themselves are dropped.
+ *
+ * The server counts unavailable items in its total but leaves them out of their page. Rows
+ * follow the items actually returned: once a page comes back short, the rows after it move
+ * up, and the shortfall is kept like the keys so they stay in place when it is dropped.
+ *
+ * Not thread safe: use it from the main thread, with a [scope] that dispatches there.
+ */
+class PagedList<T>(
+    private val source: PageSource<T>,
+    private val scope: CoroutineScope,
+    private val placeholder: T,
+    private val pageSize: Int = PAGE_SIZE,
+    private val maxPages: Int = DEFAULT_MAX_PAGES
+) : AbstractList<T>() {
+
+    interface Listener {
+
+        /**
+         * Rows from [positionStart] now hold their loaded items.
+         */
+        fun onItemRangeLoaded(positionStart: Int, itemCount: Int)
+
+        /**
+         * The server reported a different length; every row may have moved.
+         */
+        fun onSizeChanged()
+    }
+
+    var listener: Listener? = null
+
+    private val pages = HashMap<Int, List<T>>()
+    private val keys = HashMap<Int, String>()
+    private val missing = TreeMap<Int, Int>()
+    private var missingCount = 0
+    private val loading = HashMap<Int, Job>()
+    private var total = 0
+    private var lastPage = Int.MAX_VALUE
+    private var lastIndex = -1
+
+    /**
+     * Number of pages currently held.
+     */
+    val heldPageCount: Int get() = pages.size
+
+    override val size: Int get() = total - missingCount
+
+    override fun get(index: Int): T {
+        if (index < 0 || index >= size) {
+            throw IndexOutOfBoundsException("Index $index, size $size")
+        }
+        val position = positionOf(index)
+        return pages[position / pageSize]?.getOrNull(position % pageSize) ?: placeholder
+    }
+
+    fun isLoaded(index: Int): Boolean {
+        val position = positionOf(index)
+        val page = pages[position / pageSize] ?: return false
+        return position % pageSize < page.size
+    }
+
+    /**
+     * Position in the server's list of row [index], counting the items left out before it.
+     */
+    private fun positionOf(index: Int): Int {
+        var position = index
+        for ((pageIndex, count) in missing) {
+            if (position < pageIndex * pageSize + pageSize - count) break
+            position += count
+        }
+        return position
+    }
+
+    /**
+     * Row of the first item of page [pageIndex].
+     */
+    private fun rowOf(pageIndex: Int): Int =
+        pageIndex * pageSize - missing.headMap(pageIndex).values.sum()
+
+    /**
+     * Loads the first page, which also gives the length of the list.
+     */
+    suspend fun loadInitial() {
+        val page = withContext(Dispatchers.IO) { source.load(null, pageSize) }
+        onLoaded(0, page)
+    }
+
+    /**
+     * Makes sure the page of row [index] is loaded, along with the next page when the row is
+     * in the second half of its page or the previous one when it is in the first half.
+     */
+    fun loadAround(index: Int) {
+        if (index < 0 || index >= size) return
+        lastIndex = index
+        val position = positionOf(index)
+        val pageIndex = position / pageSize
+        load(pageIndex)
+        if (position % pageSize >= pageSize / 2) {
+            if ((pageIndex + 1) * pageSize < total) load(pageIndex + 1)
+        } else if (pageIndex > 0) {
+            load(pageIndex - 1)
+        }
+    }
+
+    private fun keyOf(pageIndex: Int): String? =
+        source.keyAt(pageIndex, pageSize) ?: keys[pageIndex]
+
+    private fun load(pageIndex: Int) {
+        if (pageIndex > lastPage) return
+        var index = pageIndex
+        // Without a key, walk back to the nearest page that has one; the pages in between are
+        // loaded one after another from there.
+        while (index > 0 && keyOf(index) == null) {
+            index--
+        }
+        if (pages.containsKey(index) || loading.containsKey(index)) return
+        val key = if (index == 0) null else keyOf(index)
+        val job = scope.launch(start = CoroutineStart.LAZY) {
+            try {
+                val page = withContext(Dispatchers.IO) { source.load(key, pageSize) }
+                onLoaded(index, page)
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                // The rows stay placeholders and the page is retried when they are bound again.
+                logE(e)
+            } finally {
+                loading.remove(index)
+            }
+        }
+        loading[index] = job
+        job.start()
+    }
+
+    private fun onLoaded(pageIndex: Int, page: Page<T>) {
+        val nextKey = page.nextKey
+        if (nextKey != null) {
+            keys[pageIndex + 1] = nextKey
+            if (lastPage <= pageIndex) lastPage = Int.MAX_VALUE
+        } else {
+            lastPage = pageIndex
+        }
+        pages[pageIndex] = page.items
+        trim()
+        val expected = (page.total - pageIndex * pageSize).coerceIn(0, pageSize)
+        val shortBy = max(0, expected - page.items.size)
+        val wasShortBy = missing[pageIndex] ?: 0
+        if (shortBy != wasShortBy) {
+            if (shortBy > 0) missing[pageIndex] = shortBy else missing.remove(pageIndex)
+            missingCount += shortBy - wasShortBy
+        }
+        if (page.total != total || shortBy != wasShortBy) {
+            total = page.total
+            listener?.onSizeChanged()
+        } else if (pages.containsKey(pageIndex)) {
+            listener?.onItemRangeLoaded(rowOf(pageIndex), page.items.size)
+        }
+        if (lastIndex >= 0) {
+            loadAround(lastIndex)
+        }
+    }
+
+    private fun trim() {
+        val current = if (lastIndex >= 0) positionOf(lastIndex) / pageSize else 0
+        while (pages.size > maxPages) {
+            val farthest = pages.keys.maxByOrNull { abs(it - current) } ?: return
+            pages.remove(farthest)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_PAGES = 8
+    }
+}
@@ -22,34 +22,38 @@ package com.adgutech.adomusic.remote.repositories
 
 import com.adgutech.adomusic.remote.models.DeviceParcelable
 import com.adgutech.adomusic.remote.models.TrackQueue
+import com.adgutech.adomusic.remote.api.spotify.Mutation
+import com.adgutech.adomusic.remote.api.spotify.MutationKind
+import com.adgutech.adomusic.remote.api.spotify.MutationQueue
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
+import com.adgutech.adomusic.remote.api.spotify.SpotifyError
 import com.adgutech.adomusic.remote.api.spotify.SpotifyService
-import com.adgutech.adomusic.remote.api.spotify.models.Result
 import com.adgutech.adomusic.remote.api.spotify.models.Track
 import com.adgutech.adomusic.remote.api.spotify.models.TrackPosition
 import com.adgutech.adomusic.remote.api.spotify.models.TrackToPlayPosition
 import com.adgutech.adomusic.remote.extensions.logD
 import com.adgutech.adomusic.remote.extensions.logE
 import com.adgutech.adomusic.remote.utils.Utils
-import retrofit.Callback
-import retrofit.RetrofitError
-import retrofit.client.Response
 
 interface PlayerRepository {
-    fun getAvailableDevice(): List<DeviceParcelable>
-    fun playUri(deviceId: String?, contextUri: String)
-    fun playUri(deviceId: String?, contextUri: String, uris: List<String>, position: Int)
-    fun resume(deviceId: String?)
-    fun pause(deviceId: String?)
-    fun skipNext(deviceId: String?)
-    fun skipPrevious(deviceId: String?)
-    fun getUserQueue(): List<TrackQueue>
+    suspend fun getAvailableDevice(): List<DeviceParcelable>
+    suspend fun playUri(deviceId: String?, contextUri: String)
+    suspend fun playUri(deviceId: String?, contextUri: String, uris: List<String>, position: Int)
+    suspend fun resume(deviceId: String?)
+    suspend fun pause(deviceId: String?)
+    suspend fun skipNext(deviceId: String?)
+    suspend fun skipPrevious(deviceId: String?)
+    suspend fun getUserQueue(): List<TrackQueue>
 }
 
-class RealPlayerRepository(private val spotifyService: SpotifyService) : PlayerRepository {
+class RealPlayerRepository(
+    private val spotifyService: SpotifyCoroutineService,
+    private val mutationQueue: MutationQueue
+) : PlayerRepository {
 
-    override fun getAvailableDevice(): List<DeviceParcelable> {
+    override suspend fun getAvailableDevice(): List<DeviceParcelable> {
         val deviceList = arrayListOf<DeviceParcelable>()
-        val availableDevices = spotifyService.availableDevice
+        val availableDevices = spotifyService.getAvailableDevice()
         val devices = availableDevices.devices
         for (device in devices) {
             val id = device.id
@@ -75,91 +79,65 @@ class RealPlayerRepository(private val spotifyService: SpotifyService) : PlayerR
         return deviceList
     }
 
-    override fun playUri(deviceId: String?, contextUri: String) {
+    override suspend fun playUri(deviceId: String?, contextUri: String) {
         val trackToPlayPosition = TrackToPlayPosition()
         trackToPlayPosition.contextUri = contextUri
-        spotifyService.playUri(deviceId, trackToPlayPosition, object : Callback<Result> {
-            override fun success(t: Result?, response: Response?) {
-                logD("Success to play uri.")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to play uri: $error")
-            }
-        })
+        try {
+            spotifyService.playUri(deviceId, trackToPlayPosition)
+            logD("Success to play uri.")
+        } catch (e: SpotifyError) {
+            logE("Error to play uri: $e")
+        }
     }
 
-    override fun playUri(deviceId: String?, contextUri: String, uris: List<String>, position: Int) {
+    override suspend fun playUri(deviceId: String?, contextUri: String, uris: List<String>, position: Int) {
         val trackToPlayPosition = TrackToPlayPosition()
         trackToPlayPosition.let {
             it.contextUri = contextUri
             it.uris = uris
             it.offset.position = position
         }
-        spotifyService.playUri(deviceId, trackToPlayPosition, object : Callback<Result> {
-            override fun success(t: Result?, response: Response?) {
-                logD("Success to play uri.")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to play uri: $error")
-            }
-        })
+        try {
+            spotifyService.playUri(deviceId, trackToPlayPosition)
+            logD("Success to play uri.")
+        } catch (e: SpotifyError) {
+            logE("Error to play uri: $e")
+        }
     }
 
-    override fun resume(deviceId: String?) {
-        spotifyService.resume(deviceId, object : Callback<Result> {
-            override fun success(t: Result?, response: Response?) {
-                logD("Success to resume track.")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to resume track: $error")
-            }
-        })
+    override suspend fun resume(deviceId: String?) {
+        mutationQueue.enqueue(Mutation(MutationKind.RESUME, deviceId = deviceId))
+        logD("Resume queued.")
     }
 
-    override fun pause(deviceId: String?) {
-        spotifyService.pause(deviceId, object : Callback<Result> {
-            override fun success(t: Result?, response: Response?) {
-                logD("Success to pause track.")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to pause track: $error")
-            }
-        })
+    override suspend fun pause(deviceId: String?) {
+        mutationQueue.enqueue(Mutation(MutationKind.PAUSE, deviceId = deviceId))
+        logD("Pause queued.")
     }
 
-    override fun skipNext(deviceId: String?) {
-        spotifyService.skipNext(deviceId, object : Callback<Result> {
-                override fun success(t: Result?, response: Response?) {
-                    logD("Success to skip next track.")
-                }
-
-                override fun failure(error: RetrofitError?) {
-                    logE("Error to skip next track: $error")
-                }
-            })
+    override suspend fun skipNext(deviceId: String?) {
+        try {
+            spotifyService.skipNext(deviceId)
+            logD("Success to skip next track.")
+        } catch (e: SpotifyError) {
+            logE("Error to skip next track: $e")
+        }
     }
 
-    override fun skipPrevious(deviceId: String?) {
-        spotifyService.skipPrevious(deviceId, object : Callback<Result> {
-            override fun success(t: Result?, response: Response?) {
-                logD("Success to skip previous track.")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to skip previous track: $error")
-            }
-        })
+    override suspend fun skipPrevious(deviceId: String?) {
+        try {
+            spotifyService.skipPrevious(deviceId)
+            logD("Success to skip previous track.")
+        } catch (e: SpotifyError) {
+            logE("Error to skip previous track: $e")
+        }
     }
 
-    override fun getUserQueue(): List<TrackQueue> {
+    override suspend fun getUserQueue(): List<TrackQueue> {
         val trackList = arrayListOf<TrackQueue>()
         val duplicate = arrayListOf<String>()
         val queueUserTrack = spotifyService.getUserQueue()
-        val queue = queueUserTrack.queue
+        val queue = ArrayList(queueUserTrack.queue)
         val currentTrack = queueUserTrack.currently_playing
         queue.add(0, currentTrack)
         for (track in queue) {
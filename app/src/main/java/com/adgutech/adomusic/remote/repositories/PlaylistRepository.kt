@@ -25,44 +25,52 @@ import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.helpers.SortOrder
 import com.adgutech.adomusic.remote.models.PlaylistParcelable
 import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
+import com.adgutech.adomusic.remote.api.spotify.FieldProjection
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
 import com.adgutech.adomusic.remote.api.spotify.SpotifyService
 import com.adgutech.adomusic.remote.api.spotify.models.Playlist
 import com.adgutech.adomusic.remote.api.spotify.models.PlaylistSimple
-import com.adgutech.adomusic.remote.api.spotify.models.PlaylistTrack
-import com.adgutech.adomusic.remote.utils.Utils
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.last
 
 /**
  * Created by Adolfo Gutiérrez on 04/27/25.
  */
 
 interface PlaylistRepository {
-    fun getMyPlaylists(): List<PlaylistParcelable>
-    fun getPlaylist(userId: String, playlistId: String): Playlist
-    fun getPlaylists(userId: String): List<PlaylistParcelable>
-    fun getPlaylistTracks(userId: String, playlistId: String): List<PlaylistTrackParcelable>
-    fun getPlaylistsWithSortOrder(): List<PlaylistParcelable>
+    suspend fun getMyPlaylists(): List<PlaylistParcelable>
+    fun myPlaylists(): PageSource<PlaylistParcelable>
+    suspend fun getPlaylist(userId: String, playlistId: String): Playlist
+    suspend fun getPlaylists(userId: String): List<PlaylistParcelable>
+    suspend fun getPlaylistTracks(userId: String, playlistId: String): List<PlaylistTrackParcelable>
+    suspend fun getPlaylistTracksPage(userId: String, playlistId: String): Page<PlaylistTrackParcelable>
+    fun streamPlaylistTracks(userId: String, playlistId: String): Flow<List<PlaylistTrackParcelable>>
+    suspend fun getPlaylistsWithSortOrder(): List<PlaylistParcelable>
+    fun sortPlaylists(playlists: List<PlaylistParcelable>): List<PlaylistParcelable>
 }
 
 class RealPlaylistRepository(
     private val context: Context,
-    private val spotifyService: SpotifyService
+    private val spotifyService: SpotifyCoroutineService,
+    private val tracksCache: PlaylistTracksCache,
+    private val entityCache: EntityCache
 ) : PlaylistRepository {
 
-    override fun getMyPlaylists(): List<PlaylistParcelable> {
-        val playlistList = arrayListOf<PlaylistParcelable>()
-        val myPlaylists = spotifyService.getMyPlaylists(getBody())
-        val playlists = myPlaylists.items
-        for (playlist in playlists) {
-            playlistList.add(getPlaylistFromPlaylistSimpleImpl(playlist))
-        }
-        return playlistList
+    override suspend fun getMyPlaylists(): List<PlaylistParcelable> {
+        return myPlaylists().loadAll()
     }
 
-    override fun getPlaylist(userId: String, playlistId: String): Playlist {
-        return spotifyService.getPlaylist(playlistId)
+    override fun myPlaylists(): PageSource<PlaylistParcelable> =
+        OffsetPageSource({ spotifyService.getMyPlaylists(it) }, ::getPlaylistFromPlaylistSimpleImpl)
+
+    override suspend fun getPlaylist(userId: String, playlistId: String): Playlist {
+        return entityCache.getOrLoad(DetailKind.PLAYLIST, playlistId) {
+            spotifyService.getPlaylist(playlistId, PLAYLIST_DETAILS)
+        }
     }
 
-    override fun getPlaylists(userId: String): List<PlaylistParcelable> {
+    override suspend fun getPlaylists(userId: String): List<PlaylistParcelable> {
         val playlistList = arrayListOf<PlaylistParcelable>()
         val playlists = spotifyService.getPlaylists(userId)
         val playlistsItems = playlists.items
@@ -72,18 +80,61 @@ class RealPlaylistRepository(
         return playlistList
     }
 
-    override fun getPlaylistTracks(userId: String, playlistId: String): List<PlaylistTrackParcelable> {
-        val trackList = arrayListOf<PlaylistTrackParcelable>()
-        val playlistTracks = spotifyService.getPlaylistTracks(userId, playlistId,  getBody())
-        val tracks = playlistTracks.items
-        for (track in tracks) {
-            trackList.add(getTracksFromPlaylistTracksImpl(track))
+    /**
+     * Checks the playlist's snapshot id first, and downloads the tracks only when the cached
+     * ones were read at a different snapshot. An unchanged playlist returns the very same list.
+     */
+    override suspend fun getPlaylistTracks(userId: String, playlistId: String): List<PlaylistTrackParcelable> {
+        return streamPlaylistTracks(userId, playlistId).last()
+    }
+
+    /**
+     * The first [PAGE_SIZE] tracks of the playlist alone, e.g. to warm its screen.
+     */
+    override suspend fun getPlaylistTracksPage(
+        userId: String,
+        playlistId: String
+    ): Page<PlaylistTrackParcelable> {
+        return tracksSource(userId, playlistId).load(null, PAGE_SIZE)
+    }
+
+    /**
+     * Like [getPlaylistTracks], emitting the tracks read so far as each page arrives. The
+     * last list emitted is the complete one, which is the one cached.
+     */
+    override fun streamPlaylistTracks(
+        userId: String,
+        playlistId: String
+    ): Flow<List<PlaylistTrackParcelable>> = flow {
+        val snapshotId = spotifyService.getPlaylistSnapshotId(playlistId)
+        val cached = tracksCache.get(playlistId, snapshotId)
+        if (cached != null) {
+            emit(cached)
+            return@flow
         }
-        return trackList
+        val tracks = ArrayList<PlaylistTrackParcelable>()
+        var emitted: List<PlaylistTrackParcelable>? = null
+        tracksSource(userId, playlistId).loadPages().collect { page ->
+            tracks.addAll(page)
+            emitted = ArrayList(tracks).also { emit(it) }
+        }
+        val complete = emitted ?: tracks.also { emit(it) }
+        tracksCache.put(playlistId, snapshotId, complete)
     }
 
-    override fun getPlaylistsWithSortOrder(): List<PlaylistParcelable> {
-        val playlists = getMyPlaylists()
+    private fun tracksSource(
+        userId: String,
+        playlistId: String
+    ): PageSource<PlaylistTrackParcelable> =
+        OffsetPageSource<PlaylistTrackParcelable, PlaylistTrackParcelable>({
+            spotifyService.getPlaylistTrackParcelables(userId, playlistId, it, PLAYLIST_TRACKS)
+        }) { it }
+
+    override suspend fun getPlaylistsWithSortOrder(): List<PlaylistParcelable> {
+        return sortPlaylists(getMyPlaylists())
+    }
+
+    override fun sortPlaylists(playlists: List<PlaylistParcelable>): List<PlaylistParcelable> {
         return when (context.preference.playlistSortOrder) {
             SortOrder.PlaylistSortOrder.PLAYLIST_DEFAULT -> {
                 playlists.sortedBy { "" }
@@ -139,46 +190,54 @@ class RealPlaylistRepository(
         )
     }
 
-    private fun getTracksFromPlaylistTracksImpl(track: PlaylistTrack): PlaylistTrackParcelable {
-        val addedAt = track.added_at
-        val album = track.track.album.name
-        val albumId = track.track.album.id
-        val artist = track.track.artists[0].name
-        val artistId = track.track.artists[0].id
-        val artists = track.track.artists
-        val discNumber = track.track.disc_number
-        val duration = track.track.duration_ms
-        val id = track.track.id
-        val imageUrl = Utils.getImageUrl(track.track.album.images)
-        val isExplicit = track.track.explicit
-        val link = track.track.external_ids[SpotifyService.SPOTIFY_URL]
-        val name = track.track.name
-        val trackNumber = track.track.track_number
-        val type = track.track.type
-        val uri = track.track.uri
-        return PlaylistTrackParcelable(
-            addedAt,
-            album,
-            albumId,
-            artist,
-            artistId,
-            artists,
-            discNumber,
-            duration,
-            id,
-            imageUrl,
-            isExplicit,
-            link,
-            name,
-            trackNumber,
-            type,
-            uri
+    companion object {
+
+        /**
+         * What the playlist details screen, its menu and the edit/remove dialogs read.
+         */
+        private val PLAYLIST_DETAILS = FieldProjection(
+            "playlist",
+            "collaborative",
+            "description",
+            "external_urls",
+            "id",
+            "images.url",
+            "name",
+            "owner.display_name",
+            "owner.id",
+            "public",
+            "snapshot_id",
+            "tracks.total",
+            "type",
+            "uri"
         )
-    }
 
-    private fun getBody(): MutableMap<String, Any> {
-        val options: MutableMap<String, Any> = HashMap()
-        options[SpotifyService.LIMIT] = 50
-        return options
+        /**
+         * What [com.adgutech.adomusic.remote.api.spotify.PagerStreamDecoder] reads into
+         * [PlaylistTrackParcelable].
+         */
+        private val PLAYLIST_TRACKS = FieldProjection(
+            "playlist_tracks",
+            "href",
+            "limit",
+            "next",
+            "offset",
+            "previous",
+            "total",
+            "items.added_at",
+            "items.track.album.id",
+            "items.track.album.images.url",
+            "items.track.album.name",
+            "items.track.artists",
+            "items.track.disc_number",
+            "items.track.duration_ms",
+            "items.track.explicit",
+            "items.track.external_urls",
+            "items.track.id",
+            "items.track.name",
+            "items.track.track_number",
+            "items.track.type",
+            "items.track.uri"
+        )
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
+
+/**
+ * Tracks of recently opened playlists, each tagged with the `snapshot_id` they were read at.
+ *
+ * Spotify gives a playlist a new snapshot id on every change, so tracks cached under the
+ * current snapshot id are exactly what a fresh read would return. Entries are evicted least
+ * recently used first once more than [maxTracks] tracks are held.
+ */
+class PlaylistTracksCache(private val maxTracks: Int = DEFAULT_MAX_TRACKS) {
+
+    private class Entry(val snapshotId: String, val tracks: List<PlaylistTrackParcelable>)
+
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+    private var size = 0
+
+    @Synchronized
+    fun get(playlistId: String, snapshotId: String): List<PlaylistTrackParcelable>? {
+        val entry = entries[playlistId] ?: return null
+        return if (entry.snapshotId == snapshotId) entry.tracks else null
+    }
+
+    @Synchronized
+    fun put(playlistId: String, snapshotId: String, tracks: List<PlaylistTrackParcelable>) {
+        entries.put(playlistId, Entry(snapshotId, tracks))?.let { size -= it.tracks.size }
+        size += tracks.size
+        val iterator = entries.values.iterator()
+        while (size > maxTracks && iterator.hasNext()) {
+            val eldest = iterator.next()
+            // The entry just added stays even when it alone is over the limit.
+            if (eldest.tracks === tracks) break
+            size -= eldest.tracks.size
+            iterator.remove()
+        }
+    }
+
+    @Synchronized
+    fun remove(playlistId: String) {
+        entries.remove(playlistId)?.let { size -= it.tracks.size }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        size = 0
+    }
+
+    companion object {
+        const val DEFAULT_MAX_TRACKS = 20_000
+    }
+}
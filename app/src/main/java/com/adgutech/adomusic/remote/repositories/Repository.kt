@@ -26,6 +26,7 @@ import com.adgutech.adomusic.remote.TOP_PLAYED_HOME_LIMIT
 import com.adgutech.adomusic.remote.extensions.logD
 import com.adgutech.adomusic.remote.extensions.logE
 import com.adgutech.adomusic.remote.extensions.logV
+import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.models.AlbumParcelable
 import com.adgutech.adomusic.remote.models.AlbumTrackParcelable
 import com.adgutech.adomusic.remote.models.ArtistAlbumParcelable
@@ -38,12 +39,16 @@ import com.adgutech.adomusic.remote.models.TrackParcelable
 import com.adgutech.adomusic.remote.models.TrackQueue
 import com.adgutech.adomusic.remote.api.Result
 import com.adgutech.adomusic.remote.api.Result.*
-import com.adgutech.adomusic.remote.api.spotify.SpotifyService
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MembershipKind
+import com.adgutech.adomusic.remote.api.spotify.Mutation
+import com.adgutech.adomusic.remote.api.spotify.MutationKind
+import com.adgutech.adomusic.remote.api.spotify.MutationQueue
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
+import com.adgutech.adomusic.remote.api.spotify.SpotifyError
 import com.adgutech.adomusic.remote.api.spotify.models.Album
 import com.adgutech.adomusic.remote.api.spotify.models.Artist
-import com.adgutech.adomusic.remote.api.spotify.models.Pager
 import com.adgutech.adomusic.remote.api.spotify.models.Playlist
-import com.adgutech.adomusic.remote.api.spotify.models.PlaylistTrack
 import com.adgutech.adomusic.remote.api.spotify.models.UserPrivate
 import com.adgutech.adomusic.remote.ui.fragments.artists.AlbumTypeFilter
 import com.adgutech.adomusic.remote.ui.fragments.home.LIKED_SONGS
@@ -52,10 +57,20 @@ import com.adgutech.adomusic.remote.ui.fragments.home.TOP_TRACKS
 import com.adgutech.adomusic.remote.ui.fragments.search.SearchFilter
 import com.adgutech.commons.extensions.showToast
 import com.google.gson.GsonBuilder
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers.Main
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.catch
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.last
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
 import okhttp3.RequestBody
-import retrofit.Callback
-import retrofit.RetrofitError
-import retrofit.client.Response
 
 /**
  * Created by Adolfo Gutierrez on 03/06/25.
@@ -74,7 +89,9 @@ interface Repository {
     suspend fun followPlaylist(name: String, playlistId: String)
     suspend fun getAlbumTracks(albumId: String): Result<List<AlbumTrackParcelable>>
     suspend fun getArtistAlbums(artistId: String): Result<List<ArtistAlbumParcelable>>
+    fun streamArtistAlbums(artistId: String): Flow<Result<List<ArtistAlbumParcelable>>>
     suspend fun getArtistTopTracks(artistId: String): Result<List<ArtistTrackParcelable>>
+    fun streamArtistTopTracks(artistId: String): Flow<Result<List<ArtistTrackParcelable>>>
     suspend fun getArtistAlbumsTypes(artistId: String, albumType: AlbumTypeFilter): Result<MutableList<Any>>
     suspend fun getFollowedArtists(): Result<List<ArtistParcelable>>
     suspend fun getLikedSongs(): Home
@@ -82,19 +99,33 @@ interface Repository {
     suspend fun getMyPlaylistsForDialog(): List<PlaylistParcelable>
     suspend fun getPlaylists(userId: String): List<PlaylistParcelable>
     suspend fun getMySavedAlbums(): Result<List<AlbumParcelable>>
-    suspend fun getMySavedTracks(): Result<List<TrackParcelable>>
+    suspend fun getMySavedTracks(scope: CoroutineScope): Result<PagedList<TrackParcelable>>
+    suspend fun getStoredFollowedArtists(): List<ArtistParcelable>?
+    suspend fun getStoredMyPlaylists(): List<PlaylistParcelable>?
+    suspend fun getStoredMySavedAlbums(): List<AlbumParcelable>?
+    suspend fun syncMySavedTracks()
+    fun appliedLibraryWrites(): Flow<MutationKind>
     suspend fun getMe(): Result<UserPrivate>
+    fun streamMe(): Flow<Result<UserPrivate>>
     suspend fun getPlaylist(userId: String, playlistId: String): Result<Playlist>
+    fun streamPlaylist(userId: String, playlistId: String): Flow<Result<Playlist>>
     suspend fun getPlaylistTracks(userId: String, playlistId: String): Result<List<PlaylistTrackParcelable>>
+    fun streamPlaylistTracks(userId: String, playlistId: String): Flow<Result<List<PlaylistTrackParcelable>>>
     suspend fun getTopArtists(): Result<List<ArtistParcelable>>
+    fun streamTopArtists(): Flow<Result<List<ArtistParcelable>>>
     suspend fun getTopTracks(): Result<List<TrackParcelable>>
+    fun streamTopTracks(): Flow<Result<List<TrackParcelable>>>
     suspend fun getAlbumDetails(albumId: String): Result<Album>
     suspend fun getArtistDetails(artistId: String): Result<Artist>
+    fun streamArtistDetails(artistId: String): Flow<Result<Artist>>
     suspend fun getTopArtistsHome(): Home
+    fun streamTopArtistsHome(): Flow<Home>
     suspend fun getTopTracksHome(): Home
+    fun streamTopTracksHome(): Flow<Home>
     suspend fun getSearch(query: String?, searchFilter: SearchFilter): Result<MutableList<Any>>
     suspend fun getUserQueue(): Result<List<TrackQueue>>
     suspend fun homeSections(): List<Home>
+    fun streamHomeSections(previous: List<Home> = emptyList()): Flow<List<Home>>
     suspend fun removeFromMySavedAlbums(albumId: String)
     suspend fun unfollowArtists(artistId: String)
     suspend fun unfollowPlaylist(name: String, playlistId: String)
@@ -103,7 +134,13 @@ interface Repository {
 
 class RealRepository(
     private val context: Context,
-    private val spotifyService: SpotifyService,
+    private val spotifyService: SpotifyCoroutineService,
+    private val mutationQueue: MutationQueue,
+    private val libraryMembership: LibraryMembership,
+    private val detailPrefetcher: DetailPrefetcher,
+    private val librarySync: LibrarySync,
+    private val resourceCache: ResourceCache,
+    private val entityCache: EntityCache,
     private val albumsRepository: AlbumRepository,
     private val artistRepository: ArtistRepository,
     private val realArtistRepository: RealArtistRepository,
@@ -119,56 +156,35 @@ class RealRepository(
         val options: MutableMap<String, Any> = HashMap()
         options["uris"] = uris
         options["position"] = 0
-        spotifyService.addTracksToPlaylist(
-            playlistId,
-            null,
-            options,
-            object : Callback<Pager<PlaylistTrack>> {
-                override fun success(t: Pager<PlaylistTrack>?, response: Response?) {
-                    context.showToast(
-                        context.getString(
-                            R.string.text_added_track_count_to_playlist, uris.size, name
-                        )
-                    )
-                    logD("Tracks added to $name playlist: ${response?.body}")
-                }
-
-                override fun failure(error: RetrofitError?) {
-                    logE("Error to add track to playlist: $error")
-                }
-            })
+        try {
+            val snapshotId = spotifyService.addTracksToPlaylist(playlistId, HashMap(), options)
+            invalidatePlaylist(playlistId)
+            showToast(
+                context.getString(R.string.text_added_track_count_to_playlist, uris.size, name)
+            )
+            logD("Tracks added to $name playlist: ${snapshotId?.snapshot_id}")
+        } catch (e: SpotifyError) {
+            logE("Error to add track to playlist: $e")
+        }
     }
 
     override suspend fun addToMySavedAlbums(albumId: String) {
-        spotifyService.addToMySavedAlbums(albumId, object : Callback<Any> {
-            override fun success(t: Any?, response: Response?) {
-                logD("Album added to library: ${response?.body}")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error adding album to library: $error")
-            }
-        })
+        libraryMembership.set(MembershipKind.SAVED_ALBUM, albumId, true)
+        mutationQueue.enqueue(Mutation(MutationKind.SAVE_ALBUM, albumId))
+        logD("Album queued for library: $albumId")
     }
 
     override suspend fun addToQueue(uri: String, name: String) {
-        spotifyService.addToQueue(uri, "", object : Callback<Any> {
-            override fun success(t: Any?, response: Response?) {
-                logD("$name added to queue: ${response?.body}")
-                context.showToast(
-                    String.format(context.getString(R.string.text_added_to_queue), name)
-                )
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error adding to queue: $error")
-            }
-        })
+        mutationQueue.enqueue(Mutation(MutationKind.ADD_TO_QUEUE, uri, ""))
+        logD("$name queued for the playback queue: $uri")
+        showToast(String.format(context.getString(R.string.text_added_to_queue), name))
     }
 
     override suspend fun containsMySavedAlbums(albumId: String): Result<Array<Boolean>> {
         return try {
-            Success(spotifyService.containsMySavedAlbums(albumId))
+            Success(arrayOf(libraryMembership.contains(MembershipKind.SAVED_ALBUM, albumId)))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             logE(e)
             Error(e)
@@ -178,21 +194,15 @@ class RealRepository(
     override suspend fun changePlaylistDetails(playlistId: String, name: String) {
         val option: MutableMap<String, Any> = HashMap()
         option["name"] = name
-        spotifyService.changePlaylistDetails(playlistId, option,
-            object : Callback<com.adgutech.adomusic.remote.api.spotify.models.Result> {
-                override fun success(
-                    t: com.adgutech.adomusic.remote.api.spotify.models.Result?,
-                    response: Response?
-                ) {
-                    val gson = GsonBuilder().setPrettyPrinting().create()
-                    val body = gson.toJson(option)
-                    logV("the $name playlist edited successfully: $body}")
-                }
-
-                override fun failure(error: RetrofitError?) {
-                    logE("Error to edit playlist: $error")
-                }
-            })
+        try {
+            spotifyService.changePlaylistDetails(playlistId, option)
+            invalidatePlaylist(playlistId)
+            val gson = GsonBuilder().setPrettyPrinting().create()
+            val body = gson.toJson(option)
+            logV("the $name playlist edited successfully: $body}")
+        } catch (e: SpotifyError) {
+            logE("Error to edit playlist: $e")
+        }
     }
 
     override suspend fun changePlaylistDetails(
@@ -203,26 +213,22 @@ class RealRepository(
         val option: MutableMap<String, Any> = HashMap()
         option["name"] = name
         option["description"] = description
-        spotifyService.changePlaylistDetails(playlistId, option,
-            object : Callback<com.adgutech.adomusic.remote.api.spotify.models.Result> {
-                override fun success(
-                    t: com.adgutech.adomusic.remote.api.spotify.models.Result?,
-                    response: Response?
-                ) {
-                    val gson = GsonBuilder().setPrettyPrinting().create()
-                    val body = gson.toJson(option)
-                    logV("the $name playlist edited successfully: $body")
-                }
-
-                override fun failure(error: RetrofitError?) {
-                    logE("Error to edit playlist: $error")
-                }
-            })
+        try {
+            spotifyService.changePlaylistDetails(playlistId, option)
+            invalidatePlaylist(playlistId)
+            val gson = GsonBuilder().setPrettyPrinting().create()
+            val body = gson.toJson(option)
+            logV("the $name playlist edited successfully: $body")
+        } catch (e: SpotifyError) {
+            logE("Error to edit playlist: $e")
+        }
     }
 
     override suspend fun isFollowingArtists(artistId: String): Result<Array<Boolean>> {
         return try {
-            Success(spotifyService.isFollowingArtists(artistId))
+            Success(arrayOf(libraryMembership.contains(MembershipKind.FOLLOWED_ARTIST, artistId)))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             logE(e)
             Error(e)
@@ -233,84 +239,67 @@ class RealRepository(
         val option: MutableMap<String, Any> = HashMap()
         option["name"] = name
         option["description"] = ""
-        spotifyService.createPlaylist(userId, option, object : Callback<Playlist> {
-            override fun success(t: Playlist?, response: Response?) {
-                context.showToast(String.format(context.getString(R.string.text_playlist_created), name))
-                val gson = GsonBuilder().setPrettyPrinting().create()
-                val body = gson.toJson(option)
-                logD("the $name playlist created successfully: $body")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to create playlist: $error")
-            }
-        })
+        try {
+            spotifyService.createPlaylist(userId, option)
+            showToast(String.format(context.getString(R.string.text_playlist_created), name))
+            val gson = GsonBuilder().setPrettyPrinting().create()
+            val body = gson.toJson(option)
+            logD("the $name playlist created successfully: $body")
+        } catch (e: SpotifyError) {
+            logE("Error to create playlist: $e")
+        }
     }
 
     override suspend fun followArtists(artistId: String) {
-        spotifyService.followArtists(artistId, object : Callback<Any> {
-            override fun success(t: Any?, response: Response?) {
-                logD("Artist followed: ${response?.body}")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to follow artist: $error")
-            }
-        })
+        libraryMembership.set(MembershipKind.FOLLOWED_ARTIST, artistId, true)
+        mutationQueue.enqueue(Mutation(MutationKind.FOLLOW_ARTIST, artistId))
+        logD("Artist follow queued: $artistId")
     }
 
     override suspend fun followPlaylist(name: String, playlistId: String) {
-        spotifyService.followPlaylist(
-            playlistId,
-            object : Callback<com.adgutech.adomusic.remote.api.spotify.models.Result> {
-                override fun success(
-                    t: com.adgutech.adomusic.remote.api.spotify.models.Result?,
-                    response: Response?
-                ) {
-                    context.showToast(
-                        String.format(
-                            context.getString(R.string.text_playlist_added_to_library),
-                            name
-                        )
-                    )
-                }
-
-                override fun failure(error: RetrofitError?) {
-                    logE("Error to add playlist to library: $error")
-                }
-            })
+        mutationQueue.enqueue(Mutation(MutationKind.FOLLOW_PLAYLIST, playlistId))
+        showToast(String.format(context.getString(R.string.text_playlist_added_to_library), name))
     }
 
     override suspend fun getAlbumTracks(albumId: String): Result<List<AlbumTrackParcelable>> {
         return try {
-            Success(albumsRepository.getAlbumTracks(albumId))
+            Success(
+                detailPrefetcher.takeAlbumTracks(albumId) ?: albumsRepository.getAlbumTracks(albumId)
+            )
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             Error(e)
         }
     }
 
     override suspend fun getArtistAlbums(artistId: String): Result<List<ArtistAlbumParcelable>> {
-        return try {
-            Success(artistRepository.getArtistAlbums(artistId))
-        } catch (e: Exception) {
-            Error(e)
-        }
+        return streamArtistAlbums(artistId).last()
     }
 
-    override suspend fun getArtistTopTracks(artistId: String): Result<List<ArtistTrackParcelable>> {
-        return try {
-            Success(artistRepository.getArtistTopTrack(artistId))
-        } catch (e: Exception) {
-            Error(e)
+    override fun streamArtistAlbums(artistId: String): Flow<Result<List<ArtistAlbumParcelable>>> =
+        resourceCache.stream(CacheResource.ARTIST, "$artistId/albums") {
+            artistRepository.getArtistAlbums(artistId)
         }
+
+    override suspend fun getArtistTopTracks(artistId: String): Result<List<ArtistTrackParcelable>> {
+        return streamArtistTopTracks(artistId).last()
     }
 
+    override fun streamArtistTopTracks(artistId: String): Flow<Result<List<ArtistTrackParcelable>>> =
+        resourceCache.stream(CacheResource.ARTIST, "$artistId/top-tracks") {
+            detailPrefetcher.takeArtistTopTracks(artistId)
+                ?: artistRepository.getArtistTopTrack(artistId)
+        }
+
     override suspend fun getArtistAlbumsTypes(
         artistId: String,
         albumType: AlbumTypeFilter
     ): Result<MutableList<Any>> {
         return try {
             Success(realArtistRepository.getArtistAlbumsTypes(artistId, albumType))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             Error(e)
         }
@@ -318,15 +307,26 @@ class RealRepository(
 
     override suspend fun getFollowedArtists(): Result<List<ArtistParcelable>> {
         return try {
-            Success(artistRepository.getArtistsWithSortOrder())
+            val artists = librarySync.followedArtists()
+            val ids = artists.mapNotNull { it.id }
+            libraryMembership.seed(MembershipKind.FOLLOWED_ARTIST, ids, complete = true)
+            Success(artistRepository.sortArtists(artists))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            Error(e)
+            storedOrError(LibraryCollection.FOLLOWED_ARTISTS, e, artistRepository::sortArtists)
         }
     }
 
+    override suspend fun getStoredFollowedArtists(): List<ArtistParcelable>? =
+        stored(LibraryCollection.FOLLOWED_ARTISTS)?.let(artistRepository::sortArtists)
+
     override suspend fun getLikedSongs(): Home {
         val tracks = try {
-            Success(trackRepository.getMySavedTracks().take(TOP_PLAYED_HOME_LIMIT))
+            val firstPage = trackRepository.savedTracks().load(null, TOP_PLAYED_HOME_LIMIT)
+            Success(firstPage.items)
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             logE(e)
             Error(e)
@@ -336,12 +336,17 @@ class RealRepository(
 
     override suspend fun getMyPlaylists(): Result<List<PlaylistParcelable>> {
         return try {
-            Success(playlistRepository.getPlaylistsWithSortOrder())
+            Success(playlistRepository.sortPlaylists(librarySync.playlists()))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            Error(e)
+            storedOrError(LibraryCollection.PLAYLISTS, e, playlistRepository::sortPlaylists)
         }
     }
 
+    override suspend fun getStoredMyPlaylists(): List<PlaylistParcelable>? =
+        stored(LibraryCollection.PLAYLISTS)?.let(playlistRepository::sortPlaylists)
+
     override suspend fun getMyPlaylistsForDialog(): List<PlaylistParcelable> {
         val playlistList = arrayListOf<PlaylistParcelable>()
         when (val result = getMyPlaylists()) {
@@ -359,103 +364,227 @@ class RealRepository(
 
     override suspend fun getMySavedAlbums(): Result<List<AlbumParcelable>> {
         return try {
-            Success(albumsRepository.getAlbumsWithSortOrder())
+            val albums = librarySync.savedAlbums()
+            val ids = albums.mapNotNull { it.id }
+            libraryMembership.seed(MembershipKind.SAVED_ALBUM, ids, complete = true)
+            Success(albumsRepository.sortAlbums(albums))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            Error(e)
+            storedOrError(LibraryCollection.SAVED_ALBUMS, e, albumsRepository::sortAlbums)
         }
     }
 
-    override suspend fun getMySavedTracks(): Result<List<TrackParcelable>> {
-        return try {
-            Success(trackRepository.getMySavedTracks())
+    override suspend fun getStoredMySavedAlbums(): List<AlbumParcelable>? =
+        stored(LibraryCollection.SAVED_ALBUMS)?.let(albumsRepository::sortAlbums)
+
+    /**
+     * Brings the stored saved tracks up to date, so the liked songs list opens from disk.
+     */
+    override suspend fun syncMySavedTracks() {
+        try {
+            val tracks = librarySync.savedTracks()
+            val ids = tracks.map { it.id }
+            libraryMembership.seed(MembershipKind.SAVED_TRACK, ids, complete = true)
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            Error(e)
+            logE(e)
         }
     }
 
-    override suspend fun getMe(): Result<UserPrivate> {
+    /**
+     * Kinds of the queued library writes as the API is done with them, after which the
+     * library lists they touch read differently.
+     */
+    override fun appliedLibraryWrites(): Flow<MutationKind> =
+        mutationQueue.applied.map { it.first().kind }
+
+    private suspend fun <T> stored(collection: LibraryCollection<T>): List<T>? {
         return try {
-            Success(userRepository.getMe())
+            librarySync.stored(collection)
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
-            Error(e)
+            logE(e)
+            null
         }
     }
 
-    override suspend fun getPlaylist(userId: String, playlistId: String): Result<Playlist> {
+    /**
+     * The stored copy of [collection] when the server could not be reached, [e] when there
+     * is none.
+     */
+    private suspend fun <T> storedOrError(
+        collection: LibraryCollection<T>,
+        e: Exception,
+        sort: (List<T>) -> List<T>
+    ): Result<List<T>> {
+        val stored = stored(collection) ?: return Error(e)
+        return Success(sort(stored))
+    }
+
+    /**
+     * Saved tracks as a [PagedList] loading in [scope], with the first page already loaded.
+     */
+    override suspend fun getMySavedTracks(
+        scope: CoroutineScope
+    ): Result<PagedList<TrackParcelable>> {
         return try {
-            Success(playlistRepository.getPlaylist(userId, playlistId))
+            // Once synced, the list reads from disk and works offline.
+            val source = if (librarySync.isSynced(LibraryCollection.SAVED_TRACKS)) {
+                librarySync.storedPages(LibraryCollection.SAVED_TRACKS)
+            } else {
+                trackRepository.savedTracks()
+            }
+            val seeding = object : PageSource<TrackParcelable> by source {
+                override suspend fun load(key: String?, limit: Int): Page<TrackParcelable> {
+                    val page = source.load(key, limit)
+                    libraryMembership.seed(MembershipKind.SAVED_TRACK, page.items.map { it.id })
+                    return page
+                }
+            }
+            val tracks = PagedList(seeding, scope, TrackParcelable.empty)
+            tracks.loadInitial()
+            Success(tracks)
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             Error(e)
         }
     }
 
+    override suspend fun getMe(): Result<UserPrivate> {
+        return streamMe().last()
+    }
+
+    override fun streamMe(): Flow<Result<UserPrivate>> =
+        resourceCache.stream(CacheResource.USER_PROFILE, "me") { userRepository.getMe() }
+
+    override suspend fun getPlaylist(userId: String, playlistId: String): Result<Playlist> {
+        return streamPlaylist(userId, playlistId).last()
+    }
+
+    override fun streamPlaylist(userId: String, playlistId: String): Flow<Result<Playlist>> =
+        resourceCache.stream(CacheResource.PLAYLIST, playlistId) {
+            detailPrefetcher.takePlaylist(playlistId)
+                ?: playlistRepository.getPlaylist(userId, playlistId)
+        }
+
     override suspend fun getPlaylistTracks(
         userId: String,
         playlistId: String
     ): Result<List<PlaylistTrackParcelable>> {
         return try {
-            val playlistTracks = playlistRepository.getPlaylistTracks(userId, playlistId)
+            val playlistTracks = detailPrefetcher.takePlaylistTracks(playlistId)
+                ?.takeIf { it.nextKey == null }?.items
+                ?: playlistRepository.getPlaylistTracks(userId, playlistId)
             Success(playlistTracks)
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             Error(e)
         }
     }
 
+    /**
+     * Like [getPlaylistTracks], emitting the tracks read so far while a long playlist loads.
+     */
+    override fun streamPlaylistTracks(
+        userId: String,
+        playlistId: String
+    ): Flow<Result<List<PlaylistTrackParcelable>>> = flow<Result<List<PlaylistTrackParcelable>>> {
+        val prefetched = detailPrefetcher.takePlaylistTracks(playlistId)
+        if (prefetched != null) {
+            emit(Success(prefetched.items))
+            if (prefetched.nextKey == null) return@flow
+        }
+        playlistRepository.streamPlaylistTracks(userId, playlistId).collect { emit(Success(it)) }
+    }.catch { e ->
+        if (e !is Exception || e is CancellationException) throw e
+        emit(Error(e))
+    }
+
     override suspend fun getTopArtists(): Result<List<ArtistParcelable>> {
-        return try {
-            Success(topPlayedRepository.getTopArtists())
-        } catch (e: Exception) {
-            Error(e)
+        return streamTopArtists().last()
+    }
+
+    override fun streamTopArtists(): Flow<Result<List<ArtistParcelable>>> {
+        val timeRange = context.preference.artistTimeRange
+        return resourceCache.stream(CacheResource.TOP_ITEMS, "artists/$timeRange") {
+            topPlayedRepository.getTopArtists()
         }
     }
 
     override suspend fun getTopTracks(): Result<List<TrackParcelable>> {
-        return try {
-            Success(topPlayedRepository.getTopTracks())
-        } catch (e: Exception) {
-            Error(e)
+        return streamTopTracks().last()
+    }
+
+    override fun streamTopTracks(): Flow<Result<List<TrackParcelable>>> {
+        val timeRange = context.preference.trackTimeRange
+        return resourceCache.stream(CacheResource.TOP_ITEMS, "tracks/$timeRange") {
+            topPlayedRepository.getTopTracks()
         }
     }
 
     override suspend fun getAlbumDetails(albumId: String): Result<Album> {
         return try {
-            Success(albumsRepository.getAlbum(albumId))
+            Success(detailPrefetcher.takeAlbum(albumId) ?: albumsRepository.getAlbum(albumId))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             Error(e)
         }
     }
 
     override suspend fun getArtistDetails(artistId: String): Result<Artist> {
-        return try {
-            Success(artistRepository.getArtist(artistId))
-        } catch (e: Exception) {
-            Error(e)
-        }
+        return streamArtistDetails(artistId).last()
     }
 
+    override fun streamArtistDetails(artistId: String): Flow<Result<Artist>> =
+        resourceCache.stream(CacheResource.ARTIST, artistId) {
+            detailPrefetcher.takeArtist(artistId) ?: artistRepository.getArtist(artistId)
+        }
+
     override suspend fun getTopArtistsHome(): Home {
-        val artists = try {
-            Success(topPlayedRepository.getTopArtists().take(TOP_PLAYED_HOME_LIMIT))
-        } catch (e: Exception) {
-            logE(e)
-            Error(e)
+        return streamTopArtistsHome().last()
+    }
+
+    /**
+     * The top artists the home screen shows, requested and cached apart from the full list.
+     */
+    override fun streamTopArtistsHome(): Flow<Home> {
+        val timeRange = context.preference.artistTimeRange
+        return resourceCache.stream(CacheResource.TOP_ITEMS, "artists/$timeRange/home") {
+            topPlayedRepository.getTopArtists(TOP_PLAYED_HOME_LIMIT)
+        }.map { result ->
+            if (result is Error) logE(result.error)
+            Home(result, TOP_ARTISTS, R.string.title_top_artists)
         }
-        return Home(artists, TOP_ARTISTS, R.string.title_top_artists)
     }
 
     override suspend fun getTopTracksHome(): Home {
-        val tracks = try {
-            Success(topPlayedRepository.getTopTracks().take(TOP_PLAYED_HOME_LIMIT))
-        } catch (e: Exception) {
-            logE(e)
-            Error(e)
+        return streamTopTracksHome().last()
+    }
+
+    /**
+     * The top tracks the home screen shows, requested and cached apart from the full list.
+     */
+    override fun streamTopTracksHome(): Flow<Home> {
+        val timeRange = context.preference.trackTimeRange
+        return resourceCache.stream(CacheResource.TOP_ITEMS, "tracks/$timeRange/home") {
+            topPlayedRepository.getTopTracks(TOP_PLAYED_HOME_LIMIT)
+        }.map { result ->
+            if (result is Error) logE(result.error)
+            Home(result, TOP_TRACKS, R.string.title_top_tracks)
         }
-        return Home(tracks, TOP_TRACKS, R.string.title_top_tracks)
     }
 
     override suspend fun getSearch(query: String?, searchFilter: SearchFilter): Result<MutableList<Any>> {
         return try {
             Success(realSearchRepository.searchAll(context, query, searchFilter))
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             Error(e)
         }
@@ -464,86 +593,95 @@ class RealRepository(
     override suspend fun getUserQueue(): Result<List<TrackQueue>> {
         return try {
             Success(playerRepository.getUserQueue())
+        } catch (e: CancellationException) {
+            throw e
         } catch (e: Exception) {
             Error(e)
         }
     }
 
     override suspend fun homeSections(): List<Home> {
-        val homeSections = mutableListOf<Home>()
-        val sections: List<Home> = listOf(
-            getLikedSongs(),
-            getTopArtistsHome(),
-            getTopTracksHome()
+        return streamHomeSections().last()
+    }
+
+    /**
+     * The home sections that have items, in their fixed order. The sections load concurrently
+     * and the list is emitted again each time one of them is read, so the slowest section
+     * doesn't hold back the others. Each section starts from its match in [previous], the
+     * list already on screen, and keeps it if the refresh fails, so reloading a populated
+     * home swaps sections in place instead of collapsing it to the fastest one.
+     */
+    override fun streamHomeSections(previous: List<Home>): Flow<List<Home>> = channelFlow {
+        val sections = listOf(
+            LIKED_SONGS to flow { emit(getLikedSongs()) },
+            TOP_ARTISTS to streamTopArtistsHome(),
+            TOP_TRACKS to streamTopTracksHome()
         )
-        for (section in sections) {
-            when (val result = section.arrayList) {
-                is Loading -> {}
-                is Success -> {
-                    if (result.data.isNotEmpty()) {
-                        homeSections.add(section)
+        val ready = Array(sections.size) { index ->
+            previous.firstOrNull { it.homeSection == sections[index].first }
+        }
+        val mutex = Mutex()
+        sections.forEachIndexed { index, (_, section) ->
+            launch {
+                section.collect { home ->
+                    mutex.withLock {
+                        if (home.arrayList !is Error || ready[index] == null) {
+                            ready[index] = home
+                        }
+                        send(ready.filterNotNull().filter(::hasItems))
                     }
                 }
-                is Error -> {}
             }
         }
-        return homeSections
     }
 
-    override suspend fun removeFromMySavedAlbums(albumId: String) {
-        spotifyService.removeFromMySavedAlbums(albumId, object : Callback<Any> {
-            override fun success(t: Any?, response: Response?) {
-                logD("Album removed from library: ${response?.body}")
-            }
+    private fun hasItems(section: Home): Boolean {
+        val result = section.arrayList
+        return result is Success && result.data.isNotEmpty()
+    }
 
-            override fun failure(error: RetrofitError?) {
-                logE("Error removing album from library: $error")
-            }
-        })
+    override suspend fun removeFromMySavedAlbums(albumId: String) {
+        libraryMembership.set(MembershipKind.SAVED_ALBUM, albumId, false)
+        mutationQueue.enqueue(Mutation(MutationKind.REMOVE_ALBUM, albumId))
+        logD("Album removal queued: $albumId")
     }
 
     override suspend fun unfollowArtists(artistId: String) {
-        spotifyService.unfollowArtists(artistId, object : Callback<Any> {
-            override fun success(t: Any?, response: Response?) {
-                logD("Artist unfollowed: ${response?.body}")
-            }
-
-            override fun failure(error: RetrofitError?) {
-                logE("Error to unfollow artist: $error")
-            }
-        })
+        libraryMembership.set(MembershipKind.FOLLOWED_ARTIST, artistId, false)
+        mutationQueue.enqueue(Mutation(MutationKind.UNFOLLOW_ARTIST, artistId))
+        logD("Artist unfollow queued: $artistId")
     }
 
     override suspend fun unfollowPlaylist(name: String, playlistId: String) {
-        spotifyService.unfollowPlaylist(playlistId,
-            object : Callback<com.adgutech.adomusic.remote.api.spotify.models.Result> {
-                override fun success(
-                    t: com.adgutech.adomusic.remote.api.spotify.models.Result?,
-                    response: Response?
-                ) {
-                    context.showToast(String.format(context.getString(R.string.text_you_unfollowed), name))
-                }
-
-                override fun failure(error: RetrofitError?) {
-                    logE("Error to unfollow playlist: $error")
-                }
-            })
+        mutationQueue.enqueue(Mutation(MutationKind.UNFOLLOW_PLAYLIST, playlistId))
+        showToast(String.format(context.getString(R.string.text_you_unfollowed), name))
     }
 
     override suspend fun uploadImageToPlaylist(playlistId: String, contentType: String, image: RequestBody) {
-        spotifyService.uploadImageToPlaylist(playlistId, contentType, image, object : Callback<Any> {
-            override fun success(t: Any?, response: Response?) {
-                logD("Image uploaded to playlist successfully. data: $contentType")
+        try {
+            spotifyService.uploadImageToPlaylist(playlistId, contentType, image)
+            invalidatePlaylist(playlistId)
+            logD("Image uploaded to playlist successfully. data: $contentType")
+        } catch (e: SpotifyError) {
+            when (e.retrofitError.response?.status) {
+                400 -> logE("400 Error upload image to playlist: $e")
+                401 -> logE("401 Error upload image to playlist: $e")
             }
+            logE("Error upload image to playlist: $e")
+        }
+    }
 
-            override fun failure(error: RetrofitError?) {
-                val response = error?.response!!
-                when (response.status) {
-                    400 -> logE("400 Error upload image to playlist: $error")
-                    401 -> logE("401 Error upload image to playlist: $error")
-                }
-                logE("Error upload image to playlist: $error")
-            }
-        })
+    /**
+     * Drops every copy of the playlist read before an edit, and any prefetch of it still in
+     * flight, so its screen loads the edited playlist.
+     */
+    private fun invalidatePlaylist(playlistId: String) {
+        detailPrefetcher.invalidate(DetailKind.PLAYLIST, playlistId)
+        resourceCache.invalidate(CacheResource.PLAYLIST, playlistId)
+        entityCache.remove(DetailKind.PLAYLIST, playlistId)
     }
-}
\ No newline at end of file
+
+    private suspend fun showToast(text: String) = withContext(Main) {
+        context.showToast(text)
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.api.Result
+import android.content.ComponentCallbacks2
+import com.adgutech.adomusic.remote.extensions.logE
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+
+/**
+ * Kinds of responses [ResourceCache] keeps, each with its own time to live.
+ */
+enum class CacheResource(val defaultTtlMillis: Long) {
+    USER_PROFILE(60 * 60_000L),
+    TOP_ITEMS(6 * 60 * 60_000L),
+    ARTIST(30 * 60_000L),
+    PLAYLIST(5 * 60_000L)
+}
+
+/**
+ * Stale-while-revalidate cache of repository results.
+ *
+ * [stream] emits a cached value at once. A value younger than its resource's time to live
+ * is taken as current and not requested again; an older one is revalidated right after it
+ * is emitted, and the fresh value is emitted only when it differs. When revalidation fails
+ * the stale value stands, and with nothing cached the failure is emitted as [Result.Error].
+ * Values are compared by their [ModelJson.Fingerprint], which is all that is kept of their
+ * JSON.
+ *
+ * Holds at most [maxEntries] values, dropping the least recently used, and fewer when
+ * [onTrimMemory] asks for memory back.
+ */
+class ResourceCache(
+    private val ttls: Map<CacheResource, Long> = emptyMap(),
+    private val maxEntries: Int = DEFAULT_MAX_ENTRIES,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private class Entry(val value: Any?, val fingerprint: ModelJson.Fingerprint, val storedAt: Long)
+
+    private val entries = object : LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>?): Boolean =
+            size > maxEntries
+    }
+
+    fun ttlOf(resource: CacheResource): Long = ttls[resource] ?: resource.defaultTtlMillis
+
+    fun <T> stream(resource: CacheResource, key: String, load: suspend () -> T): Flow<Result<T>> =
+        flow {
+            val cacheKey = keyOf(resource, key)
+            val cached = synchronized(entries) { entries[cacheKey] }
+            if (cached != null) {
+                @Suppress("UNCHECKED_CAST")
+                emit(Result.Success(cached.value as T))
+                if (clock() - cached.storedAt < ttlOf(resource)) return@flow
+            }
+            val fresh = try {
+                load()
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                if (cached == null) emit(Result.Error(e)) else logE(e)
+                return@flow
+            }
+            val fingerprint = ModelJson.fingerprint(fresh)
+            synchronized(entries) { entries[cacheKey] = Entry(fresh, fingerprint, clock()) }
+            if (cached == null || cached.fingerprint != fingerprint) {
+                emit(Result.Success(fresh))
+            }
+        }
+
+    /**
+     * Drops the value of [key], or every value of [resource] when [key] is null.
+     */
+    fun invalidate(resource: CacheResource, key: String? = null) {
+        synchronized(entries) {
+            if (key != null) {
+                entries.remove(keyOf(resource, key))
+            } else {
+                entries.keys.removeAll { it.startsWith("${resource.name}/") }
+            }
+        }
+    }
+
+    fun clear() {
+        synchronized(entries) { entries.clear() }
+    }
+
+    /**
+     * Called from `Application.onTrimMemory`, like [EntityCache.onTrimMemory]: everything
+     * goes in the background list or when memory is critical, half of the entries when the
+     * UI is hidden and a quarter while the device is running low.
+     */
+    @Suppress("DEPRECATION")
+    fun onTrimMemory(level: Int) {
+        when {
+            level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND -> clear()
+            level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN -> trimTo(maxEntries / 2)
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL -> clear()
+            level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW -> trimTo(maxEntries * 3 / 4)
+        }
+    }
+
+    private fun trimTo(count: Int) {
+        synchronized(entries) {
+            val iterator = entries.values.iterator()
+            while (entries.size > count && iterator.hasNext()) {
+                iterator.next()
+                iterator.remove()
+            }
+        }
+    }
+
+    private fun keyOf(resource: CacheResource, key: String) = "${resource.name}/$key"
+
+    companion object {
+        const val DEFAULT_MAX_ENTRIES = 100
+    }
+}
@@ -27,6 +27,7 @@ import com.adgutech.adomusic.remote.models.AlbumParcelable
 import com.adgutech.adomusic.remote.models.ArtistParcelable
 import com.adgutech.adomusic.remote.models.PlaylistParcelable
 import com.adgutech.adomusic.remote.models.TrackParcelable
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
 import com.adgutech.adomusic.remote.api.spotify.SpotifyService
 import com.adgutech.adomusic.remote.api.spotify.models.AlbumSimple
 import com.adgutech.adomusic.remote.api.spotify.models.PlaylistSimple
@@ -41,17 +42,17 @@ import com.adgutech.adomusic.remote.utils.Utils
  */
 
 interface SearchRepository {
-    fun getSearchAlbums(query: String): List<AlbumParcelable>
-    fun getSearchArtists(query: String): List<ArtistParcelable>
-    fun getSearchPlaylists(query: String): List<PlaylistParcelable>
-    fun getSearchTracks(query: String): List<TrackParcelable>
+    suspend fun getSearchAlbums(query: String): List<AlbumParcelable>
+    suspend fun getSearchArtists(query: String): List<ArtistParcelable>
+    suspend fun getSearchPlaylists(query: String): List<PlaylistParcelable>
+    suspend fun getSearchTracks(query: String): List<TrackParcelable>
 }
 
 class RealSearchRepository(
-    private val spotifyService: SpotifyService
+    private val spotifyService: SpotifyCoroutineService
 ) : SearchRepository {
 
-    override fun getSearchAlbums(query: String): List<AlbumParcelable> {
+    override suspend fun getSearchAlbums(query: String): List<AlbumParcelable> {
         val albumList = arrayListOf<AlbumParcelable>()
         val searchAlbums = spotifyService.searchAlbums(query, getSearchLimit())
         val albums = searchAlbums.albums.items
@@ -61,7 +62,7 @@ class RealSearchRepository(
         return albumList
     }
 
-    override fun getSearchArtists(query: String): List<ArtistParcelable> {
+    override suspend fun getSearchArtists(query: String): List<ArtistParcelable> {
         val artistList = arrayListOf<ArtistParcelable>()
         val searchArtists = spotifyService.searchArtists(query, getSearchLimit())
         val artists = searchArtists.artists.items
@@ -76,7 +77,7 @@ class RealSearchRepository(
         return artistList
     }
 
-    override fun getSearchPlaylists(query: String): List<PlaylistParcelable> {
+    override suspend fun getSearchPlaylists(query: String): List<PlaylistParcelable> {
         val playlistList = arrayListOf<PlaylistParcelable>()
         val searchPlaylists = spotifyService.searchPlaylists(query, getSearchLimit())
         val playlists = searchPlaylists.playlists.items
@@ -103,7 +104,7 @@ class RealSearchRepository(
         return playlistList
     }
 
-    override fun getSearchTracks(query: String): List<TrackParcelable> {
+    override suspend fun getSearchTracks(query: String): List<TrackParcelable> {
         val trackList = arrayListOf<TrackParcelable>()
         val searchTracks = spotifyService.searchTracks(query, getSearchLimit())
         val tracks = searchTracks.tracks.items
@@ -113,7 +114,7 @@ class RealSearchRepository(
         return trackList
     }
 
-    fun searchAll(
+    suspend fun searchAll(
         context: Context,
         query: String?,
         searchFilter: SearchFilter
@@ -24,6 +24,7 @@ import com.adgutech.adomusic.remote.TOP_20_PLAYED_LIMIT
 import com.adgutech.adomusic.remote.TOP_50_PLAYED_LIMIT
 import com.adgutech.adomusic.remote.models.ArtistParcelable
 import com.adgutech.adomusic.remote.models.TrackParcelable
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
 import com.adgutech.adomusic.remote.api.spotify.SpotifyService
 import com.adgutech.adomusic.remote.api.spotify.models.Track
 import com.adgutech.adomusic.remote.preferences.Preferences
@@ -34,20 +35,20 @@ import com.adgutech.adomusic.remote.utils.Utils
  */
 
 interface TopPlayedRepository {
-    fun getTopArtists(): List<ArtistParcelable>
-    fun getTopTracks(): List<TrackParcelable>
+    suspend fun getTopArtists(limit: Int = TOP_20_PLAYED_LIMIT): List<ArtistParcelable>
+    suspend fun getTopTracks(limit: Int = TOP_50_PLAYED_LIMIT): List<TrackParcelable>
 }
 
 class RealTopPlayedRepository(
     private val preference: Preferences,
-    private val spotifyService: SpotifyService
+    private val spotifyService: SpotifyCoroutineService
 ) : TopPlayedRepository {
 
-    override fun getTopArtists(): List<ArtistParcelable> {
+    override suspend fun getTopArtists(limit: Int): List<ArtistParcelable> {
         val artistList = arrayListOf<ArtistParcelable>()
         val topArtists = spotifyService
-            .getTopArtists(getTopPlayedBody(TOP_20_PLAYED_LIMIT, preference.artistTimeRange))
-        val artists = topArtists!!.items
+            .getTopArtists(getTopPlayedBody(limit, preference.artistTimeRange))
+        val artists = topArtists.items
         for (artist in artists) {
             val id = artist.id
             val name = artist.name
@@ -59,10 +60,10 @@ class RealTopPlayedRepository(
         return artistList
     }
 
-    override fun getTopTracks(): List<TrackParcelable> {
+    override suspend fun getTopTracks(limit: Int): List<TrackParcelable> {
         val topTracksList = arrayListOf<TrackParcelable>()
         val topTracks = spotifyService
-            .getTopTracks(getTopPlayedBody(TOP_50_PLAYED_LIMIT, preference.trackTimeRange))
+            .getTopTracks(getTopPlayedBody(limit, preference.trackTimeRange))
         val tracks = topTracks.items
         for (track in tracks) {
             topTracksList.add(getTracksFromTopTracksImpl(track))
@@ -21,67 +21,25 @@
 package com.adgutech.adomusic.remote.repositories
 
 import com.adgutech.adomusic.remote.models.TrackParcelable
-import com.adgutech.adomusic.remote.api.spotify.SpotifyService
-import com.adgutech.adomusic.remote.api.spotify.models.SavedTrack
-import com.adgutech.adomusic.remote.utils.Utils
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
 
 /**
  * Created by Adolfo Gutierrez on 03/13/25.
  */
 
 interface TrackRepository {
-    fun getMySavedTracks(): List<TrackParcelable>
+    fun savedTracks(): PageSource<TrackParcelable>
+    suspend fun getMySavedTracks(): List<TrackParcelable>
 }
 
 class RealTrackRepository(
-    private val spotifyService: SpotifyService
+    private val spotifyService: SpotifyCoroutineService
 ) : TrackRepository {
 
-    override fun getMySavedTracks(): List<TrackParcelable> {
-        val trackList = arrayListOf<TrackParcelable>()
-        val options: MutableMap<String, Any> = HashMap()
-        options[SpotifyService.LIMIT] = 50
-        val mySavedTrack = spotifyService.getMySavedTracks(options)
-        val tracks = mySavedTrack.items
-        for (track in tracks) {
-            trackList.add(getTracksFromMySavedTracksImpl(track))
-        }
-        return trackList
-    }
+    override fun savedTracks(): PageSource<TrackParcelable> =
+        OffsetPageSource({ spotifyService.getMySavedTrackParcelables(it) }) { it }
 
-    private fun getTracksFromMySavedTracksImpl(track: SavedTrack): TrackParcelable {
-        //val addedAt = track.added_at
-        val album = track.track.album.name
-        val albumId = track.track.album.id
-        val artist = track.track.artists[0].name
-        val artistId = track.track.artists[0].id
-        val artists = track.track.artists
-        val discNumber = track.track.disc_number
-        val duration = track.track.duration_ms
-        val id = track.track.id
-        val imageUrl = Utils.getImageUrl(track.track.album.images)
-        val isExplicit = track.track.explicit
-        val link = track.track.album.external_urls[SpotifyService.SPOTIFY_URL]!!
-        val name = track.track.name
-        val trackNumber = track.track.track_number
-        val type = track.track.type
-        val uri = track.track.uri
-        return TrackParcelable(
-            album,
-            albumId,
-            artist,
-            artistId,
-            artists,
-            discNumber,
-            duration,
-            id,
-            imageUrl,
-            isExplicit,
-            link,
-            name,
-            trackNumber,
-            type,
-            uri
-        )
+    override suspend fun getMySavedTracks(): List<TrackParcelable> {
+        return savedTracks().loadAll()
     }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@
 
 package com.adgutech.adomusic.remote.repositories
 
+import com.adgutech.adomusic.remote.api.spotify.SpotifyCoroutineService
 import com.adgutech.adomusic.remote.api.spotify.SpotifyService
 import com.adgutech.adomusic.remote.api.spotify.models.UserPrivate
 import com.adgutech.adomusic.remote.api.spotify.models.UserPublic
@@ -29,17 +30,17 @@ import com.adgutech.adomusic.remote.api.spotify.models.UserPublic
  */
 
 interface UserRepository {
-    fun getMe(): UserPrivate
-    fun getUser(userId: String): UserPublic
+    suspend fun getMe(): UserPrivate
+    suspend fun getUser(userId: String): UserPublic
 }
 
-class RealUserRepository(private val spotifyService: SpotifyService) : UserRepository {
+class RealUserRepository(private val spotifyService: SpotifyCoroutineService) : UserRepository {
 
-    override fun getMe(): UserPrivate {
-        return spotifyService.me
+    override suspend fun getMe(): UserPrivate {
+        return spotifyService.getMe()
     }
 
-    override fun getUser(userId: String): UserPublic {
+    override suspend fun getUser(userId: String): UserPublic {
         return spotifyService.getUser(userId)
     }
 }
\ No newline at end of file
@@ -37,6 +37,10 @@ import com.adgutech.adomusic.remote.CLIENT_ID
 import com.adgutech.adomusic.remote.R
 import com.adgutech.adomusic.remote.REDIRECT_URI
 import com.adgutech.adomusic.remote.REQUEST_CODE
+import com.adgutech.adomusic.remote.api.spotify.LibraryMembership
+import com.adgutech.adomusic.remote.api.spotify.MutationQueue
+import com.adgutech.adomusic.remote.api.spotify.SpotifyAuthorizationRenewer
+import com.adgutech.adomusic.remote.api.spotify.TokenManager
 import com.adgutech.adomusic.remote.extensions.checkForInternet
 import com.adgutech.adomusic.remote.extensions.logD
 import com.adgutech.adomusic.remote.extensions.logE
@@ -44,7 +48,10 @@ import com.adgutech.adomusic.remote.extensions.logW
 import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.helpers.EqualizerHelper
 import com.adgutech.adomusic.remote.preferences.Preferences.Companion.EQUALIZER_ENABLED
-import com.adgutech.adomusic.remote.scopesList
+import com.adgutech.adomusic.remote.repositories.DetailPrefetcher
+import com.adgutech.adomusic.remote.repositories.EntityCache
+import com.adgutech.adomusic.remote.repositories.LibrarySync
+import com.adgutech.adomusic.remote.repositories.ResourceCache
 import com.adgutech.adomusic.remote.service.notification.AppRemoteNotification
 import com.adgutech.adomusic.remote.service.notification.AppRemoteNotificationImpl24
 import com.adgutech.adomusic.remote.volume.AudioVolumeObserver
@@ -69,13 +76,12 @@ import com.spotify.protocol.types.Capabilities
 import com.spotify.protocol.types.PlayerState
 import com.spotify.protocol.types.Track
 import com.spotify.sdk.android.auth.AuthorizationClient
-import com.spotify.sdk.android.auth.AuthorizationRequest
-import com.spotify.sdk.android.auth.AuthorizationResponse
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers.Main
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.launch
+import org.koin.android.ext.android.inject
 
 class MusicService : Service(), SharedPreferences.OnSharedPreferenceChangeListener,
     OnAudioVolumeChangedListener {
@@ -100,6 +106,13 @@ class MusicService : Service(), SharedPreferences.OnSharedPreferenceChangeListen
     private var handler: Handler = Handler(Looper.getMainLooper())
 
     private val serviceScope = CoroutineScope(Job() + Main)
+    private val tokenManager: TokenManager by inject()
+    private val librarySync: LibrarySync by inject()
+    private val resourceCache: ResourceCache by inject()
+    private val entityCache: EntityCache by inject()
+    private val libraryMembership: LibraryMembership by inject()
+    private val detailPrefetcher: DetailPrefetcher by inject()
+    private val mutationQueue: MutationQueue by inject()
 
     //Notification
     private var appRemoteNotification: AppRemoteNotification? = null
@@ -229,24 +242,20 @@ class MusicService : Service(), SharedPreferences.OnSharedPreferenceChangeListen
                         logW(throwable.message!!)
                     }
                 } else if (throwable is NotLoggedInException) {
-                    preference.isUserLogged = false
-                    preference.accessToken = "access_token"
+                    clearSession()
                     logW("NotLoggedInException")
                 } else if (throwable is AuthenticationFailedException) {
-                    preference.isUserLogged = false
-                    preference.accessToken = "access_token"
+                    clearSession()
                     logW("AuthenticationFailedException")
                 } else if (throwable is UserNotAuthorizedException) {
-                    preference.isUserLogged = false
-                    preference.accessToken = "access_token"
+                    clearSession()
                     logW("UserNotAuthorizedException")
                 } else if (throwable is UnsupportedFeatureVersionException) {
                     logW(throwable.message!!)
                 } else if (throwable is OfflineModeException) {
                     logW("OfflineModeException")
                 } else if (throwable is CouldNotFindSpotifyApp) {
-                    preference.isUserLogged = false
-                    preference.accessToken = "access_token"
+                    clearSession()
                     logW("CouldNotFindSpotifyApp")
                 } else if (throwable is SpotifyDisconnectedException) {
                     this@MusicService.onServiceDisconnected()
@@ -259,6 +268,22 @@ class MusicService : Service(), SharedPreferences.OnSharedPreferenceChangeListen
         })
     }
 
+    /**
+     * Signs the user out and drops everything read with their token, and the writes not yet
+     * sent with it, so the next account starts from an empty cache.
+     */
+    private fun clearSession() {
+        preference.isUserLogged = false
+        preference.accessToken = "access_token"
+        tokenManager.clear()
+        librarySync.clear()
+        resourceCache.clear()
+        entityCache.clear()
+        detailPrefetcher.clear()
+        libraryMembership.invalidate()
+        mutationQueue.clear()
+    }
+
     private fun onServiceConnected() {
         notifyChange(CONNECT_CHANGED)
         onSubscribedToPlayerState {}
@@ -279,11 +304,7 @@ class MusicService : Service(), SharedPreferences.OnSharedPreferenceChangeListen
     }
 
     fun onAuthorizationSpotify(activity: Activity) {
-        val builder = AuthorizationRequest
-            .Builder(CLIENT_ID, AuthorizationResponse.Type.TOKEN, REDIRECT_URI)
-        builder.setShowDialog(true)
-        builder.setScopes(scopesList)
-        val request = builder.build()
+        val request = SpotifyAuthorizationRenewer.createRequest(true)
         AuthorizationClient.openLoginActivity(activity, REQUEST_CODE, request)
     }
 
@@ -33,8 +33,8 @@ import com.adgutech.adomusic.remote.extensions.materialDialog
 import com.adgutech.adomusic.remote.helpers.AppRemoteHelper
 import com.adgutech.adomusic.remote.interfaces.OnSpotifyServiceEventListener
 import com.adgutech.adomusic.remote.api.spotify.SpotifyApi
+import com.adgutech.adomusic.remote.api.spotify.SpotifyAuthorizationRenewer
 import com.adgutech.adomusic.remote.extensions.hasSpotifyInstalled
-import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.ui.fragments.LibraryViewModel
 import com.adgutech.commons.extensions.disableScreenRotation
 import com.adgutech.commons.extensions.enableScreenRotation
@@ -44,7 +44,6 @@ import com.spotify.sdk.android.auth.AuthorizationClient
 import com.spotify.sdk.android.auth.AuthorizationResponse.Type.*
 import org.koin.android.ext.android.inject
 import org.koin.androidx.viewmodel.ext.android.viewModel
-import java.util.concurrent.TimeUnit
 
 /**
  * Created by Adolfo Gutiérrez on 02/18/2025.
@@ -58,6 +57,7 @@ abstract class AbsSpotifyServiceActivity : AbsBaseActivity(), OnSpotifyServiceEv
 
     protected val libraryViewModel by viewModel<LibraryViewModel>()
     private val spotifyApi: SpotifyApi by inject()
+    private val authorizationRenewer: SpotifyAuthorizationRenewer by inject()
     private var serviceToken: AppRemoteHelper.ServiceToken? = null
     private val spotifyServiceEventListeners = ArrayList<OnSpotifyServiceEventListener>()
 
@@ -83,16 +83,17 @@ abstract class AbsSpotifyServiceActivity : AbsBaseActivity(), OnSpotifyServiceEv
         // Check if result comes from the correct activity.
         if (requestCode == REQUEST_CODE) {
             val response = AuthorizationClient.getResponse(resultCode, data)
+            // Also completes a silent renewal waiting for this result.
+            val token = authorizationRenewer.onAuthorizationResponse(response)
             when (response.type) {
                 // Response was successful and contains auth token.
                 TOKEN -> {
-                    spotifyApi.setAccessToken(response.accessToken)
-                    libraryViewModel.loadLibraryContent()
-
-                    // Calculate and store the expiration time.
-                    preference.accessTokenExpirationTime =
-                        System.currentTimeMillis() + TimeUnit.SECONDS
-                            .toMillis(response.expiresIn.toLong())
+                    val hadValidToken = spotifyApi.tokenManager.hasValidToken()
+                    spotifyApi.tokenManager.setToken(token!!)
+                    // A renewal ahead of expiry leaves the loaded library untouched.
+                    if (!hadValidToken) {
+                        libraryViewModel.loadLibraryContent()
+                    }
                 }
                 //Auth flow returned an error.
                 ERROR -> logE("Auth error: ${response.error}")
@@ -102,6 +103,16 @@ abstract class AbsSpotifyServiceActivity : AbsBaseActivity(), OnSpotifyServiceEv
         }
     }
 
+    override fun onResume() {
+        super.onResume()
+        authorizationRenewer.attach(this)
+    }
+
+    override fun onPause() {
+        super.onPause()
+        authorizationRenewer.detach(this)
+    }
+
     override fun onDestroy() {
         super.onDestroy()
         AppRemoteHelper.unbindFromService(serviceToken)
@@ -109,8 +120,7 @@ abstract class AbsSpotifyServiceActivity : AbsBaseActivity(), OnSpotifyServiceEv
 
     override fun onServiceConnected() {
         if (AppRemoteHelper.musicService != null) {
-            if (System.currentTimeMillis() >= preference.accessTokenExpirationTime
-                || preference.accessToken == "access_token") {
+            if (!spotifyApi.tokenManager.hasValidToken()) {
                 AppRemoteHelper.musicService!!.onAuthorizationSpotify(this)
             }
             AppRemoteHelper.musicService!!.onSubscribedToPlayerState {
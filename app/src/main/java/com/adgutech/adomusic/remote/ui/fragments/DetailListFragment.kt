@@ -130,7 +130,7 @@ class DetailListFragment : AbsMainActivityFragment(R.layout.fragment_list_detail
         libraryViewModel.getMySavedTracks().observe(viewLifecycleOwner) { result ->
             when (result) {
                 is Result.Success -> {
-                    shuffleAdapter.swapDataSet(result.data)
+                    shuffleAdapter.submitPagedList(result.data)
                 }
 
                 is Result.Error -> {
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.adomusic.remote.ui.fragments
+
+import androidx.lifecycle.MutableLiveData
+import com.adgutech.adomusic.remote.api.Result
+import com.adgutech.adomusic.remote.api.spotify.MutationKind
+import com.adgutech.adomusic.remote.api.spotify.MutationKind.*
+import com.adgutech.adomusic.remote.api.spotify.RequestPriority
+import com.adgutech.adomusic.remote.repositories.ModelJson
+import com.adgutech.adomusic.remote.ui.fragments.ReloadType.*
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.job
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+
+/**
+ * Decides when each list of the library screens is read again, and updates a list only when
+ * what was read differs from what it shows.
+ *
+ * A list is refreshed when asked to ([refresh]: an edit made here, a new sort order, a reload
+ * the user asked for), when a queued library write it shows is applied ([onLibraryWrite]),
+ * and when a screen showing it comes back more than [maxAgeMillis] after its last read
+ * ([refreshIfStale]). A refresh replaces a running one of the same list.
+ *
+ * [Result.Loading] is only posted while a list shows nothing, and a failure only while it shows
+ * nothing or another failure, so a loaded list never flashes back to a spinner. Lists are
+ * compared by [ModelJson.fingerprint].
+ *
+ * Refreshes nobody waits for, on staleness or an applied write, are sent with
+ * [RequestPriority.BACKGROUND]. State is kept on the thread of [scope], which must be the
+ * main thread; reads run on [io].
+ */
+class LibraryRefresher(
+    private val scope: CoroutineScope,
+    private val io: CoroutineDispatcher = Dispatchers.IO,
+    private val maxAgeMillis: Long = DEFAULT_MAX_AGE_MILLIS,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+
+    private inner class Entry<T>(
+        val target: MutableLiveData<Result<T>>,
+        val stored: suspend () -> T?,
+        val fingerprint: (T) -> Any?,
+        val load: () -> Flow<Result<T>>
+    ) {
+        var job: Job? = null
+        var shown: ModelJson.Fingerprint? = null
+        var loadedAt = 0L
+
+        suspend fun refresh(priority: RequestPriority) {
+            job?.cancel()
+            job = currentCoroutineContext().job
+            if (shown == null) {
+                if (target.value !is Result.Loading) target.value = Result.Loading
+                withContext(io) { stored() }?.let { show(it) }
+            }
+            load().flowOn(io + priority).collect { result ->
+                when (result) {
+                    is Result.Success -> {
+                        loadedAt = clock()
+                        show(result.data)
+                    }
+                    is Result.Error -> if (shown == null) target.value = result
+                    is Result.Loading -> {}
+                }
+            }
+        }
+
+        fun clear() {
+            job?.cancel()
+            shown = null
+            loadedAt = 0L
+            target.value = Result.Loading
+        }
+
+        private suspend fun show(data: T) {
+            val read = withContext(io) { ModelJson.fingerprint(fingerprint(data)) }
+            if (read == shown) return
+            shown = read
+            target.value = Result.Success(data)
+        }
+    }
+
+    private val entries = HashMap<ReloadType, Entry<*>>()
+
+    /**
+     * Makes [target] the list of [type], read with [load]. Before a list shows anything, what
+     * [stored] returns is shown while [load] runs. Two reads are the same when their
+     * [fingerprint]s serialize to the same JSON.
+     */
+    fun <T> register(
+        type: ReloadType,
+        target: MutableLiveData<Result<T>>,
+        stored: suspend () -> T? = { null },
+        fingerprint: (T) -> Any? = { it },
+        load: suspend () -> Result<T>
+    ) {
+        registerStream(type, target, stored, fingerprint) { flow { emit(load()) } }
+    }
+
+    /**
+     * Like [register], for a list read in steps: each result [stream] emits is shown as it
+     * comes, compared the same way.
+     */
+    fun <T> registerStream(
+        type: ReloadType,
+        target: MutableLiveData<Result<T>>,
+        stored: suspend () -> T? = { null },
+        fingerprint: (T) -> Any? = { it },
+        stream: () -> Flow<Result<T>>
+    ) {
+        entries[type] = Entry(target, stored, fingerprint, stream)
+    }
+
+    /**
+     * Reads the list of [type] again now. Can be called from any thread.
+     */
+    fun refresh(type: ReloadType): Job = refresh(type, RequestPriority.VISIBLE)
+
+    private fun refresh(type: ReloadType, priority: RequestPriority): Job = scope.launch {
+        entries.getValue(type).refresh(priority)
+    }
+
+    /**
+     * Reads the list of [type] again unless it is being read or was read less than
+     * [maxAgeMillis] ago.
+     */
+    fun refreshIfStale(type: ReloadType) {
+        scope.launch {
+            val entry = entries.getValue(type)
+            if (entry.job?.isActive == true || clock() - entry.loadedAt < maxAgeMillis) {
+                return@launch
+            }
+            entry.refresh(RequestPriority.BACKGROUND)
+        }
+    }
+
+    /**
+     * Refreshes the list a queued library write of [kind] changed, once the API applied it.
+     */
+    fun onLibraryWrite(kind: MutationKind) {
+        val type = when (kind) {
+            SAVE_ALBUM, REMOVE_ALBUM -> ALBUMS
+            FOLLOW_ARTIST, UNFOLLOW_ARTIST -> ARTISTS
+            FOLLOW_PLAYLIST, UNFOLLOW_PLAYLIST -> PLAYLISTS
+            // Liked songs are a home section.
+            SAVE_TRACK, REMOVE_TRACK -> HOME_SECTIONS
+            ADD_TO_QUEUE, PAUSE, RESUME -> return
+        }
+        if (type in entries) refresh(type, RequestPriority.BACKGROUND)
+    }
+
+    /**
+     * Stops reading the list of [type] and empties it, e.g. once the user signed out.
+     */
+    fun clear(type: ReloadType) {
+        scope.launch { entries.getValue(type).clear() }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_AGE_MILLIS = 5 * 60 * 1000L
+    }
+}
@@ -22,8 +22,6 @@ package com.adgutech.adomusic.remote.ui.fragments
 
 import android.animation.ValueAnimator
 import android.content.Context
-import android.os.Handler
-import android.os.Looper
 import androidx.core.animation.doOnEnd
 import androidx.lifecycle.*
 import com.adgutech.adomusic.remote.extensions.logD
@@ -35,16 +33,19 @@ import com.adgutech.adomusic.remote.models.PlaylistParcelable
 import com.adgutech.adomusic.remote.models.TrackParcelable
 import com.adgutech.adomusic.remote.models.TrackQueue
 import com.adgutech.adomusic.remote.api.Result
+import com.adgutech.adomusic.remote.api.spotify.RequestPriority
 import com.adgutech.adomusic.remote.api.spotify.SpotifyApi
 import com.adgutech.adomusic.remote.api.spotify.models.UserPrivate
 import com.adgutech.adomusic.remote.preferences.Preferences
+import com.adgutech.adomusic.remote.repositories.PagedList
 import com.adgutech.adomusic.remote.repositories.RealRepository
 import com.adgutech.adomusic.remote.ui.fragments.ReloadType.*
 import com.adgutech.adomusic.remote.ui.fragments.search.SearchFilter
 import com.adgutech.commons.utils.DensityUtil
 import kotlinx.coroutines.Dispatchers.IO
-import kotlinx.coroutines.async
-import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.launch
 
 /**
@@ -60,16 +61,55 @@ class LibraryViewModel(
     private val _paletteColor = MutableLiveData<Int>()
     private val albums = MutableLiveData<Result<List<AlbumParcelable>>>()
     private val artists = MutableLiveData<Result<List<ArtistParcelable>>>()
-    private val home = MutableLiveData<List<Home>>()
+    private val homeSections = MutableLiveData<Result<List<Home>>>()
+    private val home = MediatorLiveData<List<Home>>().apply {
+        addSource(homeSections) { if (it is Result.Success) value = it.data }
+    }
     private val playlists = MutableLiveData<Result<List<PlaylistParcelable>>>()
     private val searchResults = MutableLiveData<Result<List<Any>>>()
     private val userQueue = MutableLiveData<Result<List<TrackQueue>>>()
     private val fabMargin = MutableLiveData(0)
     val paletteColor: LiveData<Int> = _paletteColor
 
-    private val handler: Handler = Handler(Looper.getMainLooper())
+    // A newer search supersedes the running one, which is cancelled so its requests are
+    // aborted instead of finishing for nothing.
+    private var searchJob: Job? = null
+
+    private val refresher = LibraryRefresher(viewModelScope).apply {
+        register(
+            ALBUMS,
+            albums,
+            stored = { realRepository.getStoredMySavedAlbums() }
+        ) { realRepository.getMySavedAlbums() }
+        register(
+            ARTISTS,
+            artists,
+            stored = { realRepository.getStoredFollowedArtists() }
+        ) { realRepository.getFollowedArtists() }
+        register(
+            PLAYLISTS,
+            playlists,
+            stored = { realRepository.getStoredMyPlaylists() }
+        ) { realRepository.getMyPlaylists() }
+        // Sections are compared by their items, a failed one as having none, since the
+        // exception it holds doesn't serialize. The stream is seeded with what is on screen
+        // so a refresh replaces sections in place.
+        registerStream(
+            HOME_SECTIONS,
+            homeSections,
+            fingerprint = { sections ->
+                sections.map { it.homeSection to (it.arrayList as? Result.Success)?.data }
+            }
+        ) {
+            val shown = (homeSections.value as? Result.Success)?.data.orEmpty()
+            realRepository.streamHomeSections(shown).map { Result.Success(it) }
+        }
+    }
 
     init {
+        viewModelScope.launch {
+            realRepository.appliedLibraryWrites().collect { refresher.onLibraryWrite(it) }
+        }
         if (preference.accessToken == spotifyApi.accessToken) {
             loadLibraryContent()
         }
@@ -88,13 +128,10 @@ class LibraryViewModel(
     }
 
     fun loadLibraryContent() {
-        viewModelScope.launch(IO) {
-            fetchHomeSections()
-            awaitAll(
-                async { fetchArtists() },
-                async { fetchAlbums() },
-                async { fetchPlaylists() }
-            )
+        // The library tabs show their stored copies without waiting for the home sections.
+        ReloadType.entries.forEach { refresher.refresh(it) }
+        viewModelScope.launch(IO + RequestPriority.BACKGROUND) {
+            realRepository.syncMySavedTracks()
         }
     }
 
@@ -134,26 +171,30 @@ class LibraryViewModel(
 
     fun getMe(): LiveData<Result<UserPrivate>> = liveData(IO) {
         emit(Result.Loading)
-        emit(realRepository.getMe())
+        realRepository.streamMe().collect { emit(it) }
     }
 
     fun getPlaylists(): LiveData<Result<List<PlaylistParcelable>>> = playlists
 
     fun getAlbums(): LiveData<Result<List<AlbumParcelable>>> = albums
 
-    fun getMySavedTracks(): LiveData<Result<List<TrackParcelable>>> = liveData(IO) {
-        emit(Result.Loading)
-        emit(realRepository.getMySavedTracks())
-    }
+    /**
+     * Saved tracks, loaded page by page as their rows are bound.
+     */
+    fun getMySavedTracks(): LiveData<Result<PagedList<TrackParcelable>>> =
+        liveData(viewModelScope.coroutineContext) {
+            emit(Result.Loading)
+            emit(realRepository.getMySavedTracks(viewModelScope))
+        }
 
     fun getTopArtists(): LiveData<Result<List<ArtistParcelable>>> = liveData(IO) {
         emit(Result.Loading)
-        emit(realRepository.getTopArtists())
+        realRepository.streamTopArtists().collect { emit(it) }
     }
 
     fun getTopTracks(): LiveData<Result<List<TrackParcelable>>> = liveData(IO) {
         emit(Result.Loading)
-        emit(realRepository.getTopTracks())
+        realRepository.streamTopTracks().collect { emit(it) }
     }
 
     fun getUserQueue(): MutableLiveData<Result<List<TrackQueue>>> = userQueue
@@ -164,43 +205,6 @@ class LibraryViewModel(
 
     fun getFabMargin(): LiveData<Int> = fabMargin
 
-    private suspend fun fetchAlbums() {
-        albums.postValue(Result.Loading)
-        albums.postValue(realRepository.getMySavedAlbums())
-        handler.postDelayed({
-            viewModelScope.launch(IO) {
-                albums.postValue(Result.Loading)
-                albums.postValue(realRepository.getMySavedAlbums())
-            }
-        }, 300)
-    }
-
-    private suspend fun fetchArtists() {
-        artists.postValue(Result.Loading)
-        artists.postValue(realRepository.getFollowedArtists())
-        handler.postDelayed({
-            viewModelScope.launch(IO) {
-                artists.postValue(Result.Loading)
-                artists.postValue(realRepository.getFollowedArtists())
-            }
-        }, 300)
-    }
-
-    private suspend fun fetchHomeSections() {
-        home.postValue(realRepository.homeSections())
-    }
-
-    private suspend fun fetchPlaylists() {
-        playlists.postValue(Result.Loading)
-        playlists.postValue(realRepository.getMyPlaylists())
-        handler.postDelayed({
-            viewModelScope.launch(IO) {
-                playlists.postValue(Result.Loading)
-                playlists.postValue(realRepository.getMyPlaylists())
-            }
-        }, 300)
-    }
-
      fun fetchUserQueue() {
         viewModelScope.launch(IO) {
             userQueue.postValue(Result.Loading)
@@ -224,24 +228,34 @@ class LibraryViewModel(
         }
     }
 
-    fun search(query: String?, searchFilter: SearchFilter) =
-        viewModelScope.launch(IO) {
+    fun search(query: String?, searchFilter: SearchFilter): Job {
+        searchJob?.cancel()
+        return viewModelScope.launch(IO) {
             searchResults.postValue(Result.Loading)
-            searchResults.postValue(realRepository.getSearch(query, searchFilter))
-        }
+            val result = realRepository.getSearch(query, searchFilter)
+            ensureActive()
+            searchResults.postValue(result)
+        }.also { searchJob = it }
+    }
 
     fun clearSearchResults() {
         searchResults.value = Result.Loading
     }
 
-    fun forceReload(type: ReloadType) = viewModelScope.launch(IO) {
-        when (type) {
-            ALBUMS -> fetchAlbums()
-            ARTISTS -> fetchArtists()
-            HOME_SECTIONS -> fetchHomeSections()
-            PLAYLISTS -> fetchPlaylists()
-        }
-    }
+    /**
+     * Reads the list of [type] again now, after an edit made here or a new sort order.
+     */
+    fun forceReload(type: ReloadType): Job = refresher.refresh(type)
+
+    /**
+     * Reads the list of [type] again if it was last read a while ago, for screens coming back.
+     */
+    fun refreshIfStale(type: ReloadType) = refresher.refreshIfStale(type)
+
+    /**
+     * Empties the list of [type], e.g. once the user signed out.
+     */
+    fun clearLibrary(type: ReloadType) = refresher.clear(type)
 
     fun updateColor(newColor: Int) {
         _paletteColor.postValue(newColor)
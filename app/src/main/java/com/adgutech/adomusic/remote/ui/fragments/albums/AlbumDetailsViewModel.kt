@@ -20,8 +20,6 @@
 
 package com.adgutech.adomusic.remote.ui.fragments.albums
 
-import android.os.Handler
-import android.os.Looper
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import androidx.lifecycle.ViewModel
@@ -32,6 +30,7 @@ import com.adgutech.adomusic.remote.models.AlbumTrackParcelable
 import com.adgutech.adomusic.remote.models.ArtistAlbumParcelable
 import com.adgutech.adomusic.remote.api.Result
 import com.adgutech.adomusic.remote.api.Result.Loading
+import com.adgutech.adomusic.remote.api.Result.Success
 import com.adgutech.adomusic.remote.api.spotify.models.Album
 import com.adgutech.adomusic.remote.api.spotify.models.Artist
 import com.adgutech.adomusic.remote.repositories.RealRepository
@@ -45,30 +44,31 @@ class AlbumDetailsViewModel(
 
     private val checkAlbumSaved = MutableLiveData<Result<Array<Boolean>>>()
 
-    private val handler: Handler = Handler(Looper.getMainLooper())
+    // Child of viewModelScope, so leaving the screen aborts loads still on the network.
+    private val loadContext get() = viewModelScope.coroutineContext + IO
 
     init {
         fetchCheckAlbumSaved()
     }
 
+    /**
+     * Reads whether the album is saved, posting it only when it changed. Saves and removals
+     * made here are reflected as soon as they are queued, so one read is enough.
+     */
     private fun fetchCheckAlbumSaved() {
         viewModelScope.launch(IO) {
             albumId?.let {
-                checkAlbumSaved.postValue(Loading)
-                checkAlbumSaved.postValue(realRepository.containsMySavedAlbums(it))
+                val shown = checkAlbumSaved.value
+                if (shown == null) checkAlbumSaved.postValue(Loading)
+                val result = realRepository.containsMySavedAlbums(it)
+                val unchanged = result is Success && shown is Success &&
+                        result.data.contentEquals(shown.data)
+                if (!unchanged) checkAlbumSaved.postValue(result)
             }
         }
-        handler.postDelayed({
-            viewModelScope.launch(IO) {
-                albumId?.let {
-                    checkAlbumSaved.postValue(Loading)
-                    checkAlbumSaved.postValue(realRepository.containsMySavedAlbums(it))
-                }
-            }
-        }, 300)
     }
 
-    fun getAlbumDetails(): LiveData<Result<Album>> = liveData(IO) {
+    fun getAlbumDetails(): LiveData<Result<Album>> = liveData(loadContext) {
         emit(Loading)
         val album = realRepository.getAlbumDetails(albumId!!)
         emit(album)
@@ -76,19 +76,19 @@ class AlbumDetailsViewModel(
 
     fun checkAlbumSaved(): MutableLiveData<Result<Array<Boolean>>> = checkAlbumSaved
 
-    fun getAlbumTracks(): LiveData<Result<List<AlbumTrackParcelable>>> = liveData(IO) {
+    fun getAlbumTracks(): LiveData<Result<List<AlbumTrackParcelable>>> = liveData(loadContext) {
         emit(Loading)
         val tracks = realRepository.getAlbumTracks(albumId!!)
         emit(tracks)
     }
 
-    fun getArtistAlbums(artistId: String): LiveData<Result<List<ArtistAlbumParcelable>>> = liveData(IO) {
+    fun getArtistAlbums(artistId: String): LiveData<Result<List<ArtistAlbumParcelable>>> = liveData(loadContext) {
         emit(Loading)
         val albums = realRepository.getArtistAlbums(artistId)
         emit(albums)
     }
 
-    fun getArtistDetails(artistId: String): LiveData<Result<Artist>> = liveData(IO) {
+    fun getArtistDetails(artistId: String): LiveData<Result<Artist>> = liveData(loadContext) {
         emit(Loading)
         val artist = realRepository.getArtistDetails(artistId)
         emit(artist)
@@ -39,11 +39,14 @@ import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.helpers.SortOrder
 import com.adgutech.adomusic.remote.api.Result.*
 import com.adgutech.adomusic.remote.preferences.Preferences.Companion.USER_LOGGED
+import com.adgutech.adomusic.remote.repositories.DetailKind
+import com.adgutech.adomusic.remote.repositories.DetailPrefetcher
 import com.adgutech.adomusic.remote.ui.fragments.ReloadType
 import com.adgutech.adomusic.remote.ui.fragments.bases.AbsSortOrderFragment
 import com.adgutech.commons.extensions.gridCount
 import com.adgutech.commons.extensions.showCircularProgress
 import com.google.android.material.transition.MaterialSharedAxis
+import org.koin.android.ext.android.inject
 
 /**
  * Created by Adolfo Gutierrez on 03/18/25.
@@ -56,6 +59,8 @@ class AlbumsFragment : AbsSortOrderFragment<AlbumAdapter, GridLayoutManager>(),
         val TAG: String = AlbumsFragment::class.java.simpleName
     }
 
+    private val detailPrefetcher: DetailPrefetcher by inject()
+
     override val titleRes: Int
         get() = R.string.title_albums
 
@@ -102,7 +107,7 @@ class AlbumsFragment : AbsSortOrderFragment<AlbumAdapter, GridLayoutManager>(),
 
     override fun onResume() {
         super.onResume()
-        libraryViewModel.forceReload(ReloadType.ALBUMS)
+        libraryViewModel.refreshIfStale(ReloadType.ALBUMS)
     }
 
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, key: String?) {
@@ -110,7 +115,7 @@ class AlbumsFragment : AbsSortOrderFragment<AlbumAdapter, GridLayoutManager>(),
         when (key) {
             USER_LOGGED -> {
                 if (!preference.isUserLogged) {
-                    libraryViewModel.forceReload(ReloadType.ALBUMS)
+                    libraryViewModel.clearLibrary(ReloadType.ALBUMS)
                     adapter?.swapDataSet(listOf())
                 }
             }
@@ -119,7 +124,7 @@ class AlbumsFragment : AbsSortOrderFragment<AlbumAdapter, GridLayoutManager>(),
 
     override fun onServiceConnected() {
         super.onServiceConnected()
-        libraryViewModel.forceReload(ReloadType.ALBUMS)
+        libraryViewModel.refreshIfStale(ReloadType.ALBUMS)
     }
 
     override fun createAdapter(): AlbumAdapter {
@@ -127,6 +132,16 @@ class AlbumsFragment : AbsSortOrderFragment<AlbumAdapter, GridLayoutManager>(),
         return AlbumAdapter(requireActivity(), dataSet, this)
     }
 
+    override fun onVisibleRangeChanged(first: Int, last: Int) {
+        val albums = adapter?.dataSet ?: return
+        detailPrefetcher.prefetchRows(
+            DetailKind.ALBUM,
+            first,
+            last,
+            albums.size
+        ) { albums.getOrNull(it)?.id }
+    }
+
     override fun createLayoutManager(): GridLayoutManager {
         return GridLayoutManager(
             requireContext(),
@@ -59,7 +59,7 @@ class ArtistDetailsViewModel(
         viewModelScope.launch(IO) {
             artistId?.let {
                 artistDetails.postValue(Loading)
-                artistDetails.postValue(realRepository.getArtistDetails(it))
+                realRepository.streamArtistDetails(it).collect { result -> artistDetails.postValue(result) }
             }
         }
     }
@@ -77,7 +77,7 @@ class ArtistDetailsViewModel(
         viewModelScope.launch(IO) {
             artistId?.let {
                 artistTopTracks.postValue(Loading)
-                artistTopTracks.postValue(realRepository.getArtistTopTracks(it))
+                realRepository.streamArtistTopTracks(it).collect { result -> artistTopTracks.postValue(result) }
             }
         }
     }
@@ -86,7 +86,7 @@ class ArtistDetailsViewModel(
         viewModelScope.launch(IO) {
             artistId?.let {
                 artistAlbums.postValue(Loading)
-                artistAlbums.postValue(realRepository.getArtistAlbums(it))
+                realRepository.streamArtistAlbums(it).collect { result -> artistAlbums.postValue(result) }
             }
         }
     }
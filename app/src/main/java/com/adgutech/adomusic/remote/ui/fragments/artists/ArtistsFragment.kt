@@ -39,10 +39,13 @@ import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.helpers.SortOrder
 import com.adgutech.adomusic.remote.api.Result.*
 import com.adgutech.adomusic.remote.preferences.Preferences.Companion.USER_LOGGED
+import com.adgutech.adomusic.remote.repositories.DetailKind
+import com.adgutech.adomusic.remote.repositories.DetailPrefetcher
 import com.adgutech.adomusic.remote.ui.fragments.ReloadType
 import com.adgutech.adomusic.remote.ui.fragments.bases.AbsSortOrderFragment
 import com.adgutech.commons.extensions.showCircularProgress
 import com.google.android.material.transition.MaterialSharedAxis
+import org.koin.android.ext.android.inject
 
 /**
  * Created by Adolfo Gutierrez on 03/18/25.
@@ -55,6 +58,8 @@ class ArtistsFragment : AbsSortOrderFragment<ArtistAdapter, LinearLayoutManager>
         val TAG: String = ArtistsFragment::class.java.simpleName
     }
 
+    private val detailPrefetcher: DetailPrefetcher by inject()
+
     override val titleRes: Int
         get() = R.string.title_artists
 
@@ -103,7 +108,7 @@ class ArtistsFragment : AbsSortOrderFragment<ArtistAdapter, LinearLayoutManager>
 
     override fun onResume() {
         super.onResume()
-        libraryViewModel.forceReload(ReloadType.ARTISTS)
+        libraryViewModel.refreshIfStale(ReloadType.ARTISTS)
     }
 
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, key: String?) {
@@ -111,7 +116,7 @@ class ArtistsFragment : AbsSortOrderFragment<ArtistAdapter, LinearLayoutManager>
         when (key) {
             USER_LOGGED -> {
                 if (!preference.isUserLogged) {
-                    libraryViewModel.forceReload(ReloadType.ARTISTS)
+                    libraryViewModel.clearLibrary(ReloadType.ARTISTS)
                     adapter?.swapDataSet(listOf())
                 }
             }
@@ -120,7 +125,7 @@ class ArtistsFragment : AbsSortOrderFragment<ArtistAdapter, LinearLayoutManager>
 
     override fun onServiceConnected() {
         super.onServiceConnected()
-        libraryViewModel.forceReload(ReloadType.ARTISTS)
+        libraryViewModel.refreshIfStale(ReloadType.ARTISTS)
     }
 
     override fun createAdapter(): ArtistAdapter {
@@ -128,6 +133,16 @@ class ArtistsFragment : AbsSortOrderFragment<ArtistAdapter, LinearLayoutManager>
         return ArtistAdapter(requireActivity(), dataSet, this)
     }
 
+    override fun onVisibleRangeChanged(first: Int, last: Int) {
+        val artists = adapter?.dataSet ?: return
+        detailPrefetcher.prefetchRows(
+            DetailKind.ARTIST,
+            first,
+            last,
+            artists.size
+        ) { artists.getOrNull(it)?.id }
+    }
+
     override fun createLayoutManager(): LinearLayoutManager {
         return LinearLayoutManager(requireContext(), LinearLayoutManager.VERTICAL, false)
     }
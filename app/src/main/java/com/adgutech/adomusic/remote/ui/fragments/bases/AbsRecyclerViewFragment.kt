@@ -32,6 +32,7 @@ import androidx.core.view.doOnPreDraw
 import androidx.core.view.isVisible
 import androidx.core.view.updateLayoutParams
 import androidx.navigation.fragment.findNavController
+import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import code.name.monkey.appthemehelper.common.ATHToolbarActivity
 import code.name.monkey.appthemehelper.util.ToolbarContentTintHelper
@@ -203,9 +204,28 @@ abstract class AbsRecyclerViewFragment<A : RecyclerView.Adapter<*>, LM : Recycle
             layoutManager = this@AbsRecyclerViewFragment.layoutManager
             adapter = this@AbsRecyclerViewFragment.adapter
             create(this)
+            addOnScrollListener(object : RecyclerView.OnScrollListener() {
+                override fun onScrollStateChanged(recyclerView: RecyclerView, newState: Int) {
+                    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                        dispatchVisibleRange()
+                    }
+                }
+            })
         }
     }
 
+    /**
+     * Reports the rows on screen once a scroll settles or the data set changes; a fling
+     * reports only where it stops.
+     */
+    private fun dispatchVisibleRange() {
+        val layoutManager = _binding?.recyclerView?.layoutManager as? LinearLayoutManager ?: return
+        val first = layoutManager.findFirstVisibleItemPosition()
+        val last = layoutManager.findLastVisibleItemPosition()
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return
+        onVisibleRangeChanged(first, last)
+    }
+
     private fun setupToolbar() {
         val appName = resources.getString(titleRes)
         binding.appBarLayout.title = appName
@@ -230,6 +250,7 @@ abstract class AbsRecyclerViewFragment<A : RecyclerView.Adapter<*>, LM : Recycle
             override fun onChanged() {
                 super.onChanged()
                 checkIsEmpty()
+                _binding?.recyclerView?.post { dispatchVisibleRange() }
             }
         })
     }
@@ -255,6 +276,11 @@ abstract class AbsRecyclerViewFragment<A : RecyclerView.Adapter<*>, LM : Recycle
 
     open fun onCreatePlaylistClicked() {}
 
+    /**
+     * Rows from [first] to [last] are on screen.
+     */
+    protected open fun onVisibleRangeChanged(first: Int, last: Int) {}
+
     override fun onDestroyView() {
         super.onDestroyView()
         preference.unregisterOnSharedPreferenceChangedListener(this)
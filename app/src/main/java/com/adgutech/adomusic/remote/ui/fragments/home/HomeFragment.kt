@@ -150,7 +150,7 @@ class HomeFragment : AbsMainActivityFragment(R.layout.fragment_home), IScrollHel
         preference.registerOnSharedPreferenceChangedListener(this)
         checkForMargins()
         checkUserLogged()
-        libraryViewModel.forceReload(ReloadType.HOME_SECTIONS)
+        libraryViewModel.refreshIfStale(ReloadType.HOME_SECTIONS)
         exitTransition = null
     }
 
@@ -204,7 +204,7 @@ class HomeFragment : AbsMainActivityFragment(R.layout.fragment_home), IScrollHel
     }
 
     override fun onPlayerStateChanged() {
-        libraryViewModel.forceReload(ReloadType.HOME_SECTIONS)
+        libraryViewModel.refreshIfStale(ReloadType.HOME_SECTIONS)
         checkUserLogged()
     }
 
@@ -26,10 +26,12 @@ import androidx.lifecycle.viewModelScope
 import com.adgutech.adomusic.remote.interfaces.OnSpotifyServiceEventListener
 import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
 import com.adgutech.adomusic.remote.api.Result
+import com.adgutech.adomusic.remote.api.Result.Success
 import com.adgutech.adomusic.remote.api.spotify.models.Playlist
 import com.adgutech.adomusic.remote.repositories.RealRepository
 import com.adgutech.adomusic.remote.ui.fragments.bases.AbsMainActivityFragment
 import kotlinx.coroutines.Dispatchers.IO
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 import okhttp3.RequestBody
 
@@ -41,6 +43,11 @@ class PlaylistDetailsViewModel(
     private val playlistDetails = MutableLiveData<Result<Playlist>>()
     private val playlistTracks = MutableLiveData<Result<List<PlaylistTrackParcelable>>>()
 
+    // A newer read supersedes the running one, so an older, slower stream can't post a
+    // shorter list after the complete one.
+    private var detailsJob: Job? = null
+    private var tracksJob: Job? = null
+
     init {
         fetchPlaylistDetails()
         fetchPlaylistTracks()
@@ -57,22 +64,28 @@ class PlaylistDetailsViewModel(
     }
 
     fun fetchPlaylistDetails() {
-        viewModelScope.launch(IO) {
-            playlistDetails.postValue(
-                realRepository.getPlaylist(
-                    AbsMainActivityFragment.userId ?: "", playlistId ?: ""
-                )
-            )
+        detailsJob?.cancel()
+        detailsJob = viewModelScope.launch(IO) {
+            realRepository.streamPlaylist(
+                AbsMainActivityFragment.userId ?: "", playlistId ?: ""
+            ).collect { result -> playlistDetails.postValue(result) }
         }
     }
 
     private fun fetchPlaylistTracks() {
-        viewModelScope.launch(IO) {
-            playlistTracks.postValue(
-                realRepository.getPlaylistTracks(
-                    AbsMainActivityFragment.userId ?: "", playlistId ?: ""
-                )
-            )
+        tracksJob?.cancel()
+        tracksJob = viewModelScope.launch(IO) {
+            // A long playlist shows its first pages while the rest are still loading.
+            realRepository.streamPlaylistTracks(
+                AbsMainActivityFragment.userId ?: "", playlistId ?: ""
+            ).collect { result ->
+                // An unchanged playlist comes back as the same list; don't rebind every row.
+                val current = playlistTracks.value
+                if (current is Success && result is Success && current.data === result.data) {
+                    return@collect
+                }
+                playlistTracks.postValue(result)
+            }
         }
     }
 
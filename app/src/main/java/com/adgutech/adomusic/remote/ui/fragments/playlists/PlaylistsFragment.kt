@@ -40,11 +40,14 @@ import com.adgutech.adomusic.remote.extensions.preference
 import com.adgutech.adomusic.remote.helpers.SortOrder
 import com.adgutech.adomusic.remote.api.Result.*
 import com.adgutech.adomusic.remote.preferences.Preferences.Companion.USER_LOGGED
+import com.adgutech.adomusic.remote.repositories.DetailKind
+import com.adgutech.adomusic.remote.repositories.DetailPrefetcher
 import com.adgutech.adomusic.remote.ui.dialogs.CreatePlaylistDialog
 import com.adgutech.adomusic.remote.ui.fragments.ReloadType
 import com.adgutech.adomusic.remote.ui.fragments.bases.AbsSortOrderFragment
 import com.adgutech.commons.extensions.showCircularProgress
 import com.google.android.material.transition.MaterialSharedAxis
+import org.koin.android.ext.android.inject
 
 /**
  * Created by Adolfo Gutierrez on 03/18/25.
@@ -57,6 +60,8 @@ class PlaylistsFragment : AbsSortOrderFragment<PlaylistAdapter, LinearLayoutMana
         val TAG: String = PlaylistsFragment::class.java.simpleName
     }
 
+    private val detailPrefetcher: DetailPrefetcher by inject()
+
     override val titleRes: Int
         get() = R.string.title_playlists
 
@@ -105,7 +110,7 @@ class PlaylistsFragment : AbsSortOrderFragment<PlaylistAdapter, LinearLayoutMana
 
     override fun onResume() {
         super.onResume()
-        libraryViewModel.forceReload(ReloadType.PLAYLISTS)
+        libraryViewModel.refreshIfStale(ReloadType.PLAYLISTS)
     }
 
     override fun onSharedPreferenceChanged(sharedPreferences: SharedPreferences?, key: String?) {
@@ -113,7 +118,7 @@ class PlaylistsFragment : AbsSortOrderFragment<PlaylistAdapter, LinearLayoutMana
         when (key) {
             USER_LOGGED -> {
                 if (!preference.isUserLogged) {
-                    libraryViewModel.forceReload(ReloadType.PLAYLISTS)
+                    libraryViewModel.clearLibrary(ReloadType.PLAYLISTS)
                     adapter?.swapDataSet(listOf())
                 }
             }
@@ -122,7 +127,7 @@ class PlaylistsFragment : AbsSortOrderFragment<PlaylistAdapter, LinearLayoutMana
 
     override fun onServiceConnected() {
         super.onServiceConnected()
-        libraryViewModel.forceReload(ReloadType.PLAYLISTS)
+        libraryViewModel.refreshIfStale(ReloadType.PLAYLISTS)
     }
 
     override fun createAdapter(): PlaylistAdapter {
@@ -130,6 +135,17 @@ class PlaylistsFragment : AbsSortOrderFragment<PlaylistAdapter, LinearLayoutMana
         return PlaylistAdapter(requireActivity(), dataSet, this)
     }
 
+    override fun onVisibleRangeChanged(first: Int, last: Int) {
+        val playlists = adapter?.dataSet ?: return
+        detailPrefetcher.prefetchRows(
+            DetailKind.PLAYLIST,
+            first,
+            last,
+            playlists.size,
+            userId ?: ""
+        ) { playlists.getOrNull(it)?.id }
+    }
+
     override fun createLayoutManager(): LinearLayoutManager {
         return LinearLayoutManager(requireContext(), GridLayoutManager.VERTICAL, false)
     }
@@ -0,0 +1,72 @@
+package android.util;
+
+/**
+ * Stands in for the framework's Log in local unit tests, where android.jar only has stubs,
+ * so code under test can log without every other framework call defaulting quietly.
+ */
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private Log() {
+    }
+
+    public static int v(String tag, String msg) {
+        return println(VERBOSE, tag, msg);
+    }
+
+    public static int v(String tag, String msg, Throwable tr) {
+        return println(VERBOSE, tag, msg + '\n' + tr);
+    }
+
+    public static int d(String tag, String msg) {
+        return println(DEBUG, tag, msg);
+    }
+
+    public static int d(String tag, String msg, Throwable tr) {
+        return println(DEBUG, tag, msg + '\n' + tr);
+    }
+
+    public static int i(String tag, String msg) {
+        return println(INFO, tag, msg);
+    }
+
+    public static int i(String tag, String msg, Throwable tr) {
+        return println(INFO, tag, msg + '\n' + tr);
+    }
+
+    public static int w(String tag, String msg) {
+        return println(WARN, tag, msg);
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return println(WARN, tag, msg + '\n' + tr);
+    }
+
+    public static int w(String tag, Throwable tr) {
+        return println(WARN, tag, String.valueOf(tr));
+    }
+
+    public static int e(String tag, String msg) {
+        return println(ERROR, tag, msg);
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return println(ERROR, tag, msg + '\n' + tr);
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return true;
+    }
+
+    public static int println(int priority, String tag, String msg) {
+        String line = priority + "/" + tag + ": " + msg;
+        System.out.println(line);
+        return line.length();
+    }
+}
@@ -0,0 +1,583 @@
+package com.adgutech.adomusic.remote.api.spotify
+
+import com.google.gson.stream.JsonWriter
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.OutputStreamWriter
+import java.net.InetSocketAddress
+import java.net.URLDecoder
+import java.util.Random
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A stand-in for the Spotify Web API on localhost, serving a generated library.
+ *
+ * Payloads carry the same fields, nesting and rough size as the real ones, and are generated
+ * from the item index on every request, so a 10,000 track library costs no memory.
+ * [Faults] adds latency, 429 responses with Retry-After and 5xx responses.
+ *
+ * Point [SpotifyApi] at [endpoint].
+ */
+class FakeSpotifyServer(
+    private val library: Library = Library(),
+    private val faults: Faults = Faults(),
+    seed: Long = 1L
+) : Closeable {
+
+    /**
+     * Size of the generated library.
+     */
+    data class Library(
+        val savedTracks: Int = 10_000,
+        val savedAlbums: Int = 1_000,
+        val followedArtists: Int = 500,
+        val playlists: Int = 2_000,
+        val tracksPerPlaylist: Int = 100
+    )
+
+    /**
+     * Injected faults. Rates are the share of requests, from 0.0 to 1.0.
+     */
+    data class Faults(
+        val latencyMillis: Long = 0L,
+        val latencyJitterMillis: Long = 0L,
+        val rateLimitRate: Double = 0.0,
+        val retryAfterSeconds: Int = 1,
+        val serverErrorRate: Double = 0.0
+    )
+
+    private val random = Random(seed)
+    private val server: HttpServer = HttpServer.create(InetSocketAddress("127.0.0.1", 0), 0)
+    private val executor: ExecutorService = Executors.newCachedThreadPool()
+    private val snapshotVersions = ConcurrentHashMap<Int, Int>()
+
+    private val requests = AtomicLong()
+    private val bytes = AtomicLong()
+    private val rateLimited = AtomicLong()
+    private val serverErrors = AtomicLong()
+
+    val endpoint: String get() = "http://127.0.0.1:${server.address.port}/v1"
+
+    /**
+     * Requests answered, faults included.
+     */
+    val requestCount: Long get() = requests.get()
+
+    /**
+     * Response body bytes sent.
+     */
+    val bytesSent: Long get() = bytes.get()
+
+    val rateLimitedCount: Long get() = rateLimited.get()
+
+    val serverErrorCount: Long get() = serverErrors.get()
+
+    init {
+        server.executor = executor
+        server.createContext("/v1/") { exchange ->
+            try {
+                handle(exchange)
+            } finally {
+                exchange.close()
+            }
+        }
+    }
+
+    fun start(): FakeSpotifyServer {
+        server.start()
+        return this
+    }
+
+    override fun close() {
+        server.stop(0)
+        executor.shutdownNow()
+    }
+
+    fun resetCounters() {
+        requests.set(0)
+        bytes.set(0)
+        rateLimited.set(0)
+        serverErrors.set(0)
+    }
+
+    /**
+     * Gives the playlist at [index] a new snapshot id, as an edit on another device would.
+     */
+    fun touchPlaylist(index: Int) {
+        snapshotVersions.merge(index, 1) { old, _ -> old + 1 }
+    }
+
+    private fun handle(exchange: HttpExchange) {
+        requests.incrementAndGet()
+        delay()
+        when (nextFault()) {
+            Fault.RATE_LIMITED -> {
+                rateLimited.incrementAndGet()
+                exchange.responseHeaders.add("Retry-After", faults.retryAfterSeconds.toString())
+                send(exchange, 429, error(429, "API rate limit exceeded"))
+                return
+            }
+            Fault.SERVER_ERROR -> {
+                serverErrors.incrementAndGet()
+                send(exchange, 503, error(503, "Service unavailable"))
+                return
+            }
+            null -> Unit
+        }
+        if (exchange.requestMethod != "GET") {
+            send(exchange, 200, ByteArray(0))
+            return
+        }
+        val path = exchange.requestURI.path.removePrefix("/v1").trimEnd('/').split('/').drop(1)
+        val query = parseQuery(exchange.requestURI.rawQuery)
+        val body = route(path, query)
+        if (body == null) {
+            send(exchange, 404, error(404, "Not found."))
+        } else {
+            send(exchange, 200, body)
+        }
+    }
+
+    private fun route(path: List<String>, query: Map<String, String>): ByteArray? {
+        val offset = query["offset"]?.toIntOrNull() ?: 0
+        val limit = query["limit"]?.toIntOrNull() ?: 20
+        return when {
+            path == listOf("me") -> json { writeUser(this, USER_ID) }
+            path == listOf("me", "tracks") -> pager("/me/tracks", library.savedTracks, offset, limit) {
+                writeSavedTrack(this, it)
+            }
+            path == listOf("me", "albums") -> pager("/me/albums", library.savedAlbums, offset, limit) {
+                writeSavedAlbum(this, it)
+            }
+            path == listOf("me", "playlists") ->
+                pager("/me/playlists", library.playlists, offset, limit) { writePlaylist(this, it) }
+            path == listOf("me", "following") && query["type"] == "artist" ->
+                followedArtists(query["after"], limit)
+            path.size == 3 && path[2] == "contains" -> contains(path[0], path[1], query)
+            path.size == 2 && path[0] == "playlists" -> playlist(path[1], query)
+            path.size == 4 && path[0] == "users" && path[2] == "playlists" -> playlist(path[3], query)
+            path.size == 3 && path[0] == "playlists" && path[2] == "tracks" ->
+                playlistTracks(path[1], offset, limit)
+            path.size == 5 && path[0] == "users" && path[4] == "tracks" ->
+                playlistTracks(path[3], offset, limit)
+            path.size == 1 && path[0] in setOf("tracks", "albums", "artists") ->
+                several(path[0], query["ids"].orEmpty())
+            else -> null
+        }
+    }
+
+    private fun contains(first: String, second: String, query: Map<String, String>): ByteArray? {
+        if (first != "me" || second !in setOf("tracks", "albums", "following")) return null
+        val ids = query["ids"].orEmpty().split(',').filter { it.isNotEmpty() }
+        // Even indexes are in the library, so both answers show up in a batch.
+        return json {
+            beginArray()
+            ids.forEach { value(indexOf(it) % 2 == 0) }
+            endArray()
+        }
+    }
+
+    private fun playlist(playlistId: String, query: Map<String, String>): ByteArray {
+        val index = indexOf(playlistId)
+        if (query["fields"] == "snapshot_id") {
+            return json {
+                beginObject()
+                name("snapshot_id").value(snapshotId(index))
+                endObject()
+            }
+        }
+        return json {
+            beginObject()
+            writePlaylistFields(this, index)
+            name("description").value("Generated playlist $index")
+            name("followers")
+            beginObject()
+            name("href").nullValue()
+            name("total").value(index * 7L)
+            endObject()
+            name("tracks")
+            writePagerBody(this, "/playlists/${id('p', index)}/tracks", library.tracksPerPlaylist, 0, 100) {
+                writePlaylistTrack(this, index, it)
+            }
+            endObject()
+        }
+    }
+
+    private fun playlistTracks(playlistId: String, offset: Int, limit: Int): ByteArray {
+        val index = indexOf(playlistId)
+        return pager("/playlists/$playlistId/tracks", library.tracksPerPlaylist, offset, limit) {
+            writePlaylistTrack(this, index, it)
+        }
+    }
+
+    private fun followedArtists(after: String?, limit: Int): ByteArray {
+        val start = after?.let { indexOf(it) + 1 } ?: 0
+        val end = minOf(start + limit, library.followedArtists)
+        return json {
+            beginObject()
+            name("artists")
+            beginObject()
+            name("href").value("$endpoint/me/following?type=artist&limit=$limit")
+            name("items")
+            beginArray()
+            for (i in start until end) writeArtist(this, i)
+            endArray()
+            name("limit").value(limit.toLong())
+            name("next").value(
+                if (end < library.followedArtists) {
+                    "$endpoint/me/following?type=artist&after=${id('a', end - 1)}&limit=$limit"
+                } else {
+                    null
+                }
+            )
+            name("cursors")
+            beginObject()
+            name("after").value(if (end < library.followedArtists) id('a', end - 1) else null)
+            endObject()
+            name("total").value(library.followedArtists.toLong())
+            endObject()
+            endObject()
+        }
+    }
+
+    private fun several(type: String, ids: String): ByteArray = json {
+        beginObject()
+        name(type)
+        beginArray()
+        ids.split(',').filter { it.isNotEmpty() }.forEach {
+            val index = indexOf(it)
+            when (type) {
+                "tracks" -> writeTrack(this, index)
+                "albums" -> writeAlbum(this, index)
+                else -> writeArtist(this, index)
+            }
+        }
+        endArray()
+        endObject()
+    }
+
+    private fun pager(
+        path: String,
+        total: Int,
+        offset: Int,
+        limit: Int,
+        writeItem: JsonWriter.(Int) -> Unit
+    ): ByteArray = json { writePagerBody(this, path, total, offset, limit, writeItem) }
+
+    private fun writePagerBody(
+        writer: JsonWriter,
+        path: String,
+        total: Int,
+        offset: Int,
+        limit: Int,
+        writeItem: JsonWriter.(Int) -> Unit
+    ) = with(writer) {
+        val end = minOf(offset + limit, total)
+        beginObject()
+        name("href").value("$endpoint$path?offset=$offset&limit=$limit")
+        name("items")
+        beginArray()
+        for (i in offset until end) writeItem(i)
+        endArray()
+        name("limit").value(limit.toLong())
+        name("next").value(if (end < total) "$endpoint$path?offset=$end&limit=$limit" else null)
+        name("offset").value(offset.toLong())
+        name("previous").value(
+            if (offset > 0) "$endpoint$path?offset=${maxOf(0, offset - limit)}&limit=$limit" else null
+        )
+        name("total").value(total.toLong())
+        endObject()
+    }
+
+    private fun writeSavedTrack(writer: JsonWriter, index: Int) = with(writer) {
+        beginObject()
+        name("added_at").value(addedAt(index))
+        name("track")
+        writeTrack(this, index)
+        endObject()
+    }
+
+    private fun writePlaylistTrack(writer: JsonWriter, playlist: Int, index: Int) = with(writer) {
+        beginObject()
+        name("added_at").value(addedAt(index))
+        name("added_by")
+        writeUser(this, USER_ID)
+        name("is_local").value(false)
+        name("track")
+        writeTrack(this, playlist * 31 + index)
+        endObject()
+    }
+
+    private fun writeTrack(writer: JsonWriter, index: Int) = with(writer) {
+        val trackId = id('t', index)
+        beginObject()
+        name("album")
+        writeAlbumSimple(this, index / 12)
+        name("artists")
+        beginArray()
+        writeArtistSimple(this, index % 997)
+        if (index % 5 == 0) writeArtistSimple(this, (index + 1) % 997)
+        endArray()
+        name("available_markets")
+        writeMarkets(this)
+        name("disc_number").value(1)
+        name("duration_ms").value(150_000L + index % 120_000)
+        name("explicit").value(index % 9 == 0)
+        name("external_ids")
+        beginObject()
+        name("isrc").value("US" + index.toString().padStart(10, '0'))
+        endObject()
+        writeExternalUrls(this, "track", trackId)
+        name("href").value("$endpoint/tracks/$trackId")
+        name("id").value(trackId)
+        name("is_local").value(false)
+        name("name").value("Track $index")
+        name("popularity").value((index * 13 % 100).toLong())
+        name("preview_url").value("https://p.scdn.co/mp3-preview/$trackId")
+        name("track_number").value((index % 12 + 1).toLong())
+        name("type").value("track")
+        name("uri").value("spotify:track:$trackId")
+        endObject()
+    }
+
+    private fun writeSavedAlbum(writer: JsonWriter, index: Int) = with(writer) {
+        beginObject()
+        name("added_at").value(addedAt(index))
+        name("album")
+        writeAlbum(this, index)
+        endObject()
+    }
+
+    private fun writeAlbum(writer: JsonWriter, index: Int) = with(writer) {
+        val albumId = id('l', index)
+        beginObject()
+        writeAlbumFields(this, index)
+        name("copyrights")
+        beginArray()
+        beginObject()
+        name("text").value("(C) 2024 Label $index")
+        name("type").value("C")
+        endObject()
+        endArray()
+        name("genres")
+        beginArray()
+        endArray()
+        name("label").value("Label ${index % 50}")
+        name("popularity").value((index * 7 % 100).toLong())
+        name("tracks")
+        writePagerBody(this, "/albums/$albumId/tracks", 12, 0, 50) { writeTrack(this, index * 12 + it) }
+        endObject()
+    }
+
+    private fun writeAlbumSimple(writer: JsonWriter, index: Int) = with(writer) {
+        beginObject()
+        writeAlbumFields(this, index)
+        endObject()
+    }
+
+    private fun writeAlbumFields(writer: JsonWriter, index: Int) = with(writer) {
+        val albumId = id('l', index)
+        name("album_type").value(if (index % 4 == 0) "single" else "album")
+        name("artists")
+        beginArray()
+        writeArtistSimple(this, index % 997)
+        endArray()
+        name("available_markets")
+        writeMarkets(this)
+        writeExternalUrls(this, "album", albumId)
+        name("href").value("$endpoint/albums/$albumId")
+        name("id").value(albumId)
+        name("images")
+        writeImages(this, albumId)
+        name("name").value("Album $index")
+        name("release_date").value("20${(index % 24).toString().padStart(2, '0')}-01-01")
+        name("release_date_precision").value("day")
+        name("total_tracks").value(12)
+        name("type").value("album")
+        name("uri").value("spotify:album:$albumId")
+    }
+
+    private fun writeArtistSimple(writer: JsonWriter, index: Int) = with(writer) {
+        beginObject()
+        writeArtistFields(this, index)
+        endObject()
+    }
+
+    private fun writeArtist(writer: JsonWriter, index: Int) = with(writer) {
+        beginObject()
+        writeArtistFields(this, index)
+        name("followers")
+        beginObject()
+        name("href").nullValue()
+        name("total").value(index * 1_117L)
+        endObject()
+        name("genres")
+        beginArray()
+        value("pop")
+        value("indie")
+        endArray()
+        name("images")
+        writeImages(this, id('a', index))
+        name("popularity").value((index * 3 % 100).toLong())
+        endObject()
+    }
+
+    private fun writeArtistFields(writer: JsonWriter, index: Int) = with(writer) {
+        val artistId = id('a', index)
+        writeExternalUrls(this, "artist", artistId)
+        name("href").value("$endpoint/artists/$artistId")
+        name("id").value(artistId)
+        name("name").value("Artist $index")
+        name("type").value("artist")
+        name("uri").value("spotify:artist:$artistId")
+    }
+
+    private fun writePlaylist(writer: JsonWriter, index: Int) = with(writer) {
+        beginObject()
+        writePlaylistFields(this, index)
+        name("tracks")
+        beginObject()
+        name("href").value("$endpoint/playlists/${id('p', index)}/tracks")
+        name("total").value(library.tracksPerPlaylist.toLong())
+        endObject()
+        endObject()
+    }
+
+    private fun writePlaylistFields(writer: JsonWriter, index: Int) = with(writer) {
+        val playlistId = id('p', index)
+        name("collaborative").value(index % 10 == 0)
+        writeExternalUrls(this, "playlist", playlistId)
+        name("href").value("$endpoint/playlists/$playlistId")
+        name("id").value(playlistId)
+        name("images")
+        writeImages(this, playlistId)
+        name("name").value("Playlist $index")
+        name("owner")
+        writeUser(this, USER_ID)
+        name("public").value(index % 3 != 0)
+        name("snapshot_id").value(snapshotId(index))
+        name("type").value("playlist")
+        name("uri").value("spotify:playlist:$playlistId")
+    }
+
+    private fun writeUser(writer: JsonWriter, userId: String) = with(writer) {
+        beginObject()
+        name("display_name").value("Load Test")
+        writeExternalUrls(this, "user", userId)
+        name("href").value("$endpoint/users/$userId")
+        name("id").value(userId)
+        name("type").value("user")
+        name("uri").value("spotify:user:$userId")
+        endObject()
+    }
+
+    private fun writeImages(writer: JsonWriter, id: String) = with(writer) {
+        beginArray()
+        for (size in intArrayOf(640, 300, 64)) {
+            beginObject()
+            name("height").value(size.toLong())
+            name("url").value("https://i.scdn.co/image/$id$size")
+            name("width").value(size.toLong())
+            endObject()
+        }
+        endArray()
+    }
+
+    private fun writeExternalUrls(writer: JsonWriter, type: String, id: String) = with(writer) {
+        name("external_urls")
+        beginObject()
+        name("spotify").value("https://open.spotify.com/$type/$id")
+        endObject()
+    }
+
+    /**
+     * Real responses list every market a track is sold in, which is most of their size.
+     */
+    private fun writeMarkets(writer: JsonWriter) = with(writer) {
+        beginArray()
+        MARKETS.forEach { value(it) }
+        endArray()
+    }
+
+    private fun snapshotId(index: Int): String = "snapshot-$index-${snapshotVersions[index] ?: 0}"
+
+    private fun addedAt(index: Int): String =
+        "2024-${(index % 12 + 1).toString().padStart(2, '0')}-01T12:00:00Z"
+
+    private fun delay() {
+        val jitter = if (faults.latencyJitterMillis > 0) {
+            synchronized(random) { random.nextInt(faults.latencyJitterMillis.toInt() + 1) }
+        } else {
+            0
+        }
+        val millis = faults.latencyMillis + jitter
+        if (millis > 0) Thread.sleep(millis)
+    }
+
+    private fun nextFault(): Fault? {
+        val roll = synchronized(random) { random.nextDouble() }
+        return when {
+            roll < faults.rateLimitRate -> Fault.RATE_LIMITED
+            roll < faults.rateLimitRate + faults.serverErrorRate -> Fault.SERVER_ERROR
+            else -> null
+        }
+    }
+
+    private fun send(exchange: HttpExchange, status: Int, body: ByteArray) {
+        exchange.responseHeaders.add("Content-Type", "application/json; charset=utf-8")
+        exchange.sendResponseHeaders(status, if (body.isEmpty()) -1 else body.size.toLong())
+        if (body.isNotEmpty()) exchange.responseBody.write(body)
+        bytes.addAndGet(body.size.toLong())
+    }
+
+    private fun error(status: Int, message: String): ByteArray = json {
+        beginObject()
+        name("error")
+        beginObject()
+        name("status").value(status.toLong())
+        name("message").value(message)
+        endObject()
+        endObject()
+    }
+
+    private inline fun json(write: JsonWriter.() -> Unit): ByteArray {
+        val out = ByteArrayOutputStream()
+        JsonWriter(OutputStreamWriter(out, Charsets.UTF_8)).use { it.write() }
+        return out.toByteArray()
+    }
+
+    private fun parseQuery(rawQuery: String?): Map<String, String> {
+        if (rawQuery.isNullOrEmpty()) return emptyMap()
+        return rawQuery.split('&').associate { pair ->
+            val name = pair.substringBefore('=')
+            URLDecoder.decode(name, "UTF-8") to URLDecoder.decode(pair.substringAfter('=', ""), "UTF-8")
+        }
+    }
+
+    private enum class Fault { RATE_LIMITED, SERVER_ERROR }
+
+    companion object {
+
+        const val USER_ID = "loadtest"
+
+        private val MARKETS = listOf(
+            "AR", "AU", "AT", "BE", "BO", "BR", "BG", "CA", "CL", "CO", "CR", "CY", "CZ", "DK",
+            "DO", "DE", "EC", "EE", "SV", "FI", "FR", "GR", "GT", "HN", "HK", "HU", "IS", "IE",
+            "IT", "LV", "LT", "LU", "MY", "MT", "MX", "NL", "NZ", "NI", "NO", "PA", "PY", "PE",
+            "PH", "PL", "PT", "SG", "SK", "ES", "SE", "CH", "TW", "TR", "UY", "US", "GB", "AD",
+            "LI", "MC", "ID", "JP", "TH", "VN", "RO", "IL", "ZA", "SA", "AE", "BH", "QA", "OM"
+        )
+
+        /**
+         * A 22 character id, like the real base-62 ones, that encodes the item index.
+         */
+        fun id(prefix: Char, index: Int): String = prefix + index.toString(36).padStart(21, '0')
+
+        fun indexOf(id: String): Int = id.drop(1).toIntOrNull(36) ?: 0
+    }
+}
@@ -0,0 +1,229 @@
+package com.adgutech.adomusic.remote.api.spotify
+
+import android.content.ContextWrapper
+import com.adgutech.adomusic.remote.repositories.EntityCache
+import com.adgutech.adomusic.remote.repositories.InMemoryLibraryStore
+import com.adgutech.adomusic.remote.repositories.LibrarySync
+import com.adgutech.adomusic.remote.repositories.PlaylistTracksCache
+import com.adgutech.adomusic.remote.repositories.RealAlbumRepository
+import com.adgutech.adomusic.remote.repositories.RealArtistRepository
+import com.adgutech.adomusic.remote.repositories.RealPlaylistRepository
+import com.adgutech.adomusic.remote.repositories.RealTrackRepository
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assume.assumeTrue
+import org.junit.Before
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.io.File
+import java.util.Locale
+
+/**
+ * Loads the library from a [FakeSpotifyServer] through the repositories and through
+ * [LibrarySync], which the library screens load from, and reports for each load path the
+ * wall-clock time, the requests sent and the bytes received.
+ *
+ * It takes a while, so it only runs when asked to, with sizes and faults read from `harness.*`
+ * system properties, e.g. `./gradlew testDebugUnitTest --tests '*LibraryLoadHarnessTest'
+ * -Dharness.enabled=true -Dharness.savedTracks=50000 -Dharness.latencyMillis=80
+ * -Dharness.rateLimitRate=0.02`. The report is printed and, when the build passes
+ * `harness.reportDir`, written to `library-load.txt` there.
+ */
+class LibraryLoadHarnessTest {
+
+    private val library = FakeSpotifyServer.Library(
+        savedTracks = intProperty("savedTracks", 10_000),
+        savedAlbums = intProperty("savedAlbums", 1_000),
+        followedArtists = intProperty("followedArtists", 500),
+        playlists = intProperty("playlists", 2_000),
+        tracksPerPlaylist = intProperty("tracksPerPlaylist", 100)
+    )
+
+    private val faults = FakeSpotifyServer.Faults(
+        latencyMillis = intProperty("latencyMillis", 20).toLong(),
+        latencyJitterMillis = intProperty("latencyJitterMillis", 10).toLong(),
+        rateLimitRate = doubleProperty("rateLimitRate", 0.0),
+        retryAfterSeconds = intProperty("retryAfterSeconds", 1),
+        serverErrorRate = doubleProperty("serverErrorRate", 0.0)
+    )
+
+    /**
+     * Playlists whose tracks are loaded; loading all 2,000 would mostly measure the same path.
+     */
+    private val playlistSample = intProperty("playlistSample", 50)
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val results = ArrayList<LoadResult>()
+
+    private lateinit var server: FakeSpotifyServer
+    private lateinit var spotifyService: SpotifyCoroutineService
+
+    @Before
+    fun setUp() {
+        assumeTrue(
+            "Run with -Dharness.enabled=true",
+            System.getProperty("harness.enabled") == "true"
+        )
+        server = FakeSpotifyServer(library, faults).start()
+        val renewer = TokenRenewer { error("the harness token does not expire") }
+        val tokenManager = TokenManager(renewer, scope)
+        tokenManager.setToken(AccessToken("harness", Long.MAX_VALUE))
+        val config = HttpClientConfig()
+        val api = SpotifyApi(
+            null,
+            tokenManager,
+            config.createSharedClient(),
+            config,
+            Runnable::run,
+            server.endpoint,
+            null
+        )
+        spotifyService = api.coroutineService
+    }
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+        if (::server.isInitialized) server.close()
+    }
+
+    @Test
+    fun loadLibrary() = runBlocking {
+        val context = ContextWrapper(null)
+        val entityCache = EntityCache()
+        val tracks = RealTrackRepository(spotifyService)
+        val albums = RealAlbumRepository(context, spotifyService, entityCache)
+        val artists = RealArtistRepository(context, spotifyService, entityCache)
+        val playlists =
+            RealPlaylistRepository(context, spotifyService, PlaylistTracksCache(), entityCache)
+        val sync = LibrarySync(InMemoryLibraryStore(), tracks, albums, artists, playlists, scope)
+
+        measure("saved tracks", library.savedTracks) { tracks.getMySavedTracks().size }
+        measure("saved albums", library.savedAlbums) { albums.getMySavedAlbums().size }
+        measure("followed artists", library.followedArtists) {
+            artists.getFollowedArtists().size
+        }
+        measure("playlists", library.playlists) { playlists.getMyPlaylists().size }
+        val sample = (0 until minOf(playlistSample, library.playlists)).map {
+            FakeSpotifyServer.id('p', it)
+        }
+        val sampleTracks = sample.size * library.tracksPerPlaylist
+        val cold = measure("playlist tracks, cold", sampleTracks) {
+            sample.sumOf { playlists.getPlaylistTracks(FakeSpotifyServer.USER_ID, it).size }
+        }
+        val warm = measure("playlist tracks, warm", sampleTracks) {
+            sample.sumOf { playlists.getPlaylistTracks(FakeSpotifyServer.USER_ID, it).size }
+        }
+
+        // What the library screens do: a first sync that stores everything, then a refresh
+        // that finds nothing changed.
+        measure("sync saved tracks", library.savedTracks) { sync.savedTracks().size }
+        measure("sync saved albums", library.savedAlbums) { sync.savedAlbums().size }
+        measure("sync followed artists", library.followedArtists) { sync.followedArtists().size }
+        measure("sync playlists", library.playlists) { sync.playlists().size }
+        val tracksRefresh = measure("resync saved tracks", library.savedTracks) {
+            sync.savedTracks().size
+        }
+        val albumsRefresh = measure("resync saved albums", library.savedAlbums) {
+            sync.savedAlbums().size
+        }
+        measure("resync followed artists", library.followedArtists) {
+            sync.followedArtists().size
+        }
+        measure("resync playlists", library.playlists) { sync.playlists().size }
+
+        report()
+        for (result in results) {
+            if (result.failure != null) {
+                assertTrue("${result.path}: ${result.failure}", faults.serverErrorRate > 0.0)
+                continue
+            }
+            assertEquals(result.path, result.expected, result.items)
+            assertTrue(result.path, result.requests > 0)
+        }
+        if (faults.rateLimitRate == 0.0 && faults.serverErrorRate == 0.0) {
+            // The warm pass only checks each playlist's snapshot id.
+            assertTrue(warm.requests < cold.requests)
+            assertTrue(warm.bytes < cold.bytes)
+            // An unchanged newest-first list is settled by its first page.
+            assertEquals(1L, tracksRefresh.requests)
+            assertEquals(1L, albumsRefresh.requests)
+        }
+    }
+
+    private suspend fun measure(path: String, expected: Int, load: suspend () -> Int): LoadResult {
+        server.resetCounters()
+        val start = System.nanoTime()
+        val result = runCatching { load() }
+        val millis = (System.nanoTime() - start) / 1_000_000
+        val loadResult = LoadResult(
+            path,
+            millis,
+            server.requestCount,
+            server.bytesSent,
+            server.rateLimitedCount,
+            server.serverErrorCount,
+            result.getOrDefault(0),
+            expected,
+            result.exceptionOrNull()
+        )
+        results += loadResult
+        return loadResult
+    }
+
+    private fun report() {
+        val report = buildString {
+            appendLine("Library: $library")
+            appendLine("Faults: $faults")
+            appendLine(
+                String.format(
+                    Locale.ROOT, "%-24s %9s %9s %12s %6s %6s %8s",
+                    "path", "ms", "requests", "bytes", "429", "5xx", "items"
+                )
+            )
+            for (result in results) {
+                appendLine(
+                    String.format(
+                        Locale.ROOT, "%-24s %9d %9d %12d %6d %6d %8d%s",
+                        result.path,
+                        result.millis,
+                        result.requests,
+                        result.bytes,
+                        result.rateLimited,
+                        result.serverErrors,
+                        result.items,
+                        result.failure?.let { "  failed: $it" } ?: ""
+                    )
+                )
+            }
+        }
+        print(report)
+        val reportDir = System.getProperty("harness.reportDir") ?: return
+        val file = File(reportDir, "library-load.txt")
+        file.parentFile?.mkdirs()
+        file.writeText(report)
+    }
+
+    private data class LoadResult(
+        val path: String,
+        val millis: Long,
+        val requests: Long,
+        val bytes: Long,
+        val rateLimited: Long,
+        val serverErrors: Long,
+        val items: Int,
+        val expected: Int,
+        val failure: Throwable?
+    )
+
+    private fun intProperty(name: String, default: Int): Int =
+        System.getProperty("harness.$name")?.toIntOrNull() ?: default
+
+    private fun doubleProperty(name: String, default: Double): Double =
+        System.getProperty("harness.$name")?.toDoubleOrNull() ?: default
+}
@@ -0,0 +1,259 @@
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.yield
+import org.junit.After
+import org.junit.Test
+import retrofit.RetrofitError
+import retrofit.client.Response
+
+import org.junit.Assert.*
+import java.lang.reflect.Proxy
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs [MutationQueue] against a journal kept in memory and a Web API that records every
+ * call, on a fixed clock. Calls can be held in flight, or failed with a given status, to fix
+ * what the queue holds while a batch is being sent.
+ */
+class MutationQueueTest {
+
+    private class FakeStore : MutationStore {
+
+        @Volatile
+        var journal: List<Mutation> = emptyList()
+
+        /**
+         * Held loads wait until it is counted down.
+         */
+        @Volatile
+        var loading: CountDownLatch? = null
+
+        val saves: MutableList<List<Mutation>> = CopyOnWriteArrayList()
+
+        override fun load(): List<Mutation> {
+            loading?.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            return journal
+        }
+
+        override fun save(mutations: List<Mutation>) {
+            saves += mutations
+            journal = mutations
+        }
+    }
+
+    private val store = FakeStore()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val calls: MutableList<String> = CopyOnWriteArrayList()
+
+    /**
+     * HTTP statuses the next calls fail with, in order.
+     */
+    private val failures = ConcurrentLinkedQueue<Int>()
+
+    @Volatile
+    private var sending: CountDownLatch? = null
+
+    private val spotifyService = Proxy.newProxyInstance(
+        SpotifyService::class.java.classLoader,
+        arrayOf(SpotifyService::class.java)
+    ) { _, method, args ->
+        calls += (listOf(method.name) + args.orEmpty().map { "$it" }).joinToString(" ")
+        sending?.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        failures.poll()?.let { throw httpError(it) }
+        null
+    } as SpotifyService
+
+    @After
+    fun tearDown() {
+        sending?.countDown()
+        store.loading?.countDown()
+        scope.cancel()
+    }
+
+    private fun queue() = MutationQueue(
+        SpotifyCoroutineService(
+            spotifyService,
+            Dispatchers.IO,
+            RequestScheduler(4),
+            Dispatchers.IO,
+            RequestScheduler(4)
+        ),
+        store,
+        scope,
+        clock = { NOW },
+        initialBackoffMillis = 1
+    )
+
+    private fun mutation(kind: MutationKind, id: String = "", deviceId: String? = null) =
+        Mutation(kind, id, deviceId, createdAtMillis = NOW)
+
+    private suspend fun awaitCalls(count: Int) = withTimeout(TIMEOUT_SECONDS * 1000) {
+        while (calls.size < count) delay(1)
+    }
+
+    private suspend fun MutationQueue.awaitIdle() = withTimeout(TIMEOUT_SECONDS * 1000) {
+        while (size() > 0) delay(1)
+    }
+
+    @Test
+    fun journalIsRestoredBeforeFirstEnqueue() = runBlocking {
+        store.journal = listOf(mutation(MutationKind.SAVE_TRACK, "t1"))
+        store.loading = CountDownLatch(1)
+        val queue = queue()
+
+        val enqueue = launch { queue.enqueue(mutation(MutationKind.SAVE_TRACK, "t2")) }
+        yield()
+        assertFalse(enqueue.isCompleted)
+        assertEquals(emptyList<List<Mutation>>(), store.saves)
+
+        store.loading?.countDown()
+        enqueue.join()
+        assertEquals(listOf("t1", "t2"), store.saves.first().map { it.id })
+
+        queue.awaitIdle()
+        val sent = calls.map { it.removePrefix("addToMySavedTracks ") }
+        assertEquals(listOf("t1", "t2"), sent.flatMap { it.split(",") })
+    }
+
+    @Test
+    fun mutationReplacesTheOneItUndoes() = runBlocking {
+        val queue = queue()
+        sending = CountDownLatch(1)
+        queue.enqueue(mutation(MutationKind.SAVE_ALBUM, "a0"))
+        awaitCalls(1)
+
+        queue.enqueue(mutation(MutationKind.SAVE_TRACK, "t1"))
+        queue.enqueue(mutation(MutationKind.REMOVE_TRACK, "t1"))
+        val journaled = store.journal.map { it.kind to it.id }
+        assertEquals(
+            listOf(MutationKind.SAVE_ALBUM to "a0", MutationKind.REMOVE_TRACK to "t1"),
+            journaled
+        )
+
+        sending?.countDown()
+        queue.awaitIdle()
+        assertEquals(listOf("addToMySavedAlbums a0", "removeFromMySavedTracks t1"), calls)
+    }
+
+    @Test
+    fun pendingMutationsAreBatchedByKindAndDevice() = runBlocking {
+        val albums = List(25) { mutation(MutationKind.SAVE_ALBUM, "a$it") }
+        val tracks = List(60) { mutation(MutationKind.SAVE_TRACK, "t$it") }
+        val queued = listOf(
+            mutation(MutationKind.ADD_TO_QUEUE, "spotify:track:q1", "phone"),
+            mutation(MutationKind.ADD_TO_QUEUE, "spotify:track:q2", "speaker")
+        )
+        store.journal = albums + queued + tracks
+        val queue = queue()
+
+        queue.awaitIdle()
+
+        fun ids(items: List<Mutation>) = items.joinToString(",") { it.id }
+        assertEquals(
+            listOf(
+                "addToMySavedAlbums ${ids(albums.take(20))}",
+                "addToMySavedAlbums ${ids(albums.drop(20))}",
+                "addToMySavedTracks ${ids(tracks.take(50))}",
+                "addToMySavedTracks ${ids(tracks.drop(50))}"
+            ),
+            calls.filterNot { it.startsWith("addToQueue") }
+        )
+        assertEquals(
+            listOf("addToQueue spotify:track:q1 phone", "addToQueue spotify:track:q2 speaker"),
+            calls.filter { it.startsWith("addToQueue") }
+        )
+        assertEquals(emptyList<Mutation>(), store.journal)
+    }
+
+    @Test
+    fun failedBatchIsRetriedBeforeLaterOnes() = runBlocking {
+        store.journal = listOf(
+            mutation(MutationKind.SAVE_ALBUM, "a1"),
+            mutation(MutationKind.SAVE_TRACK, "t1")
+        )
+        failures += 503
+        val queue = queue()
+
+        queue.awaitIdle()
+
+        assertEquals(
+            listOf("addToMySavedAlbums a1", "addToMySavedAlbums a1", "addToMySavedTracks t1"),
+            calls
+        )
+    }
+
+    @Test
+    fun rejectedBatchIsDropped() = runBlocking {
+        store.journal = listOf(
+            mutation(MutationKind.SAVE_ALBUM, "a1"),
+            mutation(MutationKind.SAVE_TRACK, "t1")
+        )
+        failures += 400
+        val queue = queue()
+
+        queue.awaitIdle()
+
+        assertEquals(listOf("addToMySavedAlbums a1", "addToMySavedTracks t1"), calls)
+        assertEquals(emptyList<Mutation>(), store.journal)
+    }
+
+    @Test
+    fun expiredPlaybackCommandIsDropped() = runBlocking {
+        val expiredAt = NOW - MutationKind.PLAYBACK_TTL_MILLIS - 1
+        store.journal = listOf(
+            Mutation(MutationKind.PAUSE, deviceId = "phone", createdAtMillis = expiredAt),
+            mutation(MutationKind.RESUME, deviceId = "speaker")
+        )
+        val queue = queue()
+
+        queue.awaitIdle()
+
+        assertEquals(listOf("resume speaker"), calls)
+        assertEquals(emptyList<Mutation>(), store.journal)
+    }
+
+    @Test
+    fun clearForgetsPendingMutations() = runBlocking {
+        val queue = queue()
+        sending = CountDownLatch(1)
+        queue.enqueue(mutation(MutationKind.SAVE_ALBUM, "a0"))
+        awaitCalls(1)
+        queue.enqueue(mutation(MutationKind.FOLLOW_ARTIST, "r1"))
+
+        queue.clear().join()
+        assertEquals(0, queue.size())
+        assertEquals(emptyList<Mutation>(), store.journal)
+
+        // The batch in flight still completes; what was waiting behind it is never sent.
+        sending?.countDown()
+        queue.enqueue(mutation(MutationKind.SAVE_ALBUM, "a2"))
+        queue.awaitIdle()
+        assertEquals(listOf("addToMySavedAlbums a0", "addToMySavedAlbums a2"), calls)
+    }
+
+    private fun httpError(status: Int): RetrofitError {
+        val response = Response(URL, status, "", emptyList(), null)
+        return RetrofitError.httpError(URL, response, null, null)
+    }
+
+    companion object {
+        private const val NOW = 1_700_000_000_000L
+        private const val URL = "https://api.spotify.com/v1/me/albums"
+
+        /**
+         * Only bounds a hung test; nothing is expected to take close to it.
+         */
+        private const val TIMEOUT_SECONDS = 10L
+    }
+}
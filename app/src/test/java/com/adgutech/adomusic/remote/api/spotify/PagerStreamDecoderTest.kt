@@ -0,0 +1,277 @@
+package com.adgutech.adomusic.remote.api.spotify
+
+import com.adgutech.adomusic.remote.api.spotify.models.GeneratedTypeAdapterFactory
+import com.adgutech.adomusic.remote.api.spotify.models.Pager
+import com.adgutech.adomusic.remote.api.spotify.models.PlaylistTrack
+import com.adgutech.adomusic.remote.api.spotify.models.SavedAlbum
+import com.adgutech.adomusic.remote.api.spotify.models.SavedTrack
+import com.adgutech.adomusic.remote.api.spotify.models.Track
+import com.adgutech.adomusic.remote.models.AlbumParcelable
+import com.adgutech.adomusic.remote.models.PlaylistTrackParcelable
+import com.adgutech.adomusic.remote.models.TrackParcelable
+import com.adgutech.adomusic.remote.utils.Utils
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonParser
+import com.google.gson.reflect.TypeToken
+import org.junit.Test
+import retrofit.client.Response
+import retrofit.mime.TypedByteArray
+
+import org.junit.Assert.*
+
+/**
+ * Checks [PagerStreamDecoder] against what it replaced: parsing the whole [Pager] with Gson and
+ * copying each item into its parcelable. Both must give the same parcelables, except that
+ * items without a track or album, which the copy crashed on, are dropped.
+ */
+class PagerStreamDecoderTest {
+
+    private val gson = GsonBuilder()
+        .registerTypeAdapterFactory(GeneratedTypeAdapterFactory())
+        .create()
+    private val writer = Gson()
+
+    private fun response(json: String): Response {
+        val body = TypedByteArray("application/json", json.toByteArray(Charsets.UTF_8))
+        return Response(URL, 200, "OK", emptyList(), body)
+    }
+
+    private inline fun <reified T> parse(json: String): T =
+        gson.fromJson(json, object : TypeToken<T>() {}.type)
+
+    @Test
+    fun savedTracksMatchCopiedModels() {
+        val json = pager("""{"added_at": "2024-01-02T00:00:00Z", "track": $TRACK}""")
+        val parsed = parse<Pager<SavedTrack>>(json)
+
+        val decoded = PagerStreamDecoder.decodeSavedTracks(response(json))
+
+        assertSamePager(parsed, decoded)
+        assertSameJson(parsed.items.mapNotNull { it.track?.let(::trackParcelable) }, decoded.items)
+        assertEquals(1, decoded.items.size)
+    }
+
+    @Test
+    fun playlistTracksMatchCopiedModels() {
+        val item = """
+            {"added_at": "2024-01-02T00:00:00Z", "added_by": {"id": "u1", "type": "user"},
+             "is_local": false, "track": $TRACK}
+        """
+        val json = pager(item)
+        val parsed = parse<Pager<PlaylistTrack>>(json)
+
+        val decoded = PagerStreamDecoder.decodePlaylistTracks(response(json))
+
+        assertSamePager(parsed, decoded)
+        val copied = parsed.items.mapNotNull { playlistTrack ->
+            playlistTrack.track?.let { playlistTrackParcelable(playlistTrack.added_at, it) }
+        }
+        assertSameJson(copied, decoded.items)
+        assertEquals(1, decoded.items.size)
+    }
+
+    @Test
+    fun savedAlbumsMatchCopiedModels() {
+        val json = pager("""{"added_at": "2024-01-02T00:00:00Z", "album": $ALBUM}""")
+        val parsed = parse<Pager<SavedAlbum>>(json)
+
+        val decoded = PagerStreamDecoder.decodeSavedAlbums(response(json))
+
+        assertSamePager(parsed, decoded)
+        assertSameJson(parsed.items.mapNotNull { it.album?.let { _ -> albumParcelable(it) } },
+            decoded.items)
+        assertEquals(1, decoded.items.size)
+    }
+
+    private fun assertSamePager(expected: Pager<*>, actual: Pager<*>) {
+        assertEquals(expected.href, actual.href)
+        assertEquals(expected.limit, actual.limit)
+        assertEquals(expected.next, actual.next)
+        assertEquals(expected.offset, actual.offset)
+        assertEquals(expected.previous, actual.previous)
+        assertEquals(expected.total, actual.total)
+    }
+
+    /**
+     * The parcelables don't all implement equals, so they are compared by their JSON.
+     */
+    private fun assertSameJson(expected: List<*>, actual: List<*>) {
+        assertEquals(
+            JsonParser.parseString(writer.toJson(expected)),
+            JsonParser.parseString(writer.toJson(actual))
+        )
+    }
+
+    /*
+     * The copies the repositories made before the decoder, except for the Spotify link, which
+     * the decoder reads from the track itself: saved tracks used to take the album's link,
+     * and playlist tracks looked for it in external_ids, where it never is.
+     */
+
+    private fun trackParcelable(track: Track) = TrackParcelable(
+        track.album.name,
+        track.album.id,
+        track.artists[0].name,
+        track.artists[0].id,
+        track.artists,
+        track.disc_number,
+        track.duration_ms,
+        track.id,
+        Utils.getImageUrl(track.album.images),
+        track.explicit,
+        track.external_urls[SpotifyService.SPOTIFY_URL],
+        track.name,
+        track.track_number,
+        track.type,
+        track.uri
+    )
+
+    private fun playlistTrackParcelable(addedAt: String, track: Track) = PlaylistTrackParcelable(
+        addedAt,
+        track.album.name,
+        track.album.id,
+        track.artists[0].name,
+        track.artists[0].id,
+        track.artists,
+        track.disc_number,
+        track.duration_ms,
+        track.id,
+        Utils.getImageUrl(track.album.images),
+        track.explicit,
+        track.external_urls[SpotifyService.SPOTIFY_URL],
+        track.name,
+        track.track_number,
+        track.type,
+        track.uri
+    )
+
+    private fun albumParcelable(saved: SavedAlbum) = AlbumParcelable(
+        saved.added_at,
+        saved.album.album_type,
+        saved.album.artists[0].name,
+        saved.album.artists[0].id,
+        saved.album.artists,
+        saved.album.copyrights[0].text,
+        saved.album.id,
+        Utils.getImageUrl(saved.album.images),
+        saved.album.name,
+        saved.album.release_date,
+        saved.album.release_date_precision,
+        saved.album.tracks.total,
+        saved.album.type,
+        saved.album.uri
+    )
+
+    companion object {
+        private const val URL = "https://api.spotify.com/v1/me/tracks"
+
+        /**
+         * A page with [item] and, after it, an item whose content is no longer available.
+         */
+        private fun pager(item: String) = """
+            {
+              "href": "https://api.spotify.com/v1/me/tracks?offset=0&limit=2",
+              "items": [$item, {"added_at": "2024-01-01T00:00:00Z", "track": null,
+                                "album": null}],
+              "limit": 2,
+              "next": "https://api.spotify.com/v1/me/tracks?offset=2&limit=2",
+              "offset": 0,
+              "previous": null,
+              "total": 5
+            }
+        """.trimIndent()
+
+        private val ARTISTS = """
+            [
+              {
+                "external_urls": {"spotify": "https://open.spotify.com/artist/a1"},
+                "href": "https://api.spotify.com/v1/artists/a1",
+                "id": "a1",
+                "name": "Artist 1",
+                "type": "artist",
+                "uri": "spotify:artist:a1"
+              },
+              {
+                "external_urls": {"spotify": "https://open.spotify.com/artist/a2"},
+                "href": "https://api.spotify.com/v1/artists/a2",
+                "id": "a2",
+                "name": "Artist 2",
+                "type": "artist",
+                "uri": "spotify:artist:a2"
+              }
+            ]
+        """.trimIndent()
+
+        private val IMAGES = """
+            [
+              {"height": 640, "url": "https://i.scdn.co/image/l1-640", "width": 640},
+              {"height": 64, "url": "https://i.scdn.co/image/l1-64", "width": 64}
+            ]
+        """.trimIndent()
+
+        private val TRACK = """
+            {
+              "album": {
+                "album_type": "album",
+                "artists": $ARTISTS,
+                "available_markets": ["ES", "US"],
+                "external_urls": {"spotify": "https://open.spotify.com/album/l1"},
+                "href": "https://api.spotify.com/v1/albums/l1",
+                "id": "l1",
+                "images": $IMAGES,
+                "name": "Album 1",
+                "type": "album",
+                "uri": "spotify:album:l1"
+              },
+              "artists": $ARTISTS,
+              "available_markets": ["ES", "US"],
+              "disc_number": 1,
+              "duration_ms": 215000,
+              "explicit": true,
+              "external_ids": {"isrc": "US0000000001"},
+              "external_urls": {"spotify": "https://open.spotify.com/track/t1"},
+              "href": "https://api.spotify.com/v1/tracks/t1",
+              "id": "t1",
+              "is_playable": true,
+              "name": "Track 1",
+              "popularity": 64,
+              "preview_url": null,
+              "track_number": 3,
+              "type": "track",
+              "uri": "spotify:track:t1"
+            }
+        """.trimIndent()
+
+        private val ALBUM = """
+            {
+              "album_type": "album",
+              "artists": $ARTISTS,
+              "available_markets": ["ES", "US"],
+              "copyrights": [{"text": "2024 Label", "type": "C"}, {"text": "2024 Label", "type": "P"}],
+              "external_ids": {"upc": "000000000001"},
+              "external_urls": {"spotify": "https://open.spotify.com/album/l1"},
+              "genres": [],
+              "href": "https://api.spotify.com/v1/albums/l1",
+              "id": "l1",
+              "images": $IMAGES,
+              "label": "Label",
+              "name": "Album 1",
+              "popularity": 50,
+              "release_date": "2024-01-01",
+              "release_date_precision": "day",
+              "tracks": {
+                "href": "https://api.spotify.com/v1/albums/l1/tracks",
+                "items": [{"id": "t1", "name": "Track 1", "artists": $ARTISTS}],
+                "limit": 50,
+                "next": null,
+                "offset": 0,
+                "previous": null,
+                "total": 12
+              },
+              "type": "album",
+              "uri": "spotify:album:l1"
+            }
+        """.trimIndent()
+    }
+}
@@ -0,0 +1,204 @@
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Test
+import retrofit.RetrofitError
+import retrofit.client.Header
+import retrofit.client.Response
+
+import org.junit.Assert.*
+
+/**
+ * Runs [RequestScheduler] on a single thread, with requests held on a gate until the test
+ * releases them, so which request gets a slot is fixed by the order they are scheduled in.
+ */
+class RequestSchedulerTest {
+
+    private val started = ArrayList<String>()
+
+    private suspend fun request(name: String, gate: CompletableDeferred<Unit>? = null): String {
+        started += name
+        gate?.await()
+        return name
+    }
+
+    @Test
+    fun rateLimitHalvesWindowAndRetries() = runBlocking {
+        val scheduler = RequestScheduler(maxConcurrency = 8, maxRetries = 1)
+        val attempts = ArrayList<Int>()
+
+        val result = scheduler.schedule { attempt ->
+            attempts += attempt
+            if (attempt == 0) throw error(429, retryAfterSeconds = "0")
+            "done"
+        }
+
+        assertEquals("done", result)
+        assertEquals(listOf(0, 1), attempts)
+        assertEquals(1L, scheduler.rateLimitedCount)
+        // Halved to 4 by the 429, then grown by a quarter slot by the retry.
+        assertEquals(4, scheduler.concurrencyLimit)
+    }
+
+    @Test
+    fun rateLimitGivesUpAfterMaxRetries() = runBlocking {
+        val scheduler = RequestScheduler(maxConcurrency = 8, maxRetries = 2)
+        var attempts = 0
+
+        val error = runCatching {
+            scheduler.schedule<String> {
+                attempts++
+                throw error(429, retryAfterSeconds = "0")
+            }
+        }.exceptionOrNull()
+
+        assertTrue((error as SpotifyError).isRateLimited)
+        assertEquals(3, attempts)
+        assertEquals(3L, scheduler.rateLimitedCount)
+        assertEquals(1, scheduler.concurrencyLimit)
+    }
+
+    @Test
+    fun otherErrorsAreNotRetried() = runBlocking {
+        val scheduler = RequestScheduler(maxConcurrency = 8)
+        var attempts = 0
+
+        val error = runCatching {
+            scheduler.schedule<String> {
+                attempts++
+                throw error(500)
+            }
+        }.exceptionOrNull()
+
+        assertEquals(500, (error as SpotifyError).status)
+        assertEquals(1, attempts)
+        assertEquals(0L, scheduler.rateLimitedCount)
+        assertEquals(8, scheduler.concurrencyLimit)
+    }
+
+    @Test
+    fun fastSuccessesGrowWindowUpToMax() = runBlocking {
+        val scheduler = RequestScheduler(maxConcurrency = 4, maxRetries = 0)
+        runCatching { scheduler.schedule<String> { throw error(429, retryAfterSeconds = "0") } }
+        assertEquals(2, scheduler.concurrencyLimit)
+
+        // About one slot per window's worth of successes: 2.5, 2.9, 3.24.
+        repeat(3) { scheduler.schedule { "fast" } }
+        assertEquals(3, scheduler.concurrencyLimit)
+
+        repeat(20) { scheduler.schedule { "fast" } }
+        assertEquals(4, scheduler.concurrencyLimit)
+    }
+
+    @Test
+    fun slowSuccessesShrinkWindowDownToMin() = runBlocking {
+        val scheduler = RequestScheduler(
+            maxConcurrency = 4,
+            minConcurrency = 3,
+            latencyTargetMillis = 1
+        )
+        val slow: suspend (Int) -> String = {
+            delay(SLOW_MILLIS)
+            "slow"
+        }
+
+        scheduler.schedule(block = slow)
+        assertEquals(3, scheduler.concurrencyLimit)
+
+        repeat(5) { scheduler.schedule(block = slow) }
+        assertEquals(3, scheduler.concurrencyLimit)
+    }
+
+    @Test
+    fun waitersAreAdmittedByPriority() = runBlocking {
+        val scheduler = RequestScheduler(maxConcurrency = 1, reservedSlots = 0)
+        val gate = CompletableDeferred<Unit>()
+        val holder = async { scheduler.schedule { request("holder", gate) } }
+        yield()
+
+        val waiting = listOf(
+            "background 1" to RequestPriority.BACKGROUND,
+            "prefetch" to RequestPriority.PREFETCH,
+            "background 2" to RequestPriority.BACKGROUND,
+            "interactive" to RequestPriority.INTERACTIVE,
+            "visible" to RequestPriority.VISIBLE
+        ).map { (name, priority) -> async { scheduler.schedule(priority) { request(name) } } }
+        yield()
+        assertEquals(listOf("holder"), started)
+
+        gate.complete(Unit)
+        holder.await()
+        waiting.forEach { it.await() }
+
+        assertEquals(
+            listOf("holder", "interactive", "visible", "prefetch", "background 1", "background 2"),
+            started
+        )
+    }
+
+    @Test
+    fun backgroundIsKeptOutOfReservedSlot() = runBlocking {
+        val scheduler = RequestScheduler(maxConcurrency = 2, reservedSlots = 1)
+        val gate = CompletableDeferred<Unit>()
+        val sync = async {
+            scheduler.schedule(RequestPriority.BACKGROUND) { request("sync", gate) }
+        }
+        val prefetch = async {
+            scheduler.schedule(RequestPriority.PREFETCH) { request("prefetch") }
+        }
+        yield()
+        assertEquals(listOf("sync"), started)
+
+        // The prefetch waits, but doesn't hold up a request the user is waiting for.
+        val visible = async { scheduler.schedule(RequestPriority.VISIBLE) { request("visible") } }
+        assertEquals("visible", visible.await())
+        assertFalse(prefetch.isCompleted)
+
+        gate.complete(Unit)
+        sync.await()
+        prefetch.await()
+
+        assertEquals(listOf("sync", "visible", "prefetch"), started)
+    }
+
+    @Test
+    fun raisedPriorityTakesReservedSlot() = runBlocking {
+        val scheduler = RequestScheduler(maxConcurrency = 2, reservedSlots = 1)
+        val gate = CompletableDeferred<Unit>()
+        val sync = async {
+            scheduler.schedule(RequestPriority.BACKGROUND) { request("sync", gate) }
+        }
+        val priority = SharedPriority(RequestPriority.PREFETCH)
+        val prefetch = async { scheduler.schedule(priority) { request("prefetch") } }
+        yield()
+        assertEquals(listOf("sync"), started)
+
+        // The user opened what was being prefetched.
+        priority.raise(RequestPriority.VISIBLE)
+
+        assertEquals("prefetch", prefetch.await())
+        assertFalse(sync.isCompleted)
+
+        gate.complete(Unit)
+        sync.await()
+    }
+
+    private fun error(status: Int, retryAfterSeconds: String? = null): SpotifyError {
+        val headers = listOfNotNull(retryAfterSeconds?.let { Header("Retry-After", it) })
+        val response = Response(URL, status, "", headers, null)
+        return SpotifyError(RetrofitError.httpError(URL, response, null, null))
+    }
+
+    companion object {
+        private const val URL = "https://api.spotify.com/v1/me/tracks"
+
+        /**
+         * Well over the 1 ms latency target the slow-response test uses.
+         */
+        private const val SLOW_MILLIS = 20L
+    }
+}
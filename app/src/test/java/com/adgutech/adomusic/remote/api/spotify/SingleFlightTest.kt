@@ -0,0 +1,108 @@
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.io.IOException
+
+/**
+ * Runs [SingleFlight] on a single thread, with calls held on a gate until the test releases
+ * them, so which caller leads and which joins is fixed by the order they start in.
+ */
+class SingleFlightTest {
+
+    private val singleFlight = SingleFlight()
+    private var calls = 0
+
+    private suspend fun call(gate: CompletableDeferred<String>): String {
+        calls++
+        return gate.await()
+    }
+
+    @Test
+    fun identicalCallsShareOneRequest() = runBlocking {
+        val gate = CompletableDeferred<String>()
+        val results = List(3) { async { singleFlight.execute("GET /me") { call(gate) } } }
+        yield()
+
+        gate.complete("me")
+
+        assertEquals(List(3) { "me" }, results.map { it.await() })
+        assertEquals(1, calls)
+        assertEquals(2L, singleFlight.coalescedCount)
+    }
+
+    @Test
+    fun differentKeysRunApart() = runBlocking {
+        val gate = CompletableDeferred<String>()
+        val first = async { singleFlight.execute("GET /me") { call(gate) } }
+        val second = async { singleFlight.execute("GET /me/tracks") { call(gate) } }
+        yield()
+
+        gate.complete("done")
+
+        assertEquals("done", first.await())
+        assertEquals("done", second.await())
+        assertEquals(2, calls)
+        assertEquals(0L, singleFlight.coalescedCount)
+    }
+
+    @Test
+    fun finishedRequestIsNotReused() = runBlocking {
+        val gate = CompletableDeferred("me")
+
+        singleFlight.execute("GET /me") { call(gate) }
+        singleFlight.execute("GET /me") { call(gate) }
+
+        assertEquals(2, calls)
+    }
+
+    @Test
+    fun failureReachesEveryCaller() = runBlocking {
+        val gate = CompletableDeferred<String>()
+        val results = List(2) {
+            async { runCatching { singleFlight.execute("GET /me") { call(gate) } } }
+        }
+        yield()
+
+        gate.completeExceptionally(IOException("offline"))
+
+        results.forEach { result ->
+            assertEquals("offline", result.await().exceptionOrNull()?.message)
+        }
+        assertEquals(1, calls)
+    }
+
+    @Test
+    fun waiterTakesOverWhenLeaderIsCancelled() = runBlocking {
+        val leaderGate = CompletableDeferred<String>()
+        val waiterGate = CompletableDeferred<String>()
+        val leader = async { singleFlight.execute("GET /me") { call(leaderGate) } }
+        yield()
+        val waiter = async { singleFlight.execute("GET /me") { call(waiterGate) } }
+        yield()
+
+        leader.cancel()
+        yield()
+        waiterGate.complete("me")
+
+        assertEquals("me", waiter.await())
+        assertTrue(leader.isCancelled)
+        assertEquals(2, calls)
+    }
+
+    @Test
+    fun requestKeyIgnoresQueryOrder() {
+        val path = "/me/tracks"
+        val first = SingleFlight.requestKey("GET", path, mapOf("limit" to 50, "offset" to 0))
+        val second = SingleFlight.requestKey("GET", path, mapOf("offset" to 0, "limit" to 50))
+
+        assertEquals("GET /me/tracks?limit=50&offset=0", first)
+        assertEquals(first, second)
+        assertEquals("GET /me", SingleFlight.requestKey("GET", "/me"))
+    }
+}
@@ -0,0 +1,154 @@
+package com.adgutech.adomusic.remote.api.spotify
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.job
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.util.concurrent.Callable
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs [TokenManager] on a fixed clock against a renewer the test releases, so what is
+ * checked is the order things happen in rather than how long they take.
+ */
+class TokenManagerTest {
+
+    private val now = AtomicLong(START_MILLIS)
+    private val renewals = AtomicInteger()
+    private val events = CopyOnWriteArrayList<String>()
+    private val release = CompletableDeferred<Unit>()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    private val renewer = TokenRenewer {
+        val renewal = renewals.incrementAndGet()
+        events += "renewal $renewal started"
+        release.await()
+        events += "renewal $renewal finished"
+        AccessToken("token-$renewal", now.get() + HOUR_MILLIS)
+    }
+
+    @After
+    fun tearDown() {
+        release.complete(Unit)
+        scope.cancel()
+    }
+
+    private fun tokenManager(renewBeforeMillis: Long = TokenManager.DEFAULT_RENEW_BEFORE_MILLIS) =
+        TokenManager(renewer, scope, renewBeforeMillis = renewBeforeMillis, clock = now::get)
+
+    @Test
+    fun renewsBeforeExpiry() {
+        release.complete(Unit)
+        lateinit var manager: TokenManager
+        var validWhenRenewed: Boolean? = null
+        val watching = TokenRenewer {
+            validWhenRenewed = manager.hasValidToken()
+            renewer.renew()
+        }
+        manager = TokenManager(watching, scope, renewBeforeMillis = 1000, clock = now::get)
+        val renewed = CountDownLatch(1)
+        manager.addListener { if (it.value == "token-1") renewed.countDown() }
+
+        // Renewal is due as soon as the token is within renewBeforeMillis of expiring.
+        manager.setToken(AccessToken("initial", now.get() + 1000))
+
+        assertTrue(renewed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        assertEquals(true, validWhenRenewed)
+        assertEquals("token-1", manager.awaitAccessToken())
+        assertEquals(listOf("renewal 1 started", "renewal 1 finished"), events)
+    }
+
+    @Test
+    fun tokenFarFromExpiryIsNotRenewed() {
+        val manager = tokenManager(renewBeforeMillis = 1000)
+        manager.setToken(AccessToken("current", now.get() + HOUR_MILLIS))
+
+        assertFalse(manager.isRenewing)
+        assertEquals("current", manager.awaitAccessToken())
+        assertEquals(emptyList<String>(), events)
+    }
+
+    @Test
+    fun validTokenIsNotHeldByRenewal() {
+        val manager = tokenManager()
+        manager.setToken(AccessToken("current", now.get() + HOUR_MILLIS))
+        val renewal = manager.renewAsync()
+        assertTrue(manager.isRenewing)
+
+        // The renewer is still held, so the token can only have come from memory.
+        assertEquals("current", manager.awaitAccessToken())
+        assertFalse(renewal.isDone)
+
+        release.complete(Unit)
+        assertEquals("token-1", renewal.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)?.value)
+        assertEquals("token-1", manager.awaitAccessToken())
+    }
+
+    @Test
+    fun expiredTokenWaitsForSingleRenewal() {
+        val manager = tokenManager()
+        manager.restore(AccessToken("expired", now.get() - 1))
+
+        val callers = Executors.newFixedThreadPool(8)
+        val started = CountDownLatch(8)
+        val results = (1..8).map {
+            callers.submit(Callable {
+                started.countDown()
+                manager.awaitAccessToken()
+            })
+        }
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        assertTrue(results.none { it.isDone })
+
+        release.complete(Unit)
+        val tokens = results.map { it.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) }
+        callers.shutdown()
+
+        assertEquals(List(8) { "token-1" }, tokens)
+        assertEquals(listOf("renewal 1 started", "renewal 1 finished"), events)
+    }
+
+    @Test
+    fun clearAbandonsRenewalInFlight() {
+        val manager = tokenManager()
+        val persisted = CopyOnWriteArrayList<String>()
+        manager.addListener { persisted += it.value }
+        manager.setToken(AccessToken("current", now.get() + HOUR_MILLIS))
+        val renewal = manager.renewAsync()
+
+        manager.clear()
+        assertNull(renewal.get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        assertFalse(manager.isRenewing)
+
+        release.complete(Unit)
+        runBlocking { scope.coroutineContext.job.children.toList().joinAll() }
+
+        assertEquals(listOf("renewal 1 started", "renewal 1 finished"), events)
+        assertNull(manager.accessToken)
+        assertNull(manager.awaitAccessToken())
+        assertEquals(listOf("current"), persisted)
+    }
+
+    companion object {
+        private const val START_MILLIS = 1_700_000_000_000L
+        private const val HOUR_MILLIS = 60 * 60 * 1000L
+
+        /**
+         * Only bounds a hung test; nothing is expected to take close to it.
+         */
+        private const val TIMEOUT_SECONDS = 10L
+    }
+}
@@ -0,0 +1,137 @@
+package com.adgutech.adomusic.remote.api.spotify.models
+
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonParser
+import com.google.gson.JsonSyntaxException
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/**
+ * Checks the adapters json-codegen generates against Gson's reflective adapter, which is
+ * what they replace: both must read a payload into the same model and write a model back to
+ * the same JSON.
+ */
+class GeneratedTypeAdapterTest {
+
+    private val generated = GsonBuilder()
+        .registerTypeAdapterFactory(GeneratedTypeAdapterFactory())
+        .create()
+    private val reflective = Gson()
+
+    @Test
+    fun readsWhatReflectiveGsonReads() {
+        // Track extends TrackSimple, so this covers superclass fields too.
+        assertSameRead(TRACK, Track::class.java)
+        assertSameRead("""{"tracks": [$TRACK, null]}""", Tracks::class.java)
+    }
+
+    @Test
+    fun writesWhatReflectiveGsonWrites() {
+        val track = reflective.fromJson(TRACK, Track::class.java)
+
+        assertEquals(
+            JsonParser.parseString(reflective.toJson(track)),
+            JsonParser.parseString(generated.toJson(track))
+        )
+    }
+
+    @Test
+    fun roundTripKeepsEveryField() {
+        val track = generated.fromJson(TRACK, Track::class.java)
+        val written = generated.toJson(track)
+
+        assertEquals(JsonParser.parseString(TRACK), JsonParser.parseString(written))
+    }
+
+    @Test
+    fun coercesScalarsLikeGson() {
+        // A number or boolean where a string is expected, numbers as strings and a boolean
+        // as a string are all accepted by Gson's own adapters.
+        val payload = """
+            {"id": 42, "name": true, "href": 1.5, "popularity": "17", "duration_ms": "1000",
+             "explicit": "TRUE", "is_playable": "no", "disc_number": 2.0}
+        """
+        assertSameRead(payload, Track::class.java)
+
+        val track = generated.fromJson(payload, Track::class.java)
+        assertEquals("42", track.id)
+        assertEquals("true", track.name)
+        assertEquals(17, track.popularity)
+        assertEquals(true, track.explicit)
+        assertEquals(false, track.is_playable)
+    }
+
+    @Test
+    fun rejectsMalformedNumbersLikeGson() {
+        for (payload in listOf("""{"popularity": "many"}""", """{"duration_ms": 1.5}""")) {
+            assertThrows(JsonSyntaxException::class.java) {
+                reflective.fromJson(payload, Track::class.java)
+            }
+            assertThrows(JsonSyntaxException::class.java) {
+                generated.fromJson(payload, Track::class.java)
+            }
+        }
+    }
+
+    @Test
+    fun skipsUnknownNamesAndReadsNulls() {
+        val payload = """{"id": "t1", "unknown": {"nested": [1, 2]}, "name": null}"""
+        assertSameRead(payload, Track::class.java)
+        assertNull(generated.fromJson("null", Track::class.java))
+    }
+
+    /**
+     * Reads [json] with both adapters and compares the models through the reflective
+     * writer, since the models don't implement equals.
+     */
+    private fun <T> assertSameRead(json: String, type: Class<T>) {
+        val expected = reflective.toJson(reflective.fromJson(json, type))
+        val actual = reflective.toJson(generated.fromJson(json, type))
+        assertEquals(JsonParser.parseString(expected), JsonParser.parseString(actual))
+    }
+
+    companion object {
+        private val TRACK = """
+            {
+              "album": {
+                "album_type": "album",
+                "available_markets": ["ES", "US"],
+                "external_urls": {"spotify": "https://open.spotify.com/album/l1"},
+                "href": "https://api.spotify.com/v1/albums/l1",
+                "id": "l1",
+                "images": [{"height": 640, "url": "https://i.scdn.co/image/l1", "width": 640}],
+                "name": "Album 1",
+                "type": "album",
+                "uri": "spotify:album:l1"
+              },
+              "artists": [
+                {
+                  "external_urls": {"spotify": "https://open.spotify.com/artist/a1"},
+                  "href": "https://api.spotify.com/v1/artists/a1",
+                  "id": "a1",
+                  "name": "Artist 1",
+                  "type": "artist",
+                  "uri": "spotify:artist:a1"
+                }
+              ],
+              "available_markets": ["ES", "US"],
+              "disc_number": 1,
+              "duration_ms": 215000,
+              "explicit": false,
+              "external_ids": {"isrc": "US0000000001"},
+              "external_urls": {"spotify": "https://open.spotify.com/track/t1"},
+              "href": "https://api.spotify.com/v1/tracks/t1",
+              "id": "t1",
+              "is_playable": true,
+              "name": "Track 1",
+              "popularity": 64,
+              "preview_url": "https://p.scdn.co/mp3-preview/t1",
+              "track_number": 3,
+              "type": "track",
+              "uri": "spotify:track:t1"
+            }
+        """.trimIndent()
+    }
+}
@@ -0,0 +1,94 @@
+package com.adgutech.adomusic.remote.repositories
+
+import com.google.gson.Gson
+
+/**
+ * [LibraryStore] held in memory, for tests that run [LibrarySync] on the JVM.
+ *
+ * Items are kept as JSON, as [RealLibraryStore] keeps them, so what a sync writes and reads
+ * back is the same; [prepends] and [replaces] count the writes a sync made.
+ */
+class InMemoryLibraryStore(private val gson: Gson = ModelJson.gson) : LibraryStore {
+
+    private class Row(val id: String, val data: String)
+
+    private val rows = HashMap<String, List<Row>>()
+    private val synced = HashMap<String, Long>()
+    private val serverTotals = HashMap<String, Int>()
+
+    var prepends = 0
+        private set
+    var replaces = 0
+        private set
+
+    @Synchronized
+    override fun <T> read(collection: LibraryCollection<T>): List<T> =
+        rowsOf(collection).map { gson.fromJson(it.data, collection.type) }
+
+    @Synchronized
+    override fun <T> readPage(collection: LibraryCollection<T>, offset: Int, limit: Int): List<T> =
+        rowsOf(collection).drop(offset).take(limit).map { gson.fromJson(it.data, collection.type) }
+
+    @Synchronized
+    override fun count(collection: LibraryCollection<*>): Int = rowsOf(collection).size
+
+    @Synchronized
+    override fun ids(collection: LibraryCollection<*>): List<String> =
+        rowsOf(collection).map { it.id }
+
+    @Synchronized
+    override fun syncedAt(collection: LibraryCollection<*>): Long? = synced[collection.name]
+
+    @Synchronized
+    override fun serverTotal(collection: LibraryCollection<*>): Int? =
+        serverTotals[collection.name]
+
+    @Synchronized
+    override fun <T> prepend(
+        collection: LibraryCollection<T>,
+        items: List<T>,
+        serverTotal: Int,
+        nowMillis: Long
+    ): Int {
+        prepends++
+        rows[collection.name] = rowsFor(collection, items) + rowsOf(collection)
+        synced[collection.name] = nowMillis
+        serverTotals[collection.name] = serverTotal
+        return items.size
+    }
+
+    @Synchronized
+    override fun <T> replace(
+        collection: LibraryCollection<T>,
+        items: List<T>,
+        serverTotal: Int,
+        nowMillis: Long
+    ): Int {
+        replaces++
+        val before = rowsOf(collection).withIndex().associate { (position, row) ->
+            row.id to (position to row.data)
+        }
+        val after = rowsFor(collection, items)
+        val written = after.withIndex().count { (position, row) ->
+            before[row.id] != position to row.data
+        }
+        val deleted = before.keys.count { id -> after.none { it.id == id } }
+        rows[collection.name] = after
+        synced[collection.name] = nowMillis
+        serverTotals[collection.name] = serverTotal
+        return written + deleted
+    }
+
+    @Synchronized
+    override fun clear() {
+        rows.clear()
+        synced.clear()
+        serverTotals.clear()
+    }
+
+    private fun rowsOf(collection: LibraryCollection<*>): List<Row> =
+        rows[collection.name].orEmpty()
+
+    private fun <T> rowsFor(collection: LibraryCollection<T>, items: List<T>): List<Row> =
+        items.mapNotNull { item -> collection.idOf(item)?.let { Row(it, gson.toJson(item)) } }
+}
@@ -0,0 +1,158 @@
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.models.AlbumParcelable
+import com.adgutech.adomusic.remote.models.ArtistParcelable
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+
+import org.junit.Assert.*
+import java.lang.reflect.Proxy
+
+/**
+ * Syncs saved albums, a newest-first list, and followed artists, which are not, from
+ * [ListPageSource]s into an [InMemoryLibraryStore], checking which pages each sync read and
+ * which writes it made.
+ */
+class LibrarySyncTest {
+
+    private val store = InMemoryLibraryStore()
+    private val albums = ListPageSource(List(120) { album("album $it") })
+    private val artists = ListPageSource(List(120) { artist("artist $it") })
+
+    private fun album(id: String) = AlbumParcelable().apply { this.id = id }
+
+    private fun artist(id: String) = ArtistParcelable().apply { this.id = id }
+
+    /**
+     * A repository whose only working method is the one returning the list's [source].
+     */
+    private inline fun <reified R : Any> repository(source: PageSource<*>): R =
+        Proxy.newProxyInstance(R::class.java.classLoader, arrayOf(R::class.java)) { _, method, _ ->
+            if (method.returnType == PageSource::class.java) {
+                source
+            } else {
+                throw UnsupportedOperationException(method.name)
+            }
+        } as R
+
+    private fun librarySync(scope: CoroutineScope) = LibrarySync(
+        store,
+        repository<TrackRepository>(ListPageSource(emptyList<Any>())),
+        repository<AlbumRepository>(albums),
+        repository<ArtistRepository>(artists),
+        repository<PlaylistRepository>(ListPageSource(emptyList<Any>())),
+        scope,
+        clock = { SYNCED_AT }
+    )
+
+    /**
+     * Syncs saved albums once, then forgets what that read.
+     */
+    private suspend fun LibrarySync.syncedAlbums(): List<String?> {
+        val ids = savedAlbums().map { it.id }
+        albums.loadedKeys.clear()
+        return ids
+    }
+
+    @Test
+    fun firstSyncStoresWholeList() = runBlocking {
+        val sync = librarySync(this)
+        assertFalse(sync.isSynced(LibraryCollection.SAVED_ALBUMS))
+
+        val ids = sync.savedAlbums().map { it.id }
+
+        assertEquals(albums.items.map { it.id }, ids)
+        assertEquals(ids, store.ids(LibraryCollection.SAVED_ALBUMS))
+        assertEquals(SYNCED_AT, store.syncedAt(LibraryCollection.SAVED_ALBUMS))
+        assertEquals(1, store.replaces)
+        assertEquals(0, store.prepends)
+    }
+
+    @Test
+    fun unchangedListReadsOnlyFirstPage() = runBlocking {
+        val sync = librarySync(this)
+        val stored = sync.syncedAlbums()
+
+        assertEquals(stored, sync.savedAlbums().map { it.id })
+
+        assertEquals(listOf<String?>(null), albums.loadedKeys)
+        assertEquals(1, store.replaces)
+        assertEquals(0, store.prepends)
+    }
+
+    @Test
+    fun newSavesArePrepended() = runBlocking {
+        val sync = librarySync(this)
+        sync.syncedAlbums()
+
+        // More than a page of new saves, so the old head is only found on the second page.
+        albums.items = List(60) { album("new album $it") } + albums.items
+
+        val ids = sync.savedAlbums().map { it.id }
+
+        assertEquals(albums.items.map { it.id }, ids)
+        assertEquals(ids, store.ids(LibraryCollection.SAVED_ALBUMS))
+        assertEquals(listOf(null, "50"), albums.loadedKeys)
+        assertEquals(1, store.replaces)
+        assertEquals(1, store.prepends)
+    }
+
+    @Test
+    fun unavailableItemsKeepSyncIncremental() = runBlocking {
+        // Counted in the server's total, but never returned nor stored.
+        albums.unavailable = setOf(3, 70)
+        val sync = librarySync(this)
+        val stored = sync.syncedAlbums()
+        assertEquals(118, stored.size)
+
+        assertEquals(stored, sync.savedAlbums().map { it.id })
+        assertEquals(listOf<String?>(null), albums.loadedKeys)
+
+        albums.items = listOf(album("new album")) + albums.items
+        albums.unavailable = setOf(4, 71)
+        albums.loadedKeys.clear()
+
+        assertEquals(listOf("new album") + stored, sync.savedAlbums().map { it.id })
+        assertEquals(listOf<String?>(null), albums.loadedKeys)
+        assertEquals(1, store.replaces)
+        assertEquals(1, store.prepends)
+    }
+
+    @Test
+    fun removalFallsBackToReplace() = runBlocking {
+        val sync = librarySync(this)
+        sync.syncedAlbums()
+
+        // The first page is the same, but the total no longer adds up.
+        albums.items = albums.items.filterIndexed { index, _ -> index != 70 }
+
+        val ids = sync.savedAlbums().map { it.id }
+
+        assertEquals(albums.items.map { it.id }, ids)
+        assertEquals(ids, store.ids(LibraryCollection.SAVED_ALBUMS))
+        assertTrue(albums.loadedKeys.containsAll(listOf("50", "100")))
+        assertEquals(2, store.replaces)
+        assertEquals(0, store.prepends)
+    }
+
+    @Test
+    fun listNotNewestFirstIsAlwaysReadWhole() = runBlocking {
+        val sync = librarySync(this)
+        sync.followedArtists()
+        artists.loadedKeys.clear()
+
+        // A followed artist may move anywhere in the list, so an unchanged first page and
+        // total prove nothing.
+        val ids = sync.followedArtists().map { it.id }
+
+        assertEquals(artists.items.map { it.id }, ids)
+        assertTrue(artists.loadedKeys.containsAll(listOf("50", "100")))
+        assertEquals(2, store.replaces)
+        assertEquals(0, store.prepends)
+    }
+
+    companion object {
+        private const val SYNCED_AT = 1_700_000_000_000L
+    }
+}
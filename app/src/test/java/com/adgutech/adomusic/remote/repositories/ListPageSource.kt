@@ -0,0 +1,60 @@
+package com.adgutech.adomusic.remote.repositories
+
+import kotlinx.coroutines.CompletableDeferred
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * [PageSource] over a list the test may change between loads, for tests of what reads pages.
+ *
+ * Keys are offsets; with [isCursor] they can't be worked out ahead, as with a
+ * [CursorPageSource]. [loadedKeys] records every load in the order it started, and a load
+ * of a key passed to [hold] waits until that key is released. Items at [unavailable]
+ * positions are counted in the total but left out of their page, as the server does.
+ */
+class ListPageSource<T>(
+    @Volatile var items: List<T>,
+    private val isCursor: Boolean = false
+) : PageSource<T> {
+
+    private val gates = HashMap<String, CompletableDeferred<Unit>>()
+    private val inFlight = AtomicInteger()
+
+    val loadedKeys: MutableList<String?> = CopyOnWriteArrayList()
+
+    @Volatile
+    var unavailable: Set<Int> = emptySet()
+
+    /**
+     * Most loads that ran at the same time.
+     */
+    val maxInFlight = AtomicInteger()
+
+    fun hold(vararg keys: String) {
+        synchronized(gates) {
+            keys.forEach { gates[it] = CompletableDeferred() }
+        }
+    }
+
+    fun release(key: String) {
+        synchronized(gates) { gates.getValue(key) }.complete(Unit)
+    }
+
+    override suspend fun load(key: String?, limit: Int): Page<T> {
+        loadedKeys += key
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), ::maxOf)
+        try {
+            key?.let { synchronized(gates) { gates[it] } }?.await()
+        } finally {
+            inFlight.decrementAndGet()
+        }
+        val all = items
+        val offset = key?.toInt() ?: 0
+        val end = offset + limit
+        val page = (offset until minOf(end, all.size)).filter { it !in unavailable }.map(all::get)
+        return Page(page, all.size, if (end < all.size) "$end" else null)
+    }
+
+    override fun keyAt(index: Int, pageSize: Int): String? =
+        if (isCursor) null else (index * pageSize).toString()
+}
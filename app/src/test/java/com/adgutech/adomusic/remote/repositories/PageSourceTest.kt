@@ -0,0 +1,130 @@
+package com.adgutech.adomusic.remote.repositories
+
+import com.adgutech.adomusic.remote.api.spotify.SpotifyService
+import com.adgutech.adomusic.remote.api.spotify.models.Pager
+import kotlinx.coroutines.async
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/**
+ * Runs [loadPages] on a single thread against a [ListPageSource] whose pages the test
+ * releases, so the order pages arrive in, and how the list changes meanwhile, is fixed.
+ */
+class PageSourceTest {
+
+    private fun items(count: Int) = List(count) { "item $it" }
+
+    /**
+     * Lets the flow run until it started loading [key], which is then held.
+     */
+    private suspend fun ListPageSource<*>.awaitLoading(key: String) {
+        while (key !in loadedKeys) yield()
+    }
+
+    @Test
+    fun pagesAreEmittedInOrder() = runBlocking {
+        val source = ListPageSource(items(8))
+        source.hold("2", "4", "6")
+        val pages = async { source.loadPages(pageSize = 2, maxParallel = 2).toList() }
+        source.awaitLoading("4")
+
+        // Arriving last to first, and never more than two at a time.
+        listOf("6", "4", "2").forEach {
+            source.release(it)
+            yield()
+        }
+
+        assertEquals(items(8).chunked(2), pages.await())
+        assertEquals(listOf(null, "2", "4", "6"), source.loadedKeys)
+        assertEquals(2, source.maxInFlight.get())
+    }
+
+    @Test
+    fun listThatShrankStopsAtItsNewEnd() = runBlocking {
+        val source = ListPageSource(items(10))
+        source.hold("2", "4", "6", "8")
+        val pages = async { source.loadPages(pageSize = 2).toList() }
+        source.awaitLoading("2")
+
+        // The first page announced five pages; half the items were removed since.
+        source.items = items(5)
+        listOf("2", "4", "6", "8").forEach { source.release(it) }
+
+        assertEquals(items(5).chunked(2), pages.await())
+    }
+
+    @Test
+    fun listThatGrewLoadsNewPagesAfterAnnouncedOnes() = runBlocking {
+        val source = ListPageSource(items(4))
+        source.hold("2")
+        val pages = async { source.loadPages(pageSize = 2).toList() }
+        source.awaitLoading("2")
+
+        // The first page announced two pages; three items were added since.
+        source.items = items(7)
+        source.release("2")
+
+        assertEquals(items(7).chunked(2), pages.await())
+        assertEquals(listOf(null, "2", "4", "6"), source.loadedKeys)
+    }
+
+    @Test
+    fun droppedItemDoesNotShiftLaterPages() = runBlocking {
+        val source = ListPageSource(items(4))
+        source.unavailable = setOf(3)
+        source.hold("2")
+        val pages = async { source.loadPages(pageSize = 2).toList() }
+        source.awaitLoading("2")
+
+        // The pages the list grew by are found from the short page's key.
+        source.items = items(7)
+        source.release("2")
+
+        val expected = listOf(listOf("item 0", "item 1"), listOf("item 2"))
+        assertEquals(expected + items(7).drop(4).chunked(2), pages.await())
+        assertEquals(listOf(null, "2", "4", "6"), source.loadedKeys)
+    }
+
+    @Test
+    fun offsetSourceAdvancesByServerWindow() = runBlocking {
+        val all = items(5)
+        val offsets = ArrayList<Int>()
+        val source = OffsetPageSource<String, String>({ options ->
+            val offset = options.getValue(SpotifyService.OFFSET) as Int
+            val limit = options.getValue(SpotifyService.LIMIT) as Int
+            offsets += offset
+            Pager<String>().apply {
+                // The decoder drops unavailable items, here "item 1".
+                items = all.drop(offset).take(limit).filter { it != "item 1" }
+                this.offset = offset
+                this.limit = limit
+                total = all.size
+                next = if (offset + limit < all.size) "next" else null
+            }
+        }) { it }
+
+        assertEquals(all - "item 1", source.loadAll(pageSize = 2))
+        assertEquals(listOf(0, 2, 4), offsets)
+    }
+
+    @Test
+    fun cursorListIsLoadedOnePageAfterAnother() = runBlocking {
+        val source = ListPageSource(items(5), isCursor = true)
+
+        val pages = source.loadPages(pageSize = 2, maxParallel = 4).toList()
+
+        assertEquals(items(5).chunked(2), pages)
+        assertEquals(listOf(null, "2", "4"), source.loadedKeys)
+        assertEquals(1, source.maxInFlight.get())
+    }
+
+    @Test
+    fun loadAllJoinsEveryPage() = runBlocking {
+        assertEquals(items(7), ListPageSource(items(7)).loadAll(pageSize = 3))
+        assertEquals(emptyList<String>(), ListPageSource(items(0)).loadAll(pageSize = 3))
+    }
+}
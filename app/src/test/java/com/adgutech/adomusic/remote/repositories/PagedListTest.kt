@@ -0,0 +1,121 @@
+package com.adgutech.adomusic.remote.repositories
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Test
+
+import org.junit.Assert.*
+
+/**
+ * Binds rows of a [PagedList] of two-item pages, holding at most two pages, and waits for
+ * the pages each bind loads before checking which pages are held and how they were reached.
+ */
+class PagedListTest {
+
+    private val loaded = Channel<Int>(Channel.UNLIMITED)
+
+    private val listener = object : PagedList.Listener {
+
+        override fun onItemRangeLoaded(positionStart: Int, itemCount: Int) {
+            loaded.trySend(positionStart)
+        }
+
+        override fun onSizeChanged() {
+        }
+    }
+
+    private suspend fun pagedList(
+        source: PageSource<String>,
+        scope: CoroutineScope
+    ): PagedList<String> {
+        val list = PagedList(source, scope, placeholder = "", pageSize = 2, maxPages = 2)
+        list.loadInitial()
+        list.listener = listener
+        return list
+    }
+
+    /**
+     * Waits for [pages] pages to be loaded, returning the first row of each.
+     */
+    private suspend fun awaitLoaded(pages: Int): Set<Int> = withTimeout(TIMEOUT_MILLIS) {
+        List(pages) { loaded.receive() }.toSet()
+    }
+
+    private fun items(count: Int) = List(count) { "item $it" }
+
+    @Test
+    fun onlyPagesNearestLastBoundRowAreHeld() = runBlocking {
+        val source = ListPageSource(items(20))
+        val list = pagedList(source, this)
+        assertEquals(20, list.size)
+
+        // Row 9 is at the end of page 4, so page 5 is loaded with it.
+        list.loadAround(9)
+        assertEquals(setOf(8, 10), awaitLoaded(2))
+
+        assertEquals(2, list.heldPageCount)
+        assertFalse(list.isLoaded(0))
+        assertEquals("", list[0])
+        assertEquals("item 9", list[9])
+        assertEquals("item 10", list[10])
+
+        // Scrolling back loads the first pages again and drops the ones left behind.
+        list.loadAround(1)
+        assertEquals(setOf(0, 2), awaitLoaded(2))
+
+        assertEquals(2, list.heldPageCount)
+        assertEquals("item 1", list[1])
+        assertFalse(list.isLoaded(9))
+        assertEquals(5, source.loadedKeys.size)
+        assertEquals(setOf(null, "2", "8", "10"), source.loadedKeys.toSet())
+    }
+
+    @Test
+    fun cursorPagesAreReachedThroughThePagesBefore() = runBlocking {
+        val source = ListPageSource(items(10), isCursor = true)
+        val list = pagedList(source, this)
+
+        list.loadAround(6)
+        assertEquals(setOf(2, 4, 6), awaitLoaded(3))
+
+        assertEquals("item 6", list[6])
+        assertEquals(2, list.heldPageCount)
+        assertEquals(listOf(null, "2", "4", "6"), source.loadedKeys)
+
+        // Page 1 was dropped, but its key was kept: it is loaded again directly.
+        list.loadAround(3)
+        assertEquals(setOf(2), awaitLoaded(1))
+
+        assertEquals("item 3", list[3])
+        assertEquals(listOf(null, "2", "4", "6", "2"), source.loadedKeys)
+    }
+
+    @Test
+    fun rowsFollowItemsServerReturned() = runBlocking {
+        val source = ListPageSource(items(6))
+        source.unavailable = setOf(1)
+        val list = pagedList(source, this)
+
+        // The server counted six items but left one out of the first page.
+        assertEquals(5, list.size)
+        assertEquals("item 0", list[0])
+        assertFalse(list.isLoaded(1))
+
+        list.loadAround(1)
+        assertEquals(setOf(1), awaitLoaded(1))
+
+        assertEquals("item 2", list[1])
+        assertEquals("item 3", list[2])
+        assertEquals(5, list.size)
+    }
+
+    companion object {
+
+        /**
+         * Only bounds a hung test; nothing is expected to take close to it.
+         */
+        private const val TIMEOUT_MILLIS = 10_000L
+    }
+}
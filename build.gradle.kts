@@ -12,6 +12,7 @@ plugins {
     alias(libs.plugins.android.library) apply false
     alias(libs.plugins.google.devtools.ksp) apply false
     alias(libs.plugins.kotlin.android) apply false
+    alias(libs.plugins.kotlin.jvm) apply false
 }
 
 tasks.register<Delete>("clean") {
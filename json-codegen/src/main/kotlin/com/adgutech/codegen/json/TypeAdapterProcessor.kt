@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2022-2025 Adolfo Gutiérrez <adgutech@gmail.com>
+ * and Contributors.
+ *
+ * This file is part of Adgutech.
+ *
+ *  Adgutech is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.adgutech.codegen.json
+
+import com.google.devtools.ksp.getAllSuperTypes
+import com.google.devtools.ksp.getConstructors
+import com.google.devtools.ksp.getDeclaredProperties
+import com.google.devtools.ksp.isAbstract
+import com.google.devtools.ksp.isPublic
+import com.google.devtools.ksp.processing.CodeGenerator
+import com.google.devtools.ksp.processing.Dependencies
+import com.google.devtools.ksp.processing.KSPLogger
+import com.google.devtools.ksp.processing.Resolver
+import com.google.devtools.ksp.processing.SymbolProcessor
+import com.google.devtools.ksp.symbol.ClassKind
+import com.google.devtools.ksp.symbol.KSAnnotated
+import com.google.devtools.ksp.symbol.KSClassDeclaration
+import com.google.devtools.ksp.symbol.KSPropertyDeclaration
+import com.google.devtools.ksp.symbol.KSType
+import com.google.devtools.ksp.symbol.KSTypeParameter
+import com.google.devtools.ksp.symbol.Modifier
+
+/**
+ * Generates a reflection-free Gson [com.google.gson.TypeAdapter] for every class annotated
+ * with [ANNOTATION], plus a single `GeneratedTypeAdapterFactory` that hands them to Gson.
+ *
+ * Strings, numbers and booleans are read and written inline, coerced the way Gson's own
+ * adapters coerce them; any other field type is delegated to the adapter Gson resolves for
+ * it, which is again a generated one for annotated models. Unknown JSON names are skipped
+ * without being materialized.
+ */
+class TypeAdapterProcessor(
+    private val codeGenerator: CodeGenerator,
+    private val logger: KSPLogger
+) : SymbolProcessor {
+
+    private var processed = false
+
+    override fun process(resolver: Resolver): List<KSAnnotated> {
+        if (processed) return emptyList()
+        processed = true
+
+        val models = resolver.getSymbolsWithAnnotation(ANNOTATION)
+            .filterIsInstance<KSClassDeclaration>()
+            .filter { isSupported(it) }
+            .sortedBy { it.qualifiedName!!.asString() }
+            .toList()
+        if (models.isEmpty()) return emptyList()
+
+        models.forEach { writeAdapter(it) }
+        writeFactory(models)
+        return emptyList()
+    }
+
+    private fun isSupported(model: KSClassDeclaration): Boolean {
+        val constructors = model.getConstructors().toList()
+        val supported = model.classKind == ClassKind.CLASS && !model.isAbstract() &&
+                model.parentDeclaration == null &&
+                (constructors.isEmpty() || constructors.any { it.isPublic() && it.parameters.isEmpty() })
+        if (!supported) {
+            logger.error("@GenerateTypeAdapter needs a top-level concrete class with a public no-arg constructor", model)
+        }
+        return supported
+    }
+
+    private fun writeAdapter(model: KSClassDeclaration) {
+        val packageName = model.packageName.asString()
+        val typeParameters = model.typeParameters.map { it.name.asString() }
+        val modelType = modelType(model)
+        val properties = jsonProperties(model)
+
+        val code = buildString {
+            appendLine("// Generated by json-codegen. Do not edit.")
+            appendLine("package $packageName")
+            appendLine()
+            IMPORTS.forEach { appendLine("import $it") }
+            appendLine()
+            appendLine("@Suppress(\"UNCHECKED_CAST\", \"USELESS_CAST\", \"UNNECESSARY_SAFE_CALL\", \"PLATFORM_CLASS_MAPPED_TO_KOTLIN\", \"RedundantSuppression\", \"unused\")")
+            appendLine("internal class ${adapterName(model)}(")
+            appendLine("    private val gson: Gson,")
+            appendLine("    private val typeArguments: Array<Type>")
+            appendLine(") : TypeAdapter<$modelType>() {")
+
+            properties.filter { it.inline == null }.forEach { property ->
+                appendLine()
+                appendLine("    private val ${property.adapterField}: TypeAdapter<Any?> by lazy {")
+                appendLine("        gson.getAdapter(TypeToken.get(${typeExpression(property.type, typeParameters)})) as TypeAdapter<Any?>")
+                appendLine("    }")
+            }
+
+            appendLine()
+            appendLine("    override fun read(reader: JsonReader): $modelType? {")
+            appendLine("        if (reader.peek() == JsonToken.NULL) {")
+            appendLine("            reader.nextNull()")
+            appendLine("            return null")
+            appendLine("        }")
+            appendLine("        val value = $modelType()")
+            appendLine("        reader.beginObject()")
+            appendLine("        while (reader.hasNext()) {")
+            appendLine("            when (reader.nextName()) {")
+            properties.forEach { property ->
+                val target = "value.`${property.name}`"
+                val inline = property.inline
+                if (inline == null) {
+                    appendLine("                \"${property.jsonName}\" -> $target = ${property.adapterField}.read(reader).cast()")
+                } else {
+                    appendLine("                \"${property.jsonName}\" -> if (reader.peek() == JsonToken.NULL) {")
+                    appendLine("                    reader.nextNull()")
+                    appendLine("                } else {")
+                    appendLine("                    $target = ${inline.read}")
+                    appendLine("                }")
+                }
+            }
+            appendLine("                else -> reader.skipValue()")
+            appendLine("            }")
+            appendLine("        }")
+            appendLine("        reader.endObject()")
+            appendLine("        return value")
+            appendLine("    }")
+
+            appendLine()
+            appendLine("    override fun write(writer: JsonWriter, value: $modelType?) {")
+            appendLine("        if (value == null) {")
+            appendLine("            writer.nullValue()")
+            appendLine("            return")
+            appendLine("        }")
+            appendLine("        writer.beginObject()")
+            properties.forEach { property ->
+                val inline = property.inline
+                val write = if (inline == null) {
+                    "writer.name(\"${property.jsonName}\"); ${property.adapterField}.write(writer, it)"
+                } else {
+                    "writer.name(\"${property.jsonName}\").value(it as ${inline.writeType}?)"
+                }
+                appendLine("        value.`${property.name}`?.let { $write }")
+            }
+            appendLine("        writer.endObject()")
+            appendLine("    }")
+            appendLine("}")
+            appendLine()
+            appendLine("@Suppress(\"UNCHECKED_CAST\")")
+            appendLine("private fun <T> Any?.cast(): T = this as T")
+            val reads = properties.mapNotNull { it.inline?.read }
+            READ_HELPERS.filterKeys { name -> reads.any { name in it } }.values.forEach {
+                appendLine()
+                appendLine(it)
+            }
+        }
+
+        // The adapter reads the fields of every superclass too, so each of them is a source.
+        val files = hierarchyOf(model).mapNotNull { it.containingFile }.distinct().toTypedArray()
+        codeGenerator.createNewFile(Dependencies(false, *files), packageName, adapterName(model)).use {
+            it.write(code.toByteArray())
+        }
+    }
+
+    private fun writeFactory(models: List<KSClassDeclaration>) {
+        val packageName = models.map { it.packageName.asString() }
+            .reduce { common, next -> commonPackage(common, next) }
+
+        val code = buildString {
+            appendLine("// Generated by json-codegen. Do not edit.")
+            appendLine("package $packageName")
+            appendLine()
+            appendLine("import com.google.gson.Gson")
+            appendLine("import com.google.gson.TypeAdapter")
+            appendLine("import com.google.gson.TypeAdapterFactory")
+            appendLine("import com.google.gson.reflect.TypeToken")
+            appendLine("import java.lang.reflect.ParameterizedType")
+            appendLine("import java.lang.reflect.Type")
+            appendLine()
+            appendLine("/**")
+            appendLine(" * Resolves the generated adapters of every `@GenerateTypeAdapter` model. Only exact")
+            appendLine(" * classes match, so subclasses still get their own adapter.")
+            appendLine(" */")
+            appendLine("class GeneratedTypeAdapterFactory : TypeAdapterFactory {")
+            appendLine()
+            appendLine("    override fun <T> create(gson: Gson, type: TypeToken<T>): TypeAdapter<T>? {")
+            appendLine("        val adapter: TypeAdapter<*> = when (type.rawType as Class<*>) {")
+            models.forEach { model ->
+                val name = model.qualifiedName!!.asString()
+                val adapter = "${model.packageName.asString()}.${adapterName(model)}"
+                appendLine("            $name::class.java -> $adapter(gson, typeArguments(type.type, ${model.typeParameters.size}))")
+            }
+            appendLine("            else -> return null")
+            appendLine("        }")
+            appendLine("        @Suppress(\"UNCHECKED_CAST\")")
+            appendLine("        return adapter as TypeAdapter<T>")
+            appendLine("    }")
+            appendLine()
+            appendLine("    private fun typeArguments(type: Type, count: Int): Array<Type> {")
+            appendLine("        val actual = (type as? ParameterizedType)?.actualTypeArguments")
+            appendLine("        return Array(count) { index -> actual?.getOrNull(index) ?: Any::class.java }")
+            appendLine("    }")
+            appendLine("}")
+        }
+
+        val files = models.mapNotNull { it.containingFile }.toTypedArray()
+        codeGenerator.createNewFile(Dependencies(true, *files), packageName, FACTORY_NAME).use {
+            it.write(code.toByteArray())
+        }
+    }
+
+    /**
+     * [model] and its superclasses, super class first, matching the order reflective Gson
+     * would write their fields in.
+     */
+    private fun hierarchyOf(model: KSClassDeclaration): List<KSClassDeclaration> {
+        return model.getAllSuperTypes()
+            .map { it.declaration }
+            .filterIsInstance<KSClassDeclaration>()
+            .filter { it.classKind == ClassKind.CLASS }
+            .toList()
+            .reversed() + model
+    }
+
+    private fun jsonProperties(model: KSClassDeclaration): List<JsonProperty> {
+        return hierarchyOf(model).flatMap { declaration ->
+            declaration.getDeclaredProperties()
+                .filter { it.isPublic() && isInstanceField(it) }
+                .map { property ->
+                    val type = property.type.resolve()
+                    val name = property.simpleName.asString()
+                    JsonProperty(
+                        name = name,
+                        jsonName = serializedName(property) ?: name,
+                        type = type,
+                        inline = INLINE_TYPES[type.declaration.qualifiedName?.asString()]
+                    )
+                }
+                .toList()
+        }
+    }
+
+    private fun isInstanceField(property: KSPropertyDeclaration): Boolean {
+        val modifiers = property.modifiers
+        return Modifier.JAVA_STATIC !in modifiers && Modifier.JAVA_TRANSIENT !in modifiers &&
+                Modifier.TRANSIENT !in modifiers && Modifier.CONST !in modifiers
+    }
+
+    private fun serializedName(property: KSPropertyDeclaration): String? {
+        return property.annotations
+            .firstOrNull { it.shortName.asString() == "SerializedName" }
+            ?.arguments
+            ?.firstOrNull { it.name?.asString() == "value" }
+            ?.value as? String
+    }
+
+    /**
+     * Kotlin expression evaluating to the [java.lang.reflect.Type] of [type], with the model
+     * type parameters taken from the `typeArguments` the factory resolved.
+     */
+    private fun typeExpression(type: KSType, typeParameters: List<String>): String {
+        val declaration = type.declaration
+        if (declaration is KSTypeParameter) {
+            val index = typeParameters.indexOf(declaration.name.asString())
+            return if (index >= 0) "typeArguments[$index]" else "Any::class.java"
+        }
+        val raw = rawClass(declaration.qualifiedName!!.asString())
+        if (type.arguments.isEmpty()) return raw
+        val arguments = type.arguments.joinToString(", ") { argument ->
+            argument.type?.let { typeExpression(it.resolve(), typeParameters) } ?: "Any::class.java"
+        }
+        return "TypeToken.getParameterized($raw, $arguments).type"
+    }
+
+    private fun rawClass(qualifiedName: String): String {
+        return when (qualifiedName) {
+            "kotlin.Any" -> "Any::class.java"
+            "kotlin.String" -> "String::class.java"
+            "kotlin.Int", "kotlin.Long", "kotlin.Double", "kotlin.Float", "kotlin.Boolean",
+            "kotlin.Short", "kotlin.Byte", "kotlin.Char" -> "$qualifiedName::class.javaObjectType"
+            "kotlin.collections.List", "kotlin.collections.MutableList" -> "List::class.java"
+            "kotlin.collections.Collection", "kotlin.collections.MutableCollection" -> "Collection::class.java"
+            "kotlin.collections.Set", "kotlin.collections.MutableSet" -> "Set::class.java"
+            "kotlin.collections.Map", "kotlin.collections.MutableMap" -> "Map::class.java"
+            else -> "$qualifiedName::class.java"
+        }
+    }
+
+    private fun modelType(model: KSClassDeclaration): String {
+        val name = model.qualifiedName!!.asString()
+        if (model.typeParameters.isEmpty()) return name
+        return name + model.typeParameters.joinToString(", ", "<", ">") { "Any?" }
+    }
+
+    private fun adapterName(model: KSClassDeclaration): String {
+        return model.simpleName.asString() + "TypeAdapter"
+    }
+
+    private fun commonPackage(first: String, second: String): String {
+        val common = first.split('.').zip(second.split('.'))
+            .takeWhile { (a, b) -> a == b }
+            .map { it.first }
+        return common.joinToString(".")
+    }
+
+    private class InlineType(val read: String, val writeType: String)
+
+    private class JsonProperty(
+        val name: String,
+        val jsonName: String,
+        val type: KSType,
+        val inline: InlineType?
+    ) {
+        val adapterField: String
+            get() = "${name}Adapter"
+    }
+
+    companion object {
+        const val ANNOTATION =
+            "com.adgutech.adomusic.remote.api.spotify.annotations.GenerateTypeAdapter"
+
+        private const val FACTORY_NAME = "GeneratedTypeAdapterFactory"
+
+        private val IMPORTS = listOf(
+            "com.google.gson.Gson",
+            "com.google.gson.JsonSyntaxException",
+            "com.google.gson.TypeAdapter",
+            "com.google.gson.reflect.TypeToken",
+            "com.google.gson.stream.JsonReader",
+            "com.google.gson.stream.JsonToken",
+            "com.google.gson.stream.JsonWriter",
+            "java.lang.reflect.Type"
+        )
+
+        private val INLINE_TYPES = mapOf(
+            "kotlin.String" to InlineType("reader.readString()", "String"),
+            "kotlin.Int" to InlineType("reader.readNumber { nextInt() }", "Number"),
+            "kotlin.Long" to InlineType("reader.readNumber { nextLong() }", "Number"),
+            "kotlin.Double" to InlineType("reader.nextDouble()", "Number"),
+            "kotlin.Float" to InlineType("reader.nextDouble().toFloat()", "Number"),
+            "kotlin.Boolean" to InlineType("reader.readBoolean()", "Boolean")
+        )
+
+        /**
+         * The coercions of Gson's STRING, BOOLEAN, INTEGER and LONG adapters: a boolean read
+         * as a string, a string read as a boolean, and a malformed number reported as a
+         * [com.google.gson.JsonSyntaxException]. Numbers read as strings need nothing, since
+         * [com.google.gson.stream.JsonReader.nextString] already accepts them.
+         */
+        private val READ_HELPERS = mapOf(
+            "readString" to """
+            |private fun JsonReader.readString(): String =
+            |    if (peek() == JsonToken.BOOLEAN) nextBoolean().toString() else nextString()
+            """.trimMargin(),
+            "readBoolean" to """
+            |private fun JsonReader.readBoolean(): Boolean =
+            |    if (peek() == JsonToken.STRING) nextString().toBoolean() else nextBoolean()
+            """.trimMargin(),
+            "readNumber" to """
+            |private inline fun <T> JsonReader.readNumber(read: JsonReader.() -> T): T = try {
+            |    read()
+            |} catch (e: NumberFormatException) {
+            |    throw JsonSyntaxException(e)
+            |}
+            """.trimMargin()
+        )
+    }
+}
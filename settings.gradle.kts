@@ -25,6 +25,7 @@ include(":app")
 
 include(":appthemehelper")
 include(":commons")
+include(":json-codegen")
 
 //spotify
 include(":spotify-app-remote")